@@ -0,0 +1,238 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+
+import sampleannotator.AnnotatedCNVWriter;
+import sampleannotator.PennCNVDecoder;
+import sampleannotator.RawCNVReader;
+import utilities.CNV;
+import utilities.CNVAnnotator;
+import utilities.DecimalPattern;
+import utilities.LineOffsetIndex;
+import utilities.PrimitiveStatistics;
+import utilities.ReferenceBundle;
+import utilities.ResourcePaths;
+import utilities.SyntheticFixtures;
+
+/**
+ * Benchmarks the 'Annotate' hot path against synthetic fixtures written by {@link SyntheticFixtures}, so it runs offline
+ * and gives the same inputs every time: PennCNV line decoding, reading CNVs, the reference, per-CNV and per-sample sweep
+ * annotation passes, formatting the annotated table, and gene/pathogenic lookups as used by 'Merge'. PennCNV decoding and
+ * LRR/BAF statistics are also timed with the regex parser and commons-math DescriptiveStatistics they replaced. Time and
+ * allocation are reported per CNV (or per line for decoding, per statistics set, or per value for number formatting).
+ *
+ * Before anything is timed, the replacements on the hot path are checked against what they replaced on random inputs.
+ */
+public class AnnotateBenchmark {
+
+	public AnnotateBenchmark(String args[]) throws IOException {
+
+		AnnotateBenchmarkOptions options = new AnnotateBenchmarkOptions(args);
+		
+		if (options.getChecks() > 0) {
+			Random random = new Random(options.getSeed());
+			System.err.println("PrimitiveStatistics matches DescriptiveStatistics: " + StatisticsCheck.run(random, options.getChecks()) + " values compared");
+			System.err.println("PennCNVDecoder matches the regex parser: " + PennCNVDecoderCheck.run(random, options.getChecks() * 10) + " lines compared");
+		}
+
+		System.err.println("Writing synthetic fixtures to " + options.getFixtureDirectory().getAbsolutePath());
+		SyntheticFixtures fixtures = new SyntheticFixtures(options.getFixtureDirectory(), options.getSeed(), options.getSamples(), options.getCNVsPerSample(), 0.5);
+		fixtures.write();
+		System.setProperty(ResourcePaths.ROOT_PROPERTY, fixtures.getRoot().getAbsolutePath());
+
+		ReferenceBundle reference = new ReferenceBundle();
+		final RawCNVReader reader = new RawCNVReader(fixtures.getCNVFile(), fixtures.getSampleTable(), RawCNVReader.DEFAULT_TABIX_HANDLES, reference);
+		final CNVAnnotator annotator = new CNVAnnotator(reference);
+		final LineOffsetIndex lineIndex = LineOffsetIndex.build(fixtures.getCNVFile(), LineOffsetIndex.DEFAULT_STRIDE);
+
+		final List<String> lines = new ArrayList<String>();
+		BufferedReader lineReader = new BufferedReader(new FileReader(fixtures.getCNVFile()));
+		String line;
+		while ((line = lineReader.readLine()) != null) {
+			lines.add(line);
+		}
+		lineReader.close();
+		final List<CNV> cnvs = reader.readCNVs(1, Integer.MAX_VALUE);
+
+		BenchmarkRunner runner = new BenchmarkRunner(options.getWarmupIterations(), options.getIterations());
+
+		runner.run("Decode line, regex", new BenchmarkRunner.Benchmark() {
+			@Override
+			public long run(BenchmarkRunner runner) {
+				for (String line : lines) {
+					PennCNVDecoderCheck.LegacyRecord record = new PennCNVDecoderCheck.LegacyRecord(line);
+					runner.consume(record.getStart() + record.getEnd() + record.getProbeCount() + record.getCopyNumber());
+					runner.consume(record.getConfidence());
+					runner.consume(PennCNVDecoderCheck.LegacyRecord.isSplitSampleName(record.getSplitFileName()) ? 1 : 0);
+				}
+				return lines.size();
+			}
+		});
+		runner.run("Decode line, PennCNVDecoder", new BenchmarkRunner.Benchmark() {
+			private PennCNVDecoder decoder = new PennCNVDecoder();
+			@Override
+			public long run(BenchmarkRunner runner) {
+				for (String line : lines) {
+					decoder.decode(line);
+					runner.consume(decoder.getStart() + decoder.getEnd() + decoder.getProbeCount() + decoder.getCopyNumber());
+					runner.consume(decoder.getConfidence());
+					runner.consume(PennCNVDecoder.isSplitSampleName(decoder.getSplitFileName()) ? 1 : 0);
+				}
+				return lines.size();
+			}
+		});
+		// Probes per CNV as annotated, and a large CNV of the kind that dominated GC with DescriptiveStatistics
+		for (final int probes : new int[] {30, 100000}) {
+			final double probeValues[] = new double[probes];
+			Random random = new Random(options.getSeed());
+			for (int x = 0; x < probes; x++) {
+				probeValues[x] = Math.round(random.nextGaussian() * 10000) / 100000.0;
+			}
+			final int repeats = Math.max(1, 100000 / probes);
+			runner.run("Stats " + probes + ", Descriptive", new BenchmarkRunner.Benchmark() {
+				@Override
+				public long run(BenchmarkRunner runner) {
+					for (int x = 0; x < repeats; x++) {
+						DescriptiveStatistics stats = new DescriptiveStatistics();
+						for (double value : probeValues) {
+							stats.addValue(value);
+						}
+						runner.consume(stats.getMean() + stats.getStandardDeviation() + stats.getPercentile(50));
+					}
+					return repeats;
+				}
+			});
+			runner.run("Stats " + probes + ", Primitive", new BenchmarkRunner.Benchmark() {
+				private PrimitiveStatistics stats = new PrimitiveStatistics();
+				@Override
+				public long run(BenchmarkRunner runner) {
+					for (int x = 0; x < repeats; x++) {
+						stats.clear();
+						for (double value : probeValues) {
+							stats.addValue(value);
+						}
+						runner.consume(stats.getMean() + stats.getStandardDeviation() + stats.getMedian());
+					}
+					return repeats;
+				}
+			});
+		}
+		runner.run("Read CNVs", new BenchmarkRunner.Benchmark() {
+			@Override
+			public long run(BenchmarkRunner runner) throws IOException {
+				reader.seekToLine(lineIndex, 1);
+				List<CNV> read = reader.readCNVs(1, Integer.MAX_VALUE);
+				runner.consume(read);
+				return read.size();
+			}
+		});
+		runner.run("Annotate reference", new BenchmarkRunner.Benchmark() {
+			@Override
+			public long run(BenchmarkRunner runner) {
+				reader.annotateReference(cnvs);
+				return cnvs.size();
+			}
+		});
+		runner.run("Annotate per CNV", new BenchmarkRunner.Benchmark() {
+			@Override
+			public long run(BenchmarkRunner runner) throws IOException {
+				reader.annotate(cnvs, false);
+				return cnvs.size();
+			}
+		});
+		runner.run("Annotate sweep", new BenchmarkRunner.Benchmark() {
+			@Override
+			public long run(BenchmarkRunner runner) throws IOException {
+				reader.annotate(cnvs, true);
+				return cnvs.size();
+			}
+		});
+		// Values the writers format with fixed-precision patterns, as produced by the annotation above
+		final double values[] = new double[cnvs.size() * 3];
+		for (int x = 0; x < cnvs.size(); x++) {
+			values[x * 3] = cnvs.get(x).getConfidence();
+			values[(x * 3) + 1] = cnvs.get(x).getDensity();
+			values[(x * 3) + 2] = cnvs.get(x).getSampleInformation().getLrr_sd();
+		}
+		runner.run("Format doubles, DecimalFormat", new BenchmarkRunner.Benchmark() {
+			private DecimalFormat twoDigits = new DecimalFormat("##.##");
+			private DecimalFormat sevenDigits = new DecimalFormat("##.#######");
+			@Override
+			public long run(BenchmarkRunner runner) {
+				for (double value : values) {
+					runner.consume(twoDigits.format(value) + "\t");
+					runner.consume(sevenDigits.format(value) + "\t");
+				}
+				return values.length * 2;
+			}
+		});
+		runner.run("Format doubles, DecimalPattern", new BenchmarkRunner.Benchmark() {
+			private DecimalPattern twoDigits = new DecimalPattern("##.##");
+			private DecimalPattern sevenDigits = new DecimalPattern("##.#######");
+			private StringBuilder line = new StringBuilder(1024);
+			@Override
+			public long run(BenchmarkRunner runner) {
+				for (double value : values) {
+					line.setLength(0);
+					twoDigits.appendTo(line, value);
+					line.append('\t');
+					sevenDigits.appendTo(line, value);
+					line.append('\t');
+					runner.consume(line.length());
+				}
+				return values.length * 2;
+			}
+		});
+		runner.run("Write annotated table", new BenchmarkRunner.Benchmark() {
+			private AnnotatedCNVWriter writer = new AnnotatedCNVWriter(new BufferedWriter(new NullWriter(), 65536));
+			@Override
+			public long run(BenchmarkRunner runner) throws IOException {
+				writer.write(cnvs);
+				return cnvs.size();
+			}
+		});
+		runner.run("Genes and pathogenic", new BenchmarkRunner.Benchmark() {
+			@Override
+			public long run(BenchmarkRunner runner) throws Exception {
+				for (CNV cnv : cnvs) {
+					Set<String> genes = annotator.parseGenes(cnv.getChr(), cnv.getStart(), cnv.getEnd());
+					runner.consume(annotator.parsePathogenic(cnv.getChr(), cnv.getStart(), cnv.getEnd(), genes, cnv.getCopyType()));
+				}
+				return cnvs.size();
+			}
+		});
+
+		System.err.println();
+		System.err.println(runner.getSummary());
+		System.err.println();
+		System.err.println("Annotation source lookups (all iterations):");
+		System.err.println(reader.getLookupStatistics().getSummary());
+		if (options.getOutput() != null) {
+			runner.write(options.getOutput());
+		}
+		reader.close();
+
+	}
+
+	// Discards everything, so only formatting is timed
+	private static class NullWriter extends Writer {
+		@Override
+		public void write(char buffer[], int offset, int length) {}
+		@Override
+		public void flush() {}
+		@Override
+		public void close() {}
+	}
+
+}
@@ -0,0 +1,124 @@
+package benchmark;
+
+import java.io.File;
+
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+public class AnnotateBenchmarkOptions {
+
+	private Options options;
+
+	private File fixtureDirectory;
+	private File output;
+	private int samples;
+	private int cnvsPerSample;
+	private long seed;
+	private int warmupIterations;
+	private int iterations;
+	private int checks;
+
+	public AnnotateBenchmarkOptions (String args[]) {
+
+		options = setOptions();
+		loadOptions(args);
+
+	}
+
+	public File getFixtureDirectory() {
+		return fixtureDirectory;
+	}
+	/**
+	 * @return file to write results to, or null to only print them
+	 */
+	public File getOutput() {
+		return output;
+	}
+	public int getSamples() {
+		return samples;
+	}
+	public int getCNVsPerSample() {
+		return cnvsPerSample;
+	}
+	public long getSeed() {
+		return seed;
+	}
+	public int getWarmupIterations() {
+		return warmupIterations;
+	}
+	public int getIterations() {
+		return iterations;
+	}
+	/**
+	 * @return number of random cases each equivalence check runs before benchmarking
+	 */
+	public int getChecks() {
+		return checks;
+	}
+
+	private Options setOptions() {
+
+		Options options = new Options();
+
+		options.addOption(new Option("dir", true, "Directory to write synthetic fixtures to [<tmp>/cnvannotator-benchmark]."));
+		options.addOption(new Option("o", true, "Also write results as a tab-delimited table to this file."));
+		options.addOption(new Option("samples", true, "Number of synthetic samples [20]."));
+		options.addOption(new Option("cnvs", true, "Mean number of CNVs per synthetic sample [50]."));
+		options.addOption(new Option("seed", true, "Random seed for the fixtures [1]."));
+		options.addOption(new Option("warmup", true, "Warmup iterations per benchmark [3]."));
+		options.addOption(new Option("i", true, "Measured iterations per benchmark [5]."));
+		options.addOption(new Option("checks", true, "Random cases each equivalence check (against the implementations replaced on the hot path) runs before benchmarking; 0 to skip [2000]."));
+		options.addOption(new Option("help", false, "Print help message."));
+
+		return options;
+
+	}
+
+	private void loadOptions(String args[]) {
+
+		CommandLineParser parser = new BasicParser();
+		CommandLine cmd = null;
+
+		try {
+			 cmd = parser.parse(options, args);
+		} catch (org.apache.commons.cli.ParseException e) {
+			System.out.println();
+			ThrowHelp(e.getMessage());
+		}
+
+		if (cmd.hasOption("help")) {
+			ThrowHelp("");
+		}
+
+		if (cmd.hasOption("dir")) {
+			fixtureDirectory = new File(cmd.getOptionValue("dir"));
+		} else {
+			fixtureDirectory = new File(System.getProperty("java.io.tmpdir"), "cnvannotator-benchmark");
+		}
+		output = cmd.hasOption("o") ? new File(cmd.getOptionValue("o")) : null;
+		samples = cmd.hasOption("samples") ? Integer.parseInt(cmd.getOptionValue("samples")) : 20;
+		cnvsPerSample = cmd.hasOption("cnvs") ? Integer.parseInt(cmd.getOptionValue("cnvs")) : 50;
+		seed = cmd.hasOption("seed") ? Long.parseLong(cmd.getOptionValue("seed")) : 1;
+		warmupIterations = cmd.hasOption("warmup") ? Integer.parseInt(cmd.getOptionValue("warmup")) : 3;
+		iterations = cmd.hasOption("i") ? Integer.parseInt(cmd.getOptionValue("i")) : 5;
+		checks = cmd.hasOption("checks") ? Integer.parseInt(cmd.getOptionValue("checks")) : 2000;
+
+	}
+
+	private void ThrowHelp(String top) {
+		String header = "Axiom Array CNV Annotator\n\n\n";
+		String footer = "\n\n(c) Eugene Gardner 2018";
+		String usage = "java -jar CNVAnnotator.jar Benchmark <options>";
+		System.out.println();
+		System.out.println(top);
+		HelpFormatter formatter = new HelpFormatter();
+		System.out.println();
+		formatter.printHelp(9999, usage, header, options, footer);
+		System.exit(1);
+	}
+
+}
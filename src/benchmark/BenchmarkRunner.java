@@ -0,0 +1,152 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal benchmark harness: each benchmark is run for a number of warmup iterations (results discarded, so the JIT
+ * settles), then for a number of measured iterations. Every iteration reports how many operations it performed, and the
+ * runner records time and bytes allocated per operation. Allocation comes from HotSpot's per-thread allocation counter,
+ * so benchmarks must do their work on the calling thread.
+ */
+public class BenchmarkRunner {
+
+	private int warmupIterations;
+	private int iterations;
+	private com.sun.management.ThreadMXBean threadBean;
+	private List<Result> results;
+	private long sink;
+
+	public BenchmarkRunner(int warmupIterations, int iterations) {
+
+		this.warmupIterations = warmupIterations;
+		this.iterations = iterations;
+		results = new ArrayList<Result>();
+
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+			threadBean = (com.sun.management.ThreadMXBean) bean;
+			threadBean.setThreadAllocatedMemoryEnabled(true);
+		} else {
+			threadBean = null;
+			System.err.println("Allocation counters not available on this JVM, B/op will not be reported");
+		}
+
+	}
+
+	public interface Benchmark {
+		/**
+		 * Runs one iteration.
+		 *
+		 * @return number of operations performed
+		 */
+		public long run(BenchmarkRunner runner) throws Exception;
+	}
+
+	public void run(String name, Benchmark benchmark) throws IOException {
+
+		System.err.println("Running " + name);
+		for (int x = 0; x < warmupIterations; x++) {
+			runIteration(name, benchmark);
+		}
+
+		double nanosPerOp[] = new double[iterations];
+		double totalOps = 0;
+		double totalNanos = 0;
+		double totalBytes = 0;
+		for (int x = 0; x < iterations; x++) {
+			long startBytes = getAllocatedBytes();
+			long startNanos = System.nanoTime();
+			long ops = runIteration(name, benchmark);
+			long elapsed = System.nanoTime() - startNanos;
+			long allocated = getAllocatedBytes() - startBytes;
+			nanosPerOp[x] = (double) elapsed / ops;
+			totalOps += ops;
+			totalNanos += elapsed;
+			totalBytes += allocated;
+		}
+
+		double mean = totalNanos / totalOps;
+		double sumSquares = 0;
+		for (double iterationNanos : nanosPerOp) {
+			sumSquares += Math.pow(iterationNanos - mean, 2);
+		}
+		double sd = iterations > 1 ? Math.sqrt(sumSquares / (iterations - 1)) : 0;
+		results.add(new Result(name, (long) (totalOps / iterations), mean, sd, threadBean == null ? Double.NaN : totalBytes / totalOps));
+
+	}
+
+	/**
+	 * Keeps a benchmark's result live, so the JIT can't remove the work that produced it.
+	 */
+	public void consume(Object result) {
+		sink += result == null ? 0 : System.identityHashCode(result);
+	}
+	public void consume(long result) {
+		sink += result;
+	}
+	public void consume(double result) {
+		sink += Double.doubleToRawLongBits(result);
+	}
+
+	public String getSummary() {
+
+		StringBuilder summary = new StringBuilder();
+		summary.append(String.format("%-28s%12s%14s%12s%14s%12s", "Benchmark", "Ops/iter", "ns/op", "+/- sd", "ops/s", "B/op"));
+		for (Result result : results) {
+			summary.append(String.format("%n%-28s%12d%14.1f%12.1f%14.0f%12.1f", result.name, result.ops, result.nanosPerOp, result.sd, 1e9 / result.nanosPerOp, result.bytesPerOp));
+		}
+		// Printed so the sink is observably used
+		summary.append(String.format("%n(sink %x)", sink));
+		return summary.toString();
+
+	}
+
+	public void write(File resultsFile) throws IOException {
+
+		BufferedWriter resultsWriter = new BufferedWriter(new FileWriter(resultsFile));
+		resultsWriter.write("benchmark\tops_per_iteration\tns_per_op\tsd_ns_per_op\tops_per_s\tbytes_per_op\n");
+		for (Result result : results) {
+			resultsWriter.write(result.name + "\t" + result.ops + "\t" + result.nanosPerOp + "\t" + result.sd + "\t" + (1e9 / result.nanosPerOp) + "\t" + result.bytesPerOp + "\n");
+		}
+		resultsWriter.close();
+
+	}
+
+	private long runIteration(String name, Benchmark benchmark) throws IOException {
+		try {
+			return benchmark.run(this);
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Benchmark '" + name + "' failed", e);
+		}
+	}
+	private long getAllocatedBytes() {
+		return threadBean == null ? 0 : threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static class Result {
+
+		private String name;
+		private long ops;
+		private double nanosPerOp;
+		private double sd;
+		private double bytesPerOp;
+
+		private Result(String name, long ops, double nanosPerOp, double sd, double bytesPerOp) {
+			this.name = name;
+			this.ops = ops;
+			this.nanosPerOp = nanosPerOp;
+			this.sd = sd;
+			this.bytesPerOp = bytesPerOp;
+		}
+
+	}
+
+}
@@ -0,0 +1,252 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import sampleannotator.PennCNVDecoder;
+
+/**
+ * Randomized comparison of {@link PennCNVDecoder} against the regex and split based parser it replaced in
+ * RawCNVReader.parseCNVLine, run by 'Benchmark' before anything is timed. Lines are built from well-formed PennCNV
+ * records with fields swapped for malformed ones (bad locations, missing or doubled '=', exponents, NaN, commas, odd
+ * whitespace, missing fields), and every value either parser can return is compared, including whether it throws.
+ */
+public class PennCNVDecoderCheck {
+
+	private static final String ERROR = "<error>";
+	private static final String WHITESPACE[] = {" ", "  ", "\t", " \u000B", "\f ", "\r"};
+	private static final String CHRS[] = {"1", "9", "10", "22", "X", "Y", "XY", "0", "00", "123", "Z", "M", "", "x"};
+	private static final String NUMBERS[] = {"0", "-0", "1", "12", "1,234", ",5", "5,", "-,5", "007", "2147483647", "2147483648", "99999999999",
+			"1.5", "15.", ".5", ".", "-", "-.5", "1.2.3", "1e5", "1E-3", "+3", "NaN", "-Infinity", "0x1p3", "2d", "1 ", "",
+			"123456789012345", "1234567890123456", "0.000000000000001", "12345.678901234", "1234567.8901234567", "3.4028235e38"};
+
+	private PennCNVDecoderCheck() {}
+
+	/**
+	 * @return number of lines compared
+	 * @throws IOException describing the first line the two parsers disagree on
+	 */
+	public static long run(Random random, int cases) throws IOException {
+
+		PennCNVDecoder decoder = new PennCNVDecoder();
+		for (int x = 0; x < cases; x++) {
+			String line = randomLine(random);
+			Object expected[] = getLegacyValues(line);
+			Object actual[] = getDecoderValues(decoder, line);
+			if (!Arrays.equals(expected, actual)) {
+				throw new IOException("PennCNVDecoder gave " + Arrays.toString(actual) + ", the regex parser " + Arrays.toString(expected) + ", for line: " + line.replace("\t", "\\t"));
+			}
+		}
+		return cases;
+
+	}
+
+	/**
+	 * One rawcnv record parsed the way RawCNVReader did before {@link PennCNVDecoder}: split on tabs, then whitespace,
+	 * with regular expressions for the location and split file name, and a split on '=' for numeric fields.
+	 */
+	public static class LegacyRecord {
+
+		private String data[];
+		private String chr;
+		private int start;
+		private int end;
+
+		public LegacyRecord(String line) {
+
+			String lrrbaf[] = line.split("\t");
+			data = lrrbaf[0].split("\\s+");
+			chr = null;
+			start = -1;
+			end = -1;
+			Matcher locationParser = Pattern.compile("chr([\\dXY]{1,2}):(\\d+)\\-(\\d+)").matcher(data[0]);
+			if (locationParser.matches()) {
+				chr = locationParser.group(1);
+				start = Integer.parseInt(locationParser.group(2));
+				end = Integer.parseInt(locationParser.group(3));
+			}
+
+		}
+
+		public String getChr() {
+			return chr;
+		}
+		public int getStart() {
+			return start;
+		}
+		public int getEnd() {
+			return end;
+		}
+		public int getProbeCount() {
+			return (int) EqualSpliter(data[1]);
+		}
+		public int getCopyNumber() {
+			return (int) EqualSpliter(data[3]);
+		}
+		public double getConfidence() {
+			return EqualSpliter(data[7]);
+		}
+		public String getSplitFileName() {
+			return new File(data[4]).getName();
+		}
+		public static boolean isSplitSampleName(String fileName) {
+			return Pattern.compile("(split\\d+\\.a\\d{6}\\S*)").matcher(fileName).matches();
+		}
+
+		private double EqualSpliter(String toParse) {
+			String parsed[] = toParse.split("\\=");
+			String replaced = parsed[1].replaceAll(",", "");
+			return Double.parseDouble(replaced);
+		}
+
+	}
+
+	// Both parsers fail a line with fewer than five fields or an unparseable location, so the rest are only compared if it succeeds
+	private static Object[] getLegacyValues(String line) {
+
+		LegacyRecord record;
+		String fileName;
+		try {
+			record = new LegacyRecord(line);
+			fileName = record.getSplitFileName();
+		} catch (RuntimeException e) {
+			return new Object[] {ERROR};
+		}
+
+		Object values[] = new Object[8];
+		values[0] = record.getChr();
+		values[1] = record.getStart();
+		values[2] = record.getEnd();
+		values[3] = fileName;
+		values[4] = LegacyRecord.isSplitSampleName(fileName);
+		try {
+			values[5] = record.getProbeCount();
+		} catch (RuntimeException e) {
+			values[5] = ERROR;
+		}
+		try {
+			values[6] = record.getCopyNumber();
+		} catch (RuntimeException e) {
+			values[6] = ERROR;
+		}
+		try {
+			values[7] = Double.doubleToLongBits(record.getConfidence());
+		} catch (RuntimeException e) {
+			values[7] = ERROR;
+		}
+		return values;
+
+	}
+	private static Object[] getDecoderValues(PennCNVDecoder decoder, String line) {
+
+		try {
+			decoder.decode(line);
+		} catch (RuntimeException e) {
+			return new Object[] {ERROR};
+		}
+
+		Object values[] = new Object[8];
+		values[0] = decoder.getChr();
+		values[1] = decoder.getStart();
+		values[2] = decoder.getEnd();
+		values[3] = decoder.getSplitFileName();
+		values[4] = PennCNVDecoder.isSplitSampleName(decoder.getSplitFileName());
+		try {
+			values[5] = decoder.getProbeCount();
+		} catch (RuntimeException e) {
+			values[5] = ERROR;
+		}
+		try {
+			values[6] = decoder.getCopyNumber();
+		} catch (RuntimeException e) {
+			values[6] = ERROR;
+		}
+		try {
+			values[7] = Double.doubleToLongBits(decoder.getConfidence());
+		} catch (RuntimeException e) {
+			values[7] = ERROR;
+		}
+		return values;
+
+	}
+
+	private static String randomLine(Random random) {
+
+		String fields[] = new String[8];
+		fields[0] = randomLocation(random);
+		fields[1] = "numsnp=" + randomNumber(random, "12");
+		fields[2] = "length=" + randomNumber(random, "1,001");
+		fields[3] = "state" + random.nextInt(7) + ",cn=" + randomNumber(random, Integer.toString(random.nextInt(5)));
+		fields[4] = randomPath(random);
+		fields[5] = "startsnp=AX-" + random.nextInt(1000000);
+		fields[6] = "endsnp=AX-" + random.nextInt(1000000);
+		fields[7] = "conf=" + randomNumber(random, String.format("%.3f", random.nextDouble() * 100));
+		// Values with no '=', or more than one
+		for (int x = 1; x < fields.length; x++) {
+			if (random.nextInt(40) == 0) {
+				fields[x] = random.nextBoolean() ? fields[x].replace("=", "") : fields[x] + "=" + randomNumber(random, "1");
+			}
+		}
+
+		int numFields = random.nextInt(20) == 0 ? random.nextInt(fields.length) : fields.length;
+		StringBuilder line = new StringBuilder();
+		if (random.nextInt(20) == 0) {
+			line.append(WHITESPACE[random.nextInt(WHITESPACE.length)]);
+		}
+		for (int x = 0; x < numFields; x++) {
+			if (x > 0) {
+				line.append(random.nextInt(10) == 0 ? WHITESPACE[random.nextInt(WHITESPACE.length)] : "  ");
+			}
+			line.append(fields[x]);
+		}
+		if (random.nextInt(10) == 0) {
+			line.append(WHITESPACE[random.nextInt(WHITESPACE.length)]);
+		}
+		// LRR/BAF columns
+		if (random.nextBoolean()) {
+			line.append("\t0.1234\t0.05\t12");
+		}
+		return line.toString();
+
+	}
+	private static String randomLocation(Random random) {
+		String chr = random.nextInt(5) == 0 ? CHRS[random.nextInt(CHRS.length)] : CHRS[random.nextInt(6)];
+		String start = random.nextInt(10) == 0 ? NUMBERS[random.nextInt(NUMBERS.length)] : Integer.toString(random.nextInt(250000000));
+		String end = random.nextInt(10) == 0 ? NUMBERS[random.nextInt(NUMBERS.length)] : Integer.toString(random.nextInt(250000000));
+		switch (random.nextInt(12)) {
+		case 0:
+			return chr + ":" + start + "-" + end;
+		case 1:
+			return "chr" + chr + ":" + start;
+		case 2:
+			return "chr" + chr + ":" + start + "-" + end + "x";
+		default:
+			return "chr" + chr + ":" + start + "-" + end;
+		}
+	}
+	private static String randomNumber(Random random, String typical) {
+		return random.nextInt(4) == 0 ? NUMBERS[random.nextInt(NUMBERS.length)] : typical;
+	}
+	private static String randomPath(Random random) {
+		String name = "split" + (1 + random.nextInt(10)) + ".a" + String.format("%06d", random.nextInt(1000000));
+		switch (random.nextInt(10)) {
+		case 0:
+			return name.replace(".a", ".b");
+		case 1:
+			return "split1.a12345";
+		case 2:
+			return "/lustre/split/" + name + "/";
+		case 3:
+			return "/";
+		case 4:
+			return "relative//" + name + ".txt";
+		default:
+			return "/lustre/scratch/split_files/" + name;
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+
+import utilities.PrimitiveStatistics;
+
+/**
+ * Randomized comparison of {@link PrimitiveStatistics} against what it replaces, run by 'Benchmark' before anything is
+ * timed. Plain values are compared bit for bit against commons-math's DescriptiveStatistics (mean, standard deviation
+ * and percentiles). Values that include NaN, -0.0 and infinities are compared against the legacy percentile estimator
+ * over a fully sorted copy, since Arrays.sort orders them as Double.compare does; commons-math 3.3's own quickselect
+ * compares with '<', so its answer for NaN depends on the order values were added in.
+ */
+public class StatisticsCheck {
+
+	private static final double PERCENTILES[] = {0.1, 1, 5, 25, 50, 75, 95, 99, 99.9, 100};
+	private static final double SPECIAL_VALUES[] = {Double.NaN, -0.0, 0.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
+	private StatisticsCheck() {}
+
+	/**
+	 * @return number of values compared
+	 * @throws IOException describing the first mismatch
+	 */
+	public static long run(Random random, int cases) throws IOException {
+
+		PrimitiveStatistics stats = new PrimitiveStatistics(4);
+		long compared = 0;
+		for (int x = 0; x < cases; x++) {
+
+			int n = 1 + random.nextInt(random.nextBoolean() ? 16 : 512);
+			boolean special = random.nextBoolean();
+			double values[] = new double[n];
+			DescriptiveStatistics reference = new DescriptiveStatistics();
+			stats.clear();
+			for (int y = 0; y < n; y++) {
+				if (special && random.nextInt(4) == 0) {
+					values[y] = SPECIAL_VALUES[random.nextInt(SPECIAL_VALUES.length)];
+				} else {
+					// Plenty of ties, as LRR/BAF values printed to a few decimal places have
+					values[y] = random.nextInt(3) == 0 ? random.nextInt(5) : random.nextGaussian();
+				}
+				stats.addValue(values[y]);
+				reference.addValue(values[y]);
+			}
+
+			double sorted[] = Arrays.copyOf(values, n);
+			Arrays.sort(sorted);
+			for (double p : PERCENTILES) {
+				compare("percentile " + p, values, getPercentile(sorted, p), stats.getPercentile(p));
+				if (!special) {
+					compare("DescriptiveStatistics percentile " + p, values, reference.getPercentile(p), stats.getPercentile(p));
+				}
+				compared++;
+			}
+			if (!special) {
+				compare("mean", values, reference.getMean(), stats.getMean());
+				compare("standard deviation", values, reference.getStandardDeviation(), stats.getStandardDeviation());
+				compared += 2;
+			}
+
+		}
+		return compared;
+
+	}
+
+	// commons-math's legacy estimator
+	private static double getPercentile(double sorted[], double p) {
+		int n = sorted.length;
+		double pos = p * (n + 1) / 100;
+		double fpos = Math.floor(pos);
+		int intPos = (int) fpos;
+		double dif = pos - fpos;
+		if (n == 1 || pos < 1) {
+			return sorted[0];
+		} else if (pos >= n) {
+			return sorted[n - 1];
+		}
+		return sorted[intPos - 1] + dif * (sorted[intPos] - sorted[intPos - 1]);
+	}
+	private static void compare(String statistic, double values[], double expected, double actual) throws IOException {
+		if (Double.doubleToLongBits(expected) != Double.doubleToLongBits(actual)) {
+			throw new IOException("PrimitiveStatistics " + statistic + " was " + actual + ", expected " + expected + ", for " + Arrays.toString(values));
+		}
+	}
+
+}
@@ -3,29 +3,32 @@ package loaders;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.HashMap;
-import java.util.Map;
 
-import htsjdk.samtools.util.IntervalTree;
+import utilities.IntervalTrack;
 
 public class GeneLoader {
 
-	Map<String, IntervalTree<String>> geneIntervals;
+	IntervalTrack geneIntervals;
 	
 	public GeneLoader() throws IOException {
 		
 		BufferedReader geneReader = new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream("/loaders/geneList_hg19.bed"), "UTF-8"));
-		geneIntervals = BuildIntervalTree(geneReader);
+		geneIntervals = BuildIntervalTrack(geneReader);
 		geneReader.close();
 				
+	}
+	public GeneLoader(BufferedReader geneReader) throws IOException {
+		
+		geneIntervals = BuildIntervalTrack(geneReader);
+		
 	}
 	
-	public Map<String, IntervalTree<String>> getGeneIntervals() {
+	public IntervalTrack getGeneTrack() {
 		return geneIntervals;
 	}
 	
-	private Map<String, IntervalTree<String>> BuildIntervalTree(BufferedReader geneReader) throws IOException {
-		Map<String, IntervalTree<String>> genes = new HashMap<String, IntervalTree<String>>();
+	private IntervalTrack BuildIntervalTrack(BufferedReader geneReader) throws IOException {
+		IntervalTrack.Builder genes = new IntervalTrack.Builder();
 		
 		String line;
 		String data[];
@@ -37,20 +40,10 @@ public class GeneLoader {
 			int stop = Integer.parseInt(data[2]);
 			String geneName = data[3];
 			
-			if (genes.containsKey(chr)) {
-				
-				genes.get(chr).put(start, stop, geneName);
-				
-			} else {
-				
-				IntervalTree<String> currentChr = new IntervalTree<String>();
-				currentChr.put(start, stop, geneName);
-				genes.put(chr, currentChr);
-				
-			}
+			genes.add(chr, start, stop, geneName);
 		}
 				
-		return genes;
+		return genes.build();
 	}
 	
 }
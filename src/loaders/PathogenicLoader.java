@@ -22,6 +22,11 @@ public class PathogenicLoader {
 		BuildPathogenicTrees(pathogenicReader);
 		pathogenicReader.close();
 	
+	}
+	public PathogenicLoader(BufferedReader pathogenicReader) throws IOException {
+		
+		BuildPathogenicTrees(pathogenicReader);
+		
 	}
 	
 	public Map<String, IntervalTree<PathogenicLocus>> getPathogenicDupIntervals () {
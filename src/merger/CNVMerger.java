@@ -9,8 +9,10 @@ import merger.cluster.CNVClusterer;
 import merger.cluster.ReciprocalClustering;
 import sampleannotator.resources.SampleLoader;
 import utilities.CNV;
+import utilities.CNVAnnotator;
 import utilities.CNVAnnotator.OverlapError;
 import utilities.CNVMergerOptions;
+import utilities.ReferenceBundle;
 
 public class CNVMerger {
 	
@@ -26,21 +28,25 @@ public class CNVMerger {
 		
 		//This will read raw CNVS and print all raw information necessary for filtering
 		ProcessedCNVReader reader = new ProcessedCNVReader(toMerge, options.isFilter());
-		List<CNV> CNVs = reader.getCNVs(sampleLoader.getSampleInformation()); //TRUE flag for only WES samples
+		List<CNV> CNVs = reader.getCNVs(sampleLoader.getSampleTable()); //TRUE flag for only WES samples
 		reader.close();
 		
 		//Build constructor for merging CNVs (sets up VCF writer and does initial CNV merge)
 		
 		CNVClusterer clusterer = new ReciprocalClustering(tmpDir);
 		
+		CNVAnnotator annotator = new CNVAnnotator(ReferenceBundle.open(options.getReferenceBundle()));
+		
 		CNVMergerMethods mergerMethods = new CNVMergerMethods(options.getOutput(),
 				options.getFastaRef(),
 				options.getFastaIndex(),
+				sampleLoader.getSampleTable(),
 				sampleLoader.getSamples(),
 				reader.getChrs(), 
 				tmpDir,
 				CNVs,
-				clusterer);
+				clusterer,
+				annotator);
 		
 		mergerMethods.MergeCNVs(CopyType.DEL);
 		mergerMethods.MergeCNVs(CopyType.DUP);
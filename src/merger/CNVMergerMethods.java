@@ -3,8 +3,8 @@ package merger;
 import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -16,7 +16,10 @@ import htsjdk.samtools.util.IntervalTree;
 import htsjdk.samtools.util.IntervalTree.Node;
 import merger.CNVConverter.CopyType;
 import merger.cluster.CNVClusterer;
+import sampleannotator.resources.SampleTable;
+import utilities.AsyncOutputStream;
 import utilities.CNV;
+import utilities.CNVAnnotator;
 import utilities.CNVAnnotator.OverlapError;
 import utilities.CNVInterval;
 
@@ -28,9 +31,10 @@ public class CNVMergerMethods implements Closeable {
 	private File tmpDir;
 	private List<CNV> cnvs;
 	private CNVClusterer clusterer;
+	private AsyncOutputStream perIndividualOutput;
 	private BufferedWriter perIndividualWriter;
 	
-	public CNVMergerMethods(File output, File fastaRef, File fastaIndex, Set<String> samples, Set<String> chromosomes, File tmpDir, List<CNV> cnvs, CNVClusterer clusterer) throws IOException {
+	public CNVMergerMethods(File output, File fastaRef, File fastaIndex, SampleTable sampleTable, Set<String> samples, Set<String> chromosomes, File tmpDir, List<CNV> cnvs, CNVClusterer clusterer, CNVAnnotator annotator) throws IOException {
 		
 		this.output = output;
 		this.tmpDir = tmpDir;
@@ -39,9 +43,12 @@ public class CNVMergerMethods implements Closeable {
 		vcfEngine = new VCFEngine(new File(output.getAbsolutePath() + "." + clusterer.getClusterType()),
 				fastaRef,
 				fastaIndex,
+				sampleTable,
 				samples, 
-				chromosomes);
-		perIndividualWriter = new BufferedWriter(new FileWriter(new File(output.getAbsolutePath() + ".qcdMerged.txt")));
+				chromosomes,
+				annotator);
+		perIndividualOutput = new AsyncOutputStream(new File(output.getAbsolutePath() + ".qcdMerged.txt"));
+		perIndividualWriter = new BufferedWriter(new OutputStreamWriter(perIndividualOutput));
 				
 	}
 	
@@ -49,13 +56,14 @@ public class CNVMergerMethods implements Closeable {
 	public void close() throws IOException {
 		vcfEngine.close();
 		perIndividualWriter.close();
+		System.err.println("Wrote " + output.getName() + ".qcdMerged.txt: " + perIndividualOutput.getSummary());
 	}
 	
 	public List<CNV> MergeCNVs(CopyType ct) throws IOException, OverlapError {
 		
 		//Merge CNVs by simple overlap (just required > 0 overlap)
-		BufferedWriter mergedWriter = new BufferedWriter(new FileWriter(new File(output.getAbsolutePath() + "." + ct + "." + clusterer.getClusterType() + ".merged.bed")));
-		BufferedWriter rawWriter = new BufferedWriter(new FileWriter(new File(output.getAbsolutePath() + "." + ct + "." + clusterer.getClusterType() + ".raw_cnv.bed")));
+		BufferedWriter mergedWriter = new BufferedWriter(new OutputStreamWriter(new AsyncOutputStream(new File(output.getAbsolutePath() + "." + ct + "." + clusterer.getClusterType() + ".merged.bed"))));
+		BufferedWriter rawWriter = new BufferedWriter(new OutputStreamWriter(new AsyncOutputStream(new File(output.getAbsolutePath() + "." + ct + "." + clusterer.getClusterType() + ".raw_cnv.bed"))));
 		
 		Map<String,IntervalTree<List<CNV>>> mergeIntervals = InitialMergerEngine.mergeCNVsbyOverlap(cnvs, ct, tmpDir);
 		
@@ -89,7 +97,7 @@ public class CNVMergerMethods implements Closeable {
 										
 					mergedWriter.write(chr + "\t" + currentInterval.getStart() + "\t" + currentInterval.getEnd() + "\t" + ct + "_" + mergeNum + "\t1000\t+\t" + currentInterval.getStart() + "\t" + currentInterval.getEnd() + "\t" + color + "\n");
 
-					Map<String, IndividualRecord> individualCopyNumbers = new HashMap<String, IndividualRecord>();
+					List<IndividualRecord> individualCopyNumbers = new ArrayList<IndividualRecord>(currentInterval.getAttachedCNVs().size());
 					List<CNV> currentRawCNVs = currentInterval.getAttachedCNVs();
 										
 					for (CNV cnv : currentRawCNVs) {
@@ -98,20 +106,16 @@ public class CNVMergerMethods implements Closeable {
 						finalCNVs.add(cnv);
 						rawWriter.write(chr + "\t" + cnv.getStart() + "\t" + cnv.getEnd() + "\t" + ct + "_" + mergeNum + "-" + cnv.getSampleInformation().getSplitFile().getName() + "\t1000\t+\t" + cnv.getStart() + "\t" + cnv.getEnd() + "\t" + color + "\n");
 						totalMerged++;
-						individualCopyNumbers.put(cnv.getSampleInformation().getSplitFile().getName(), new IndividualRecord(cnv.getCopyNumber(),cnv.getConfidence()));
+						individualCopyNumbers.add(new IndividualRecord(cnv.getSampleInformation().getId(), cnv.getCopyNumber(),cnv.getConfidence()));
 						perIndividualWriter.write(cnv.getPrintable() + "\t" + chr + ":" + currentInterval.getStart() + "-" + currentInterval.getEnd());
 						perIndividualWriter.newLine();
 						
 					}
 					
-					perIndividualWriter.flush();
 					vcfEngine.addRecord(chr, currentInterval.getStart(), currentInterval.getEnd(), individualCopyNumbers, ct);
 					mergeNum++;
 				}
 				
-				mergedWriter.flush();
-				rawWriter.flush();
-				
 //			}
 			}
 			
@@ -120,7 +124,6 @@ public class CNVMergerMethods implements Closeable {
 		}
 		
 		mergedWriter.close();
-		rawWriter.flush();
 		rawWriter.close();
 		
 		return finalCNVs;
@@ -129,14 +132,19 @@ public class CNVMergerMethods implements Closeable {
 
 	public class IndividualRecord {
 		
+		private int sampleId;
 		private int copyNumber;
 		private double confidence;
 				
-		public IndividualRecord(int copyNumber, double confidence) {
+		public IndividualRecord(int sampleId, int copyNumber, double confidence) {
+			this.sampleId = sampleId;
 			this.copyNumber = copyNumber;
 			this.confidence = confidence;
 		}
 
+		public int getSampleId() {
+			return sampleId;
+		}
 		public int getCopyNumber() {
 			return copyNumber;
 		}
@@ -3,32 +3,50 @@ package merger;
 import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
+import sampleannotator.AnnotatedTable;
+import sampleannotator.AnnotatedTableReader;
 import sampleannotator.resources.SampleInformation;
+import sampleannotator.resources.SampleTable;
 import utilities.CNV;
+import utilities.CompressedInput;
 
+/**
+ * Reads CNVs for 'Merge', either from the tab-delimited text written by 'Annotate' and filtered by 'Polish', or
+ * straight from a binary table written by 'Annotate -binary' (see {@link AnnotatedTable}), told apart by magic number.
+ */
 public class ProcessedCNVReader implements Closeable {
 
 	private BufferedReader processedReader;
+	private AnnotatedTableReader tableReader;
 	private Set<String> chrs;
 	private boolean isFilter;
 	
 	public ProcessedCNVReader (File processedCNVs, boolean isFilter) throws IOException {
 		
-		processedReader = new BufferedReader(new FileReader(processedCNVs));
+		if (AnnotatedTable.isTable(processedCNVs)) {
+			if (isFilter) {
+				throw new IOException(processedCNVs.getName() + " is a binary table from 'Annotate -binary' and has no RandomForest pass columns to filter on; convert it with 'Export' and filter with 'Polish' first, or run without -f");
+			}
+			tableReader = new AnnotatedTableReader(processedCNVs);
+		} else {
+			processedReader = CompressedInput.openReader(processedCNVs);
+		}
 		chrs = new HashSet<String>();
 		this.isFilter = isFilter;
 		
 	}
 	
-	public List<CNV> getCNVs(Map<String, SampleInformation> sampleInfo) throws IOException {
+	public List<CNV> getCNVs(SampleTable sampleInfo) throws IOException {
+		
+		if (tableReader != null) {
+			return getTableCNVs(sampleInfo);
+		}
 		
 		String line;
 		String data[];
@@ -67,13 +85,50 @@ public class ProcessedCNVReader implements Closeable {
 		return CNVs;
 		
 	}
+	// No 'Polish' score in an unfiltered table, so the PennCNV confidence stands in for it
+	private List<CNV> getTableCNVs(SampleTable sampleInfo) throws IOException {
+		
+		int start = getColumn(AnnotatedTable.START);
+		int end = getColumn(AnnotatedTable.END);
+		int splitFile = getColumn(AnnotatedTable.SPLIT_FILE);
+		int copyNumber = getColumn(AnnotatedTable.COPY_NUMBER);
+		int probeCount = getColumn(AnnotatedTable.NO_PROBES);
+		int confidence = getColumn(AnnotatedTable.MAX_LOG_BF);
+		
+		List<CNV> CNVs = new ArrayList<CNV>();
+		
+		while (tableReader.next()) {
+			
+			String chr = tableReader.getChr();
+			chrs.add(chr);
+			
+			SampleInformation sampleInformation = sampleInfo.get(new File(tableReader.getString(splitFile)).getName());
+			CNVs.add(new CNV(chr, tableReader.getInt(start), tableReader.getInt(end), tableReader.getInt(copyNumber), tableReader.getInt(probeCount), tableReader.getDouble(confidence), sampleInformation, null, tableReader.getLine()));
+			
+		}
+		
+		return CNVs;
+		
+	}
+	private int getColumn(String name) throws IOException {
+		int column = tableReader.getColumnIndex(name);
+		if (column == -1) {
+			throw new IOException("Annotated CNV table has no " + name + " column");
+		}
+		return column;
+	}
+	
 	public Set<String> getChrs() {
 		return chrs;
 	}
 	
 	@Override
 	public void close() throws IOException {
-		processedReader.close();
+		if (tableReader != null) {
+			tableReader.close();
+		} else {
+			processedReader.close();
+		}
 	}
 	
 }
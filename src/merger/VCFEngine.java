@@ -3,42 +3,55 @@ package merger;
 import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.text.DateFormat;
-import java.text.DecimalFormat;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import htsjdk.samtools.reference.FastaSequenceIndex;
 import htsjdk.samtools.reference.IndexedFastaSequenceFile;
 import merger.CNVConverter.CopyType;
 import merger.CNVMergerMethods.IndividualRecord;
+import sampleannotator.resources.SampleTable;
+import utilities.AsyncOutputStream;
 import utilities.Combine;
 import utilities.CNVAnnotator;
 import utilities.CNVAnnotator.OverlapError;
+import utilities.DecimalPattern;
+import utilities.DelimitedLine;
 
 public class VCFEngine implements Closeable {
 
+	private File vcfFile;
+	private AsyncOutputStream vcfOutput;
 	private BufferedWriter vcfWriter;
 	private CNVAnnotator rawCNVAnnotator;
 	private IndexedFastaSequenceFile fastaRef;
 	private Set<String> samples;
+	private int sampleColumns[]; // sample ID -> genotype column, -1 if it has none
+	private IndividualRecord columnRecords[]; // reused by addRecord()
 	private Set<String> chrs;
-	private DecimalFormat df;
+	private DelimitedLine genotypes;
+	private DelimitedLine record;
 	
-	public VCFEngine(File output, File fastaRef, File fastaIndex, Set<String> samples, Set<String> chrs) throws IOException {
+	private static final DecimalPattern CONFIDENCE = new DecimalPattern("#.##");
+	
+	public VCFEngine(File output, File fastaRef, File fastaIndex, SampleTable sampleTable, Set<String> samples, Set<String> chrs, CNVAnnotator rawCNVAnnotator) throws IOException {
 		
-		vcfWriter = new BufferedWriter(new FileWriter(new File(output.getAbsolutePath() + ".vcf")));
-		rawCNVAnnotator = new CNVAnnotator();
+		vcfFile = new File(output.getAbsolutePath() + ".vcf");
+		vcfOutput = new AsyncOutputStream(vcfFile);
+		vcfWriter = new BufferedWriter(new OutputStreamWriter(vcfOutput));
+		this.rawCNVAnnotator = rawCNVAnnotator;
 		this.fastaRef = new IndexedFastaSequenceFile(fastaRef, new FastaSequenceIndex(fastaIndex));
 		this.samples = samples;
+		buildSampleColumns(sampleTable);
 		this.chrs = chrs;
-		df = new DecimalFormat("#.##");
+		genotypes = new DelimitedLine('\t');
+		record = new DelimitedLine('\t');
 		writeHeader();
 		
 	}
@@ -46,6 +59,7 @@ public class VCFEngine implements Closeable {
 	@Override
 	public void close() throws IOException {
 		vcfWriter.close();
+		System.err.println("Wrote " + vcfFile.getName() + ": " + vcfOutput.getSummary());
 	}
 	
 	public void writeHeader() throws IOException {
@@ -69,40 +83,65 @@ public class VCFEngine implements Closeable {
 		vcfWriter.write("##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">\n");
 		vcfWriter.write("##FORMAT=<ID=WC,Number=1,Type=Float,Description=\"WES Overlap Confidence by Random Forest\">\n");
 		vcfWriter.write("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\t" + Combine.combineSet(samples, "\t") + "\n");
-		vcfWriter.flush();
 		
 	}
 	
-	public void addRecord(String chr, int start, int end, Map<String, IndividualRecord> cnvs, CopyType ct) throws IOException, OverlapError {
+	// Columns are in the order samples iterates, as in the header
+	private void buildSampleColumns(SampleTable sampleTable) {
+		
+		sampleColumns = new int[sampleTable.size()];
+		Arrays.fill(sampleColumns, -1);
+		int column = 0;
+		for (String sample : samples) {
+			int id = sampleTable.getId(sample);
+			if (id != -1) {
+				sampleColumns[id] = column;
+			}
+			column++;
+		}
+		columnRecords = new IndividualRecord[samples.size()];
+		
+	}
+	
+	/**
+	 * @param cnvs CNVs in this record; if a sample has more than one, the last is written
+	 */
+	public void addRecord(String chr, int start, int end, List<IndividualRecord> cnvs, CopyType ct) throws IOException, OverlapError {
 		
-		List<String> genotypeList = new ArrayList<String>();
+		genotypes.clear();
+		for (IndividualRecord individual : cnvs) {
+			int column = sampleColumns[individual.getSampleId()];
+			if (column != -1) {
+				columnRecords[column] = individual;
+			}
+		}
 
 		int ac = 0;
 		
-		for (String sample : samples) {
+		for (int column = 0; column < columnRecords.length; column++) {
 
-			String genotype;
-			if (cnvs.containsKey(sample)) {
-				if (cnvs.get(sample).getCopyNumber() == 1 || cnvs.get(sample).getCopyNumber() == 3) {
-					genotype = "0/1:" + df.format(cnvs.get(sample).getConfidence());
+			IndividualRecord individual = columnRecords[column];
+			if (individual != null) {
+				columnRecords[column] = null;
+				if (individual.getCopyNumber() == 1 || individual.getCopyNumber() == 3) {
+					genotypes.add("0/1:");
 					ac++;
 				} else {
-					genotype = "1/1:" + df.format(cnvs.get(sample).getConfidence());
+					genotypes.add("1/1:");
 					ac+=2;
 				}
+				CONFIDENCE.appendTo(genotypes.getBuilder(), individual.getConfidence());
 			} else {
-				genotype = "0/0:.";
+				genotypes.add("0/0:.");
 			}
-		
-			genotypeList.add(genotype);
 			
 		}
 		
-		writeRecord(genotypeList, chr, start, end, ct, ac);
+		writeRecord(genotypes, chr, start, end, ct, ac);
 				
 	}
 	
-	private void writeRecord(List<String> genotypes, String chr, int start, int stop, CopyType ct, int ac) throws IOException, OverlapError {
+	private void writeRecord(DelimitedLine genotypes, String chr, int start, int stop, CopyType ct, int ac) throws IOException, OverlapError {
 
 		String alt = new String(fastaRef.getSubsequenceAt(chr, (long) start, (long) start).getBases());
 		Set<String> genes = rawCNVAnnotator.parseGenes(chr, start, stop);
@@ -112,12 +151,17 @@ public class VCFEngine implements Closeable {
 		String geneString = Combine.combineSet(genes, "|");
 		String pathString = deconvolutePathogenic(pathogenic); //We should realistically only have one term here!
 		int len = stop - start;
-		if (ct == CopyType.DEL) {
-			vcfWriter.write(chr + "\t" + start + "\t.\t" + alt + "\t<CN0>\t.\t.\tEND=" + stop + ";SVLEN=" + len + ";AC=" + ac + ";GENE=" + geneString + ";PATH=" + pathString + "\tGT:WC\t" + Combine.combineList(genotypes, "\t") + "\n");
+		record.add(chr).add(start).add(".").add(alt).add(ct == CopyType.DEL ? "<CN0>" : "<DUP>").add(".").add(".");
+		record.add("END=");
+		record.getBuilder().append(stop).append(";SVLEN=").append(len).append(";AC=").append(ac).append(";GENE=").append(geneString).append(";PATH=").append(pathString);
+		record.add("GT:WC");
+		// combineList() printed no samples as "null"
+		if (samples.isEmpty()) {
+			record.add("null");
 		} else {
-			vcfWriter.write(chr + "\t" + start + "\t.\t" + alt + "\t<DUP>\t.\t.\tEND=" + stop + ";SVLEN=" + len + ";AC=" + ac + ";GENE=" + geneString + ";PATH=" + pathString + "\tGT:WC\t" + Combine.combineList(genotypes, "\t") + "\n");
+			record.add(genotypes.getBuilder());
 		}
-		vcfWriter.flush();
+		record.writeTo(vcfWriter);
 			
 	}
 
@@ -6,7 +6,6 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -23,6 +22,9 @@ import merger.CNVConverter;
 import utilities.CNV;
 import utilities.CNVInterval;
 import utilities.Combine;
+import utilities.DecimalPattern;
+import utilities.DelimitedLine;
+import utilities.ResourcePaths;
 
 public class DBSCANClustering implements CNVClusterer {
 	
@@ -32,6 +34,7 @@ public class DBSCANClustering implements CNVClusterer {
 	private File tmpDir;
 	
 	private final ClusterType clusterType = ClusterType.DBSCAN;
+	private static final DecimalPattern MATRIX_DIGITS = new DecimalPattern("##.######");
 	
 	public DBSCANClustering (double eps, File tmpDir) throws IOException {
 		
@@ -111,13 +114,17 @@ public class DBSCANClustering implements CNVClusterer {
 	private void runR() throws IOException {
 		
 		String osName = System.getProperty("os.name");
-		//First cmd-line is OSX, second is *nix
-		String command;
+		//First defaults are OSX, second are *nix; either can be overridden (see ResourcePaths)
+		String rScript;
+		String mergeScript;
 		if (osName.contains("OS X")) {
-			command = "/Library/Frameworks/R.framework/Resources/bin/Rscript --vanilla /Users/eg15/Documents/Current Projects/INTERVAL/RawCNVCalls/merge_Java.R " + tmpDir.getAbsolutePath() + "/DBSCANClust.mat " + tmpDir.getAbsolutePath() + "/DBSCANClust.results.txt " +  eps;
+			rScript = ResourcePaths.getProperty(ResourcePaths.RSCRIPT_PROPERTY, "/Library/Frameworks/R.framework/Resources/bin/Rscript");
+			mergeScript = ResourcePaths.getProperty(ResourcePaths.MERGE_SCRIPT_PROPERTY, "/Users/eg15/Documents/Current Projects/INTERVAL/RawCNVCalls/merge_Java.R");
 		} else { //anything else?
-			command = "/nfs/users/nfs_e/eg15/EugeneTools/R-3.5.1/bin/Rscript --vanilla /nfs/ddd0/eg15/merge_Java.R " + tmpDir.getAbsolutePath() + "/DBSCANClust.mat " + tmpDir.getAbsolutePath() + "/DBSCANClust.results.txt " +  eps;
+			rScript = ResourcePaths.getProperty(ResourcePaths.RSCRIPT_PROPERTY, "/nfs/users/nfs_e/eg15/EugeneTools/R-3.5.1/bin/Rscript");
+			mergeScript = ResourcePaths.getProperty(ResourcePaths.MERGE_SCRIPT_PROPERTY, "/nfs/ddd0/eg15/merge_Java.R");
 		}
+		String command = rScript + " --vanilla " + mergeScript + " " + tmpDir.getAbsolutePath() + "/DBSCANClust.mat " + tmpDir.getAbsolutePath() + "/DBSCANClust.results.txt " +  eps;
 			
 		CommandLine cmdLine = CommandLine.parse(command);
 		DefaultExecutor executor = new DefaultExecutor();
@@ -134,8 +141,6 @@ public class DBSCANClustering implements CNVClusterer {
 		
 		Map<String, CNV> mergedCNVs = new HashMap<String, CNV>();
 		
-		DecimalFormat df = new DecimalFormat("##.######");
-		
 		BufferedWriter outWriter = new BufferedWriter(new FileWriter(new File(tmpDir.getAbsolutePath() + "/DBSCANClust.mat")));
 		
 		//Header
@@ -150,18 +155,18 @@ public class DBSCANClustering implements CNVClusterer {
 
 		outWriter.write(Combine.combineList(printList, "\t") + "\n");
 		//Actual Data
+		DelimitedLine line = new DelimitedLine('\t');
 		for (int x = 0; x < matrix.getRowDimension(); x++) {
 		
-			printList = new ArrayList<String>();
-			printList.add(CNVs.get(x).getSampleInformation().getSplitFile().getName() + "_" + CNVs.get(x).getChr() + "_" + CNVs.get(x).getStart() + "_" + CNVs.get(x).getEnd() + "_" + CNVs.get(x).getCopyNumber());
+			line.add(CNVs.get(x).getSampleInformation().getSplitFile().getName() + "_" + CNVs.get(x).getChr() + "_" + CNVs.get(x).getStart() + "_" + CNVs.get(x).getEnd() + "_" + CNVs.get(x).getCopyNumber());
 						
 			for (int y = 0; y < matrix.getColumnDimension(); y++) {
 				
-				printList.add(df.format(matrix.getEntry(x, y)));
+				line.add(matrix.getEntry(x, y), MATRIX_DIGITS);
 							
 			}
 			
-			outWriter.write(Combine.combineList(printList, "\t") + "\n");
+			line.writeTo(outWriter);
 			
 		}
 		outWriter.close();
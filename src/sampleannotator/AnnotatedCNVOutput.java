@@ -0,0 +1,21 @@
+package sampleannotator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import utilities.CNV;
+
+/**
+ * Destination for annotated CNVs: the text table ({@link AnnotatedCNVWriter}) or the binary one ({@link AnnotatedTableWriter}).
+ */
+public interface AnnotatedCNVOutput extends Closeable {
+
+	public void writeHeader() throws IOException;
+	public void write(List<CNV> cnvs) throws IOException;
+	/**
+	 * Pushes everything written so far to the underlying stream, so it can be synced and checkpointed.
+	 */
+	public void flush() throws IOException;
+
+}
@@ -0,0 +1,145 @@
+package sampleannotator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.List;
+
+import sampleannotator.RawCNVReader.LRRandBAFInformation;
+import sampleannotator.resources.SampleInformation;
+import utilities.CNV;
+import utilities.DecimalPattern;
+import utilities.DelimitedLine;
+
+/**
+ * Writes annotated CNVs as the tab-delimited table produced by 'Annotate' (and read back by 'Merge').
+ */
+public class AnnotatedCNVWriter implements AnnotatedCNVOutput {
+
+	private static final DecimalPattern TWO_DIGITS = new DecimalPattern("##.##");
+	
+	private BufferedWriter rawOutputWriter;
+	private DelimitedLine line;
+	
+	public AnnotatedCNVWriter(BufferedWriter rawOutputWriter) {
+		this.rawOutputWriter = rawOutputWriter;
+		line = new DelimitedLine('\t');
+	}
+	
+	@Override
+	public void writeHeader() throws IOException {
+		
+		line.add("#chr");
+		line.add("start");
+		line.add("end");
+		line.add("SangerID");
+		line.add("EGANID");
+		line.add("split.file");
+		line.add("has.wes");
+		line.add("location");
+		line.add("Copy_Number");
+		line.add("Length_bp");
+		line.add("Max_Log_BF");
+		line.add("LRR_mean");
+		line.add("LRR_median");
+		line.add("LRR_SD");
+		line.add("BAF_mean");
+		line.add("BAF_median");
+		line.add("BAF_SD");
+		line.add("WF");
+		line.add("BAF_drift");
+		line.add("cel.file");
+		line.add("NumCNV");
+		line.add("Gender");
+		line.add("density");
+		line.add("callrate");
+		line.add("wes.convex.int");
+		line.add("wes.xhmm.int");
+		line.add("wes.clamms.int");
+		line.add("wes.canoes.int");
+		line.add("wes.probe.count");
+		line.add("DGVIntersect");
+		line.add("WES.l2r.mean");
+		line.add("WES.l2r.sd");
+		line.add("num.l2r.probes");
+		line.add("indiv.filtered");
+		line.add("site.filtered");
+		line.add("No_Probes");
+		line.add("site.BAF_mean");
+		line.add("site.BAF_SD");
+		line.add("site.BAF_median");
+		line.add("site.LRR_mean");
+		line.add("site.LRR_SD");
+		line.add("site.LRR_median");
+		line.add("nLeft");
+		line.add("nRight");
+		line.add("abs.tel");
+		line.add("abs.cen");
+		line.writeTo(rawOutputWriter);
+		
+	}
+	@Override
+	public void write(List<CNV> cnvs) throws IOException {
+		
+//		GenerateValidPlots validPlot = new GenerateValidPlots(new File("/lustre/scratch115/projects/interval_cnv/bed_files.lst"), tmpDir);
+				
+		for (CNV cnv : cnvs) {
+
+//			validPlot.GenerateCNVPlot(cnv);
+			
+			SampleInformation si = cnv.getSampleInformation();
+			LRRandBAFInformation lrrbaf = cnv.getLRRBAF();
+			
+			line.add(cnv.getChr()); //0
+			line.add(cnv.getStart()); //1
+			line.add(cnv.getEnd()); //2
+			line.add(si.getSangerID()); //3
+			line.add(si.getEGAN()); //4
+			line.add(si.getSplitFile().getAbsolutePath()); //5
+			line.add(si.hasWES()); //6
+			line.add(cnv.getLocationCoordinates()); //7
+			line.add(cnv.getCopyNumber()); //8
+			line.add(cnv.getLength()); //9
+			line.add(cnv.getConfidence(), TWO_DIGITS); //10
+			line.add(si.getLrr_mean()); //11
+			line.add(si.getLrr_median()); //12
+			line.add(si.getLrr_sd()); //13
+			line.add(si.getBaf_mean()); //14
+			line.add(si.getBaf_median()); //15
+			line.add(si.getBaf_sd()); //16
+			line.add(si.getWf()); //17
+			line.add(si.getBaf_drift()); //18
+			line.add(si.getCELName()); //19
+			line.add(si.getNumCNV()); //20
+			line.add(si.getGender()); //21
+			line.add(cnv.getDensity(), TWO_DIGITS); //22
+			line.add(si.getCallRate(), TWO_DIGITS); //23
+			line.add(cnv.getIntersectingWESConvexCNVs()); //24
+			line.add(cnv.getIntersectingWESXHMMCNVs()); //25
+			line.add(cnv.getIntersectingWESCLAMMSCNVs()); //26
+			line.add(cnv.getIntersectingWESCANOESCNVs()); //27
+			line.add(cnv.getTotalIntersectingBaits()); //28
+			line.add(cnv.getGoldStandardSV()); //29
+			line.add(cnv.getWESMeanL2R()); //30
+			line.add(cnv.getWESL2Rsd()); //31
+			line.add(cnv.getWESL2N()); //32
+			line.add(si.isIndivFiltered()); //33
+			line.add(cnv.isSiteFiltered()); //34
+			line.add(cnv.getProbeCount()); //35
+			lrrbaf.appendTo(line); //36-43
+			line.add(cnv.getDistTel());
+			line.add(cnv.getDistCen());
+			line.writeTo(rawOutputWriter);
+
+		}
+		
+	}
+	@Override
+	public void flush() throws IOException {
+		rawOutputWriter.flush();
+	}
+	@Override
+	public void close() throws IOException {
+		rawOutputWriter.close();
+	}
+	
+}
@@ -0,0 +1,245 @@
+package sampleannotator;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import utilities.DecimalPattern;
+
+/**
+ * Layout of the binary, block-columnar table that 'Annotate -binary' writes and 'Merge' and 'Export' read:
+ *
+ * <pre>
+ * header:  magic, version, number of columns, then each column's name, type and text format
+ * blocks:  marker, chromosome, rows, zone map (min/max of every numeric column), deflated column-major payload
+ * footer:  marker, number of blocks, then each block's chromosome, offset and rows; the last 8 bytes point at the footer
+ * </pre>
+ *
+ * Every block holds rows from a single chromosome, and each block header is enough to skip its payload, so readers
+ * can push chromosome, region and value filters down to whole blocks before inflating anything. A file without a
+ * footer (e.g. one still being written) can still be read by walking the block headers.
+ */
+public final class AnnotatedTable {
+
+	public static final int MAGIC = 0x434E5642; // "CNVB"
+	public static final int VERSION = 1;
+	public static final String EXTENSION = ".cnvb";
+
+	static final int BLOCK_MARKER = 0x424C4B31; // "BLK1"
+	static final int FOOTER_MARKER = 0x46545231; // "FTR1"
+	static final int BLOCK_ROWS = 4096;
+
+	public enum Type {
+		INT, LONG, DOUBLE, BOOLEAN, STRING;
+		public boolean isNumeric() {
+			return this == INT || this == LONG || this == DOUBLE;
+		}
+	}
+
+	// Columns of 'Annotate' output, in the same order (and with the same names) as the text table
+	public static final String CHR = "chr";
+	public static final String START = "start";
+	public static final String END = "end";
+	public static final String SPLIT_FILE = "split.file";
+	public static final String COPY_NUMBER = "Copy_Number";
+	public static final String MAX_LOG_BF = "Max_Log_BF";
+	public static final String NO_PROBES = "No_Probes";
+
+	public static final List<Column> ANNOTATE_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+			new Column(CHR, Type.STRING),
+			new Column(START, Type.INT),
+			new Column(END, Type.INT),
+			new Column("SangerID", Type.STRING),
+			new Column("EGANID", Type.STRING),
+			new Column(SPLIT_FILE, Type.STRING),
+			new Column("has.wes", Type.BOOLEAN),
+			new Column("location", Type.STRING),
+			new Column(COPY_NUMBER, Type.INT),
+			new Column("Length_bp", Type.INT),
+			new Column(MAX_LOG_BF, Type.DOUBLE, "##.##"),
+			new Column("LRR_mean", Type.DOUBLE),
+			new Column("LRR_median", Type.DOUBLE),
+			new Column("LRR_SD", Type.DOUBLE),
+			new Column("BAF_mean", Type.DOUBLE),
+			new Column("BAF_median", Type.DOUBLE),
+			new Column("BAF_SD", Type.DOUBLE),
+			new Column("WF", Type.DOUBLE),
+			new Column("BAF_drift", Type.DOUBLE),
+			new Column("cel.file", Type.STRING),
+			new Column("NumCNV", Type.INT),
+			new Column("Gender", Type.STRING),
+			new Column("density", Type.DOUBLE, "##.##"),
+			new Column("callrate", Type.DOUBLE, "##.##"),
+			new Column("wes.convex.int", Type.DOUBLE),
+			new Column("wes.xhmm.int", Type.DOUBLE),
+			new Column("wes.clamms.int", Type.DOUBLE),
+			new Column("wes.canoes.int", Type.DOUBLE),
+			new Column("wes.probe.count", Type.INT),
+			new Column("DGVIntersect", Type.STRING),
+			new Column("WES.l2r.mean", Type.DOUBLE),
+			new Column("WES.l2r.sd", Type.DOUBLE),
+			new Column("num.l2r.probes", Type.LONG),
+			new Column("indiv.filtered", Type.BOOLEAN),
+			new Column("site.filtered", Type.BOOLEAN),
+			new Column(NO_PROBES, Type.INT),
+			new Column("site.BAF_mean", Type.DOUBLE, "##.#######"),
+			new Column("site.BAF_SD", Type.DOUBLE, "##.#######"),
+			new Column("site.BAF_median", Type.DOUBLE, "##.#######"),
+			new Column("site.LRR_mean", Type.DOUBLE, "##.#######"),
+			new Column("site.LRR_SD", Type.DOUBLE, "##.#######"),
+			new Column("site.LRR_median", Type.DOUBLE, "##.#######"),
+			new Column("nLeft", Type.INT),
+			new Column("nRight", Type.INT),
+			new Column("abs.tel", Type.DOUBLE),
+			new Column("abs.cen", Type.DOUBLE)));
+
+	private AnnotatedTable() {}
+
+	/**
+	 * @return true if <code>file</code> starts with the table's magic number
+	 */
+	public static boolean isTable(File file) throws IOException {
+		DataInputStream input = new DataInputStream(new FileInputStream(file));
+		try {
+			return file.length() >= 4 && input.readInt() == MAGIC;
+		} finally {
+			input.close();
+		}
+	}
+
+	static void writeHeader(DataOutput output, List<Column> columns) throws IOException {
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeInt(columns.size());
+		for (Column column : columns) {
+			output.writeUTF(column.getName());
+			output.writeByte(column.getType().ordinal());
+			output.writeUTF(column.getPattern() == null ? "" : column.getPattern());
+		}
+	}
+	static List<Column> readHeader(DataInput input, String source) throws IOException {
+		if (input.readInt() != MAGIC) {
+			throw new IOException(source + " is not an annotated CNV table");
+		}
+		int version = input.readInt();
+		if (version != VERSION) {
+			throw new IOException(source + " is annotated CNV table version " + version + ", expected " + VERSION);
+		}
+		int numColumns = input.readInt();
+		List<Column> columns = new ArrayList<Column>(numColumns);
+		for (int x = 0; x < numColumns; x++) {
+			String name = input.readUTF();
+			Type type = Type.values()[input.readUnsignedByte()];
+			String pattern = input.readUTF();
+			columns.add(new Column(name, type, pattern.isEmpty() ? null : pattern));
+		}
+		return columns;
+	}
+
+	public static class Column {
+
+		private String name;
+		private Type type;
+		private String pattern;
+		private DecimalPattern format;
+
+		public Column(String name, Type type) {
+			this(name, type, null);
+		}
+		/**
+		 * @param pattern DecimalFormat pattern used when the column is exported as text, or null for Java's own toString
+		 */
+		public Column(String name, Type type, String pattern) {
+			this.name = name;
+			this.type = type;
+			this.pattern = pattern;
+			format = pattern == null ? null : new DecimalPattern(pattern);
+		}
+
+		public String getName() {
+			return name;
+		}
+		public Type getType() {
+			return type;
+		}
+		public String getPattern() {
+			return pattern;
+		}
+		/**
+		 * @return the value as it appears in the text table
+		 */
+		public String format(double value) {
+			StringBuilder text = new StringBuilder(24);
+			appendTo(text, value);
+			return text.toString();
+		}
+		public void appendTo(StringBuilder text, double value) {
+			if (format == null) {
+				text.append(value);
+			} else if (Double.isNaN(value)) {
+				text.append("NaN");
+			} else {
+				format.appendTo(text, value);
+			}
+		}
+
+	}
+
+	/**
+	 * Where a block is and what it holds, read from its header.
+	 */
+	public static class BlockInfo {
+
+		private String chr;
+		private long offset;
+		private int rows;
+		private double min[];
+		private double max[];
+
+		BlockInfo(String chr, long offset, int rows, double min[], double max[]) {
+			this.chr = chr;
+			this.offset = offset;
+			this.rows = rows;
+			this.min = min;
+			this.max = max;
+		}
+
+		public String getChr() {
+			return chr;
+		}
+		public long getOffset() {
+			return offset;
+		}
+		public int getRows() {
+			return rows;
+		}
+		/**
+		 * @return smallest non-NaN value of a numeric column in this block, NaN if there are none (or the column is not numeric)
+		 */
+		public double getMin(int column) {
+			return min[column];
+		}
+		public double getMax(int column) {
+			return max[column];
+		}
+		/**
+		 * @return false only if no row of this block can have a value of <code>column</code> in [<code>low</code>, <code>high</code>]
+		 */
+		public boolean mayContain(int column, double low, double high) {
+			if (Double.isNaN(min[column])) {
+				// All NaN (or not numeric): nothing to prune on
+				return true;
+			}
+			return max[column] >= low && min[column] <= high;
+		}
+
+	}
+
+}
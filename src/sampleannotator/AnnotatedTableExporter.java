@@ -0,0 +1,46 @@
+package sampleannotator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import sampleannotator.AnnotatedTableExporterOptions.ValueRange;
+
+/**
+ * Writes a binary table from 'Annotate -binary' as the tab-delimited text 'Annotate' would have written, optionally
+ * only for one region and/or value ranges; blocks that cannot match are skipped using their zone maps.
+ */
+public class AnnotatedTableExporter {
+
+	public AnnotatedTableExporter(String args[]) throws IOException {
+		
+		AnnotatedTableExporterOptions options = new AnnotatedTableExporterOptions(args);
+		File table = options.getTable();
+		
+		AnnotatedTableReader reader = new AnnotatedTableReader(table);
+		if (options.getRegionChr() != null) {
+			reader.setRegion(options.getRegionChr(), options.getRegionStart(), options.getRegionEnd());
+		}
+		for (ValueRange range : options.getRanges()) {
+			reader.addRange(range.getColumn(), range.getLow(), range.getHigh());
+		}
+		
+		File outputFile = new File(options.getOutput().getAbsolutePath() + ".txt");
+		BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile), 65536);
+		writer.write(reader.getHeaderLine());
+		writer.write('\n');
+		long rows = 0;
+		while (reader.next()) {
+			writer.write(reader.getLine());
+			writer.write('\n');
+			rows++;
+		}
+		writer.close();
+		
+		System.err.println("Exported " + rows + " CNVs from " + table.getName() + " to " + outputFile.getAbsolutePath() + " (read " + reader.getBlocksRead() + " of " + reader.getBlocks().size() + " blocks)");
+		reader.close();
+		
+	}
+	
+}
@@ -0,0 +1,163 @@
+package sampleannotator;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+public class AnnotatedTableExporterOptions {
+
+	private Options options;
+	
+	private File table;
+	private File output;
+	private String regionChr;
+	private int regionStart;
+	private int regionEnd;
+	private List<ValueRange> ranges;
+	
+	public AnnotatedTableExporterOptions (String args[]) {
+		
+		options = setOptions();
+		loadOptions(args);
+		
+	}
+	
+	public File getTable() {
+		return table;
+	}
+	public File getOutput() {
+		return output;
+	}
+	/**
+	 * @return chromosome to export, or null to export all of them
+	 */
+	public String getRegionChr() {
+		return regionChr;
+	}
+	public int getRegionStart() {
+		return regionStart;
+	}
+	public int getRegionEnd() {
+		return regionEnd;
+	}
+	public List<ValueRange> getRanges() {
+		return ranges;
+	}
+	
+	private Options setOptions() {
+		
+		List<Option> optionsList = new ArrayList<Option>();
+		Options options = new Options();
+		
+		optionsList.add(new Option("p", true, "Path to binary table written by 'Annotate -binary'."));
+		optionsList.add(new Option("o", true, "Path to output file."));
+		
+		for (Option opt : optionsList) {
+			opt.setRequired(true);
+			options.addOption(opt);
+		}
+		
+		options.addOption(new Option("r", true, "Only export CNVs overlapping this region, as chr or chr:start-end."));
+		options.addOption(new Option("range", true, "Only export CNVs with numeric column values in these ranges, as comma-separated column:low:high (inclusive, either bound may be left empty), e.g. Copy_Number:0:1,No_Probes:10:"));
+		options.addOption(new Option("help", false, "Print help message."));
+		
+		return options;
+		
+	}
+	
+	private void loadOptions(String args[]) {
+		
+		CommandLineParser parser = new BasicParser();
+		CommandLine cmd = null;
+				
+		try {
+			 cmd = parser.parse(options, args);
+		} catch (org.apache.commons.cli.ParseException e) {
+			System.out.println();
+			ThrowHelp(e.getMessage());
+		}
+			
+		if (cmd.hasOption("help")) {
+			ThrowHelp("");
+		}
+		
+		table = new File(cmd.getOptionValue("p"));
+		output = new File(cmd.getOptionValue("o"));
+		if (cmd.hasOption("r")) {
+			String region = cmd.getOptionValue("r");
+			int colon = region.lastIndexOf(':');
+			if (colon == -1) {
+				regionChr = region;
+				regionStart = Integer.MIN_VALUE;
+				regionEnd = Integer.MAX_VALUE;
+			} else {
+				String bounds[] = region.substring(colon + 1).split("-");
+				if (bounds.length != 2) {
+					ThrowHelp("Region " + region + " is not chr or chr:start-end");
+				}
+				regionChr = region.substring(0, colon);
+				regionStart = Integer.parseInt(bounds[0].replace(",", ""));
+				regionEnd = Integer.parseInt(bounds[1].replace(",", ""));
+			}
+		} else {
+			regionChr = null;
+		}
+		ranges = new ArrayList<ValueRange>();
+		if (cmd.hasOption("range")) {
+			for (String range : cmd.getOptionValue("range").split(",")) {
+				String parts[] = range.split(":", -1);
+				if (parts.length != 3) {
+					ThrowHelp("Range " + range + " is not column:low:high");
+				}
+				double low = parts[1].isEmpty() ? Double.NEGATIVE_INFINITY : Double.parseDouble(parts[1]);
+				double high = parts[2].isEmpty() ? Double.POSITIVE_INFINITY : Double.parseDouble(parts[2]);
+				ranges.add(new ValueRange(parts[0], low, high));
+			}
+		}
+		
+	}
+	
+	public static class ValueRange {
+		
+		private String column;
+		private double low;
+		private double high;
+		
+		private ValueRange(String column, double low, double high) {
+			this.column = column;
+			this.low = low;
+			this.high = high;
+		}
+		
+		public String getColumn() {
+			return column;
+		}
+		public double getLow() {
+			return low;
+		}
+		public double getHigh() {
+			return high;
+		}
+		
+	}
+	
+	private void ThrowHelp(String top) {
+		String header = "Axiom Array CNV Annotator\n\n\n";
+		String footer = "\n\n(c) Eugene Gardner 2018";
+		String usage = "java -jar CNVAnnotator.jar Export <options>";
+		System.out.println();
+		System.out.println(top);
+		HelpFormatter formatter = new HelpFormatter();
+		System.out.println();
+		formatter.printHelp(9999, usage, header, options, footer);
+		System.exit(1);
+	}
+	
+}
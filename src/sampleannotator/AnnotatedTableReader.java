@@ -0,0 +1,453 @@
+package sampleannotator;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import sampleannotator.AnnotatedTable.BlockInfo;
+import sampleannotator.AnnotatedTable.Column;
+import sampleannotator.AnnotatedTable.Type;
+
+/**
+ * Reads an {@link AnnotatedTable} row by row. Filters set with {@link #setRegion(String, int, int)} and
+ * {@link #addRange(String, double, double)} are checked against each block's chromosome and zone map first, and
+ * blocks that cannot match are skipped without being read or inflated; rows of the blocks that are read are then
+ * filtered individually.
+ *
+ * Not thread-safe.
+ */
+public class AnnotatedTableReader implements Closeable {
+
+	private String source;
+	private RandomAccessFile file;
+	private List<Column> columns;
+	private List<BlockInfo> blocks;
+	private Inflater inflater;
+
+	private String regionChr;
+	private int regionStart;
+	private int regionEnd;
+	private List<Range> ranges;
+	private int startColumn;
+	private int endColumn;
+
+	private int nextBlock;
+	private int blocksRead;
+	private BlockInfo block;
+	private int row;
+	private long numbers[][];
+	private String strings[][];
+	private StringBuilder line;
+
+	public AnnotatedTableReader(File table) throws IOException {
+
+		source = table.getAbsolutePath();
+		DataInputStream header = new DataInputStream(new BufferedInputStream(new FileInputStream(table)));
+		try {
+			columns = Collections.unmodifiableList(AnnotatedTable.readHeader(header, source));
+		} finally {
+			header.close();
+		}
+		file = new RandomAccessFile(table, "r");
+		blocks = readFooter();
+		if (blocks == null) {
+			System.err.println("Annotated CNV table " + table.getName() + " has no footer (was it closed?), reading its blocks in order");
+			blocks = scanBlocks(file, getHeaderLength(columns), file.length(), columns.size());
+		}
+		inflater = new Inflater();
+
+		regionChr = null;
+		ranges = new ArrayList<Range>();
+		startColumn = getColumnIndex(AnnotatedTable.START);
+		endColumn = getColumnIndex(AnnotatedTable.END);
+
+		nextBlock = 0;
+		blocksRead = 0;
+		block = null;
+		row = 0;
+		numbers = new long[columns.size()][];
+		strings = new String[columns.size()][];
+		line = new StringBuilder(1024);
+
+	}
+
+	/**
+	 * Whole blocks in the first <code>length</code> bytes of a table, e.g. to append to a file cut back to a checkpoint.
+	 */
+	public static List<BlockInfo> scanBlocks(File table, long length) throws IOException {
+		List<Column> columns;
+		DataInputStream header = new DataInputStream(new BufferedInputStream(new FileInputStream(table)));
+		try {
+			columns = AnnotatedTable.readHeader(header, table.getAbsolutePath());
+		} finally {
+			header.close();
+		}
+		RandomAccessFile file = new RandomAccessFile(table, "r");
+		try {
+			return scanBlocks(file, getHeaderLength(columns), Math.min(length, file.length()), columns.size());
+		} finally {
+			file.close();
+		}
+	}
+
+	public List<Column> getColumns() {
+		return columns;
+	}
+	/**
+	 * @return position of the column called <code>name</code>, or -1 if the table has none
+	 */
+	public int getColumnIndex(String name) {
+		for (int x = 0; x < columns.size(); x++) {
+			if (columns.get(x).getName().equals(name)) {
+				return x;
+			}
+		}
+		return -1;
+	}
+	public List<BlockInfo> getBlocks() {
+		return Collections.unmodifiableList(blocks);
+	}
+	public int getBlocksRead() {
+		return blocksRead;
+	}
+	/**
+	 * @return the column names as the tab-delimited header line of the text table
+	 */
+	public String getHeaderLine() {
+		StringBuilder header = new StringBuilder("#");
+		for (int x = 0; x < columns.size(); x++) {
+			if (x > 0) {
+				header.append('\t');
+			}
+			header.append(columns.get(x).getName());
+		}
+		return header.toString();
+	}
+
+	/**
+	 * Only return rows on <code>chr</code> overlapping <code>start</code> to <code>end</code> (inclusive).
+	 */
+	public void setRegion(String chr, int start, int end) {
+		if (startColumn == -1 || endColumn == -1) {
+			throw new IllegalArgumentException(source + " has no " + AnnotatedTable.START + "/" + AnnotatedTable.END + " columns to select a region on");
+		}
+		regionChr = chr;
+		regionStart = start;
+		regionEnd = end;
+	}
+	/**
+	 * Only return rows where the numeric column <code>name</code> is within <code>low</code> to <code>high</code> (inclusive).
+	 */
+	public void addRange(String name, double low, double high) {
+		int column = getColumnIndex(name);
+		if (column == -1 || !columns.get(column).getType().isNumeric()) {
+			throw new IllegalArgumentException(source + " has no numeric column " + name);
+		}
+		ranges.add(new Range(column, low, high));
+	}
+
+	/**
+	 * Moves to the next row that passes all filters.
+	 *
+	 * @return false once there are no more
+	 */
+	public boolean next() throws IOException {
+		while (true) {
+			if (block == null || ++row == block.getRows()) {
+				if (!nextBlock()) {
+					return false;
+				}
+				row = 0;
+			}
+			if (rowMatches()) {
+				return true;
+			}
+		}
+	}
+
+	public String getChr() {
+		return block.getChr();
+	}
+	public int getInt(int column) {
+		return (int) numbers[column][row];
+	}
+	public long getLong(int column) {
+		return numbers[column][row];
+	}
+	public double getDouble(int column) {
+		return getNumber(column);
+	}
+	public boolean getBoolean(int column) {
+		return numbers[column][row] != 0;
+	}
+	public String getString(int column) {
+		return strings[column][row];
+	}
+	/**
+	 * @return the value as written in the text table
+	 */
+	public String getText(int column) {
+		StringBuilder text = new StringBuilder(24);
+		appendText(text, column);
+		return text.toString();
+	}
+	/**
+	 * @return the current row as a line of the text table, without its newline
+	 */
+	public String getLine() {
+		line.setLength(0);
+		for (int x = 0; x < columns.size(); x++) {
+			if (x > 0) {
+				line.append('\t');
+			}
+			appendText(line, x);
+		}
+		return line.toString();
+	}
+
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+		file.close();
+	}
+
+	private boolean nextBlock() throws IOException {
+		while (nextBlock < blocks.size()) {
+			BlockInfo candidate = blocks.get(nextBlock++);
+			if (blockMatches(candidate)) {
+				readBlock(candidate);
+				block = candidate;
+				blocksRead++;
+				return true;
+			}
+		}
+		block = null;
+		return false;
+	}
+	private boolean blockMatches(BlockInfo candidate) {
+		if (regionChr != null) {
+			if (!candidate.getChr().equals(regionChr) ||
+					!candidate.mayContain(startColumn, Double.NEGATIVE_INFINITY, regionEnd) ||
+					!candidate.mayContain(endColumn, regionStart, Double.POSITIVE_INFINITY)) {
+				return false;
+			}
+		}
+		for (Range range : ranges) {
+			if (!candidate.mayContain(range.column, range.low, range.high)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	private boolean rowMatches() {
+		if (regionChr != null && (getInt(startColumn) > regionEnd || getInt(endColumn) < regionStart)) {
+			return false;
+		}
+		for (Range range : ranges) {
+			double value = getNumber(range.column);
+			if (!(value >= range.low && value <= range.high)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	private void appendText(StringBuilder text, int column) {
+		switch (columns.get(column).getType()) {
+		case INT:
+			text.append(getInt(column));
+			break;
+		case LONG:
+			text.append(getLong(column));
+			break;
+		case DOUBLE:
+			columns.get(column).appendTo(text, getDouble(column));
+			break;
+		case BOOLEAN:
+			text.append(getBoolean(column));
+			break;
+		default:
+			text.append(getString(column));
+			break;
+		}
+	}
+	private double getNumber(int column) {
+		switch (columns.get(column).getType()) {
+		case DOUBLE:
+			return Double.longBitsToDouble(numbers[column][row]);
+		default:
+			return numbers[column][row];
+		}
+	}
+
+	private void readBlock(BlockInfo info) throws IOException {
+
+		DataInputStream body = new DataInputStream(new ByteArrayInputStream(readBlockBody(file, info.getOffset(), source)));
+		body.readUTF();
+		body.readInt();
+		body.skipBytes(16 * columns.size());
+		int rows = info.getRows();
+
+		byte compressed[] = new byte[body.available()];
+		body.readFully(compressed);
+		DataInputStream payload = new DataInputStream(new ByteArrayInputStream(inflate(compressed)));
+		for (int x = 0; x < columns.size(); x++) {
+			Type type = columns.get(x).getType();
+			if (type == Type.STRING) {
+				String entries[] = new String[payload.readInt()];
+				for (int y = 0; y < entries.length; y++) {
+					entries[y] = payload.readUTF();
+				}
+				strings[x] = grow(strings[x], rows);
+				for (int y = 0; y < rows; y++) {
+					int code = payload.readInt();
+					strings[x][y] = code == -1 ? null : entries[code];
+				}
+				continue;
+			}
+			if (numbers[x] == null || numbers[x].length < rows) {
+				numbers[x] = new long[rows];
+			}
+			long values[] = numbers[x];
+			for (int y = 0; y < rows; y++) {
+				switch (type) {
+				case INT:
+					values[y] = payload.readInt();
+					break;
+				case LONG:
+				case DOUBLE:
+					values[y] = payload.readLong();
+					break;
+				default:
+					values[y] = payload.readByte();
+					break;
+				}
+			}
+		}
+
+	}
+	private byte[] inflate(byte compressed[]) throws IOException {
+		inflater.reset();
+		inflater.setInput(compressed);
+		ByteArrayOutputStream inflated = new ByteArrayOutputStream(compressed.length * 4);
+		byte buffer[] = new byte[65536];
+		try {
+			while (!inflater.finished()) {
+				int n = inflater.inflate(buffer);
+				if (n == 0 && inflater.needsInput()) {
+					throw new IOException("Truncated block in " + source);
+				}
+				inflated.write(buffer, 0, n);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt block in " + source, e);
+		}
+		return inflated.toByteArray();
+	}
+	private static String[] grow(String array[], int length) {
+		return array == null || array.length < length ? new String[length] : array;
+	}
+
+	// Blocks listed in the footer, or null if the file has no (valid) footer
+	private List<BlockInfo> readFooter() throws IOException {
+
+		long length = file.length();
+		if (length < 8) {
+			return null;
+		}
+		file.seek(length - 8);
+		long footerOffset = file.readLong();
+		if (footerOffset < 0 || footerOffset > length - 16) {
+			return null;
+		}
+		byte footer[] = new byte[(int) (length - 8 - footerOffset)];
+		file.seek(footerOffset);
+		file.readFully(footer);
+		DataInputStream footerData = new DataInputStream(new ByteArrayInputStream(footer));
+		if (footerData.readInt() != AnnotatedTable.FOOTER_MARKER) {
+			return null;
+		}
+		int numBlocks = footerData.readInt();
+		List<BlockInfo> blocks = new ArrayList<BlockInfo>(numBlocks);
+		for (int x = 0; x < numBlocks; x++) {
+			String chr = footerData.readUTF();
+			long offset = footerData.readLong();
+			int rows = footerData.readInt();
+			blocks.add(readZoneMap(footerData, chr, offset, rows, columns.size()));
+		}
+		return blocks;
+
+	}
+	private static List<BlockInfo> scanBlocks(RandomAccessFile file, long position, long length, int numColumns) throws IOException {
+		List<BlockInfo> blocks = new ArrayList<BlockInfo>();
+		while (position + 8 <= length) {
+			file.seek(position);
+			if (file.readInt() != AnnotatedTable.BLOCK_MARKER) {
+				break;
+			}
+			int bodyLength = file.readInt();
+			if (position + 8 + bodyLength > length) {
+				// Partly written
+				break;
+			}
+			// Only the block's header is needed: chromosome, rows and zone map
+			byte header[] = new byte[Math.min(bodyLength, 2 + 65535 + 4 + (16 * numColumns))];
+			file.readFully(header);
+			DataInputStream body = new DataInputStream(new ByteArrayInputStream(header));
+			String chr = body.readUTF();
+			int rows = body.readInt();
+			blocks.add(readZoneMap(body, chr, position, rows, numColumns));
+			position += 8 + bodyLength;
+		}
+		return blocks;
+	}
+	private static byte[] readBlockBody(RandomAccessFile file, long offset, String source) throws IOException {
+		file.seek(offset);
+		if (file.readInt() != AnnotatedTable.BLOCK_MARKER) {
+			throw new IOException("No block at offset " + offset + " of " + source);
+		}
+		byte body[] = new byte[file.readInt()];
+		file.readFully(body);
+		return body;
+	}
+	private static BlockInfo readZoneMap(DataInputStream data, String chr, long offset, int rows, int numColumns) throws IOException {
+		double min[] = new double[numColumns];
+		double max[] = new double[numColumns];
+		for (int x = 0; x < numColumns; x++) {
+			min[x] = data.readDouble();
+			max[x] = data.readDouble();
+		}
+		return new BlockInfo(chr, offset, rows, min, max);
+	}
+	private static long getHeaderLength(List<Column> columns) throws IOException {
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		AnnotatedTable.writeHeader(new DataOutputStream(header), columns);
+		return header.size();
+	}
+
+	private static class Range {
+
+		private int column;
+		private double low;
+		private double high;
+
+		private Range(int column, double low, double high) {
+			this.column = column;
+			this.low = low;
+			this.high = high;
+		}
+
+	}
+
+}
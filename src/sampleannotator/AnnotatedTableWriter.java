@@ -0,0 +1,340 @@
+package sampleannotator;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import sampleannotator.AnnotatedTable.BlockInfo;
+import sampleannotator.AnnotatedTable.Column;
+import sampleannotator.AnnotatedTable.Type;
+import sampleannotator.RawCNVReader.LRRandBAFInformation;
+import sampleannotator.resources.SampleInformation;
+import utilities.CNV;
+
+/**
+ * Writes annotated CNVs as an {@link AnnotatedTable}: the same columns as {@link AnnotatedCNVWriter}, buffered into
+ * one open block per chromosome of up to {@link AnnotatedTable#BLOCK_ROWS} rows. Raw CNV files are sorted by sample,
+ * so rows come out grouped by chromosome within each flush, in input order within a chromosome. {@link #flush()}
+ * writes every open block, so a flushed file always ends on a whole block and can be resumed from there.
+ */
+public class AnnotatedTableWriter implements AnnotatedCNVOutput {
+
+	private DataOutputStream output;
+	private long position;
+	private List<Column> columns;
+	private List<BlockInfo> blocks;
+	private Map<String, BlockBuilder> openBlocks;
+	private Deflater deflater;
+
+	public AnnotatedTableWriter(OutputStream output) {
+		this(output, 0, new ArrayList<BlockInfo>());
+	}
+	/**
+	 * @param position number of bytes already in the file <code>output</code> appends to
+	 * @param blocks blocks already in that file (see {@link AnnotatedTableReader#scanBlocks(java.io.File, long)}), so the footer still lists them
+	 */
+	public AnnotatedTableWriter(OutputStream output, long position, List<BlockInfo> blocks) {
+
+		this.output = new DataOutputStream(new BufferedOutputStream(output, 65536));
+		this.position = position;
+		this.blocks = new ArrayList<BlockInfo>(blocks);
+		columns = AnnotatedTable.ANNOTATE_COLUMNS;
+		openBlocks = new LinkedHashMap<String, BlockBuilder>();
+		deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+
+	}
+
+	@Override
+	public void writeHeader() throws IOException {
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		AnnotatedTable.writeHeader(new DataOutputStream(header), columns);
+		header.writeTo(output);
+		position += header.size();
+	}
+
+	@Override
+	public void write(List<CNV> cnvs) throws IOException {
+
+		for (CNV cnv : cnvs) {
+
+			BlockBuilder block = openBlocks.get(cnv.getChr());
+			if (block == null) {
+				block = new BlockBuilder(cnv.getChr());
+				openBlocks.put(cnv.getChr(), block);
+			}
+
+			SampleInformation si = cnv.getSampleInformation();
+			LRRandBAFInformation lrrbaf = cnv.getLRRBAF();
+
+			block.startRow();
+			block.add(cnv.getChr());
+			block.add(cnv.getStart());
+			block.add(cnv.getEnd());
+			block.add(si.getSangerID());
+			block.add(si.getEGAN());
+			block.add(si.getSplitFile().getAbsolutePath());
+			block.add(si.hasWES());
+			block.add(cnv.getLocationCoordinates());
+			block.add(cnv.getCopyNumber());
+			block.add(cnv.getLength());
+			block.add(cnv.getConfidence());
+			block.add(si.getLrr_mean());
+			block.add(si.getLrr_median());
+			block.add(si.getLrr_sd());
+			block.add(si.getBaf_mean());
+			block.add(si.getBaf_median());
+			block.add(si.getBaf_sd());
+			block.add(si.getWf());
+			block.add(si.getBaf_drift());
+			block.add(si.getCELName());
+			block.add(si.getNumCNV());
+			block.add(String.valueOf(si.getGender()));
+			block.add(cnv.getDensity());
+			block.add(si.getCallRate());
+			block.add(cnv.getIntersectingWESConvexCNVs());
+			block.add(cnv.getIntersectingWESXHMMCNVs());
+			block.add(cnv.getIntersectingWESCLAMMSCNVs());
+			block.add(cnv.getIntersectingWESCANOESCNVs());
+			block.add(cnv.getTotalIntersectingBaits());
+			block.add(cnv.getGoldStandardSV());
+			block.add(cnv.getWESMeanL2R());
+			block.add(cnv.getWESL2Rsd());
+			block.add(cnv.getWESL2N());
+			block.add(si.isIndivFiltered());
+			block.add(cnv.isSiteFiltered());
+			block.add(cnv.getProbeCount());
+			block.add(lrrbaf.getBafMean());
+			block.add(lrrbaf.getBafSD());
+			block.add(lrrbaf.getBafMedian());
+			block.add(lrrbaf.getLrrMean());
+			block.add(lrrbaf.getLrrSD());
+			block.add(lrrbaf.getLrrMedian());
+			block.add(lrrbaf.getNLeft());
+			block.add(lrrbaf.getNRight());
+			block.add(cnv.getDistTel());
+			block.add(cnv.getDistCen());
+			block.endRow();
+
+			if (block.rows == AnnotatedTable.BLOCK_ROWS) {
+				writeBlock(block);
+			}
+
+		}
+
+	}
+
+	@Override
+	public void flush() throws IOException {
+		for (BlockBuilder block : openBlocks.values()) {
+			writeBlock(block);
+		}
+		output.flush();
+	}
+	@Override
+	public void close() throws IOException {
+
+		for (BlockBuilder block : openBlocks.values()) {
+			writeBlock(block);
+		}
+
+		ByteArrayOutputStream footer = new ByteArrayOutputStream();
+		DataOutputStream footerData = new DataOutputStream(footer);
+		footerData.writeInt(AnnotatedTable.FOOTER_MARKER);
+		footerData.writeInt(blocks.size());
+		for (BlockInfo block : blocks) {
+			footerData.writeUTF(block.getChr());
+			footerData.writeLong(block.getOffset());
+			footerData.writeInt(block.getRows());
+			writeZoneMap(footerData, block);
+		}
+		footerData.writeLong(position);
+		footer.writeTo(output);
+		position += footer.size();
+
+		output.close();
+		deflater.end();
+
+	}
+
+	private void writeBlock(BlockBuilder builder) throws IOException {
+
+		int rows = builder.rows;
+		if (rows == 0) {
+			return;
+		}
+
+		double min[] = new double[columns.size()];
+		double max[] = new double[columns.size()];
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		deflater.reset();
+		DataOutputStream payloadData = new DataOutputStream(new DeflaterOutputStream(payload, deflater, 65536));
+		for (int x = 0; x < columns.size(); x++) {
+			min[x] = Double.NaN;
+			max[x] = Double.NaN;
+			Type type = columns.get(x).getType();
+			if (type == Type.STRING) {
+				writeStrings(payloadData, builder.strings[x], rows);
+				continue;
+			}
+			long values[] = builder.numbers[x];
+			for (int y = 0; y < rows; y++) {
+				double value;
+				switch (type) {
+				case INT:
+					payloadData.writeInt((int) values[y]);
+					value = values[y];
+					break;
+				case LONG:
+					payloadData.writeLong(values[y]);
+					value = values[y];
+					break;
+				case DOUBLE:
+					payloadData.writeLong(values[y]);
+					value = Double.longBitsToDouble(values[y]);
+					break;
+				default:
+					payloadData.writeByte((int) values[y]);
+					continue;
+				}
+				if (Double.isNaN(value)) {
+					continue;
+				}
+				if (Double.isNaN(min[x]) || value < min[x]) {
+					min[x] = value;
+				}
+				if (Double.isNaN(max[x]) || value > max[x]) {
+					max[x] = value;
+				}
+			}
+		}
+		payloadData.close();
+
+		BlockInfo block = new BlockInfo(builder.chr, position, rows, min, max);
+		ByteArrayOutputStream body = new ByteArrayOutputStream(payload.size() + 1024);
+		DataOutputStream bodyData = new DataOutputStream(body);
+		bodyData.writeUTF(builder.chr);
+		bodyData.writeInt(rows);
+		writeZoneMap(bodyData, block);
+		payload.writeTo(bodyData);
+
+		output.writeInt(AnnotatedTable.BLOCK_MARKER);
+		output.writeInt(body.size());
+		body.writeTo(output);
+		position += 8 + body.size();
+		blocks.add(block);
+		builder.clear();
+
+	}
+	// Per-block dictionary: paths, sample IDs and locations repeat across a sample's CNVs
+	private void writeStrings(DataOutputStream payloadData, String values[], int rows) throws IOException {
+		Map<String, Integer> dictionary = new HashMap<String, Integer>();
+		List<String> entries = new ArrayList<String>();
+		int codes[] = new int[rows];
+		for (int y = 0; y < rows; y++) {
+			if (values[y] == null) {
+				codes[y] = -1;
+				continue;
+			}
+			Integer code = dictionary.get(values[y]);
+			if (code == null) {
+				code = entries.size();
+				dictionary.put(values[y], code);
+				entries.add(values[y]);
+			}
+			codes[y] = code;
+		}
+		payloadData.writeInt(entries.size());
+		for (String entry : entries) {
+			payloadData.writeUTF(entry);
+		}
+		for (int y = 0; y < rows; y++) {
+			payloadData.writeInt(codes[y]);
+		}
+	}
+	private void writeZoneMap(DataOutputStream data, BlockInfo block) throws IOException {
+		for (int x = 0; x < columns.size(); x++) {
+			data.writeDouble(block.getMin(x));
+			data.writeDouble(block.getMax(x));
+		}
+	}
+
+	// Rows of one chromosome not yet written; integers, booleans and double bits are all held as longs
+	private class BlockBuilder {
+
+		private String chr;
+		private int rows;
+		private long numbers[][];
+		private String strings[][];
+		private int capacity;
+		private int nextColumn;
+
+		private BlockBuilder(String chr) {
+			this.chr = chr;
+			rows = 0;
+			capacity = 64;
+			numbers = new long[columns.size()][];
+			strings = new String[columns.size()][];
+			for (int x = 0; x < columns.size(); x++) {
+				if (columns.get(x).getType() == Type.STRING) {
+					strings[x] = new String[capacity];
+				} else {
+					numbers[x] = new long[capacity];
+				}
+			}
+		}
+
+		// Grows the columns as needed, so chromosomes with few CNVs stay small
+		private void startRow() {
+			if (rows == capacity) {
+				capacity = Math.min(capacity * 2, AnnotatedTable.BLOCK_ROWS);
+				for (int x = 0; x < columns.size(); x++) {
+					if (strings[x] != null) {
+						strings[x] = Arrays.copyOf(strings[x], capacity);
+					} else {
+						numbers[x] = Arrays.copyOf(numbers[x], capacity);
+					}
+				}
+			}
+			nextColumn = 0;
+		}
+		private void add(int value) {
+			numbers[nextColumn++][rows] = value;
+		}
+		private void add(long value) {
+			numbers[nextColumn++][rows] = value;
+		}
+		private void add(double value) {
+			numbers[nextColumn++][rows] = Double.doubleToRawLongBits(value);
+		}
+		private void add(boolean value) {
+			numbers[nextColumn++][rows] = value ? 1 : 0;
+		}
+		private void add(String value) {
+			strings[nextColumn++][rows] = value;
+		}
+		private void endRow() {
+			rows++;
+		}
+
+		private void clear() {
+			for (String column[] : strings) {
+				if (column != null) {
+					Arrays.fill(column, 0, rows, null);
+				}
+			}
+			rows = 0;
+		}
+
+	}
+
+}
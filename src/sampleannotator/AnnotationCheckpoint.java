@@ -0,0 +1,114 @@
+package sampleannotator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Progress of an 'Annotate' run, written next to the output as <code>&lt;output&gt;.txt.ckpt</code> after every durably
+ * written batch. Records which input it belongs to (path, length, modification time and line range), the next input line
+ * still to annotate and how many bytes of output are complete, so a restarted run can truncate away any partial batch
+ * and carry on from the next line.
+ */
+public class AnnotationCheckpoint {
+
+	public static final String SUFFIX = ".ckpt";
+
+	private String inputPath;
+	private long inputLength;
+	private long inputModified;
+	private long lineStart;
+	private long lineEnd;
+	private long nextLine;
+	private long outputLength;
+
+	public AnnotationCheckpoint(File input, long lineStart, long lineEnd) {
+		inputPath = input.getAbsolutePath();
+		inputLength = input.length();
+		inputModified = input.lastModified();
+		this.lineStart = lineStart;
+		this.lineEnd = lineEnd;
+		nextLine = lineStart;
+		outputLength = 0;
+	}
+
+	public static File getCheckpointFile(File output) {
+		return new File(output.getAbsolutePath() + SUFFIX);
+	}
+
+	/**
+	 * @return the checkpoint recorded for <code>output</code>, or null if there is none
+	 */
+	public static AnnotationCheckpoint load(File output) throws IOException {
+
+		File checkpointFile = getCheckpointFile(output);
+		if (!checkpointFile.exists()) {
+			return null;
+		}
+
+		BufferedReader checkpointReader = new BufferedReader(new FileReader(checkpointFile));
+		String data[] = checkpointReader.readLine().split("\t");
+		checkpointReader.close();
+
+		AnnotationCheckpoint checkpoint = new AnnotationCheckpoint(new File(data[0]), Long.parseLong(data[3]), Long.parseLong(data[4]));
+		checkpoint.inputLength = Long.parseLong(data[1]);
+		checkpoint.inputModified = Long.parseLong(data[2]);
+		checkpoint.nextLine = Long.parseLong(data[5]);
+		checkpoint.outputLength = Long.parseLong(data[6]);
+		return checkpoint;
+
+	}
+
+	/**
+	 * Replaces the checkpoint for <code>output</code>. The new checkpoint is written to a temporary file, synced and then
+	 * renamed over the old one, so a crash leaves either the old or the new checkpoint, never half of one.
+	 */
+	public void write(File output) throws IOException {
+
+		File checkpointFile = getCheckpointFile(output);
+		File tmpFile = new File(checkpointFile.getAbsolutePath() + ".tmp");
+
+		FileOutputStream checkpointStream = new FileOutputStream(tmpFile);
+		BufferedWriter checkpointWriter = new BufferedWriter(new OutputStreamWriter(checkpointStream));
+		checkpointWriter.write(inputPath + "\t" + inputLength + "\t" + inputModified + "\t" + lineStart + "\t" + lineEnd + "\t" + nextLine + "\t" + outputLength + "\n");
+		checkpointWriter.flush();
+		checkpointStream.getFD().sync();
+		checkpointWriter.close();
+
+		Files.move(tmpFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+	}
+
+	public static void delete(File output) {
+		getCheckpointFile(output).delete();
+	}
+
+	/**
+	 * @return true if this checkpoint was written by a run over the same (unchanged) input and line range
+	 */
+	public boolean matches(File input, long lineStart, long lineEnd) {
+		return inputPath.equals(input.getAbsolutePath()) &&
+				inputLength == input.length() &&
+				inputModified == input.lastModified() &&
+				this.lineStart == lineStart &&
+				this.lineEnd == lineEnd;
+	}
+
+	public long getNextLine() {
+		return nextLine;
+	}
+	public long getOutputLength() {
+		return outputLength;
+	}
+	public void setProgress(long nextLine, long outputLength) {
+		this.nextLine = nextLine;
+		this.outputLength = outputLength;
+	}
+
+}
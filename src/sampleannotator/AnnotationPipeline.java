@@ -0,0 +1,200 @@
+package sampleannotator;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import utilities.CNV;
+
+/**
+ * Streams a section of a PennCNV file through three stages connected by bounded queues of batches:
+ *
+ * <ol>
+ * <li>a reader thread parses batches of input lines,</li>
+ * <li>an annotation thread annotates each batch (itself fanning out to a {@link ParallelAnnotator} if one is given),</li>
+ * <li>and the calling thread writes finished batches in input order.</li>
+ * </ol>
+ *
+ * A full queue blocks the stage feeding it, so no more than <code>queueDepth</code> batches wait between any two stages
+ * and memory use doesn't grow with the size of the input, while parsing, tabix I/O and output overlap.
+ */
+public class AnnotationPipeline {
+
+	private RawCNVReader reader;
+	private ParallelAnnotator annotator;
+	private boolean sweep;
+	private int batchLines;
+	private int queueDepth;
+
+	/**
+	 * @param annotator annotates batches on a worker pool, or null to annotate on the pipeline's annotation thread
+	 * @param batchLines number of input lines per batch
+	 * @param queueDepth number of batches each queue holds before blocking
+	 */
+	public AnnotationPipeline(RawCNVReader reader, ParallelAnnotator annotator, boolean sweep, int batchLines, int queueDepth) {
+		this.reader = reader;
+		this.annotator = annotator;
+		this.sweep = sweep;
+		this.batchLines = batchLines;
+		this.queueDepth = queueDepth;
+	}
+
+	/**
+	 * Receives annotated batches, in input order, on the thread that called {@link AnnotationPipeline#run(long, int, BatchWriter)}.
+	 */
+	public interface BatchWriter {
+		/**
+		 * @param nextLine first input line not yet covered once this batch is written
+		 */
+		public void write(List<CNV> cnvs, long nextLine) throws IOException;
+	}
+
+	/**
+	 * Annotates lines <code>lineStart</code> to <code>lineEnd</code> (or the end of the file). The reader may be
+	 * positioned anywhere at or before <code>lineStart</code>; lines before it are skipped.
+	 */
+	public void run(long lineStart, int lineEnd, BatchWriter writer) throws IOException {
+
+		BlockingQueue<Batch> parsed = new ArrayBlockingQueue<Batch>(queueDepth);
+		BlockingQueue<Batch> annotated = new ArrayBlockingQueue<Batch>(queueDepth);
+		ExecutorService stages = Executors.newFixedThreadPool(2);
+
+		try {
+
+			stages.submit(new ReadStage(lineStart, lineEnd, parsed));
+			stages.submit(new AnnotateStage(parsed, annotated));
+
+			Batch batch;
+			while (!(batch = annotated.take()).isEnd()) {
+				writer.write(batch.cnvs, batch.nextLine);
+			}
+			if (batch.error != null) {
+				if (batch.error instanceof IOException) {
+					throw (IOException) batch.error;
+				} else {
+					throw new IOException("Annotation pipeline failed", batch.error);
+				}
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while annotating CNVs", e);
+		} finally {
+			// Unblocks any stage still waiting on a queue if the writer stopped early
+			stages.shutdownNow();
+		}
+
+	}
+
+	private class ReadStage implements Runnable {
+
+		private long lineStart;
+		private int lineEnd;
+		private BlockingQueue<Batch> parsed;
+
+		private ReadStage(long lineStart, int lineEnd, BlockingQueue<Batch> parsed) {
+			this.lineStart = lineStart;
+			this.lineEnd = lineEnd;
+			this.parsed = parsed;
+		}
+
+		@Override
+		public void run() {
+			try {
+				try {
+					while (reader.getNextLine() <= lineEnd) {
+
+						int batchStart = (int) Math.max(reader.getNextLine(), lineStart);
+						int batchEnd = (int) Math.min((long) lineEnd, (long) batchStart + batchLines - 1);
+
+						List<CNV> cnvs = reader.readCNVs(batchStart, batchEnd);
+						parsed.put(new Batch(cnvs, reader.getNextLine()));
+
+						if (reader.getNextLine() <= batchEnd) {
+							// End of file
+							break;
+						}
+
+					}
+					parsed.put(Batch.end(null));
+				} catch (InterruptedException e) {
+					throw e;
+				} catch (Throwable e) {
+					parsed.put(Batch.end(e));
+				}
+			} catch (InterruptedException e) {
+				// Pipeline shut down
+			}
+		}
+
+	}
+
+	private class AnnotateStage implements Runnable {
+
+		private BlockingQueue<Batch> parsed;
+		private BlockingQueue<Batch> annotated;
+
+		private AnnotateStage(BlockingQueue<Batch> parsed, BlockingQueue<Batch> annotated) {
+			this.parsed = parsed;
+			this.annotated = annotated;
+		}
+
+		@Override
+		public void run() {
+			try {
+				Batch batch = null;
+				try {
+					while (!(batch = parsed.take()).isEnd()) {
+						if (annotator != null) {
+							annotator.annotate(batch.cnvs);
+						} else {
+							reader.annotate(batch.cnvs, sweep);
+						}
+						annotated.put(batch);
+					}
+					annotated.put(batch);
+				} catch (InterruptedException e) {
+					throw e;
+				} catch (Throwable e) {
+					annotated.put(Batch.end(e));
+				}
+			} catch (InterruptedException e) {
+				// Pipeline shut down
+			}
+		}
+
+	}
+
+	private static class Batch {
+
+		private List<CNV> cnvs;
+		private long nextLine;
+		private boolean end;
+		private Throwable error;
+
+		private Batch(List<CNV> cnvs, long nextLine) {
+			this.cnvs = cnvs;
+			this.nextLine = nextLine;
+			end = false;
+			error = null;
+		}
+		/**
+		 * Marks the end of the stream, either because the input is finished (<code>error</code> null) or a stage failed
+		 */
+		private static Batch end(Throwable error) {
+			Batch batch = new Batch(null, -1);
+			batch.end = true;
+			batch.error = error;
+			return batch;
+		}
+
+		private boolean isEnd() {
+			return end;
+		}
+
+	}
+
+}
@@ -0,0 +1,34 @@
+package sampleannotator;
+
+import java.io.File;
+import java.io.IOException;
+
+import utilities.CompressedInput.Compression;
+import utilities.LineOffsetIndex;
+
+/**
+ * Builds the line offset index used by 'Annotate -s' to jump straight to its section of the PennCNV file. Only needs to
+ * be run once per CNV file, before submitting the array of annotation jobs.
+ */
+public class CNVLineIndexer {
+
+	public CNVLineIndexer(String args[]) throws IOException {
+		
+		CNVLineIndexerOptions options = new CNVLineIndexerOptions(args);
+		File toIndex = options.getRawCNVs();
+		
+		LineOffsetIndex index = LineOffsetIndex.build(toIndex, options.getStride());
+		File indexFile = LineOffsetIndex.getIndexFile(toIndex);
+		index.write(indexFile);
+		
+		long totalLines = index.getTotalLines();
+		long sections = (totalLines + options.getSectionSize() - 1) / options.getSectionSize();
+		System.err.println("Indexed " + totalLines + " lines of " + toIndex.getName() + " every " + index.getStride() + " lines to " + indexFile.getAbsolutePath());
+		System.err.println("Sections of " + options.getSectionSize() + " lines: " + sections);
+		if (index.getCompression() == Compression.GZIP) {
+			System.err.println(toIndex.getName() + " is gzipped rather than bgzipped, so 'Annotate -s' will still inflate everything before its section; recompress with bgzip and re-index to seek directly");
+		}
+		
+	}
+	
+}
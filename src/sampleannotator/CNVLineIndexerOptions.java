@@ -0,0 +1,97 @@
+package sampleannotator;
+
+import java.io.File;
+
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import utilities.LineOffsetIndex;
+
+public class CNVLineIndexerOptions {
+
+	private Options options;
+	
+	private File rawCNVs;
+	private int stride;
+	private int sectionSize;
+	
+	public CNVLineIndexerOptions (String args[]) {
+		
+		options = setOptions();
+		loadOptions(args);
+		
+	}
+	
+	public File getRawCNVs() {
+		return rawCNVs;
+	}
+	public int getStride() {
+		return stride;
+	}
+	public int getSectionSize() {
+		return sectionSize;
+	}
+	
+	private Options setOptions() {
+		
+		Options options = new Options();
+		
+		Option rawCNVs = new Option("p", true, "Path to CNVs generated by PennCNV.");
+		rawCNVs.setRequired(true);
+		options.addOption(rawCNVs);
+		
+		options.addOption(new Option("k", true, "Record the byte offset of every k-th line [" + LineOffsetIndex.DEFAULT_STRIDE + "]."));
+		options.addOption(new Option("size", true, "Section size that will be given to 'Annotate', used to report the number of sections [500]."));
+		options.addOption(new Option("help", false, "Print help message."));
+		
+		return options;
+		
+	}
+	
+	private void loadOptions(String args[]) {
+		
+		CommandLineParser parser = new BasicParser();
+		CommandLine cmd = null;
+				
+		try {
+			 cmd = parser.parse(options, args);
+		} catch (org.apache.commons.cli.ParseException e) {
+			System.out.println();
+			ThrowHelp(e.getMessage());
+		}
+			
+		if (cmd.hasOption("help")) {
+			ThrowHelp("");
+		}
+		
+		rawCNVs = new File(cmd.getOptionValue("p"));
+		if (cmd.hasOption("k")) {
+			stride = Integer.parseInt(cmd.getOptionValue("k"));
+		} else {
+			stride = LineOffsetIndex.DEFAULT_STRIDE;
+		}
+		if (cmd.hasOption("size")) {
+			sectionSize = Integer.parseInt(cmd.getOptionValue("size"));
+		} else {
+			sectionSize = 500;
+		}
+		
+	}
+	
+	private void ThrowHelp(String top) {
+		String header = "Axiom Array CNV Annotator\n\n\n";
+		String footer = "\n\n(c) Eugene Gardner 2018";
+		String usage = "java -jar CNVAnnotator.jar Index <options>";
+		System.out.println();
+		System.out.println(top);
+		HelpFormatter formatter = new HelpFormatter();
+		System.out.println();
+		formatter.printHelp(9999, usage, header, options, footer);
+		System.exit(1);
+	}
+	
+}
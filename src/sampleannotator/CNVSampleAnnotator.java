@@ -2,20 +2,23 @@ package sampleannotator;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.text.DecimalFormat;
+import java.io.OutputStreamWriter;
 import java.util.List;
-import java.util.Map;
 
-import sampleannotator.RawCNVReader.LRRandBAFInformation;
-import sampleannotator.resources.SampleInformation;
 import sampleannotator.resources.SampleLoader;
+import sampleannotator.resources.SampleTable;
+import utilities.AsyncOutputStream;
+import utilities.BGZFBlockCache;
 import utilities.CNV;
+import utilities.CompressedInput.Compression;
+import utilities.LineOffsetIndex;
+import utilities.ReferenceBundle;
 
 public class CNVSampleAnnotator {
 
-	private static BufferedWriter rawOutputWriter;
+	private static AnnotatedCNVOutput rawOutputWriter;
 	
 	public CNVSampleAnnotator(String args[]) throws IOException {
 		
@@ -24,10 +27,11 @@ public class CNVSampleAnnotator {
 		
 		SampleLoader sampleLoader = new SampleLoader();
 		
-		Map<String, SampleInformation> sampleInformation = sampleLoader.getSampleInformation();
+		SampleTable sampleTable = sampleLoader.getSampleTable();
 		
+		BGZFBlockCache.getShared().setMaxBytes(options.getBlockCacheBytes());
 		//This will read raw CNVS and print all raw information necessary for filtering
-		RawCNVReader reader = new RawCNVReader(toAnnotate, sampleInformation);
+		RawCNVReader reader = new RawCNVReader(toAnnotate, sampleTable, options.getMaxTabixHandles(), ReferenceBundle.open(options.getReferenceBundle()));
 		
 		// Determine section of file to annotate;
 		int fileStart;
@@ -40,127 +44,99 @@ public class CNVSampleAnnotator {
 			fileEnd = Integer.MAX_VALUE;
 		} else {
 			int fileSection = fileOption - 1; // Have to do -1 to make the math work
-			fileStart = 1 + (fileSection * 500);
-			fileEnd = 500 + (fileSection * 500);
+			int sectionSize = options.getSectionSize();
+			fileStart = 1 + (fileSection * sectionSize);
+			fileEnd = sectionSize + (fileSection * sectionSize);
 		}
-		List<CNV> rawCNVs = reader.getAllCNVs(fileStart, fileEnd); //TRUE flag for only WES samples
 		
-		rawOutputWriter = new BufferedWriter(new FileWriter(new File(options.getOutput().getAbsolutePath() + ".txt")));
-		PrintRawCNVs(rawCNVs);
+		// Pick up where a previous run of the same section stopped, if it left a checkpoint
+		File outputFile = new File(options.getOutput().getAbsolutePath() + (options.isBinary() ? AnnotatedTable.EXTENSION : ".txt"));
+		AnnotationCheckpoint checkpoint = AnnotationCheckpoint.load(outputFile);
+		if (checkpoint != null && !checkpoint.matches(toAnnotate, fileStart, fileEnd)) {
+			System.err.println("Checkpoint " + AnnotationCheckpoint.getCheckpointFile(outputFile).getName() + " is for a different input or section, starting again");
+			checkpoint = null;
+		} else if (checkpoint != null && outputFile.length() < checkpoint.getOutputLength()) {
+			System.err.println("Output " + outputFile.getName() + " is shorter than its checkpoint records, starting again");
+			checkpoint = null;
+		}
+		boolean resuming = checkpoint != null;
+		if (!resuming) {
+			checkpoint = new AnnotationCheckpoint(toAnnotate, fileStart, fileEnd);
+		}
+		
+		long firstLine = checkpoint.getNextLine();
+		if (firstLine > 1) {
+			LineOffsetIndex lineIndex = LineOffsetIndex.load(toAnnotate);
+			if (lineIndex != null) {
+				if (lineIndex.getCompression() == Compression.GZIP) {
+					System.err.println(toAnnotate.getName() + " is gzipped rather than bgzipped, so everything before line " + firstLine + " is still inflated (recompress with bgzip and re-run 'Index' to seek directly)");
+				}
+				reader.seekToLine(lineIndex, firstLine);
+			} else {
+				System.err.println("No current line index for " + toAnnotate.getName() + ", reading from the start of the file (run 'Index' to build one)");
+			}
+		}
+		
+		FileOutputStream outputStream = new FileOutputStream(outputFile, resuming);
+		if (resuming) {
+			// Drop anything written after the last checkpoint; it is regenerated from the checkpointed line
+			outputStream.getChannel().truncate(checkpoint.getOutputLength());
+			System.err.println("Resuming annotation at line " + firstLine + " of " + toAnnotate.getName());
+		}
+		// Output only reaches the file in large writes from a background thread, or when a batch is committed
+		AsyncOutputStream asyncOutput = new AsyncOutputStream(outputStream, AsyncOutputStream.DEFAULT_BUFFER_BYTES, AsyncOutputStream.DEFAULT_FLUSH_MILLIS);
+		if (!options.isBinary()) {
+			rawOutputWriter = new AnnotatedCNVWriter(new BufferedWriter(new OutputStreamWriter(asyncOutput)));
+		} else if (resuming) {
+			// Blocks already written have to stay in the footer that close() appends
+			rawOutputWriter = new AnnotatedTableWriter(asyncOutput, checkpoint.getOutputLength(), AnnotatedTableReader.scanBlocks(outputFile, checkpoint.getOutputLength()));
+		} else {
+			rawOutputWriter = new AnnotatedTableWriter(asyncOutput);
+		}
+		if (!resuming) {
+			rawOutputWriter.writeHeader();
+			commitBatch(asyncOutput, outputStream, outputFile, checkpoint, firstLine);
+		}
+		
+		ParallelAnnotator annotator = null;
+		if (options.getThreads() > 1) {
+			annotator = new ParallelAnnotator(reader, options.getThreads(), options.isSweep());
+		}
+		
+		// Read, annotate and write in batches, making each batch durable before recording it in the checkpoint
+		final AsyncOutputStream committedOutput = asyncOutput;
+		final FileOutputStream committedStream = outputStream;
+		final AnnotationCheckpoint committedCheckpoint = checkpoint;
+		AnnotationPipeline pipeline = new AnnotationPipeline(reader, annotator, options.isSweep(), options.getCheckpointLines(), options.getQueueDepth());
+		pipeline.run(firstLine, fileEnd, new AnnotationPipeline.BatchWriter() {
+			@Override
+			public void write(List<CNV> cnvs, long nextLine) throws IOException {
+				rawOutputWriter.write(cnvs);
+				commitBatch(committedOutput, committedStream, outputFile, committedCheckpoint, nextLine);
+			}
+		});
+		
+		if (annotator != null) {
+			annotator.close();
+		}
 		rawOutputWriter.close();
+		System.err.println("Wrote " + outputFile.getName() + ": " + asyncOutput.getSummary());
+		AnnotationCheckpoint.delete(outputFile);
+		if (options.getStatsFile() != null) {
+			reader.getLookupStatistics().write(options.getStatsFile());
+		}
 		reader.close();
 		
 	}
 	
-	private static void PrintRawCNVs(List<CNV> cnvs) throws IOException {
-		
-		DecimalFormat df = new DecimalFormat("##.##");
-//		GenerateValidPlots validPlot = new GenerateValidPlots(new File("/lustre/scratch115/projects/interval_cnv/bed_files.lst"), tmpDir);
+	private static void commitBatch(AsyncOutputStream asyncOutput, FileOutputStream outputStream, File outputFile, AnnotationCheckpoint checkpoint, long nextLine) throws IOException {
 		
-		printtab("#chr");
-		printtab("start");
-		printtab("end");
-		printtab("SangerID");
-		printtab("EGANID");
-		printtab("split.file");
-		printtab("has.wes");
-		printtab("location");
-		printtab("Copy_Number");
-		printtab("Length_bp");
-		printtab("Max_Log_BF");
-		printtab("LRR_mean");
-		printtab("LRR_median");
-		printtab("LRR_SD");
-		printtab("BAF_mean");
-		printtab("BAF_median");
-		printtab("BAF_SD");
-		printtab("WF");
-		printtab("BAF_drift");
-		printtab("cel.file");
-		printtab("NumCNV");
-		printtab("Gender");
-		printtab("density");
-		printtab("callrate");
-		printtab("wes.convex.int");
-		printtab("wes.xhmm.int");
-		printtab("wes.clamms.int");
-		printtab("wes.canoes.int");
-		printtab("wes.probe.count");
-		printtab("DGVIntersect");
-		printtab("WES.l2r.mean");
-		printtab("WES.l2r.sd");
-		printtab("num.l2r.probes");
-		printtab("indiv.filtered");
-		printtab("site.filtered");
-		printtab("No_Probes");
-		printtab("site.BAF_mean");
-		printtab("site.BAF_SD");
-		printtab("site.BAF_median");
-		printtab("site.LRR_mean");
-		printtab("site.LRR_SD");
-		printtab("site.LRR_median");
-		printtab("nLeft");
-		printtab("nRight");
-		printtab("abs.tel");
-		printnewline("abs.cen");
-				
-		for (CNV cnv : cnvs) {
-
-//			validPlot.GenerateCNVPlot(cnv);
-			
-			SampleInformation si = cnv.getSampleInformation();
-			LRRandBAFInformation lrrbaf = cnv.getLRRBAF();
-			
-			printtab(cnv.getChr()); //0
-			printtab(cnv.getStart()); //1
-			printtab(cnv.getEnd()); //2
-			printtab(si.getSangerID()); //3
-			printtab(si.getEGAN()); //4
-			printtab(si.getSplitFile().getAbsolutePath()); //5
-			printtab(si.hasWES()); //6
-			printtab(cnv.getLocationCoordinates()); //7
-			printtab(cnv.getCopyNumber()); //8
-			printtab(cnv.getLength()); //9
-			printtab(df.format(cnv.getConfidence())); //10
-			printtab(si.getLrr_mean()); //11
-			printtab(si.getLrr_median()); //12
-			printtab(si.getLrr_sd()); //13
-			printtab(si.getBaf_mean()); //14
-			printtab(si.getBaf_median()); //15
-			printtab(si.getBaf_sd()); //16
-			printtab(si.getWf()); //17
-			printtab(si.getBaf_drift()); //18
-			printtab(si.getCELName()); //19
-			printtab(si.getNumCNV()); //20
-			printtab(si.getGender()); //21
-			printtab(df.format(cnv.getDensity())); //22
-			printtab(df.format(si.getCallRate())); //23
-			printtab(cnv.getIntersectingWESConvexCNVs()); //24
-			printtab(cnv.getIntersectingWESXHMMCNVs()); //25
-			printtab(cnv.getIntersectingWESCLAMMSCNVs()); //26
-			printtab(cnv.getIntersectingWESCANOESCNVs()); //27
-			printtab(cnv.getTotalIntersectingBaits()); //28
-			printtab(cnv.getGoldStandardSV()); //29
-			printtab(cnv.getWESMeanL2R()); //30
-			printtab(cnv.getWESL2Rsd()); //31
-			printtab(cnv.getWESL2N()); //32
-			printtab(si.isIndivFiltered()); //33
-			printtab(cnv.isSiteFiltered()); //34
-			printtab(cnv.getProbeCount()); //35
-			printtab(lrrbaf.returnPrintable()); //36-43
-			printtab(cnv.getDistTel());
-			printnewline(cnv.getDistCen());
-				
-			rawOutputWriter.flush();
-
-		}
+		rawOutputWriter.flush();
+		asyncOutput.drain();
+		outputStream.getFD().sync();
+		checkpoint.setProgress(nextLine, outputStream.getChannel().size());
+		checkpoint.write(outputFile);
 		
 	}
-	public static void printtab(Object toPrint) throws IOException {
-		rawOutputWriter.write(toPrint + "\t");
-	}
-	public static void printnewline(Object toPrint) throws IOException {
-		rawOutputWriter.write(toPrint + "\n");
-	}
 	
 }
@@ -11,6 +11,8 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 
+import utilities.BGZFBlockCache;
+
 public class CNVSampleAnnotatorOptions {
 
 	private Options options;
@@ -18,7 +20,17 @@ public class CNVSampleAnnotatorOptions {
 	private File rawCNVs;
 	private File output;
 	private File tmpDirectory;
+	private File referenceBundle;
+	private File statsFile;
 	private int sectionOfFile;
+	private int sectionSize;
+	private int checkpointLines;
+	private int queueDepth;
+	private int maxTabixHandles;
+	private long blockCacheBytes;
+	private boolean sweep;
+	private boolean binary;
+	private int threads;
 	
 	public CNVSampleAnnotatorOptions (String args[]) {
 		
@@ -36,9 +48,48 @@ public class CNVSampleAnnotatorOptions {
 	public File getTmpDirectory() {
 		return tmpDirectory;
 	}
+	/**
+	 * @return compiled reference bundle, or null to parse reference files from their default locations
+	 */
+	public File getReferenceBundle() {
+		return referenceBundle;
+	}
+	/**
+	 * @return file to write per-source lookup statistics to, or null to only print the summary
+	 */
+	public File getStatsFile() {
+		return statsFile;
+	}
 	public int getSectionOfFile() {
 		return sectionOfFile;
 	}
+	public int getSectionSize() {
+		return sectionSize;
+	}
+	public int getCheckpointLines() {
+		return checkpointLines;
+	}
+	public int getQueueDepth() {
+		return queueDepth;
+	}
+	public int getMaxTabixHandles() {
+		return maxTabixHandles;
+	}
+	public long getBlockCacheBytes() {
+		return blockCacheBytes;
+	}
+	public boolean isSweep() {
+		return sweep;
+	}
+	/**
+	 * @return true to write a binary table (see {@link AnnotatedTable}) to <output>.cnvb instead of text to <output>.txt
+	 */
+	public boolean isBinary() {
+		return binary;
+	}
+	public int getThreads() {
+		return threads;
+	}
 	
 	private Options setOptions() {
 		
@@ -54,9 +105,19 @@ public class CNVSampleAnnotatorOptions {
 			options.addOption(opt);
 		}
 		
-		options.addOption(new Option("s", true, "If included, section of CNV file to annotate in 500 line chunks. If not included, annotate entire file."));
+		options.addOption(new Option("s", true, "If included, section of CNV file to annotate in chunks of -size lines. If not included, annotate entire file."));
+		options.addOption(new Option("size", true, "Number of lines per section for -s [500]. Sections start straight at their first line if the CNV file has been indexed with 'Index'."));
+		options.addOption(new Option("checkpoint", true, "Number of input lines annotated between checkpoints [1000]. Output is synced to disk and progress recorded in <output>.txt.ckpt (or .cnvb.ckpt) after each batch, and re-running with the same options resumes from the last checkpoint."));
+		options.addOption(new Option("queue", true, "Number of batches (of -checkpoint lines) that can wait between the read, annotate and write stages [2]."));
 		options.addOption(new Option("help", false, "Print help message."));
 		options.addOption(new Option("tmp", true, "Path to tmp directory."));
+		options.addOption(new Option("ref", true, "Reference bundle built by 'Compile'. If not included, reference files are parsed from their default locations."));
+		options.addOption(new Option("handles", true, "Maximum number of per-sample tabix files each annotation thread (-t) holds open at once, counted separately for LRR/BAF and WES L2R files [64]."));
+		options.addOption(new Option("blockcache", true, "MiB of decompressed LRR/BAF and L2R blocks kept in memory and shared between threads, 0 to disable [" + (BGZFBlockCache.DEFAULT_MAX_BYTES >> 20) + "]."));
+		options.addOption(new Option("sweep", false, "Summarise LRR/BAF one sample at a time in a single sequential pass over each sample's file. Output is identical."));
+		options.addOption(new Option("binary", false, "Write a binary, block-columnar table to <output>" + AnnotatedTable.EXTENSION + " instead of text to <output>.txt. 'Merge' reads either; 'Export' converts the binary table to text."));
+		options.addOption(new Option("stats", true, "Also write per-source lookup counts and latency histograms as a tab-delimited table to this file. A summary is always printed to STDERR."));
+		options.addOption(new Option("t", true, "Number of annotation threads, CNVs are split between threads by sample. 0 uses one thread per available core [1]."));
 		
 		return options;
 		
@@ -85,12 +146,57 @@ public class CNVSampleAnnotatorOptions {
 		} else {
 			sectionOfFile = -1;
 		}
+		if (cmd.hasOption("size")) {
+			sectionSize = Integer.parseInt(cmd.getOptionValue("size"));
+		} else {
+			sectionSize = 500;
+		}
+		if (cmd.hasOption("checkpoint")) {
+			checkpointLines = Integer.parseInt(cmd.getOptionValue("checkpoint"));
+		} else {
+			checkpointLines = 1000;
+		}
+		if (cmd.hasOption("ref")) {
+			referenceBundle = new File(cmd.getOptionValue("ref"));
+		} else {
+			referenceBundle = null;
+		}
+		if (cmd.hasOption("stats")) {
+			statsFile = new File(cmd.getOptionValue("stats"));
+		} else {
+			statsFile = null;
+		}
+		if (cmd.hasOption("queue")) {
+			queueDepth = Integer.parseInt(cmd.getOptionValue("queue"));
+		} else {
+			queueDepth = 2;
+		}
 		if (cmd.hasOption("tmp")) {
 			tmpDirectory = new File(cmd.getOptionValue("tmp"));
 		} else {
 			tmpDirectory = new File(System.getProperty("java.io.tmpdir"));
 			System.out.println(tmpDirectory.getAbsolutePath());
 		}
+		if (cmd.hasOption("handles")) {
+			maxTabixHandles = Integer.parseInt(cmd.getOptionValue("handles"));
+		} else {
+			maxTabixHandles = RawCNVReader.DEFAULT_TABIX_HANDLES;
+		}
+		if (cmd.hasOption("blockcache")) {
+			blockCacheBytes = Long.parseLong(cmd.getOptionValue("blockcache")) << 20;
+		} else {
+			blockCacheBytes = BGZFBlockCache.DEFAULT_MAX_BYTES;
+		}
+		sweep = cmd.hasOption("sweep");
+		binary = cmd.hasOption("binary");
+		if (cmd.hasOption("t")) {
+			threads = Integer.parseInt(cmd.getOptionValue("t"));
+			if (threads == 0) {
+				threads = ParallelAnnotator.defaultThreads();
+			}
+		} else {
+			threads = 1;
+		}
 		
 	}
 	
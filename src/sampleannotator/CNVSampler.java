@@ -0,0 +1,152 @@
+package sampleannotator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import sampleannotator.resources.SampleLoader;
+import utilities.CNV;
+import utilities.ReferenceBundle;
+
+/**
+ * Draws a uniform random sample of CNVs (e.g. for manual QC plots) in a single pass over a PennCNV file, keeping a
+ * reservoir of up to N CNVs per stratum (everything, each copy type, or each sample). Only the sampled CNVs are annotated,
+ * and they are written in input order in the same format as 'Annotate'.
+ */
+public class CNVSampler {
+
+	public CNVSampler(String args[]) throws IOException {
+		
+		CNVSamplerOptions options = new CNVSamplerOptions(args);
+		
+		SampleLoader sampleLoader = new SampleLoader();
+		RawCNVReader reader = new RawCNVReader(options.getRawCNVs(), sampleLoader.getSampleTable(), options.getMaxTabixHandles(), ReferenceBundle.open(options.getReferenceBundle()));
+		
+		Random random = options.getSeed() == null ? new Random() : new Random(options.getSeed());
+		Map<String, Reservoir> reservoirs = new LinkedHashMap<String, Reservoir>();
+		
+		CNV cnv;
+		while ((cnv = reader.readNextCNV()) != null) {
+			
+			if (options.getCopyType() != null && cnv.getCopyType() != options.getCopyType()) {
+				continue;
+			}
+			String stratum = options.getStrata().getStratum(cnv);
+			Reservoir reservoir = reservoirs.get(stratum);
+			if (reservoir == null) {
+				reservoir = new Reservoir(options.getSampleSize());
+				reservoirs.put(stratum, reservoir);
+			}
+			reservoir.offer(reader.getNextLine() - 1, cnv, random);
+			
+		}
+		
+		List<SampledCNV> sampled = new ArrayList<SampledCNV>();
+		for (Map.Entry<String, Reservoir> entry : reservoirs.entrySet()) {
+			Reservoir reservoir = entry.getValue();
+			sampled.addAll(reservoir.sampled);
+			System.err.println("Sampled " + reservoir.sampled.size() + " of " + reservoir.seen + " CNVs from " + options.getStrata() + " stratum " + entry.getKey());
+		}
+		Collections.sort(sampled, LINE_ORDER);
+		
+		List<CNV> sampledCNVs = new ArrayList<CNV>(sampled.size());
+		for (SampledCNV sample : sampled) {
+			sampledCNVs.add(sample.cnv);
+		}
+		
+		reader.annotateReference(sampledCNVs);
+		for (List<CNV> sampleCNVs : RawCNVReader.groupBySample(sampledCNVs).values()) {
+			reader.annotateSample(sampleCNVs, true);
+		}
+		
+		AnnotatedCNVWriter writer = new AnnotatedCNVWriter(new BufferedWriter(new FileWriter(new File(options.getOutput().getAbsolutePath() + ".txt"))));
+		writer.writeHeader();
+		writer.write(sampledCNVs);
+		writer.close();
+		reader.close();
+		
+	}
+	
+	public enum Strata {
+		
+		NONE {
+			@Override
+			public String getStratum(CNV cnv) {
+				return "all";
+			}
+		},
+		COPYTYPE {
+			@Override
+			public String getStratum(CNV cnv) {
+				return cnv.getCopyType().name();
+			}
+		},
+		SAMPLE {
+			@Override
+			public String getStratum(CNV cnv) {
+				return cnv.getSampleInformation().getSplitFile().getName();
+			}
+		};
+		
+		public abstract String getStratum(CNV cnv);
+		
+	}
+	
+	/**
+	 * Algorithm R: the i-th CNV offered replaces a random reservoir slot with probability size / i, so every CNV seen is
+	 * equally likely to be kept.
+	 */
+	private static class Reservoir {
+		
+		private int size;
+		private long seen;
+		private List<SampledCNV> sampled;
+		
+		private Reservoir(int size) {
+			this.size = size;
+			seen = 0;
+			sampled = new ArrayList<SampledCNV>();
+		}
+		
+		private void offer(long line, CNV cnv, Random random) {
+			seen++;
+			if (sampled.size() < size) {
+				sampled.add(new SampledCNV(line, cnv));
+			} else {
+				long slot = Math.floorMod(random.nextLong(), seen);
+				if (slot < size) {
+					sampled.set((int) slot, new SampledCNV(line, cnv));
+				}
+			}
+		}
+		
+	}
+	
+	private static class SampledCNV {
+		
+		private long line;
+		private CNV cnv;
+		
+		private SampledCNV(long line, CNV cnv) {
+			this.line = line;
+			this.cnv = cnv;
+		}
+		
+	}
+	
+	private static final Comparator<SampledCNV> LINE_ORDER = new Comparator<SampledCNV>() {
+		@Override
+		public int compare(SampledCNV o1, SampledCNV o2) {
+			return Long.compare(o1.line, o2.line);
+		}
+	};
+	
+}
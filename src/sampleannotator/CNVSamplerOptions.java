@@ -0,0 +1,150 @@
+package sampleannotator;
+
+import java.io.File;
+
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import merger.CNVConverter.CopyType;
+import sampleannotator.CNVSampler.Strata;
+
+public class CNVSamplerOptions {
+
+	private Options options;
+	
+	private File rawCNVs;
+	private File output;
+	private int sampleSize;
+	private Strata strata;
+	private CopyType copyType;
+	private Long seed;
+	private File referenceBundle;
+	private int maxTabixHandles;
+	
+	public CNVSamplerOptions (String args[]) {
+		
+		options = setOptions();
+		loadOptions(args);
+		
+	}
+	
+	public File getRawCNVs() {
+		return rawCNVs;
+	}
+	public File getOutput() {
+		return output;
+	}
+	public int getSampleSize() {
+		return sampleSize;
+	}
+	public Strata getStrata() {
+		return strata;
+	}
+	/**
+	 * @return the only copy type to sample, or null to sample all
+	 */
+	public CopyType getCopyType() {
+		return copyType;
+	}
+	/**
+	 * @return random seed, or null for a different sample every run
+	 */
+	public Long getSeed() {
+		return seed;
+	}
+	public File getReferenceBundle() {
+		return referenceBundle;
+	}
+	public int getMaxTabixHandles() {
+		return maxTabixHandles;
+	}
+	
+	private Options setOptions() {
+		
+		Options options = new Options();
+		
+		Option rawCNVs = new Option("p", true, "Path to CNVs generated by PennCNV.");
+		rawCNVs.setRequired(true);
+		options.addOption(rawCNVs);
+		Option output = new Option("o", true, "Path to output file.");
+		output.setRequired(true);
+		options.addOption(output);
+		Option sampleSize = new Option("n", true, "Number of CNVs to sample from each stratum.");
+		sampleSize.setRequired(true);
+		options.addOption(sampleSize);
+		
+		options.addOption(new Option("by", true, "Stratify by 'none', 'copytype' or 'sample' [none]."));
+		options.addOption(new Option("ct", true, "Only sample this copy type (DEL or DUP)."));
+		options.addOption(new Option("seed", true, "Random seed, to draw the same sample again."));
+		options.addOption(new Option("ref", true, "Reference bundle built by 'Compile'. If not included, reference files are parsed from their default locations."));
+		options.addOption(new Option("handles", true, "Maximum number of per-sample tabix files to hold open at once, counted separately for LRR/BAF and WES L2R files [64]."));
+		options.addOption(new Option("help", false, "Print help message."));
+		
+		return options;
+		
+	}
+	
+	private void loadOptions(String args[]) {
+		
+		CommandLineParser parser = new BasicParser();
+		CommandLine cmd = null;
+				
+		try {
+			 cmd = parser.parse(options, args);
+		} catch (org.apache.commons.cli.ParseException e) {
+			System.out.println();
+			ThrowHelp(e.getMessage());
+		}
+			
+		if (cmd.hasOption("help")) {
+			ThrowHelp("");
+		}
+		
+		rawCNVs = new File(cmd.getOptionValue("p"));
+		output = new File(cmd.getOptionValue("o"));
+		sampleSize = Integer.parseInt(cmd.getOptionValue("n"));
+		if (cmd.hasOption("by")) {
+			strata = Strata.valueOf(cmd.getOptionValue("by").toUpperCase());
+		} else {
+			strata = Strata.NONE;
+		}
+		if (cmd.hasOption("ct")) {
+			copyType = CopyType.valueOf(cmd.getOptionValue("ct").toUpperCase());
+		} else {
+			copyType = null;
+		}
+		if (cmd.hasOption("seed")) {
+			seed = Long.parseLong(cmd.getOptionValue("seed"));
+		} else {
+			seed = null;
+		}
+		if (cmd.hasOption("ref")) {
+			referenceBundle = new File(cmd.getOptionValue("ref"));
+		} else {
+			referenceBundle = null;
+		}
+		if (cmd.hasOption("handles")) {
+			maxTabixHandles = Integer.parseInt(cmd.getOptionValue("handles"));
+		} else {
+			maxTabixHandles = RawCNVReader.DEFAULT_TABIX_HANDLES;
+		}
+		
+	}
+	
+	private void ThrowHelp(String top) {
+		String header = "Axiom Array CNV Annotator\n\n\n";
+		String footer = "\n\n(c) Eugene Gardner 2018";
+		String usage = "java -jar CNVAnnotator.jar Sample <options>";
+		System.out.println();
+		System.out.println(top);
+		HelpFormatter formatter = new HelpFormatter();
+		System.out.println();
+		formatter.printHelp(9999, usage, header, options, footer);
+		System.exit(1);
+	}
+	
+}
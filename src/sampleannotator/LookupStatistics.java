@@ -0,0 +1,176 @@
+package sampleannotator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and times every lookup {@link RawCNVReader} makes against its annotation sources: number of queries, records
+ * (lines or features) visited, bytes of text decoded and a latency histogram with power-of-two nanosecond buckets.
+ *
+ * Recording a lookup is a handful of uncontended atomic adds, so statistics are always collected. One instance is shared
+ * by a reader and all of its {@link ParallelAnnotator} workers.
+ */
+public class LookupStatistics {
+
+	public enum Source {
+		LRRBAF("LRR/BAF"),
+		WES_CONVEX("WES CONVEX"),
+		WES_XHMM("WES XHMM"),
+		WES_CLAMMS("WES CLAMMS"),
+		WES_CANOES("WES CANOES"),
+		AXIOM_PROBES("Axiom probes"),
+		BAITS("Exome baits"),
+		WES_L2R("WES L2R");
+
+		private String label;
+
+		private Source(String label) {
+			this.label = label;
+		}
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	// Bucket x holds latencies in [2^(x-1), 2^x) ns; bucket 0 is 0 ns
+	private static final int BUCKETS = 64;
+
+	private Map<Source, SourceStatistics> sources;
+
+	public LookupStatistics() {
+		sources = new EnumMap<Source, SourceStatistics>(Source.class);
+		for (Source source : Source.values()) {
+			sources.put(source, new SourceStatistics());
+		}
+	}
+
+	/**
+	 * @param startNanos {@link System#nanoTime()} when the lookup started
+	 * @param records lines or features the lookup visited
+	 * @param bytes bytes of text decoded, 0 for in-memory sources
+	 */
+	public void record(Source source, long startNanos, long records, long bytes) {
+		sources.get(source).record(System.nanoTime() - startNanos, records, bytes);
+	}
+
+	/**
+	 * @return one line per source that was queried: queries, records, MiB decoded, total time and latency percentiles
+	 */
+	public String getSummary() {
+
+		StringBuilder summary = new StringBuilder();
+		summary.append(String.format("%-14s%12s%14s%10s%12s%10s%10s%10s%10s", "Source", "Queries", "Records", "MiB", "Total s", "p50 us", "p90 us", "p99 us", "Max us"));
+		for (Map.Entry<Source, SourceStatistics> entry : sources.entrySet()) {
+			SourceStatistics stats = entry.getValue();
+			long queries = stats.queries.sum();
+			if (queries == 0) {
+				continue;
+			}
+			summary.append(String.format("%n%-14s%12d%14d%10.1f%12.2f%10.1f%10.1f%10.1f%10.1f",
+					entry.getKey().getLabel(),
+					queries,
+					stats.records.sum(),
+					stats.bytes.sum() / 1048576.0,
+					stats.nanos.sum() / 1e9,
+					stats.getPercentile(0.50) / 1e3,
+					stats.getPercentile(0.90) / 1e3,
+					stats.getPercentile(0.99) / 1e3,
+					stats.maxNanos.get() / 1e3));
+		}
+		return summary.toString();
+
+	}
+
+	/**
+	 * Writes a tab-delimited table with one row per source. Percentiles are the upper bound of the histogram bucket they
+	 * fall in, capped at the maximum; <code>histogram</code> is the comma-separated count of every bucket, where bucket x
+	 * covers [2^(x-1), 2^x) ns.
+	 */
+	public void write(File statsFile) throws IOException {
+
+		BufferedWriter statsWriter = new BufferedWriter(new FileWriter(statsFile));
+		statsWriter.write("source\tqueries\trecords\tbytes\ttotal_ns\tp50_ns\tp90_ns\tp99_ns\tmax_ns\thistogram\n");
+		for (Map.Entry<Source, SourceStatistics> entry : sources.entrySet()) {
+			SourceStatistics stats = entry.getValue();
+			statsWriter.write(entry.getKey().name() + "\t" +
+					stats.queries.sum() + "\t" +
+					stats.records.sum() + "\t" +
+					stats.bytes.sum() + "\t" +
+					stats.nanos.sum() + "\t" +
+					stats.getPercentile(0.50) + "\t" +
+					stats.getPercentile(0.90) + "\t" +
+					stats.getPercentile(0.99) + "\t" +
+					stats.maxNanos.get() + "\t");
+			for (int x = 0; x < BUCKETS; x++) {
+				if (x > 0) {
+					statsWriter.write(",");
+				}
+				statsWriter.write(Long.toString(stats.histogram.get(x)));
+			}
+			statsWriter.write("\n");
+		}
+		statsWriter.close();
+
+	}
+
+	private static class SourceStatistics {
+
+		private LongAdder queries;
+		private LongAdder records;
+		private LongAdder bytes;
+		private LongAdder nanos;
+		private AtomicLong maxNanos;
+		private AtomicLongArray histogram;
+
+		private SourceStatistics() {
+			queries = new LongAdder();
+			records = new LongAdder();
+			bytes = new LongAdder();
+			nanos = new LongAdder();
+			maxNanos = new AtomicLong();
+			histogram = new AtomicLongArray(BUCKETS);
+		}
+
+		private void record(long elapsed, long recordCount, long byteCount) {
+			queries.increment();
+			records.add(recordCount);
+			bytes.add(byteCount);
+			nanos.add(elapsed);
+			histogram.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(elapsed), BUCKETS - 1));
+			long max;
+			while (elapsed > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, elapsed));
+		}
+
+		/**
+		 * @return upper bound, in ns, of the bucket holding the <code>quantile</code>th latency (capped at the maximum)
+		 */
+		private long getPercentile(double quantile) {
+			long total = 0;
+			for (int x = 0; x < BUCKETS; x++) {
+				total += histogram.get(x);
+			}
+			if (total == 0) {
+				return 0;
+			}
+			long rank = (long) Math.ceil(quantile * total);
+			long seen = 0;
+			for (int x = 0; x < BUCKETS; x++) {
+				seen += histogram.get(x);
+				if (seen >= rank) {
+					// No latency was higher than the maximum, however wide its bucket
+					return x == 0 ? 0 : Math.min((1L << Math.min(x, 62)) - 1, maxNanos.get());
+				}
+			}
+			return maxNanos.get();
+		}
+
+	}
+
+}
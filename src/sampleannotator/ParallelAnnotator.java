@@ -0,0 +1,140 @@
+package sampleannotator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import sampleannotator.resources.SampleInformation;
+import utilities.CNV;
+import utilities.TabixReaderPool;
+
+/**
+ * Annotates CNVs on a pool of worker threads. CNVs are partitioned by sample so each sample's LRR/BAF file is only ever
+ * touched by one thread at a time, and every worker thread owns its own {@link RawCNVReader} (and so its own tabix
+ * readers, up to -handles of them per thread). CNVs are annotated in place, so the caller's list keeps its input order
+ * and prints exactly as a single-threaded run would.
+ */
+public class ParallelAnnotator implements Closeable {
+
+	private RawCNVReader reader;
+	private ExecutorService executor;
+	private boolean sweep;
+	private List<RawCNVReader> workers;
+	private ThreadLocal<RawCNVReader> workerReader;
+
+	public ParallelAnnotator(RawCNVReader reader, int threads, boolean sweep) {
+
+		this.reader = reader;
+		this.sweep = sweep;
+		executor = Executors.newFixedThreadPool(threads);
+		workers = new ArrayList<RawCNVReader>();
+		workerReader = new ThreadLocal<RawCNVReader>();
+
+	}
+
+	public void annotate(List<CNV> cnvs) throws IOException {
+
+		// Reference annotations sweep each chromosome's CNVs together, which is cheap enough to do here for the whole batch
+		reader.annotateReference(cnvs);
+		
+		Map<SampleInformation, List<CNV>> sampleCNVs = RawCNVReader.groupBySample(cnvs);
+		List<Future<Void>> results = new ArrayList<Future<Void>>();
+
+		for (List<CNV> currentSample : sampleCNVs.values()) {
+			results.add(executor.submit(new SampleTask(currentSample)));
+		}
+
+		for (Future<Void> result : results) {
+			try {
+				result.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while annotating CNVs", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				} else {
+					throw new IOException("Worker failed while annotating CNVs", e.getCause());
+				}
+			}
+		}
+
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		executor.shutdown();
+
+		synchronized (workers) {
+			List<TabixReaderPool> lrrbafPools = new ArrayList<TabixReaderPool>();
+			List<TabixReaderPool> l2rPools = new ArrayList<TabixReaderPool>();
+			for (RawCNVReader worker : workers) {
+				lrrbafPools.add(worker.getLRRBAFReaders());
+				l2rPools.add(worker.getWESL2RReaders());
+			}
+			System.err.println("Annotation workers: " + workers.size());
+			System.err.println("LRR/BAF tabix reader cache: " + summarisePools(lrrbafPools));
+			System.err.println("WES L2R tabix reader cache: " + summarisePools(l2rPools));
+			for (RawCNVReader worker : workers) {
+				worker.close();
+			}
+			workers.clear();
+		}
+
+	}
+
+	private String summarisePools(List<TabixReaderPool> pools) {
+		long hits = 0;
+		long misses = 0;
+		long evictions = 0;
+		for (TabixReaderPool pool : pools) {
+			hits += pool.getHits();
+			misses += pool.getMisses();
+			evictions += pool.getEvictions();
+		}
+		return "hits=" + hits + " misses=" + misses + " evictions=" + evictions;
+	}
+
+	public static int defaultThreads() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	private RawCNVReader getWorker() throws IOException {
+
+		RawCNVReader worker = workerReader.get();
+		if (worker == null) {
+			worker = reader.newWorker();
+			workerReader.set(worker);
+			synchronized (workers) {
+				workers.add(worker);
+			}
+		}
+		return worker;
+
+	}
+
+	private class SampleTask implements Callable<Void> {
+
+		private List<CNV> sampleCNVs;
+
+		private SampleTask(List<CNV> sampleCNVs) {
+			this.sampleCNVs = sampleCNVs;
+		}
+
+		@Override
+		public Void call() throws IOException {
+			getWorker().annotateSample(sampleCNVs, sweep);
+			return null;
+		}
+
+	}
+
+}
@@ -0,0 +1,313 @@
+package sampleannotator;
+
+/**
+ * Decodes the fields we need from one PennCNV rawcnv record, e.g.
+ *
+ * <pre>chr1:1000-2000  numsnp=12  length=1,001  state2,cn=1  /path/split1.a123456.txt  startsnp=AX-1  endsnp=AX-2  conf=15.2</pre>
+ *
+ * without regular expressions or splitting the line. One instance is reused for every line: {@link #decode(String)}
+ * records where each whitespace-delimited field starts and ends (only the part of the line before the first tab is
+ * PennCNV's, anything after belongs to the LRR/BAF columns), and the getters parse fields on demand. Results are the
+ * same as splitting on whitespace, matching the location against <code>chr([\dXY]{1,2}):(\d+)-(\d+)</code> and taking
+ * the comma-stripped number after '=' for numsnp, cn and conf.
+ *
+ * Not thread-safe.
+ */
+public class PennCNVDecoder {
+
+	private static final int LOCATION = 0;
+	private static final int NUMSNP = 1;
+	private static final int STATE = 3;
+	private static final int FILE = 4;
+	private static final int CONF = 7;
+	private static final int MAX_FIELDS = 8;
+	// Decimals with at most this many digits are exact as a long, and so as a double
+	private static final int MAX_FAST_DIGITS = 15;
+	private static final double POWERS_OF_TEN[] = new double[MAX_FAST_DIGITS + 1];
+
+	// Canonical chromosome strings, so decoding a location doesn't allocate
+	private static final String CHR_SYMBOLS = "0123456789XY";
+	private static final String CHR_NAMES[] = new String[CHR_SYMBOLS.length() * (CHR_SYMBOLS.length() + 1)];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int x = 1; x < POWERS_OF_TEN.length; x++) {
+			POWERS_OF_TEN[x] = POWERS_OF_TEN[x - 1] * 10;
+		}
+		for (int x = 0; x < CHR_SYMBOLS.length(); x++) {
+			CHR_NAMES[x] = String.valueOf(CHR_SYMBOLS.charAt(x));
+			for (int y = 0; y < CHR_SYMBOLS.length(); y++) {
+				CHR_NAMES[CHR_SYMBOLS.length() + (x * CHR_SYMBOLS.length()) + y] = "" + CHR_SYMBOLS.charAt(x) + CHR_SYMBOLS.charAt(y);
+			}
+		}
+	}
+
+	private String line;
+	private int fieldStarts[];
+	private int fieldEnds[];
+	private int numFields;
+	private StringBuilder stripped;
+
+	private String chr;
+	private int start;
+	private int end;
+
+	public PennCNVDecoder() {
+		fieldStarts = new int[MAX_FIELDS];
+		fieldEnds = new int[MAX_FIELDS];
+		stripped = new StringBuilder();
+	}
+
+	/**
+	 * Locates the fields of <code>line</code> and decodes its location. Other fields are parsed by their getters.
+	 */
+	public void decode(String line) {
+
+		this.line = line;
+		numFields = 0;
+
+		int limit = line.indexOf('\t');
+		if (limit == -1) {
+			limit = line.length();
+		}
+
+		int pos = 0;
+		// Like String.split, leading whitespace gives an empty first field and trailing whitespace gives nothing
+		if (limit > 0 && isWhitespace(line.charAt(0))) {
+			addField(0, 0);
+			while (pos < limit && isWhitespace(line.charAt(pos))) {
+				pos++;
+			}
+		}
+		while (pos < limit && numFields < MAX_FIELDS) {
+			int fieldStart = pos;
+			while (pos < limit && !isWhitespace(line.charAt(pos))) {
+				pos++;
+			}
+			addField(fieldStart, pos);
+			while (pos < limit && isWhitespace(line.charAt(pos))) {
+				pos++;
+			}
+		}
+
+		if (numFields <= FILE) {
+			throw new IllegalArgumentException("Malformed PennCNV line, expected at least " + (FILE + 1) + " fields: " + line);
+		}
+
+		decodeLocation();
+
+	}
+
+	/**
+	 * @return chromosome without the 'chr' prefix, or null if the location field isn't of the form chrN:start-end
+	 */
+	public String getChr() {
+		return chr;
+	}
+	/**
+	 * @return start coordinate, -1 if the location couldn't be decoded
+	 */
+	public int getStart() {
+		return start;
+	}
+	/**
+	 * @return end coordinate, -1 if the location couldn't be decoded
+	 */
+	public int getEnd() {
+		return end;
+	}
+	public int getProbeCount() {
+		return (int) parseEqualsValue(NUMSNP);
+	}
+	public int getCopyNumber() {
+		return (int) parseEqualsValue(STATE);
+	}
+	public double getConfidence() {
+		return parseEqualsValue(CONF);
+	}
+	/**
+	 * @return the split file path exactly as written in the record
+	 */
+	public String getSplitFilePath() {
+		return line.substring(fieldStarts[FILE], fieldEnds[FILE]);
+	}
+	/**
+	 * @return the file name of the split file path (the same as <code>new File(path).getName()</code>)
+	 */
+	public String getSplitFileName() {
+		int nameEnd = fieldEnds[FILE];
+		while (nameEnd > fieldStarts[FILE] + 1 && line.charAt(nameEnd - 1) == '/') {
+			nameEnd--;
+		}
+		int nameStart = line.lastIndexOf('/', nameEnd - 1) + 1;
+		if (nameStart < fieldStarts[FILE]) {
+			nameStart = fieldStarts[FILE];
+		}
+		return line.substring(nameStart, nameEnd);
+	}
+
+	/**
+	 * @return true if <code>fileName</code> looks like a split sample file, i.e. matches <code>split\d+\.a\d{6}\S*</code>
+	 */
+	public static boolean isSplitSampleName(String fileName) {
+
+		if (!fileName.startsWith("split")) {
+			return false;
+		}
+		int pos = 5;
+		int digits = countDigits(fileName, pos);
+		if (digits == 0) {
+			return false;
+		}
+		pos += digits;
+		if (pos + 1 >= fileName.length() || fileName.charAt(pos) != '.' || fileName.charAt(pos + 1) != 'a') {
+			return false;
+		}
+		pos += 2;
+		if (countDigits(fileName, pos) < 6) {
+			return false;
+		}
+		for (int x = pos + 6; x < fileName.length(); x++) {
+			if (isWhitespace(fileName.charAt(x))) {
+				return false;
+			}
+		}
+		return true;
+
+	}
+
+	private void addField(int fieldStart, int fieldEnd) {
+		fieldStarts[numFields] = fieldStart;
+		fieldEnds[numFields] = fieldEnd;
+		numFields++;
+	}
+
+	private void decodeLocation() {
+
+		chr = null;
+		start = -1;
+		end = -1;
+
+		int pos = fieldStarts[LOCATION];
+		int fieldEnd = fieldEnds[LOCATION];
+
+		if (!line.startsWith("chr", pos)) {
+			return;
+		}
+		pos += 3;
+
+		int chrStart = pos;
+		while (pos < fieldEnd && pos - chrStart < 2 && CHR_SYMBOLS.indexOf(line.charAt(pos)) != -1) {
+			pos++;
+		}
+		int chrLength = pos - chrStart;
+		if (chrLength == 0 || pos >= fieldEnd || line.charAt(pos) != ':') {
+			return;
+		}
+		pos++;
+
+		int startDigits = countDigits(line, pos, fieldEnd);
+		if (startDigits == 0 || pos + startDigits >= fieldEnd || line.charAt(pos + startDigits) != '-') {
+			return;
+		}
+		int endDigits = countDigits(line, pos + startDigits + 1, fieldEnd);
+		if (endDigits == 0 || pos + startDigits + 1 + endDigits != fieldEnd) {
+			return;
+		}
+
+		int first = CHR_SYMBOLS.indexOf(line.charAt(chrStart));
+		if (chrLength == 1) {
+			chr = CHR_NAMES[first];
+		} else {
+			chr = CHR_NAMES[CHR_SYMBOLS.length() + (first * CHR_SYMBOLS.length()) + CHR_SYMBOLS.indexOf(line.charAt(chrStart + 1))];
+		}
+		start = parseInt(pos, pos + startDigits);
+		end = parseInt(pos + startDigits + 1, fieldEnd);
+
+	}
+
+	// Value between the first and second '=' of a field, with commas removed
+	private double parseEqualsValue(int field) {
+
+		if (field >= numFields) {
+			throw new IllegalArgumentException("Malformed PennCNV line, expected at least " + (field + 1) + " fields: " + line);
+		}
+
+		int fieldEnd = fieldEnds[field];
+		int valueStart = line.indexOf('=', fieldStarts[field]);
+		if (valueStart == -1 || valueStart >= fieldEnd) {
+			throw new NumberFormatException("No value found in PennCNV field: " + line.substring(fieldStarts[field], fieldEnd));
+		}
+		valueStart++;
+		int valueEnd = line.indexOf('=', valueStart);
+		if (valueEnd == -1 || valueEnd > fieldEnd) {
+			valueEnd = fieldEnd;
+		}
+
+		// Plain (optionally comma-grouped) decimals, which is what numsnp, cn and conf always are, don't need a String. The
+		// digits and the power of ten are both exact doubles, so the one division rounds as Double.parseDouble does.
+		long value = 0;
+		int digits = 0;
+		int fractionDigits = -1;
+		boolean simple = valueEnd > valueStart;
+		boolean negative = false;
+		for (int x = valueStart; x < valueEnd && simple; x++) {
+			char c = line.charAt(x);
+			if (c >= '0' && c <= '9') {
+				value = (value * 10) + (c - '0');
+				digits++;
+				if (fractionDigits != -1) {
+					fractionDigits++;
+				}
+				simple = digits <= MAX_FAST_DIGITS;
+			} else if (c == '-' && x == valueStart) {
+				negative = true;
+			} else if (c == '.' && fractionDigits == -1) {
+				fractionDigits = 0;
+			} else if (c != ',') {
+				simple = false;
+			}
+		}
+		if (simple && digits > 0) {
+			double decimal = fractionDigits > 0 ? value / POWERS_OF_TEN[fractionDigits] : value;
+			return negative ? -decimal : decimal;
+		}
+
+		stripped.setLength(0);
+		for (int x = valueStart; x < valueEnd; x++) {
+			if (line.charAt(x) != ',') {
+				stripped.append(line.charAt(x));
+			}
+		}
+		return Double.parseDouble(stripped.toString());
+
+	}
+
+	private int parseInt(int from, int to) {
+		long value = 0;
+		for (int x = from; x < to; x++) {
+			value = (value * 10) + (line.charAt(x) - '0');
+			if (value > Integer.MAX_VALUE) {
+				throw new NumberFormatException("For input string: \"" + line.substring(from, to) + "\"");
+			}
+		}
+		return (int) value;
+	}
+
+	private static int countDigits(String s, int from) {
+		return countDigits(s, from, s.length());
+	}
+	private static int countDigits(String s, int from, int to) {
+		int x = from;
+		while (x < to && s.charAt(x) >= '0' && s.charAt(x) <= '9') {
+			x++;
+		}
+		return x - from;
+	}
+
+	// Same characters as the regex class \s
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r' || c == '\t';
+	}
+
+}
@@ -4,61 +4,146 @@ import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.text.DecimalFormat;
+import java.io.InputStreamReader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 
 import htsjdk.samtools.util.Interval;
-import htsjdk.samtools.util.IntervalTree;
-import htsjdk.samtools.util.IntervalTree.Node;
-import htsjdk.tribble.readers.TabixReader;
 import htsjdk.tribble.readers.TabixReader.Iterator;
 import merger.CNVConverter.CopyType;
 import sampleannotator.resources.SampleInformation;
+import sampleannotator.resources.SampleTable;
+import utilities.BGZFBlockCache;
 import utilities.CNV;
+import utilities.CachedTabixReader;
+import utilities.CompressedInput;
+import utilities.DecimalPattern;
+import utilities.DelimitedLine;
+import utilities.FeatureCountIndex;
+import utilities.IntervalTrack;
+import utilities.IntervalTrack.ChrIntervals;
+import utilities.LineOffsetIndex;
+import utilities.PrimitiveStatistics;
+import utilities.ReferenceBundle;
+import utilities.ReferenceBundle.CytobandInfo;
+import utilities.ResourcePaths;
+import utilities.TabixReaderPool;
 
 public class RawCNVReader implements Closeable {
 
-	private Set<String> samples;
+	private BitSet samples; // IDs of split samples seen
 	private Set<String> chrs;
-	private Map<String, SampleInformation> sampleInformation;
+	private SampleTable sampleTable;
+	private File cnvFile;
 	private BufferedReader cnvReader;
-	private TabixReader axiomTabix;
-	private TabixReader baitTabix;
-	private Map<String,IntervalTree<String>> dgvDels;
-	private Map<String,IntervalTree<String>> dgvDups;
+	private long nextLine; // line number of the next line cnvReader returns
+	private PennCNVDecoder pennCNVDecoder;
+	private FeatureCountIndex axiomProbes;
+	private FeatureCountIndex baits;
+	private Map<WESCallset, WESCallIndex> wesCalls;
+	private TabixReaderPool lrrbafReaders;
+	private WESL2RReader wesL2R;
+	private ArrayDeque<PrimitiveStatistics> statisticsPool;
+	private LookupStatistics lookupStatistics;
+	private IntervalTrack dgvDels;
+	private IntervalTrack dgvDups;
 	Map<String, CytobandInfo> cytoMap;
 	
-	public RawCNVReader(File CNVs, Map<String, SampleInformation> sampleInformation) throws IOException {
-		
-		cnvReader = new BufferedReader(new FileReader(CNVs));
-		samples = new HashSet<String>();
+	public static final int DEFAULT_TABIX_HANDLES = 64;
+	private static final DecimalPattern SUMMARY_DIGITS = new DecimalPattern("##.#######");
+	private static final int SWEEP_MAX_GAP = 1000000;
+	
+	public RawCNVReader(File CNVs, SampleTable sampleTable) throws IOException {
+		this(CNVs, sampleTable, DEFAULT_TABIX_HANDLES);
+	}
+	/**
+	 * @param maxTabixHandles Maximum number of per-sample tabix files held open at once, counted separately for LRR/BAF
+	 * and WES L2R files
+	 */
+	public RawCNVReader(File CNVs, SampleTable sampleTable, int maxTabixHandles) throws IOException {
+		this(CNVs, sampleTable, maxTabixHandles, new ReferenceBundle());
+	}
+	/**
+	 * @param reference DGV gold standard and cytoband source, either the original text files or a compiled bundle
+	 */
+	public RawCNVReader(File CNVs, SampleTable sampleTable, int maxTabixHandles, ReferenceBundle reference) throws IOException {
+		
+		cnvFile = CNVs;
+		cnvReader = CompressedInput.openReader(CNVs);
+		nextLine = 1;
+		pennCNVDecoder = new PennCNVDecoder();
+		samples = new BitSet();
 		chrs = new HashSet<String>();
-		this.sampleInformation = sampleInformation;
+		this.sampleTable = sampleTable;
 				
-		// Build GS Del/Dups to parse against our CNV set
-		dgvDels = new HashMap<String,IntervalTree<String>>();
-		dgvDups = new HashMap<String,IntervalTree<String>>();
-		BuildGoldStandard();
+		// GS Del/Dups to parse against our CNV set
+		dgvDels = reference.getDGVDels();
+		dgvDups = reference.getDGVDups();
+		
+		cytoMap = reference.getCytobands();
+		
+		// Probe and bait coordinates are small enough to hold in memory, which makes overlap counts a binary search
+		axiomProbes = new FeatureCountIndex(ResourcePaths.get(ResourcePaths.AXIOM_PROBES));
+		baits = new FeatureCountIndex(ResourcePaths.get(ResourcePaths.EXOME_BAITS));
+		System.err.println("Total Axiom probes loaded: " + axiomProbes.getTotalFeatures());
+		System.err.println("Total exome baits loaded: " + baits.getTotalFeatures());
+		
+		// Each WES callset is only read into memory the first time a WES sample needs it
+		wesCalls = new EnumMap<WESCallset, WESCallIndex>(WESCallset.class);
+		for (WESCallset callset : WESCallset.values()) {
+			wesCalls.put(callset, new WESCallIndex(callset.getCallFile()));
+		}
 		
-		File axiomProbes = new File("/lustre/scratch115/projects/interval_cnv/calling/reference/axiom_probes.bed.gz");
-		axiomTabix = new TabixReader(axiomProbes.getAbsolutePath(),axiomProbes.getAbsolutePath() + ".tbi");
+		lookupStatistics = new LookupStatistics();
+		openTabixReaders(maxTabixHandles);
+		statisticsPool = new ArrayDeque<PrimitiveStatistics>();
 		
-		File baits = new File("/lustre/scratch115/projects/interval_cnv/calling/sanger_exome_cnvs/exome_baits/bait_regions_unpadded.merge500.bed.gz");
-		baitTabix = new TabixReader(baits.getAbsolutePath(),baits.getAbsolutePath() + ".tbi");
+	}
+	/**
+	 * Worker copy used by {@link ParallelAnnotator}. Shares the (read-only) sample information, gold standard and cytoband
+	 * data with <code>parent</code> but opens its own tabix readers, since they are not thread-safe (the BGZF block cache behind them is shared). Workers cannot
+	 * read CNVs, only annotate them.
+	 */
+	private RawCNVReader(RawCNVReader parent, int maxTabixHandles) throws IOException {
+		
+		cnvFile = null;
+		cnvReader = null;
+		nextLine = -1;
+		pennCNVDecoder = null;
+		samples = parent.samples;
+		chrs = parent.chrs;
+		sampleTable = parent.sampleTable;
+		dgvDels = parent.dgvDels;
+		dgvDups = parent.dgvDups;
+		cytoMap = parent.cytoMap;
+		wesCalls = parent.wesCalls;
+		axiomProbes = parent.axiomProbes;
+		baits = parent.baits;
+		lookupStatistics = parent.lookupStatistics;
+		
+		openTabixReaders(maxTabixHandles);
+		statisticsPool = new ArrayDeque<PrimitiveStatistics>();
 		
-		cytoMap = buildCytoband(new File("/lustre/scratch115/projects/interval_cnv/calling/reference/cytoBand.txt"));
+	}
+	public RawCNVReader newWorker() throws IOException {
+		return new RawCNVReader(this, lrrbafReaders.getMaxHandles());
+	}
+	private void openTabixReaders(int maxTabixHandles) throws IOException {
+		
+		lrrbafReaders = new TabixReaderPool(maxTabixHandles);
+		wesL2R = new WESL2RReader(maxTabixHandles, lookupStatistics);
 		
 	}
 	
@@ -66,174 +151,252 @@ public class RawCNVReader implements Closeable {
 		return chrs;
 	}
 	public Set<String> getSamples() {
-		return samples;
+		Set<String> sampleNames = new HashSet<String>();
+		for (int id = samples.nextSetBit(0); id != -1; id = samples.nextSetBit(id + 1)) {
+			sampleNames.add(sampleTable.getName(id));
+		}
+		return sampleNames;
+	}
+	/**
+	 * @return lookup counts and latencies for this reader and all of its workers
+	 */
+	public LookupStatistics getLookupStatistics() {
+		return lookupStatistics;
+	}
+	TabixReaderPool getLRRBAFReaders() {
+		return lrrbafReaders;
+	}
+	TabixReaderPool getWESL2RReaders() {
+		return wesL2R.getReaderPool();
 	}
 	public void close() throws IOException {
-		cnvReader.close();
-		baitTabix.close();
-		axiomTabix.close();
-		WESTabix.CONVEX.close();
-		WESTabix.XHMM.close();
-		WESTabix.CLAMMS.close();
-		WESTabix.CANOES.close();
+		// Only the parent reader has a CNV file; workers leave the summaries to it
+		if (cnvReader != null) {
+			cnvReader.close();
+			long wesFootprint = 0;
+			for (WESCallIndex index : wesCalls.values()) {
+				wesFootprint += index.getFootprint();
+			}
+			System.err.println("WES call index memory: ~" + (wesFootprint / 1024) + " KiB");
+			System.err.println("LRR/BAF tabix reader cache: " + lrrbafReaders.getSummary());
+			System.err.println("WES L2R tabix reader cache: " + wesL2R.getReaderPool().getSummary());
+			System.err.println("BGZF block cache: " + BGZFBlockCache.getShared().getSummary());
+			System.err.println("Annotation source lookups:");
+			System.err.println(lookupStatistics.getSummary());
+		}
+		lrrbafReaders.close();
+		wesL2R.close();
 
 	}
 	
-	private void BuildGoldStandard() throws IOException {
-		File CNVGoldStandard = new File("/lustre/scratch115/projects/interval_cnv/calling/reference/DGV.GS.March2016.50percent.GainLossSep.Final.hg19.bed");
-		BufferedReader bedReader = new BufferedReader(new FileReader(CNVGoldStandard));
+	/**
+	 * Reads on to the next CNV from a sample that passed QC.
+	 * 
+	 * @return the CNV (unannotated), or null at the end of the file
+	 */
+	public CNV readNextCNV() throws NumberFormatException, IOException {
 		
-		dgvDels = new HashMap<String,IntervalTree<String>>();
-		dgvDups = new HashMap<String,IntervalTree<String>>();
-
 		String line;
-		String data[];
-		Pattern chrPattern = Pattern.compile("chr(\\S+)");
-		int totalDels = 0;
-		int totalDups = 0;
+		while ((line = cnvReader.readLine()) != null) {
+			nextLine++;
+			CNV currentCNV = parseCNVLine(line);
+			if (currentCNV != null) {
+				return currentCNV;
+			}
+		}
+		return null;
+		
+	}
+	public List<CNV> getAllCNVs(int lineStart, int lineEnd) throws NumberFormatException, IOException {
+		
+		List<CNV> cnvs = readCNVs(lineStart, lineEnd);
+		annotate(cnvs, false);
+		return cnvs;
+		
+	}
+	/**
+	 * Same output as {@link #getAllCNVs(int, int)}, but LRR/BAF summaries are computed one sample at a time: each sample's
+	 * CNVs are sorted by position and its LRR/BAF file is read in a single forward pass rather than one random tabix query
+	 * per CNV. The returned list is in input order.
+	 */
+	public List<CNV> getAllCNVsBySample(int lineStart, int lineEnd) throws NumberFormatException, IOException {
+		
+		List<CNV> cnvs = readCNVs(lineStart, lineEnd);
+		annotate(cnvs, true);
+		return cnvs;
 		
-		while ((line = bedReader.readLine()) != null) {
+	}
+	/**
+	 * Attaches every annotation to a batch of CNVs, in place.
+	 * 
+	 * @param sweep Summarise LRR/BAF with a single pass over each sample's LRR/BAF file rather than one query per CNV
+	 */
+	public void annotate(List<CNV> cnvs, boolean sweep) throws NumberFormatException, IOException {
+		
+		annotateReference(cnvs);
+		for (List<CNV> sampleCNVs : groupBySample(cnvs).values()) {
+			annotateSample(sampleCNVs, sweep);
+		}
+		
+	}
+	/**
+	 * Attaches the remaining (WES and LRR/BAF) annotations to CNVs (in place) that all come from the same sample. The CNVs
+	 * must already have been through {@link #annotateReference(List)}.
+	 * 
+	 * @param sweep Summarise LRR/BAF with a single pass over the sample's LRR/BAF file rather than one query per CNV
+	 */
+	public void annotateSample(List<CNV> sampleCNVs, boolean sweep) throws NumberFormatException, IOException {
+		
+		for (CNV cnv : sampleCNVs) {
+			annotateCNV(cnv);
+			if (!sweep) {
+				cnv.setLRRBAF(getLRRBAF(cnv.getSampleInformation().getSplitFile(), cnv.getChr(), cnv.getStart(), cnv.getEnd()));
+			}
+		}
+		annotateWESL2R(sampleCNVs);
+		if (sweep) {
+			sweepLRRBAF(sampleCNVs);
+		}
+		
+	}
+	/**
+	 * Attaches the DGV gold standard hit, telomere/centromere distances and exome bait count to a batch of CNVs. CNVs are
+	 * sorted by position once per chromosome and walked in a single pass alongside the DGV, cytoband and bait tracks, rather
+	 * than searching each track from scratch for every CNV.
+	 */
+	public void annotateReference(List<CNV> cnvs) {
+		
+		Map<String, List<CNV>> chrCNVs = new HashMap<String, List<CNV>>();
+		for (CNV cnv : cnvs) {
+			List<CNV> currentList = chrCNVs.get(cnv.getChr());
+			if (currentList == null) {
+				currentList = new ArrayList<CNV>();
+				chrCNVs.put(cnv.getChr(), currentList);
+			}
+			currentList.add(cnv);
+		}
+		
+		for (Map.Entry<String, List<CNV>> chrEntry : chrCNVs.entrySet()) {
 			
-			data = line.split("\t");
+			String chr = chrEntry.getKey();
+			List<CNV> sortedCNVs = chrEntry.getValue();
+			Collections.sort(sortedCNVs, START_ORDER);
 			
-			String chr = data[0];
-			Matcher chrMatcher = chrPattern.matcher(chr);
-			if (chrMatcher.matches()) {
-				chr = chrMatcher.group(1);
-			}
-			int start = Integer.valueOf(data[1]);
-			int end = Integer.valueOf(data[2]);
-			String id = data[3];
-			String subType = data[6];
-						
-			if (subType.equals("Gain")) {
-				
-				totalDups++;
-				if (dgvDups.containsKey(chr)) {
-					dgvDups.get(chr).put(start, end, id);
-				} else {
-					IntervalTree<String> chrTree = new IntervalTree<String>();
-					chrTree.put(start, end, id);
-					dgvDups.put(chr, chrTree);
-				}
+			CytobandInfo cyto = cytoMap.get(chr);
+			DGVSweep delSweep = new DGVSweep(dgvDels, chr);
+			DGVSweep dupSweep = new DGVSweep(dgvDups, chr);
+			FeatureCountIndex.Cursor baitCursor = baits.cursor(chr);
+			
+			for (CNV cnv : sortedCNVs) {
 				
-			} else if (subType.equals("Loss")) {
+				int start = cnv.getStart();
+				int end = cnv.getEnd();
 				
-				totalDels++;
-				if (dgvDels.containsKey(chr)) {
-					dgvDels.get(chr).put(start, end, id);
+				if (cnv.getCopyType() == CopyType.DEL) {
+					cnv.setGoldStandardSV(delSweep.getBestHit(start, end));
 				} else {
-					IntervalTree<String> chrTree = new IntervalTree<String>();
-					chrTree.put(start, end, id);
-					dgvDels.put(chr, chrTree);
+					cnv.setGoldStandardSV(dupSweep.getBestHit(start, end));
 				}
+				cnv.setDistTel(getDistTelo(cyto, start, end));
+				cnv.setDistCen(getDistCen(cyto, start, end));
+				
+				// Checks for intersection to WES baits -- even if the CNV doesn't have WES data (for annotation purposes)
+				long startNanos = System.nanoTime();
+				int totalBaits = baitCursor.count(start, end);
+				lookupStatistics.record(LookupStatistics.Source.BAITS, startNanos, totalBaits, 0);
+				cnv.setTotalIntersectingBaits(totalBaits);
 				
 			}
-
-		}
 			
-		bedReader.close();
-		
-		System.err.println("Total Gold Standard DELs loaded: " + totalDels);
-		System.err.println("Total Gold Standard DUPs loaded: " + totalDups);
-		
-	}
-	
-	public CNV getRandomCNV() throws IOException {
-		
-		Random randomGen = new Random();
-		int testCNV = randomGen.nextInt(32695);
-		int lineNum = 0;
-		String line;
-		CNV cnv = null;
-		while ((line = cnvReader.readLine()) != null) {
-			if (lineNum == testCNV) {
-				cnv = parseCNVLine(line);
-				break;
-			}
-			lineNum++;
-		}
-		if (cnv == null) {
-			return null;
-		} else {
-			if (cnv.getCopyNumber() < 2) {
-				return cnv;
-			} else {
-				return null;
-			}
 		}
 		
 	}
-	public List<CNV> getAllCNVs(int lineStart, int lineEnd) throws NumberFormatException, IOException {
+	public List<CNV> readCNVs(int lineStart, int lineEnd) throws NumberFormatException, IOException {
 		
 		List<CNV> cnvs = new ArrayList<CNV>();
 		String line;
 		
 		int totalCNVs = 0;
-		int lineNum = 1;
 		
-		while ((line = cnvReader.readLine()) != null) {
-			if (lineNum > lineEnd) {
-				break;
-			} else if (lineNum >= lineStart) {
+		while (nextLine <= lineEnd && (line = cnvReader.readLine()) != null) {
+			if (nextLine >= lineStart) {
 				CNV currentCNV = parseCNVLine(line);
 				if (currentCNV != null) {
 					totalCNVs++;
 					cnvs.add(currentCNV);
 				}
 			}
-			lineNum++;
+			nextLine++;
 			
 		}
 		
 		System.err.println("Total CNVs loaded: " + totalCNVs);
 		return cnvs;
 		
+	}
+	/**
+	 * @return line number of the next line {@link #readCNVs(int, int)} will read
+	 */
+	public long getNextLine() {
+		return nextLine;
+	}
+	/**
+	 * Repositions the CNV file at the nearest indexed line at or before <code>lineNumber</code>, so a following
+	 * {@link #readCNVs(int, int)} only skips at most one index stride of lines rather than the whole start of the file.
+	 */
+	public void seekToLine(LineOffsetIndex index, long lineNumber) throws IOException {
+		
+		cnvReader.close();
+		cnvReader = new BufferedReader(new InputStreamReader(index.open(cnvFile, lineNumber)));
+		nextLine = index.getIndexedLine(lineNumber);
+		
+	}
+	/**
+	 * @return CNVs of each sample, in the order each sample first appears; keyed by identity, as there is one {@link SampleInformation} per sample ID
+	 */
+	public static Map<SampleInformation, List<CNV>> groupBySample(List<CNV> cnvs) {
+		
+		Map<SampleInformation, List<CNV>> sampleCNVs = new LinkedHashMap<SampleInformation, List<CNV>>();
+		for (CNV cnv : cnvs) {
+			SampleInformation sampInfo = cnv.getSampleInformation();
+			List<CNV> currentList = sampleCNVs.get(sampInfo);
+			if (currentList == null) {
+				currentList = new ArrayList<CNV>();
+				sampleCNVs.put(sampInfo, currentList);
+			}
+			currentList.add(cnv);
+		}
+		return sampleCNVs;
+		
 	}
 	private CNV parseCNVLine(String line) throws NumberFormatException, IOException {
 		
 		//PennCNV is white-space delim... whereas my LRR BAF info isn't
-		String lrrbaf[] = line.split("\t");
-		String data[] = lrrbaf[0].split("\\s+");
-		Pattern filePattern = Pattern.compile("(split\\d+\\.a\\d{6}\\S*)");
+		pennCNVDecoder.decode(line);
 		
-		//New Code to parse CNV:
 		//Only want individuals that passed AFFY QC
-		File splitFile = new File(data[4]);
+		String splitFileName = pennCNVDecoder.getSplitFileName();
+		SampleInformation sampInfo = sampleTable.get(splitFileName);
 
-		if (sampleInformation.containsKey(splitFile.getName())) {				
-		
-			SampleInformation sampInfo = sampleInformation.get(splitFile.getName());
-			
-			String chr = null;
-			int start = -1;
-			int end = -1;
-			Matcher locationParser = Pattern.compile("chr([\\dXY]{1,2}):(\\d+)\\-(\\d+)").matcher(data[0]);
-			if (locationParser.matches()) {
-				chr = locationParser.group(1);
-				start = Integer.parseInt(locationParser.group(2));
-				end = Integer.parseInt(locationParser.group(3));
-			}
-	
-			int probeCount = (int)EqualSpliter(data[1]);
-			int copyNumber = (int)EqualSpliter(data[3]);
-			double conf = EqualSpliter(data[7]);
-			//New code to parse CNV
+		if (sampInfo != null) {
 			
-			//Captures sample names
-			Matcher fileMatcher = filePattern.matcher(splitFile.getName());
+			String chr = pennCNVDecoder.getChr();
+			int start = pennCNVDecoder.getStart();
+			int end = pennCNVDecoder.getEnd();
+			int probeCount = pennCNVDecoder.getProbeCount();
+			int copyNumber = pennCNVDecoder.getCopyNumber();
+			double conf = pennCNVDecoder.getConfidence();
 			
-			if (fileMatcher.matches()) {
-				String fileName = fileMatcher.group(1);
-				if (!samples.contains(fileName)) {
-					samples.add(fileName);
-				}
+			//Captures sample names
+			if (PennCNVDecoder.isSplitSampleName(splitFileName)) {
+				samples.set(sampInfo.getId());
 			}
 			if (!chrs.contains(chr)) {
 				chrs.add(chr);
 			}
 
-			CNV currentCNV = new CNV(
+			// LRR/BAF information is attached afterwards, either per CNV or per sample
+			return new CNV(
 					chr,
 					start,
 					end,
@@ -241,39 +404,9 @@ public class RawCNVReader implements Closeable {
 					probeCount,
 					conf,
 					sampInfo,
-					getLRRBAF(sampInfo.getSplitFile(), chr, start, end)
+					null
 					);
 			
-			currentCNV.setGoldStandardSV(GoldStandardParser(chr, start, end, currentCNV.getCopyType()));
-			currentCNV.setDistTel(getDistTelo(chr, start, end));
-			currentCNV.setDistCen(getDistCen(chr, start, end));
-			
-			// Checks for intersection to WES baits -- even if the CNV doesn't have WES data (for annotation purposes)
-			IntervalTree<Boolean> wesBaits = getIntersectingBaits(chr, start, end);	
-			currentCNV.setTotalIntersectingBaits(wesBaits.size());
-			
-			//Check if there are any intersecting CNVs for this individual if individual has WES data
-			if (sampInfo.hasWES()) {
-					
-//				System.out.println(currentCNV.getLocationCoordinates() + " -- Total Baits: " + probeCount);
-				
-//				System.out.println("CONVEX");
-				currentCNV.setIntersectingWESConvexCNVs(getWESCNVs(sampInfo.getEGAN(), currentCNV, WESTabix.CONVEX, wesBaits)); //This checks CONVEX CNVs.
-//				System.out.println("XHMM");
-				currentCNV.setIntersectingWESXHMMCNVs(getWESCNVs(sampInfo.getEGAN(), currentCNV, WESTabix.XHMM, wesBaits)); //This checks XHMM CNVs.
-//				System.out.println("CLAMMS");
-				currentCNV.setIntersectingWESCLAMMSCNVs(getWESCNVs(sampInfo.getSangerID(),currentCNV, WESTabix.CLAMMS, wesBaits)); //This checks CLAMMS CNVs.
-//				System.out.println("CANOES");
-				currentCNV.setIntersectingWESCANOESCNVs(getWESCNVs(sampInfo.getSangerID(),currentCNV, WESTabix.CANOES, wesBaits)); //This checks CLAMMS CNVs.
-				
-				if (currentCNV.getTotalIntersectingBaits() > 0) {
-					currentCNV.setWESStats(getWESStats(chr, start, end, sampInfo.getEGAN()));
-				}
-
-			}
-
-			return currentCNV;
-			
 		} else {
 			
 			return null;
@@ -281,106 +414,78 @@ public class RawCNVReader implements Closeable {
 		}
 
 	}
-	private IntervalTree<Boolean> getIntersectingProbes(String chr, int start, int end) throws IOException {
+	private void annotateCNV(CNV currentCNV) throws NumberFormatException, IOException {
 		
-		IntervalTree<Boolean> baitTree = new IntervalTree<Boolean>();
+		SampleInformation sampInfo = currentCNV.getSampleInformation();
 		
-		Iterator itr = axiomTabix.query(chr, start, end);
-
-		String line;
+		// Set by annotateReference
+		int wesBaits = currentCNV.getTotalIntersectingBaits();
 		
-		while ((line = itr.next()) != null) {
-
-			String data[] = line.split("\t");
-			
-			int baitStart = Integer.parseInt(data[1]);
-			int baitEnd = Integer.parseInt(data[2]);
-			
-			baitTree.put(baitStart, baitEnd, false);
-			
-		}
+		//Check if there are any intersecting CNVs for this individual if individual has WES data
+		if (sampInfo.hasWES()) {
 				
-		return baitTree;
-		
-	}	
-	private IntervalTree<Boolean> getIntersectingBaits(String chr, int start, int end) throws IOException {
-		
-		IntervalTree<Boolean> baitTree = new IntervalTree<Boolean>();
-		
-		Iterator itr = baitTabix.query(chr, start, end);
+//			System.out.println(currentCNV.getLocationCoordinates() + " -- Total Baits: " + probeCount);
+			
+//			System.out.println("CONVEX");
+			currentCNV.setIntersectingWESConvexCNVs(getWESCNVs(sampInfo.getEGAN(), currentCNV, WESCallset.CONVEX, wesBaits)); //This checks CONVEX CNVs.
+//			System.out.println("XHMM");
+			currentCNV.setIntersectingWESXHMMCNVs(getWESCNVs(sampInfo.getEGAN(), currentCNV, WESCallset.XHMM, wesBaits)); //This checks XHMM CNVs.
+//			System.out.println("CLAMMS");
+			currentCNV.setIntersectingWESCLAMMSCNVs(getWESCNVs(sampInfo.getSangerID(),currentCNV, WESCallset.CLAMMS, wesBaits)); //This checks CLAMMS CNVs.
+//			System.out.println("CANOES");
+			currentCNV.setIntersectingWESCANOESCNVs(getWESCNVs(sampInfo.getSangerID(),currentCNV, WESCallset.CANOES, wesBaits)); //This checks CLAMMS CNVs.
 
-		String line;
-		
-		while ((line = itr.next()) != null) {
-
-			String data[] = line.split("\t");
-			
-			int baitStart = Integer.parseInt(data[1]);
-			int baitEnd = Integer.parseInt(data[2]);
-			
-			baitTree.put(baitStart, baitEnd, false);
-			
 		}
-				
-		return baitTree;
 		
 	}
-	
-	private double getWESCNVs(String eganID, CNV cnv, WESTabix tabix, IntervalTree<Boolean> wesBaits) throws NumberFormatException, IOException {
-		
-		String line;
-		String data[];
+	/**
+	 * @param wesBaits Number of exome baits overlapping <code>cnv</code>
+	 */
+	private double getWESCNVs(String eganID, CNV cnv, WESCallset callset, int wesBaits) throws NumberFormatException, IOException {
 		
 //		List<CNVInterval> WESCNVs = new ArrayList<CNVInterval>();
 		
-		Iterator itr = tabix.getReader().query(cnv.getChr(), cnv.getStart(), cnv.getEnd());			
+		long startNanos = System.nanoTime();
+		WESCallIndex.SampleCalls sampleCalls = wesCalls.get(callset).getCalls(eganID, cnv.getChr());
+		int numCalls = sampleCalls == null ? 0 : sampleCalls.size();
+		lookupStatistics.record(callset.getSource(), startNanos, numCalls, 0);
 		
-		double totalBaits = wesBaits.size();
+		double totalBaits = wesBaits;
 		double baitsIntersected = 0;
 				
 		double totalProbes = 0;
 		double probesIntersected = 0;
 								
-		while ((line = itr.next()) != null) {
+		for (int x = 0; x < numCalls; x++) {
+			
+			int startWES = sampleCalls.getStart(x);
+			int endWES = sampleCalls.getEnd(x);
+			
+			// Calls are sorted by start; same overlap rule tabix used when these were queried per CNV
+			if (startWES >= cnv.getEnd()) {
+				break;
+			} else if (endWES <= cnv.getStart()) {
+				continue;
+			}
+			CopyType ctWES = sampleCalls.getCopyType(x);
 			
-			data = line.split("\t");
-				
-			int startWES = Integer.parseInt(data[1]);
-			int endWES = Integer.parseInt(data[2]);
-			double numProbes = Double.parseDouble(data[3]);
-			CopyType ctWES = CopyType.valueOf(data[5]);
-			String eganIDWES = data[6];
-			
-			CNV wesCNV = new CNV(cnv.getChr(), startWES, endWES, 0, (int) numProbes, 0.0, null, null);
-			ArrayList<CNV> toInt = new ArrayList<CNV>();
-			toInt.add(cnv);
-			toInt.add(wesCNV);
 			Interval wesCnvInt = new Interval(cnv.getChr(), startWES, endWES);
 			Interval cnvInt = new Interval(cnv.getChr(), cnv.getStart(), cnv.getEnd());
 			
 			// New trigger is if we have ±20% of probes overlapped by ArrayCNV
 			// This means 80% of all probes that an array CNV overlaps should be within the WES interval AND the WES CNV contains no more than 20% extra probes
 
-			if (eganIDWES.equals(eganID) && cnv.getCopyType().equals(ctWES) && wesCnvInt.intersects(cnvInt)) {
+			if (cnv.getCopyType().equals(ctWES) && wesCnvInt.intersects(cnvInt)) {
 								
 				// This checks for the WES CNV encompassing >80% of WES baits covered by the array CNV
-				java.util.Iterator<Node<Boolean>> baitOverlap = wesBaits.overlappers(startWES, endWES);
-								
-				while (baitOverlap.hasNext()) {
-					baitOverlap.next();
-					baitsIntersected++;
-				}
+				// (baits overlapping the array CNV that also fall in the closed WES interval [startWES, endWES])
+				baitsIntersected += countFeatures(baits, LookupStatistics.Source.BAITS, cnv.getChr(), Math.max(cnv.getStart(), startWES - 1), Math.min(cnv.getEnd(), endWES + 1));
 				
 				// This checks for the Array CNV encompassing >80% of array probes covered by the WES CNV
-				IntervalTree<Boolean> axiomProbes = getIntersectingProbes(cnv.getChr(), startWES, endWES);
-				totalProbes += axiomProbes.size();		
+				// (probes overlapping the WES CNV that also fall in the closed interval [start, end + 1] of the array CNV)
+				totalProbes += countFeatures(axiomProbes, LookupStatistics.Source.AXIOM_PROBES, cnv.getChr(), startWES, endWES);
+				probesIntersected += countFeatures(axiomProbes, LookupStatistics.Source.AXIOM_PROBES, cnv.getChr(), Math.max(startWES, cnv.getStart() - 1), Math.min(endWES, cnv.getEnd() + 2));
 				
-				java.util.Iterator<Node<Boolean>> probeOverlap = axiomProbes.overlappers(cnv.getStart(), cnv.getEnd() + 1);
-							
-				while (probeOverlap.hasNext()) {
-					probeOverlap.next();
-					probesIntersected++;
-				}
 //								
 //				double test1 = totalIntersectingBaits / totalBaits;
 //				double test2 = totalIntersectingProbes / totalProbes;
@@ -396,7 +501,7 @@ public class RawCNVReader implements Closeable {
 			}
 		}
 		
-//		System.out.println("\tWES: " + baitsIntersected + " -- " + wesBaits.size());
+//		System.out.println("\tWES: " + baitsIntersected + " -- " + wesBaits);
 //		System.out.println("\tARR: " + probesIntersected + " -- " + totalProbes);
 		
 		if (totalProbes == 0) {
@@ -408,31 +513,36 @@ public class RawCNVReader implements Closeable {
 		}
 				
 	}
-	private DescriptiveStatistics getWESStats(String chr, int start, int end, String EGAN) throws IOException {
+	private int countFeatures(FeatureCountIndex index, LookupStatistics.Source source, String chr, int start, int end) {
 		
-		File wesL2RFile = new File("/lustre/scratch115/projects/interval_cnv/calling/sanger_exome_cnvs/CONVEX/convex_out/ProbeRD_" + EGAN + "_LR2.coords.bed.gz");
-		DescriptiveStatistics l2rStats = new DescriptiveStatistics();
-		TabixReader l2rTabix = new TabixReader(wesL2RFile.getAbsolutePath(),wesL2RFile.getAbsolutePath() + ".tbi");
+		long startNanos = System.nanoTime();
+		int count = index.count(chr, start, end);
+		lookupStatistics.record(source, startNanos, count, 0);
+		return count;
 		
-		Iterator itr = l2rTabix.query(chr, start, end);
+	}
+	// All CNVs must be from the same sample
+	private void annotateWESL2R(List<CNV> sampleCNVs) throws IOException {
 		
-		String line;
-		String data[];
+		SampleInformation sampInfo = sampleCNVs.get(0).getSampleInformation();
+		if (!sampInfo.hasWES()) {
+			return;
+		}
 		
-		while ((line = itr.next()) != null) {
-			
-			data = line.split("\t");
-			double l2r = Double.parseDouble(data[3]);
-			l2rStats.addValue(l2r);
-			
+		List<CNV> baitCNVs = new ArrayList<CNV>();
+		for (CNV cnv : sampleCNVs) {
+			if (cnv.getTotalIntersectingBaits() > 0) {
+				baitCNVs.add(cnv);
+			}
 		}
-		return l2rStats;
+		wesL2R.annotate(sampInfo.getEGAN(), baitCNVs);
 		
 	}
 	
 	private LRRandBAFInformation getLRRBAF(File splitFile, String chr, int start, int end) throws IOException {
 		
-		TabixReader lrrbafTabixReader = new TabixReader(splitFile.getAbsolutePath() + ".sorted.bed.gz", splitFile.getAbsolutePath() + ".sorted.bed.gz.tbi");
+		long startNanos = System.nanoTime();
+		CachedTabixReader lrrbafTabixReader = lrrbafReaders.getReader(new File(splitFile.getAbsolutePath() + ".sorted.bed.gz"));
 		
 		int len = end - start;
 		int qStart = (start - len) < 0 ? 0 : (start - len);
@@ -444,12 +554,16 @@ public class RawCNVReader implements Closeable {
 		String data[];
 		int nLeft = 0;
 		int nRight = 0;
+		long lines = 0;
+		long bytes = 0;
 				
-		DescriptiveStatistics lrrStat = new DescriptiveStatistics();
-		DescriptiveStatistics bafStat = new DescriptiveStatistics();
+		PrimitiveStatistics lrrStat = acquireStatistics();
+		PrimitiveStatistics bafStat = acquireStatistics();
 		
 		while ((line = itr.next()) != null) {
 			
+			lines++;
+			bytes += line.length() + 1;
 			data = line.split("\t");
 			int currPos = Integer.parseInt(data[1]);
 			if (currPos < start) {
@@ -465,12 +579,168 @@ public class RawCNVReader implements Closeable {
 			}
 			
 		}
+		lookupStatistics.record(LookupStatistics.Source.LRRBAF, startNanos, lines, bytes);
 				
 		LRRandBAFInformation lrrbaf = new LRRandBAFInformation(lrrStat, bafStat, nLeft, nRight);
+		releaseStatistics(lrrStat);
+		releaseStatistics(bafStat);
 		
 		return lrrbaf;
 		
 	}
+	private void sweepLRRBAF(List<CNV> sampleCNVs) throws IOException {
+		
+		File splitFile = sampleCNVs.get(0).getSampleInformation().getSplitFile();
+		CachedTabixReader lrrbafTabixReader = lrrbafReaders.getReader(new File(splitFile.getAbsolutePath() + ".sorted.bed.gz"));
+		
+		// Same flanking windows as getLRRBAF, ordered by window start within each chromosome
+		Map<String, List<LRRBAFAccumulator>> chrWindows = new LinkedHashMap<String, List<LRRBAFAccumulator>>();
+		for (CNV cnv : sampleCNVs) {
+			List<LRRBAFAccumulator> windows = chrWindows.get(cnv.getChr());
+			if (windows == null) {
+				windows = new ArrayList<LRRBAFAccumulator>();
+				chrWindows.put(cnv.getChr(), windows);
+			}
+			windows.add(new LRRBAFAccumulator(cnv));
+		}
+		
+		for (Map.Entry<String, List<LRRBAFAccumulator>> chrEntry : chrWindows.entrySet()) {
+			
+			List<LRRBAFAccumulator> windows = chrEntry.getValue();
+			Collections.sort(windows);
+			
+			// Windows are merged into runs; one query per run. Runs are only split across large gaps so we don't inflate
+			// whole chromosome arms just to join two distant CNVs.
+			int runStart = 0;
+			int runEnd = windows.get(0).qEnd;
+			for (int x = 1; x <= windows.size(); x++) {
+				if (x == windows.size() || windows.get(x).qStart > (long) runEnd + SWEEP_MAX_GAP) {
+					sweepRun(lrrbafTabixReader, chrEntry.getKey(), windows.subList(runStart, x), runEnd);
+					if (x < windows.size()) {
+						runStart = x;
+						runEnd = windows.get(x).qEnd;
+					}
+				} else {
+					runEnd = Math.max(runEnd, windows.get(x).qEnd);
+				}
+			}
+			
+		}
+		
+		for (List<LRRBAFAccumulator> windows : chrWindows.values()) {
+			for (LRRBAFAccumulator window : windows) {
+				window.cnv.setLRRBAF(new LRRandBAFInformation(window.lrrStat, window.bafStat, window.nLeft, window.nRight));
+				releaseStatistics(window.lrrStat);
+				releaseStatistics(window.bafStat);
+			}
+		}
+		
+	}
+	private void sweepRun(CachedTabixReader lrrbafTabixReader, String chr, List<LRRBAFAccumulator> windows, int runEnd) throws IOException {
+		
+		long startNanos = System.nanoTime();
+		Iterator itr = lrrbafTabixReader.query(chr, windows.get(0).qStart, runEnd);
+		
+		List<LRRBAFAccumulator> active = new ArrayList<LRRBAFAccumulator>();
+		int nextWindow = 0;
+		
+		String line;
+		String data[];
+		long lines = 0;
+		long bytes = 0;
+		
+		while ((line = itr.next()) != null) {
+			
+			lines++;
+			bytes += line.length() + 1;
+			data = line.split("\t");
+			int currPos = Integer.parseInt(data[1]);
+			int recEnd = Integer.parseInt(data[2]);
+			
+			// Records arrive sorted by start, so a window that ends at or before this record can never match again
+			for (int x = active.size() - 1; x >= 0; x--) {
+				if (active.get(x).qEnd <= currPos) {
+					active.remove(x);
+				}
+			}
+			while (nextWindow < windows.size() && windows.get(nextWindow).qStart < recEnd) {
+				active.add(windows.get(nextWindow));
+				nextWindow++;
+			}
+			
+			double lrr = Double.NaN;
+			double baf = Double.NaN;
+			boolean parsed = false;
+			
+			for (LRRBAFAccumulator window : active) {
+				// Identical to the overlap test TabixReader applies to a single per-CNV query
+				if (recEnd > window.qStart && currPos < window.qEnd) {
+					if (currPos < window.start) {
+						window.nLeft++;
+					} else if (currPos > (window.end + 1)) {
+						window.nRight++;
+					} else {
+						if (!parsed) {
+							lrr = Double.parseDouble(data[4]);
+							baf = Double.parseDouble(data[5]);
+							parsed = true;
+						}
+						window.lrrStat.addValue(lrr);
+						window.bafStat.addValue(Math.abs(0.5 - baf));
+					}
+				}
+			}
+			
+		}
+		lookupStatistics.record(LookupStatistics.Source.LRRBAF, startNanos, lines, bytes);
+		
+	}
+	private class LRRBAFAccumulator implements Comparable<LRRBAFAccumulator> {
+		
+		private CNV cnv;
+		private int start;
+		private int end;
+		private int qStart;
+		private int qEnd;
+		private int nLeft;
+		private int nRight;
+		private PrimitiveStatistics lrrStat;
+		private PrimitiveStatistics bafStat;
+		
+		private LRRBAFAccumulator(CNV cnv) {
+			this.cnv = cnv;
+			start = cnv.getStart();
+			end = cnv.getEnd();
+			int len = end - start;
+			qStart = (start - len) < 0 ? 0 : (start - len);
+			qEnd = end + len;
+			nLeft = 0;
+			nRight = 0;
+			lrrStat = acquireStatistics();
+			bafStat = acquireStatistics();
+		}
+
+		@Override
+		public int compareTo(LRRBAFAccumulator o) {
+			return Integer.compare(qStart, o.qStart);
+		}
+		
+	}
+	
+	// Statistics buffers are recycled rather than allocated per CNV; each RawCNVReader is only used by one thread
+	private PrimitiveStatistics acquireStatistics() {
+		PrimitiveStatistics stats = statisticsPool.poll();
+		if (stats == null) {
+			stats = new PrimitiveStatistics();
+		} else {
+			stats.clear();
+		}
+		return stats;
+	}
+	private void releaseStatistics(PrimitiveStatistics stats) {
+		statisticsPool.push(stats);
+	}
+	
 	public class LRRandBAFInformation {
 		
 		private double lrrMean;
@@ -481,9 +751,8 @@ public class RawCNVReader implements Closeable {
 		private double bafMedian;
 		private int nLeft;
 		private int nRight;
-		private DecimalFormat df;
 		
-		private LRRandBAFInformation(DescriptiveStatistics lrrStat, DescriptiveStatistics bafStat, int nLeft, int nRight) {
+		private LRRandBAFInformation(PrimitiveStatistics lrrStat, PrimitiveStatistics bafStat, int nLeft, int nRight) {
 			lrrMean = lrrStat.getMean();
 			lrrSD = lrrStat.getStandardDeviation();
 			lrrMedian = lrrStat.getPercentile(0.50);
@@ -492,87 +761,133 @@ public class RawCNVReader implements Closeable {
 			bafMedian = bafStat.getPercentile(0.50);
 			this.nLeft = nLeft;
 			this.nRight = nRight;
-			df = new DecimalFormat("##.#######");
 		}
 		
-		private String format(double val) {
+		public double getBafMean() {
+			return bafMean;
+		}
+		public double getBafSD() {
+			return bafSD;
+		}
+		public double getBafMedian() {
+			return bafMedian;
+		}
+		public double getLrrMean() {
+			return lrrMean;
+		}
+		public double getLrrSD() {
+			return lrrSD;
+		}
+		public double getLrrMedian() {
+			return lrrMedian;
+		}
+		public int getNLeft() {
+			return nLeft;
+		}
+		public int getNRight() {
+			return nRight;
+		}
+		/**
+		 * Adds the eight site.BAF/site.LRR/nLeft/nRight fields of the annotated table to <code>line</code>.
+		 */
+		public void appendTo(DelimitedLine line) {
+			appendSummary(line, bafMean);
+			appendSummary(line, bafSD);
+			appendSummary(line, bafMedian);
+			appendSummary(line, lrrMean);
+			appendSummary(line, lrrSD);
+			appendSummary(line, lrrMedian);
+			line.add(nLeft);
+			line.add(nRight);
+		}
+		private void appendSummary(DelimitedLine line, double val) {
 			if (Double.isNaN(val)) {
-				return "NaN";
+				line.add("NaN");
 			} else {
-				return df.format(val);
+				line.add(val, SUMMARY_DIGITS);
 			}
 		}
-		public String returnPrintable() {
-			return (format(bafMean) + "\t" + format(bafSD) + "\t" + format(bafMedian) + "\t" + format(lrrMean) + "\t" + format(lrrSD) + "\t" + format(lrrMedian) + "\t" + nLeft + "\t" + nRight);
-		}
 		
 	}
 	
-	public String GoldStandardParser (String chr, int start, int end, CopyType ct) {
-		
-		IntervalTree<String> toParse;
-		if (ct == CopyType.DEL) {
-			toParse = dgvDels.get(chr);
-		} else {
-			toParse = dgvDups.get(chr);
+	/**
+	 * Best DGV gold standard hit for each of one chromosome's CNVs, visited in start order: the hit overlapping both ways by
+	 * more than 80% with the highest product of the two overlaps (the first in DGV start order on ties). DGV calls are added
+	 * to an active list as CNV ends reach them and dropped once CNV starts have passed their end.
+	 */
+	private static class DGVSweep {
+		
+		private IntervalTrack track;
+		private ChrIntervals intervals;
+		private int next;
+		private int active[];
+		private int numActive;
+		
+		private DGVSweep(IntervalTrack track, String chr) {
+			this.track = track;
+			intervals = track.getChr(chr);
+			next = 0;
+			active = new int[16];
+			numActive = 0;
 		}
-
-		String maxHit = null;
-		double maxVal = 0;
-		
-		Interval cnvInt = new Interval(chr, start, end);
-		java.util.Iterator<Node<String>> hitCNVs = toParse.overlappers(start, end);
 		
-		while (hitCNVs.hasNext()) {
-			Node<String> hitCNV = hitCNVs.next();
-			Interval gsCnvInt = new Interval(chr, hitCNV.getStart(), hitCNV.getEnd());
+		private String getBestHit(int start, int end) {
 			
-			double compOne = gsCnvInt.getIntersectionLength(cnvInt);
-			double overlapOne = compOne / (double) gsCnvInt.length();
-			
-			double compTwo = cnvInt.getIntersectionLength(gsCnvInt);
-			double overlapTwo = compTwo / (double) cnvInt.length();
+			// Drop calls ending before this CNV; no later CNV (start >= this start) can reach them either
+			int kept = 0;
+			for (int x = 0; x < numActive; x++) {
+				if (intervals.getEnd(active[x]) >= start) {
+					active[kept++] = active[x];
+				}
+			}
+			numActive = kept;
+			while (next < intervals.size() && intervals.getStart(next) <= end) {
+				if (intervals.getEnd(next) >= start) {
+					if (numActive == active.length) {
+						active = Arrays.copyOf(active, numActive * 2);
+					}
+					active[numActive++] = next;
+				}
+				next++;
+			}
 			
-			double score = overlapOne * overlapTwo;
+			String maxHit = null;
+			double maxVal = 0;
 			
-			if (overlapOne > 0.8 && overlapTwo > 0.8) {
+			// Overlaps as 1-based closed Intervals, i.e. min(end) - max(start) + 1
+			double cnvLength = end - start + 1;
 			
-				if (score > maxVal) {
-					maxVal = score;
-					maxHit = hitCNV.getValue();
+			for (int x = 0; x < numActive; x++) {
+				
+				int hitStart = intervals.getStart(active[x]);
+				int hitEnd = intervals.getEnd(active[x]);
+				if (hitStart > end) {
+					// Added for an earlier, longer CNV
+					continue;
+				}
+				
+				double intersection = Math.min(end, hitEnd) - Math.max(start, hitStart) + 1;
+				double overlapOne = intersection / (double) (hitEnd - hitStart + 1);
+				double overlapTwo = intersection / cnvLength;
+				
+				double score = overlapOne * overlapTwo;
+				
+				if (overlapOne > 0.8 && overlapTwo > 0.8) {
+					
+					if (score > maxVal) {
+						maxVal = score;
+						maxHit = track.getValue(intervals, active[x]);
+					}
 				}
 			}
-		}
-		
-		return maxHit;
-		
-	}
-
-	private Map<String, CytobandInfo> buildCytoband(File cytoband) throws IOException {
-		
-		Map<String, CytobandInfo> cytoMap = new HashMap<String, CytobandInfo>();
-		
-		BufferedReader cytoReader = new BufferedReader(new FileReader(cytoband));
-		
-		String line;
-		String data[];
-		
-		while ((line = cytoReader.readLine()) != null) {
 			
-			data = line.split("\t");
-			cytoMap.put(data[0], new CytobandInfo(Integer.parseInt(data[1]),Integer.parseInt(data[4]), Integer.parseInt(data[2]), Integer.parseInt(data[3])));
+			return maxHit;
 			
 		}
 		
-		cytoReader.close();
-		
-		return cytoMap;
-		
 	}
-	
-	private double getDistTelo(String chr, int start, int end) {
-		
-		CytobandInfo cyto = cytoMap.get(chr);
+
+	private double getDistTelo(CytobandInfo cyto, int start, int end) {
 		
 		//Start by getting distance to the telomere from either end of the CNV
 		double startDist = start - cyto.getChrStart();
@@ -585,9 +900,7 @@ public class RawCNVReader implements Closeable {
 		return minDist / (double) end;
 				
 	}
-	private double getDistCen(String chr, int start, int end) {
-		
-		CytobandInfo cyto = cytoMap.get(chr);
+	private double getDistCen(CytobandInfo cyto, int start, int end) {
 		
 		int leftCentDist = Math.min(Math.abs(start - cyto.getCentLeft()),Math.abs(end - cyto.getCentLeft()));
 		int rightCentDist = Math.min(Math.abs(start - cyto.getCentRight()),Math.abs(end - cyto.getCentRight()));
@@ -600,66 +913,33 @@ public class RawCNVReader implements Closeable {
 				
 	}
 	
-	private class CytobandInfo {
+	private static final Comparator<CNV> START_ORDER = new Comparator<CNV>() {
+		@Override
+		public int compare(CNV o1, CNV o2) {
+			return Integer.compare(o1.getStart(), o2.getStart());
+		}
+	};
+	
+	private enum WESCallset {
 		
-		private int chrStart;
-		private int chrStop;
-		private int centLeft;
-		private int centRight;
+		CONVEX(ResourcePaths.CONVEX_CALLS, LookupStatistics.Source.WES_CONVEX),
+		XHMM(ResourcePaths.XHMM_CALLS, LookupStatistics.Source.WES_XHMM),
+		CLAMMS(ResourcePaths.CLAMMS_CALLS, LookupStatistics.Source.WES_CLAMMS),
+		CANOES(ResourcePaths.CANOES_CALLS, LookupStatistics.Source.WES_CANOES);
 		
-		private CytobandInfo(int chrStart, int chrStop, int centLeft, int centRight) {
-			this.chrStart = chrStart;
-			this.chrStop = chrStop;
-			this.centLeft = centLeft;
-			this.centRight = centRight;
-		}
-
-		public int getChrStart() {
-			return chrStart;
-		}
-		public int getChrStop() {
-			return chrStop;
-		}
-		public int getCentLeft() {
-			return centLeft;
-		}
-		public int getCentRight() {
-			return centRight;
-		}
+		private String callPath;
+		private LookupStatistics.Source source;
 		
-	}
-	
-	//Utilities to parse raw CNVs
-	private double EqualSpliter (String toParse) {
-		String parsed[] = toParse.split("\\=");
-		String replaced = parsed[1].replaceAll(",","");
-		return Double.parseDouble(replaced);
-	}
-	
-	private enum WESTabix {
-		
-		CONVEX(new File("/lustre/scratch115/projects/interval_cnv/calling/sanger_exome_cnvs/CONVEX/interval_cnv_calls.raw.ejg.sorted.bed.gz")),
-		XHMM(new File("/lustre/scratch115/projects/interval_cnv/calling/sanger_exome_cnvs/XHMM/INTERVAL.xhmm.sorted.bed.gz")),
-		CLAMMS(new File("/lustre/scratch115/projects/interval_cnv/calling/sanger_exome_cnvs/CLAMMS/CLAMMS.cnvs.bed.gz")),
-		CANOES(new File("/lustre/scratch115/projects/interval_cnv/calling/sanger_exome_cnvs/CANOES/CANOES.cnvs.bed.gz"));
-		
-		private TabixReader reader;
-		
-		private WESTabix(File tabixFile) {
-			try {
-				reader = new TabixReader(tabixFile.getAbsolutePath(),tabixFile.getAbsolutePath() + ".tbi");
-			} catch (IOException e) {
-				System.err.println("Could not load WES tabix file: " + tabixFile.getAbsolutePath());
-				e.printStackTrace();
-				System.exit(1);
-			}
+		private WESCallset(String callPath, LookupStatistics.Source source) {
+			this.callPath = callPath;
+			this.source = source;
 		}
 
-		public TabixReader getReader() {
-			return reader;
+		public File getCallFile() {
+			return ResourcePaths.get(callPath);
 		}
-		public void close() {
-			reader.close();
+		public LookupStatistics.Source getSource() {
+			return source;
 		}
 				
 	}
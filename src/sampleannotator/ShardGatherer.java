@@ -0,0 +1,405 @@
+package sampleannotator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import htsjdk.tribble.index.tabix.TabixFormat;
+import utilities.AsyncOutputStream;
+import utilities.BgzipTabixWriter;
+import utilities.CompressedInput;
+
+/**
+ * Gathers the <code>&lt;prefix&gt;&lt;section&gt;.txt</code> outputs of an array of 'Annotate -s' jobs into one file,
+ * sorted by chromosome (as text, like <code>sort -k1,1</code>), start and end, with the header once. Shards are checked
+ * before anything is read: every section from 1 to n has to be there exactly once, and none may still have a checkpoint
+ * (i.e. be unfinished). Rows found in two different shards mean a section was annotated under two numbers and also fail.
+ *
+ * Each shard is sorted in memory, at most -rows CNVs at a time, into runs in the tmp directory; the runs are then
+ * merged, at most {@link #MAX_OPEN_RUNS} at a time, so memory use does not grow with the number or size of shards.
+ */
+public class ShardGatherer {
+
+	public static final int DEFAULT_MAX_ROWS = 100000;
+	static final int MAX_OPEN_RUNS = 64;
+
+	// Tabix columns of the 'Annotate' table: chr, 1-based start and end, header lines start with '#'
+	private static final TabixFormat ANNOTATE_FORMAT = new TabixFormat(TabixFormat.GENERIC_FLAGS, 1, 2, 3, '#', 0);
+
+	private File tmpDirectory;
+	private int runNumber;
+
+	public ShardGatherer(String args[]) throws IOException {
+
+		ShardGathererOptions options = new ShardGathererOptions(args);
+		tmpDirectory = options.getTmpDirectory();
+		runNumber = 0;
+
+		List<File> shards = findShards(options.getShardPrefix(), options.getSections());
+		String header = null;
+		List<File> runs = new ArrayList<File>();
+		long rows = 0;
+		for (int shard = 0; shard < shards.size(); shard++) {
+			BufferedReader shardReader = CompressedInput.openReader(shards.get(shard));
+			String shardHeader = shardReader.readLine();
+			if (shardHeader == null) {
+				shardReader.close();
+				throw new IOException("Shard " + shards.get(shard).getName() + " is empty, not even a header");
+			} else if (header == null) {
+				header = shardHeader;
+			} else if (!header.equals(shardHeader)) {
+				shardReader.close();
+				throw new IOException("Shard " + shards.get(shard).getName() + " has different columns from " + shards.get(0).getName());
+			}
+			rows += sortShard(shardReader, shard, options.getMaxRows(), runs);
+			shardReader.close();
+		}
+		System.err.println("Sorted " + rows + " CNVs from " + shards.size() + " shards into " + runs.size() + " runs");
+
+		// Merge down to a number of runs that can all be open at once
+		while (runs.size() > MAX_OPEN_RUNS) {
+			List<File> merged = new ArrayList<File>();
+			for (int x = 0; x < runs.size(); x += MAX_OPEN_RUNS) {
+				List<File> group = runs.subList(x, Math.min(x + MAX_OPEN_RUNS, runs.size()));
+				if (group.size() == 1) {
+					merged.add(group.get(0));
+					continue;
+				}
+				File run = newRun();
+				RunWriter runWriter = new RunWriter(run);
+				mergeRuns(group, shards, runWriter);
+				runWriter.close();
+				merged.add(run);
+			}
+			runs = merged;
+		}
+
+		File outputFile = new File(options.getOutput().getAbsolutePath() + (options.isBgzip() ? ".txt.gz" : ".txt"));
+		GatheredOutput output = options.isBgzip() ? new BgzipOutput(outputFile) : new TextOutput(outputFile);
+		try {
+			output.writeHeader(header);
+			long written = mergeRuns(runs, shards, output);
+			output.close();
+			System.err.println("Gathered " + written + " CNVs to " + outputFile.getAbsolutePath() + (options.isBgzip() ? " and its .tbi index" : ""));
+		} catch (IOException e) {
+			// Don't leave a partial result that looks complete
+			output.close();
+			outputFile.delete();
+			new File(outputFile.getAbsolutePath() + ".tbi").delete();
+			throw e;
+		}
+
+	}
+
+	/**
+	 * @return the shard of every section from 1 to <code>sections</code> (or to the highest found), in section order
+	 */
+	static List<File> findShards(File prefix, int sections) throws IOException {
+
+		File directory = prefix.getAbsoluteFile().getParentFile();
+		Pattern shardName = Pattern.compile(Pattern.quote(prefix.getName()) + "(\\d+)\\.txt");
+		TreeMap<Integer, File> found = new TreeMap<Integer, File>();
+		List<String> problems = new ArrayList<String>();
+
+		File files[] = directory.listFiles();
+		if (files == null) {
+			throw new IOException("Can't list shard directory " + directory.getAbsolutePath());
+		}
+		for (File file : files) {
+			Matcher matcher = shardName.matcher(file.getName());
+			if (!matcher.matches()) {
+				continue;
+			}
+			int section = Integer.parseInt(matcher.group(1));
+			File previous = found.put(section, file);
+			if (previous != null) {
+				problems.add("section " + section + " is in both " + previous.getName() + " and " + file.getName());
+			}
+			if (AnnotationCheckpoint.getCheckpointFile(file).exists()) {
+				problems.add(file.getName() + " still has a checkpoint, its 'Annotate' job is running or did not finish");
+			}
+		}
+
+		if (sections == -1) {
+			if (found.isEmpty()) {
+				throw new IOException("No shards matching " + prefix.getAbsolutePath() + "<section>.txt");
+			}
+			sections = found.lastKey();
+		}
+		List<Integer> missing = new ArrayList<Integer>();
+		for (int section = 1; section <= sections; section++) {
+			if (!found.containsKey(section)) {
+				missing.add(section);
+			}
+		}
+		if (!missing.isEmpty()) {
+			problems.add(missing.size() + " of " + sections + " sections missing: " + missing);
+		}
+		for (int section : found.keySet()) {
+			if (section < 1 || section > sections) {
+				problems.add(found.get(section).getName() + " is outside sections 1 to " + sections);
+			}
+		}
+		if (!problems.isEmpty()) {
+			StringBuilder message = new StringBuilder("Can't gather " + prefix.getAbsolutePath() + "<section>.txt:");
+			for (String problem : problems) {
+				message.append("\n\t").append(problem);
+			}
+			throw new IOException(message.toString());
+		}
+
+		return new ArrayList<File>(found.values());
+
+	}
+
+	// Sorts a shard's rows into runs of at most maxRows, returns the number of rows
+	private long sortShard(BufferedReader shardReader, int shard, int maxRows, List<File> runs) throws IOException {
+
+		List<Row> buffer = new ArrayList<Row>(Math.min(maxRows, 65536));
+		long rows = 0;
+		String line;
+		while ((line = shardReader.readLine()) != null) {
+			if (line.isEmpty()) {
+				continue;
+			}
+			buffer.add(new Row(line, shard));
+			rows++;
+			if (buffer.size() == maxRows) {
+				runs.add(writeRun(buffer));
+				buffer.clear();
+			}
+		}
+		if (!buffer.isEmpty()) {
+			runs.add(writeRun(buffer));
+		}
+		return rows;
+
+	}
+	private File writeRun(List<Row> rows) throws IOException {
+		Collections.sort(rows, ROW_ORDER);
+		File run = newRun();
+		RunWriter runWriter = new RunWriter(run);
+		for (Row row : rows) {
+			runWriter.write(row);
+		}
+		runWriter.close();
+		return run;
+	}
+	private File newRun() {
+		File run = new File(tmpDirectory, "gather." + Integer.toHexString(System.identityHashCode(this)) + "." + (runNumber++) + ".run");
+		run.deleteOnExit();
+		return run;
+	}
+
+	/**
+	 * Merges sorted runs into <code>output</code>, deleting them as they are used up.
+	 *
+	 * @return number of rows written
+	 */
+	private long mergeRuns(List<File> runs, List<File> shards, GatheredOutput output) throws IOException {
+
+		PriorityQueue<RunReader> heads = new PriorityQueue<RunReader>(Math.max(1, runs.size()), HEAD_ORDER);
+		for (File run : runs) {
+			RunReader runReader = new RunReader(run);
+			if (runReader.next()) {
+				heads.add(runReader);
+			} else {
+				runReader.close();
+			}
+		}
+
+		long rows = 0;
+		Row previous = null;
+		while (!heads.isEmpty()) {
+			RunReader runReader = heads.poll();
+			Row row = runReader.getRow();
+			if (previous != null && previous.shard != row.shard && previous.line.equals(row.line)) {
+				throw new IOException("Shards " + shards.get(previous.shard).getName() + " and " + shards.get(row.shard).getName() + " both contain " + row.chr + ":" + row.start + "-" + row.end + " for the same sample; was one section annotated under two numbers?");
+			}
+			output.write(row);
+			rows++;
+			previous = row;
+			if (runReader.next()) {
+				heads.add(runReader);
+			} else {
+				runReader.close();
+			}
+		}
+		return rows;
+
+	}
+
+	private static class Row {
+
+		private String line;
+		private String chr;
+		private int start;
+		private int end;
+		private int shard;
+
+		private Row(String line, int shard) throws IOException {
+			this.line = line;
+			this.shard = shard;
+			int first = line.indexOf('\t');
+			int second = first < 0 ? -1 : line.indexOf('\t', first + 1);
+			int third = second < 0 ? -1 : line.indexOf('\t', second + 1);
+			if (third < 0) {
+				third = line.length();
+			}
+			try {
+				chr = line.substring(0, first);
+				start = Integer.parseInt(line.substring(first + 1, second));
+				end = Integer.parseInt(line.substring(second + 1, third));
+			} catch (RuntimeException e) {
+				throw new IOException("Not an annotated CNV: " + line);
+			}
+		}
+
+	}
+	private static final Comparator<Row> ROW_ORDER = new Comparator<Row>() {
+		@Override
+		public int compare(Row o1, Row o2) {
+			int chrComp = o1.chr.compareTo(o2.chr);
+			if (chrComp != 0) {
+				return chrComp;
+			} else if (o1.start != o2.start) {
+				return Integer.compare(o1.start, o2.start);
+			} else if (o1.end != o2.end) {
+				return Integer.compare(o1.end, o2.end);
+			} else {
+				// Whole line last, so rows that are the same everywhere end up next to each other
+				return o1.line.compareTo(o2.line);
+			}
+		}
+	};
+	private static final Comparator<RunReader> HEAD_ORDER = new Comparator<RunReader>() {
+		@Override
+		public int compare(RunReader o1, RunReader o2) {
+			return ROW_ORDER.compare(o1.getRow(), o2.getRow());
+		}
+	};
+
+	private interface GatheredOutput {
+		public void writeHeader(String header) throws IOException;
+		public void write(Row row) throws IOException;
+		public void close() throws IOException;
+	}
+
+	// Runs keep each row's shard, as "<shard>\t<line>", for the duplicate check in later merges
+	private static class RunWriter implements GatheredOutput {
+
+		private BufferedWriter writer;
+
+		private RunWriter(File run) throws IOException {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(run)), 65536);
+		}
+
+		@Override
+		public void writeHeader(String header) {}
+		@Override
+		public void write(Row row) throws IOException {
+			writer.write(Integer.toString(row.shard));
+			writer.write('\t');
+			writer.write(row.line);
+			writer.write('\n');
+		}
+		@Override
+		public void close() throws IOException {
+			writer.close();
+		}
+
+	}
+	private static class RunReader {
+
+		private File run;
+		private BufferedReader reader;
+		private Row row;
+
+		private RunReader(File run) throws IOException {
+			this.run = run;
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(run)), 65536);
+		}
+
+		private boolean next() throws IOException {
+			String line = reader.readLine();
+			if (line == null) {
+				row = null;
+				return false;
+			}
+			int tab = line.indexOf('\t');
+			row = new Row(line.substring(tab + 1), Integer.parseInt(line.substring(0, tab)));
+			return true;
+		}
+		private Row getRow() {
+			return row;
+		}
+		private void close() throws IOException {
+			reader.close();
+			run.delete();
+		}
+
+	}
+
+	private static class TextOutput implements GatheredOutput {
+
+		private AsyncOutputStream output;
+		private BufferedWriter writer;
+
+		private TextOutput(File file) throws IOException {
+			output = new AsyncOutputStream(file);
+			writer = new BufferedWriter(new OutputStreamWriter(output), 65536);
+		}
+
+		@Override
+		public void writeHeader(String header) throws IOException {
+			writer.write(header);
+			writer.write('\n');
+		}
+		@Override
+		public void write(Row row) throws IOException {
+			writer.write(row.line);
+			writer.write('\n');
+		}
+		@Override
+		public void close() throws IOException {
+			writer.close();
+		}
+
+	}
+	private static class BgzipOutput implements GatheredOutput {
+
+		private BgzipTabixWriter writer;
+
+		private BgzipOutput(File file) {
+			writer = new BgzipTabixWriter(file, ANNOTATE_FORMAT);
+		}
+
+		@Override
+		public void writeHeader(String header) throws IOException {
+			writer.writeHeader(header);
+		}
+		@Override
+		public void write(Row row) throws IOException {
+			writer.write(row.chr, row.start, row.end, row.line);
+		}
+		@Override
+		public void close() throws IOException {
+			writer.close();
+		}
+
+	}
+
+}
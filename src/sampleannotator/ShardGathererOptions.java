@@ -0,0 +1,125 @@
+package sampleannotator;
+
+import java.io.File;
+
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+public class ShardGathererOptions {
+
+	private Options options;
+
+	private File shardPrefix;
+	private File output;
+	private File tmpDirectory;
+	private int sections;
+	private int maxRows;
+	private boolean bgzip;
+
+	public ShardGathererOptions (String args[]) {
+
+		options = setOptions();
+		loadOptions(args);
+
+	}
+
+	/**
+	 * @return the '-o' given to every 'Annotate -s' job, less the section number (e.g. out/cnvs_ for out/cnvs_1.txt ...)
+	 */
+	public File getShardPrefix() {
+		return shardPrefix;
+	}
+	public File getOutput() {
+		return output;
+	}
+	public File getTmpDirectory() {
+		return tmpDirectory;
+	}
+	/**
+	 * @return number of sections expected, or -1 to expect sections 1 to the highest one found
+	 */
+	public int getSections() {
+		return sections;
+	}
+	public int getMaxRows() {
+		return maxRows;
+	}
+	public boolean isBgzip() {
+		return bgzip;
+	}
+
+	private Options setOptions() {
+
+		Options options = new Options();
+
+		Option shardPrefix = new Option("i", true, "Output path given to 'Annotate -s' without the section number; shards are read from <prefix><section>.txt.");
+		shardPrefix.setRequired(true);
+		options.addOption(shardPrefix);
+		Option output = new Option("o", true, "Path to output file, written to <output>.txt (or <output>.txt.gz with -bgzip).");
+		output.setRequired(true);
+		options.addOption(output);
+
+		options.addOption(new Option("n", true, "Number of sections annotated. If not included, expect sections 1 to the highest one found."));
+		options.addOption(new Option("rows", true, "Maximum number of CNVs held in memory while sorting; larger shards are sorted in several runs [" + ShardGatherer.DEFAULT_MAX_ROWS + "]."));
+		options.addOption(new Option("bgzip", false, "Write bgzipped output with a tabix index, <output>.txt.gz.tbi."));
+		options.addOption(new Option("tmp", true, "Path to tmp directory for sorted runs."));
+		options.addOption(new Option("help", false, "Print help message."));
+
+		return options;
+
+	}
+
+	private void loadOptions(String args[]) {
+
+		CommandLineParser parser = new BasicParser();
+		CommandLine cmd = null;
+
+		try {
+			 cmd = parser.parse(options, args);
+		} catch (org.apache.commons.cli.ParseException e) {
+			System.out.println();
+			ThrowHelp(e.getMessage());
+		}
+
+		if (cmd.hasOption("help")) {
+			ThrowHelp("");
+		}
+
+		shardPrefix = new File(cmd.getOptionValue("i"));
+		output = new File(cmd.getOptionValue("o"));
+		if (cmd.hasOption("n")) {
+			sections = Integer.parseInt(cmd.getOptionValue("n"));
+		} else {
+			sections = -1;
+		}
+		if (cmd.hasOption("rows")) {
+			maxRows = Integer.parseInt(cmd.getOptionValue("rows"));
+		} else {
+			maxRows = ShardGatherer.DEFAULT_MAX_ROWS;
+		}
+		if (cmd.hasOption("tmp")) {
+			tmpDirectory = new File(cmd.getOptionValue("tmp"));
+		} else {
+			tmpDirectory = new File(System.getProperty("java.io.tmpdir"));
+		}
+		bgzip = cmd.hasOption("bgzip");
+
+	}
+
+	private void ThrowHelp(String top) {
+		String header = "Axiom Array CNV Annotator\n\n\n";
+		String footer = "\n\n(c) Eugene Gardner 2018";
+		String usage = "java -jar CNVAnnotator.jar Gather <options>";
+		System.out.println();
+		System.out.println(top);
+		HelpFormatter formatter = new HelpFormatter();
+		System.out.println();
+		formatter.printHelp(9999, usage, header, options, footer);
+		System.exit(1);
+	}
+
+}
@@ -0,0 +1,246 @@
+package sampleannotator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import merger.CNVConverter.CopyType;
+
+/**
+ * In-memory index of one WES CNV callset (CONVEX, XHMM, CLAMMS or CANOES), keyed by sample and chromosome, so looking up
+ * a sample's calls only touches that sample's records instead of every call at the locus. Calls are stored as
+ * primitive columns sorted by start.
+ *
+ * The callset is read on first use. Once loaded the index is read-only, so a single instance is shared by all
+ * annotation threads.
+ */
+public class WESCallIndex {
+
+	private static final CopyType COPY_TYPES[] = CopyType.values();
+
+	private File callFile;
+	private volatile Map<String, Map<String, SampleCalls>> calls;
+	private long totalCalls;
+	private long footprint;
+
+	public WESCallIndex(File callFile) {
+		this.callFile = callFile;
+		calls = null;
+	}
+
+	/**
+	 * @return all calls for <code>sampleID</code> on <code>chr</code>, or null if the sample has none there
+	 */
+	public SampleCalls getCalls(String sampleID, String chr) throws IOException {
+
+		Map<String, Map<String, SampleCalls>> loaded = calls;
+		if (loaded == null) {
+			loaded = load();
+		}
+		Map<String, SampleCalls> sampleCalls = loaded.get(sampleID);
+		return sampleCalls == null ? null : sampleCalls.get(chr);
+
+	}
+
+	public File getCallFile() {
+		return callFile;
+	}
+	public long getTotalCalls() {
+		return totalCalls;
+	}
+	/**
+	 * @return approximate heap use of the loaded index in bytes (0 if not yet loaded)
+	 */
+	public long getFootprint() {
+		return footprint;
+	}
+
+	private synchronized Map<String, Map<String, SampleCalls>> load() throws IOException {
+
+		if (calls != null) {
+			return calls;
+		}
+
+		Map<String, Map<String, SampleCallsBuilder>> builders = new HashMap<String, Map<String, SampleCallsBuilder>>();
+		BufferedReader callReader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(callFile), 65536), "UTF-8"));
+
+		String line;
+		String data[];
+		long lineNumber = 0;
+		long loadedCalls = 0;
+
+		// The whole callset is parsed up front, so a bad line has to say where it is
+		try {
+			while ((line = callReader.readLine()) != null) {
+
+				lineNumber++;
+				if (line.startsWith("#")) {
+					continue;
+				}
+				data = line.split("\t");
+				if (data.length < 7) {
+					throw new IOException("Expected at least 7 columns but found " + data.length + " at " + callFile.getAbsolutePath() + ":" + lineNumber);
+				}
+
+				String chr = data[0];
+				int start;
+				int end;
+				int probes;
+				try {
+					start = Integer.parseInt(data[1]);
+					end = Integer.parseInt(data[2]);
+					probes = (int) Double.parseDouble(data[3]);
+				} catch (NumberFormatException e) {
+					throw new IOException("Invalid start, end or probe count at " + callFile.getAbsolutePath() + ":" + lineNumber + " (" + e.getMessage() + ")", e);
+				}
+				CopyType ct = getCopyType(data[5]);
+				if (ct == null) {
+					throw new IOException("Unknown copy type '" + data[5] + "' at " + callFile.getAbsolutePath() + ":" + lineNumber);
+				}
+				String sampleID = data[6];
+
+				Map<String, SampleCallsBuilder> sampleBuilders = builders.get(sampleID);
+				if (sampleBuilders == null) {
+					sampleBuilders = new HashMap<String, SampleCallsBuilder>();
+					builders.put(sampleID, sampleBuilders);
+				}
+				SampleCallsBuilder builder = sampleBuilders.get(chr);
+				if (builder == null) {
+					builder = new SampleCallsBuilder();
+					sampleBuilders.put(chr, builder);
+				}
+				builder.add(start, end, probes, ct);
+				loadedCalls++;
+
+			}
+		} finally {
+			callReader.close();
+		}
+
+		Map<String, Map<String, SampleCalls>> loaded = new HashMap<String, Map<String, SampleCalls>>();
+		long bytes = 0;
+		for (Map.Entry<String, Map<String, SampleCallsBuilder>> sampleEntry : builders.entrySet()) {
+			Map<String, SampleCalls> sampleCalls = new HashMap<String, SampleCalls>();
+			for (Map.Entry<String, SampleCallsBuilder> chrEntry : sampleEntry.getValue().entrySet()) {
+				SampleCalls built = chrEntry.getValue().build();
+				sampleCalls.put(chrEntry.getKey(), built);
+				// 3 int arrays + 1 byte array (16 byte headers) + the object + its map entry
+				bytes += (13L * built.size()) + (4 * 16) + 32 + 48;
+			}
+			// map + map entry + sample ID string
+			bytes += 64 + 48 + 40 + (2L * sampleEntry.getKey().length());
+			loaded.put(sampleEntry.getKey(), sampleCalls);
+		}
+
+		totalCalls = loadedCalls;
+		footprint = bytes;
+		calls = loaded;
+
+		System.err.println("Loaded WES calls from " + callFile.getName() + ": " + loadedCalls + " calls, " + loaded.size() + " samples, ~" + (bytes / 1024) + " KiB");
+
+		return loaded;
+
+	}
+
+	private static CopyType getCopyType(String name) {
+		for (CopyType ct : COPY_TYPES) {
+			if (ct.name().equals(name)) {
+				return ct;
+			}
+		}
+		return null;
+	}
+
+	public static class SampleCalls {
+
+		private int size;
+		private int starts[];
+		private int ends[];
+		private int probes[];
+		private byte copyTypes[];
+
+		private SampleCalls(int size, int starts[], int ends[], int probes[], byte copyTypes[]) {
+			this.size = size;
+			this.starts = starts;
+			this.ends = ends;
+			this.probes = probes;
+			this.copyTypes = copyTypes;
+		}
+
+		public int size() {
+			return size;
+		}
+		public int getStart(int index) {
+			return starts[index];
+		}
+		public int getEnd(int index) {
+			return ends[index];
+		}
+		public int getProbes(int index) {
+			return probes[index];
+		}
+		public CopyType getCopyType(int index) {
+			return COPY_TYPES[copyTypes[index]];
+		}
+
+	}
+
+	private static class SampleCallsBuilder {
+
+		private int size;
+		private long records[]; // start in the high bits, insertion order in the low bits, so sorting is stable
+		private int ends[];
+		private int probes[];
+		private byte copyTypes[];
+
+		private SampleCallsBuilder() {
+			size = 0;
+			records = new long[4];
+			ends = new int[4];
+			probes = new int[4];
+			copyTypes = new byte[4];
+		}
+
+		private void add(int start, int end, int probeCount, CopyType ct) {
+			if (size == ends.length) {
+				records = Arrays.copyOf(records, size * 2);
+				ends = Arrays.copyOf(ends, size * 2);
+				probes = Arrays.copyOf(probes, size * 2);
+				copyTypes = Arrays.copyOf(copyTypes, size * 2);
+			}
+			records[size] = ((long) start << 32) | size;
+			ends[size] = end;
+			probes[size] = probeCount;
+			copyTypes[size] = (byte) ct.ordinal();
+			size++;
+		}
+
+		private SampleCalls build() {
+
+			long sorted[] = Arrays.copyOf(records, size);
+			Arrays.sort(sorted);
+
+			int builtStarts[] = new int[size];
+			int builtEnds[] = new int[size];
+			int builtProbes[] = new int[size];
+			byte builtCopyTypes[] = new byte[size];
+			for (int x = 0; x < size; x++) {
+				int original = (int) (sorted[x] & 0xFFFFFFFFL);
+				builtStarts[x] = (int) (sorted[x] >> 32);
+				builtEnds[x] = ends[original];
+				builtProbes[x] = probes[original];
+				builtCopyTypes[x] = copyTypes[original];
+			}
+			return new SampleCalls(size, builtStarts, builtEnds, builtProbes, builtCopyTypes);
+
+		}
+
+	}
+
+}
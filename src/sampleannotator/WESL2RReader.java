@@ -0,0 +1,128 @@
+package sampleannotator;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import htsjdk.tribble.readers.TabixReader.Iterator;
+import utilities.CNV;
+import utilities.CachedTabixReader;
+import utilities.PrimitiveStatistics;
+import utilities.ResourcePaths;
+import utilities.TabixReaderPool;
+
+/**
+ * Access to the per-sample CONVEX WES read-depth (L2R) files, ProbeRD_&lt;EGAN&gt;_LR2.coords.bed.gz. Readers are kept open
+ * per EGAN in a bounded {@link TabixReaderPool}, and all of a sample's CNVs are queried together in coordinate order so
+ * the reader moves forward through the file. L2R values are read straight from the line into a recycled statistics
+ * buffer.
+ *
+ * Like its tabix readers, not thread-safe -- one per {@link RawCNVReader}.
+ */
+public class WESL2RReader implements Closeable {
+
+	private TabixReaderPool l2rReaders;
+	private PrimitiveStatistics l2rStats;
+	private LookupStatistics lookupStatistics;
+
+	/**
+	 * @param lookupStatistics where each query's count and latency is recorded
+	 */
+	public WESL2RReader(int maxTabixHandles, LookupStatistics lookupStatistics) {
+
+		l2rReaders = new TabixReaderPool(maxTabixHandles);
+		l2rStats = new PrimitiveStatistics();
+		this.lookupStatistics = lookupStatistics;
+
+	}
+
+	/**
+	 * Attaches WES L2R mean/SD/N to each CNV.
+	 *
+	 * @param EGAN WES sample ID that all <code>cnvs</code> belong to
+	 */
+	public void annotate(String EGAN, List<CNV> cnvs) throws IOException {
+
+		if (cnvs.size() == 0) {
+			return;
+		}
+
+		CachedTabixReader l2rTabix = l2rReaders.getReader(getL2RFile(EGAN));
+
+		List<CNV> sortedCNVs = cnvs;
+		if (cnvs.size() > 1) {
+			sortedCNVs = new ArrayList<CNV>(cnvs);
+			Collections.sort(sortedCNVs, COORDINATE_ORDER);
+		}
+
+		for (CNV cnv : sortedCNVs) {
+
+			l2rStats.clear();
+			long startNanos = System.nanoTime();
+			Iterator itr = l2rTabix.query(cnv.getChr(), cnv.getStart(), cnv.getEnd());
+
+			String line;
+			long bytes = 0;
+			while ((line = itr.next()) != null) {
+				l2rStats.addValue(parseL2R(line));
+				bytes += line.length() + 1;
+			}
+			lookupStatistics.record(LookupStatistics.Source.WES_L2R, startNanos, l2rStats.getN(), bytes);
+
+			cnv.setWESStats(l2rStats);
+
+		}
+
+	}
+
+	public TabixReaderPool getReaderPool() {
+		return l2rReaders;
+	}
+
+	@Override
+	public void close() {
+		l2rReaders.close();
+	}
+
+	public static File getL2RFile(String EGAN) {
+		return getL2RFile(ResourcePaths.get(ResourcePaths.WES_L2R_DIRECTORY), EGAN);
+	}
+	public static File getL2RFile(File l2rDirectory, String EGAN) {
+		return new File(l2rDirectory, "ProbeRD_" + EGAN + "_LR2.coords.bed.gz");
+	}
+
+	// L2R is the fourth tab-delimited column; find it without splitting the whole line
+	private static double parseL2R(String line) {
+
+		int fieldStart = 0;
+		for (int field = 0; field < 3; field++) {
+			fieldStart = line.indexOf('\t', fieldStart) + 1;
+			if (fieldStart == 0) {
+				throw new NumberFormatException("Too few columns in WES L2R line: " + line);
+			}
+		}
+		int fieldEnd = line.indexOf('\t', fieldStart);
+		if (fieldEnd == -1) {
+			fieldEnd = line.length();
+		}
+		return Double.parseDouble(line.substring(fieldStart, fieldEnd));
+
+	}
+
+	private static final Comparator<CNV> COORDINATE_ORDER = new Comparator<CNV>() {
+		@Override
+		public int compare(CNV o1, CNV o2) {
+			int chrComp = o1.getChr().compareTo(o2.getChr());
+			if (chrComp != 0) {
+				return chrComp;
+			} else {
+				return Integer.compare(o1.getStart(), o2.getStart());
+			}
+		}
+	};
+
+}
@@ -2,150 +2,98 @@ package sampleannotator.resources;
 
 import java.io.File;
 
+/**
+ * One sample's row of a {@link SampleTable}. There is one per sample ID, so it can be compared and hashed by identity.
+ */
 public class SampleInformation {
-	
-	private File splitFile;
-	private String CELName;
-	private String affyID;
-	private String sangerID;
-	private String EGAN;
-	private boolean hasWES;
-	private Gender gender;
-	private Double callRate;
-	
-	public SampleInformation(String CELName, String affyID, Gender gender, double callRate) {
-		
-		this.CELName = CELName;
-		this.affyID = affyID;
-		this.gender = gender;
-		this.callRate = callRate;
-		hasWES = false;
-		
+
+	private final SampleTable table;
+	private final int id;
+
+	SampleInformation(SampleTable table, int id) {
+		this.table = table;
+		this.id = id;
 	}
 
-	public String getSangerID() {
-		return sangerID;
+	/**
+	 * @return dense ID of this sample in its {@link SampleTable}
+	 */
+	public int getId() {
+		return id;
 	}
-	public void setSangerID(String sangerID) {
-		this.sangerID = sangerID;
-		hasWES = true;
+	public String getSangerID() {
+		return table.getSangerID(id);
 	}
 	public String getEGAN() {
-		return EGAN;
-	}
-	public void setEGAN(String EGAN) {
-		this.EGAN = EGAN;
+		return table.getEGAN(id);
 	}
 	public File getSplitFile() {
-		return splitFile;
-	}
-	public void setSplitFile(File splitFile) {
-		this.splitFile = splitFile;
+		return table.getSplitFile(id);
 	}
 	public String getCELName() {
-		return CELName;
+		return table.getCELName(id);
 	}
 	public String getAffyID() {
-		return affyID;
+		return table.getAffyID(id);
 	}
 	public Gender getGender() {
-		return gender;
+		return table.getGender(id);
 	}
-	public Double getCallRate() {
-		return callRate;
+	public double getCallRate() {
+		return table.getCallRate(id);
 	}
 	public boolean hasWES() {
-		return hasWES;
-	}
-	
-	private double lrr_sd;
-	private double lrr_mean;
-	private double lrr_median;
-	private double baf_sd;
-	private double baf_mean;
-	private double baf_median;
-	private double baf_drift;
-	private double wf;
-	private int numCNV;
-	private boolean isIndivFiltered;
-	
-	public void addFilterInformation(double wf, int numCNV) {
-		this.wf = wf;
-		this.numCNV = numCNV;
-		isIndivFiltered = checkIndivFilter(numCNV, wf);
+		return table.getSangerID(id) != null;
 	}
 
 	public double getLrr_sd() {
-		return lrr_sd;
-	}
-	public void setLrr_sd(double lrr_sd) {
-		this.lrr_sd = lrr_sd;
+		return table.getLrrSD(id);
 	}
 	public double getLrr_mean() {
-		return lrr_mean;
-	}
-	public void setLrr_mean(double lrr_mean) {
-		this.lrr_mean = lrr_mean;
+		return table.getLrrMean(id);
 	}
 	public double getLrr_median() {
-		return lrr_median;
-	}
-	public void setLrr_median(double lrr_median) {
-		this.lrr_median = lrr_median;
+		return table.getLrrMedian(id);
 	}
 	public double getBaf_sd() {
-		return baf_sd;
-	}
-	public void setBaf_sd(double baf_sd) {
-		this.baf_sd = baf_sd;
+		return table.getBafSD(id);
 	}
 	public double getBaf_mean() {
-		return baf_mean;
-	}
-	public void setBaf_mean(double baf_mean) {
-		this.baf_mean = baf_mean;
+		return table.getBafMean(id);
 	}
 	public double getBaf_median() {
-		return baf_median;
-	}
-	public void setBaf_median(double baf_median) {
-		this.baf_median = baf_median;
+		return table.getBafMedian(id);
 	}
 	public double getBaf_drift() {
-		return baf_drift;
-	}
-	public void setBaf_drift(double baf_drift) {
-		this.baf_drift = baf_drift;
+		return table.getBafDrift(id);
 	}
 
 	public double getWf() {
-		return wf;
+		return table.getWf(id);
 	}
 	public int getNumCNV() {
-		return numCNV;
+		return table.getNumCNV(id);
 	}
 
 	public boolean isIndivFiltered() {
-		return isIndivFiltered;
+		return checkIndivFilter(table.getNumCNV(id), table.getWf(id));
 	}
 	private boolean checkIndivFilter (int numCNV, double wf) {
-		
+
 		if (numCNV <= 30 && wf > -0.03 && wf < 0.03) {
 			return false;
 		} else {
 			return true;
 		}
-		
+
 	}
-	
+
 	public enum Gender {
 		MALE,
 		FEMALE,
-		UNKNOWN;		
+		UNKNOWN;
 	}
 
 
-	
-}
-
 
+}
@@ -2,60 +2,125 @@ package sampleannotator.resources;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import sampleannotator.resources.SampleInformation.Gender;
+import sampleannotator.resources.SampleSnapshot.Source;
+import utilities.CompressedInput;
+import utilities.ResourcePaths;
 
 public class SampleLoader {
 
-	private Map<String, SampleInformation> sampleInformation;
+	public static final String AFFY_SAMPLE_TABLE = "affy_sample_table.csv";
+	public static final String SAMPLE_NAME_KEY = "sample_name_key.csv";
+	public static final String CEL_TO_SPLIT = "CELtoSplit.txt";
+	public static final int QC_BATCHES = 10;
+
+	private SampleTable sampleTable;
 	private Set<String> samples;
 	
 	public SampleLoader() throws IOException {
 		
 		samples = new HashSet<String>();
 		
-		BufferedReader affyReader = new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream("/sampleannotator/resources/affy_sample_table.csv"), "UTF-8"));
+		// Sources are stamped before parsing, so a table changed mid-parse leaves the snapshot stale
+		File snapshotFile = ResourcePaths.getSampleSnapshot();
+		List<Source> sources = snapshotFile == null ? null : getSources();
+		if (snapshotFile != null && (sampleTable = SampleSnapshot.load(snapshotFile, sources, samples)) != null) {
+			System.err.println("Total samples mapped from sample snapshot " + snapshotFile.getAbsolutePath() + ": " + sampleTable.size());
+			return;
+		}
+		
+		parseTables();
+		
+		if (snapshotFile != null) {
+			try {
+				SampleSnapshot.write(snapshotFile, sources, sampleTable, samples);
+				System.err.println("Wrote sample snapshot " + snapshotFile.getAbsolutePath());
+			} catch (IOException e) {
+				System.err.println("Could not write sample snapshot " + snapshotFile.getAbsolutePath() + ", tables will be parsed again next run: " + e.getMessage());
+			}
+		}
+		
+	}
+	
+	private void parseTables() throws IOException {
+		
+		// Every row parsed goes here; only those with a split file are kept in sampleTable
+		SampleTable parsed = new SampleTable();
+		
+		BufferedReader affyReader = openTable(AFFY_SAMPLE_TABLE);
 		//Do initially as affy2CEL to ensure we only get one CEL file per individual
-		sampleInformation = BuildAffyCelRelationship(affyReader);
+		Map<String, Integer> affy2CEL = BuildAffyCelRelationship(affyReader, parsed);
 		affyReader.close();
 
-		BufferedReader keyReader = new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream("/sampleannotator/resources/sample_name_key.csv"), "UTF-8"));
-		addWESInfo(keyReader);
+		BufferedReader keyReader = openTable(SAMPLE_NAME_KEY);
+		addWESInfo(keyReader, parsed, affy2CEL);
 		keyReader.close();
 		
-		//Switch to CEL2affy so we can access info from splitReader (and make initial SampleInfo hash).
-		sampleInformation = InvertSampleID();
+		//Switch to CEL2affy so we can access info from splitReader.
+		Map<String, Integer> CEL2affy = InvertSampleID(affy2CEL, parsed);
 		
-		BufferedReader splitReader = new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream("/sampleannotator/resources/CELtoSplit.txt"), "UTF-8"));
+		BufferedReader splitReader = openTable(CEL_TO_SPLIT);
 
-		addSplitFileAndQCData(splitReader);
+		addSplitFileAndQCData(splitReader, parsed, CEL2affy);
 		
 		splitReader.close();
-		System.err.println("Total samples parsed for sample information: " + sampleInformation.size());
+		System.err.println("Total samples parsed for sample information: " + sampleTable.size());
 		
 	}
 	
-	public Map<String, SampleInformation> getSampleInformation() {
-		return sampleInformation;
+	// From ResourcePaths.getSampleTableDirectory() if set, otherwise the copy packaged with the jar
+	private BufferedReader openTable(String name) throws IOException {
+		File tableDirectory = ResourcePaths.getSampleTableDirectory();
+		InputStream tableStream = tableDirectory == null ? this.getClass().getResourceAsStream("/sampleannotator/resources/" + name) : new FileInputStream(new File(tableDirectory, name));
+		return new BufferedReader(new InputStreamReader(tableStream, "UTF-8"));
+	}
+	// Everything the registry is built from, as openTable() and buildQCInformation() would read it
+	private List<Source> getSources() throws IOException {
+		List<Source> sources = new ArrayList<Source>();
+		File tableDirectory = ResourcePaths.getSampleTableDirectory();
+		for (String name : new String[] {AFFY_SAMPLE_TABLE, SAMPLE_NAME_KEY, CEL_TO_SPLIT}) {
+			if (tableDirectory == null) {
+				sources.add(Source.of(this.getClass().getResource("/sampleannotator/resources/" + name), name));
+			} else {
+				sources.add(Source.of(new File(tableDirectory, name)));
+			}
+		}
+		for (int x = 1; x <= QC_BATCHES; x++) {
+			sources.add(Source.of(ResourcePaths.getQCSum(x)));
+		}
+		return sources;
+	}
+	
+	public SampleTable getSampleTable() {
+		return sampleTable;
 	}
 	public Set<String> getSamples() {
 		return samples;
 	}
 	
- 	private Map<String, SampleInformation> BuildAffyCelRelationship(BufferedReader affyReader) throws IOException {
+ 	private Map<String, Integer> BuildAffyCelRelationship(BufferedReader affyReader, SampleTable parsed) throws IOException {
 		
-		Map<String, SampleInformation> affy2CEL = new HashMap<String, SampleInformation>();
-		Map<String, Double> qualityScores = new HashMap<String, Double>();
+		Map<String, Integer> affy2CEL = new HashMap<String, Integer>();
 		
 		String line;
 		String data[];
@@ -76,16 +141,11 @@ public class SampleLoader {
 			Gender gender = getGender(reportedGender, actualGender);
 			
 			if (pass && !ctrl) {
-				if (qualityScores.containsKey(affyID)) {
-					if (qualityScores.get(affyID) < quality) {
-						affy2CEL.put(affyID, new SampleInformation(CELID, affyID, gender, quality));
-						qualityScores.put(affyID, quality);
-					} else {
-						dropped++;
-					}
+				Integer current = affy2CEL.get(affyID);
+				if (current == null || parsed.get(current).getCallRate() < quality) {
+					affy2CEL.put(affyID, parsed.add(CELID, affyID, gender, quality));
 				} else {
-					affy2CEL.put(affyID, new SampleInformation(CELID, affyID, gender, quality));
-					qualityScores.put(affyID, quality);
+					dropped++;
 				}
 			} else {
 				dropped++;
@@ -151,7 +211,7 @@ public class SampleLoader {
 		return gender;
  	}
 
-	private void addWESInfo(BufferedReader keyReader) throws IOException {
+	private void addWESInfo(BufferedReader keyReader, SampleTable parsed, Map<String, Integer> affy2CEL) throws IOException {
 		
 		String line;
 		String data[];
@@ -163,13 +223,11 @@ public class SampleLoader {
 			String EGAN = data[2];
 			String affyID = data[1];
 			String sangerID = data[0];
-			SampleInformation sampleInfo = sampleInformation.get(affyID);
-			if (sampleInfo == null) {
+			Integer id = affy2CEL.get(affyID);
+			if (id == null) {
 				continue;
 			}
-			sampleInfo.setEGAN(EGAN);
-			sampleInfo.setSangerID(sangerID);
-			sampleInformation.put(affyID, sampleInfo);
+			parsed.setWES(id, sangerID, EGAN);
 			WESsamples++;
 			
 		}
@@ -177,52 +235,82 @@ public class SampleLoader {
 		System.err.println("Total samples with WES information attached: " + WESsamples);
 		
 	}
-	private Map<String, SampleInformation> InvertSampleID() {
+	private Map<String, Integer> InvertSampleID(Map<String, Integer> affy2CEL, SampleTable parsed) {
 		
-		Map<String, SampleInformation> invertedSampleInformation = new HashMap<String, SampleInformation>();
-		for (Map.Entry<String, SampleInformation> sampleEntry : sampleInformation.entrySet()) {
-			invertedSampleInformation.put(sampleEntry.getValue().getCELName(), sampleEntry.getValue());
+		Map<String, Integer> CEL2affy = new HashMap<String, Integer>();
+		for (Integer id : affy2CEL.values()) {
+			CEL2affy.put(parsed.get(id).getCELName(), id);
 		}
-		return invertedSampleInformation;
+		return CEL2affy;
 		
 	}
 	
-	//This is currently hard coded. Might be bad!
+	//Batch files live under ResourcePaths.getRoot(), and are read in parallel as each is a separate round trip to Lustre
 	private Map<File, String[]> buildQCInformation() throws IOException {
 		
+		ExecutorService batchReaders = Executors.newFixedThreadPool(QC_BATCHES);
+		List<Future<Map<File, String[]>>> batches = new ArrayList<Future<Map<File, String[]>>>();
+		for (int x = 1; x <= QC_BATCHES; x++) {
+			final File qcSum = ResourcePaths.getQCSum(x);
+			batches.add(batchReaders.submit(new Callable<Map<File, String[]>>() {
+				@Override
+				public Map<File, String[]> call() throws IOException {
+					return readQCSum(qcSum);
+				}
+			}));
+		}
+		batchReaders.shutdown();
+		
+		// Later batches win, as when the batches were read one after another
+		Map<File, String[]> qcData = new HashMap<File, String[]>();
+		try {
+			for (Future<Map<File, String[]>> batch : batches) {
+				qcData.putAll(batch.get());
+			}
+		} catch (InterruptedException e) {
+			batchReaders.shutdownNow();
+			throw new IOException("Interrupted while reading qcsum batches", e);
+		} catch (ExecutionException e) {
+			batchReaders.shutdownNow();
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Could not read qcsum batches", e.getCause());
+		}
+		
+		return qcData;
+		
+	}
+	private static Map<File, String[]> readQCSum(File qcSum) throws IOException {
+		
 		Map<File, String[]> qcData = new HashMap<File, String[]>();
+		BufferedReader qcReader = CompressedInput.openReader(qcSum);
 		
-		for (int x = 1; x <= 10; x++) {
-			
-			BufferedReader qcReader = new BufferedReader(new FileReader(new File("/lustre/scratch115/projects/interval_cnv/calling/batch" + x + "/batch" + x + ".qcsum")));
-			
-			String line;
-			String data[];
-			
-			while ((line = qcReader.readLine()) != null) {
-				data = line.split("\t");
-				if (data[0].equals("File")) {
-					continue;
-				} else {
-					File splitFile = new File(data[0]);
-					qcData.put(splitFile, Arrays.copyOfRange(data, 1, data.length));
-				}
+		String line;
+		String data[];
+		
+		while ((line = qcReader.readLine()) != null) {
+			data = line.split("\t");
+			if (data[0].equals("File")) {
+				continue;
+			} else {
+				File splitFile = new File(data[0]);
+				qcData.put(splitFile, Arrays.copyOfRange(data, 1, data.length));
 			}
-			
-			qcReader.close();
-						
 		}
 		
+		qcReader.close();
 		return qcData;
 		
 	}
 	//Call rate is current FUCKED -- Unsure if this is taken care of by QC file provided by Tao
-	private void addSplitFileAndQCData(BufferedReader splitReader) throws IOException {
+	private void addSplitFileAndQCData(BufferedReader splitReader, SampleTable parsed, Map<String, Integer> CEL2affy) throws IOException {
 		
 		String line;
 		String data[];
 		
-		Map<String, SampleInformation> finalSampleInformation = new HashMap<String, SampleInformation>();
+		// Split file name -> row in parsed, in the order they get their final IDs
+		Map<String, Integer> finalSamples = new LinkedHashMap<String, Integer>();
 		
 		Pattern filePattern = Pattern.compile("(split\\d+\\.a\\d{6}\\S*)");
 		
@@ -233,28 +321,23 @@ public class SampleLoader {
 			data = line.split("\t");
 			String CELName = new File(data[0]).getName();
 			File splitFile = new File(data[1]);
-			if (sampleInformation.get(CELName) != null) {
+			Integer id = CEL2affy.get(CELName);
+			if (id != null) {
  				
-				SampleInformation sampInfo = sampleInformation.get(CELName);
- 				sampInfo.setSplitFile(splitFile);
+ 				parsed.setSplitFile(id, splitFile);
 				String rawQCStats[] = qcInfo.get(splitFile);
 				
 				double wf = Double.parseDouble(rawQCStats[7]);
 				int numCNV = Integer.parseInt(rawQCStats[8]);
 				
-				sampInfo.addFilterInformation(wf, numCNV);
-				
-				sampInfo.setLrr_mean(Double.parseDouble(rawQCStats[0]));
-				sampInfo.setLrr_median(Double.parseDouble(rawQCStats[1]));
-				sampInfo.setLrr_sd(Double.parseDouble(rawQCStats[2]));
-				
-				sampInfo.setBaf_mean(Double.parseDouble(rawQCStats[3]));
-				sampInfo.setBaf_median(Double.parseDouble(rawQCStats[4]));
-				sampInfo.setBaf_sd(Double.parseDouble(rawQCStats[5]));
+				parsed.setFilterInformation(id, wf, numCNV);
 				
-				sampInfo.setBaf_drift(Double.parseDouble(rawQCStats[6]));
+				parsed.setQC(id,
+						Double.parseDouble(rawQCStats[0]), Double.parseDouble(rawQCStats[1]), Double.parseDouble(rawQCStats[2]),
+						Double.parseDouble(rawQCStats[3]), Double.parseDouble(rawQCStats[4]), Double.parseDouble(rawQCStats[5]),
+						Double.parseDouble(rawQCStats[6]));
 								
-				finalSampleInformation.put(splitFile.getName(), sampInfo);
+				finalSamples.put(splitFile.getName(), id);
 				
 				// Add all samples that pass QC into sample list
 				Matcher fileMatcher = filePattern.matcher(splitFile.getName());
@@ -272,7 +355,7 @@ public class SampleLoader {
 			
 		}
 		
-		sampleInformation = finalSampleInformation;
+		sampleTable = parsed.select(finalSamples);
 		
 	}
 
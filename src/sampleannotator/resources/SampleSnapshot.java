@@ -0,0 +1,166 @@
+package sampleannotator.resources;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import utilities.IntervalTrack;
+
+/**
+ * The fully joined sample registry built by {@link SampleLoader} (its {@link SampleTable}, column by column, and the
+ * set of sample names), written to one binary file so later runs memory-map it instead of parsing the
+ * sample tables and all qcsum batches again.
+ *
+ * The snapshot records the path, length and modification time of every source it was built from. If any of them has
+ * changed, moved (e.g. a different <code>-Dcnvannotator.root</code>) or gone, the snapshot is stale and is ignored.
+ */
+public class SampleSnapshot {
+
+	private static final int MAGIC = 0x434E5653; // "CNVS"
+	private static final int VERSION = 2;
+
+	private SampleSnapshot() {}
+
+	/**
+	 * One source file as it was when the snapshot was built.
+	 */
+	public static class Source {
+
+		private String path;
+		private long length;
+		private long modified;
+
+		public Source(String path, long length, long modified) {
+			this.path = path;
+			this.length = length;
+			this.modified = modified;
+		}
+		/**
+		 * @return the file as it is now; missing files have length and modification time 0
+		 */
+		public static Source of(File file) {
+			return new Source(file.getAbsolutePath(), file.length(), file.lastModified());
+		}
+		/**
+		 * @return a resource packaged with the code, stamped by the jar (or class directory file) it is read from
+		 */
+		public static Source of(URL resource, String name) throws IOException {
+			if (resource == null) {
+				return new Source(name, 0, 0);
+			}
+			try {
+				if (resource.getProtocol().equals("jar")) {
+					return of(new File(((JarURLConnection) resource.openConnection()).getJarFileURL().toURI()));
+				} else if (resource.getProtocol().equals("file")) {
+					return of(new File(resource.toURI()));
+				}
+			} catch (URISyntaxException e) {
+				throw new IOException("Can't locate packaged " + name + ": " + resource, e);
+			}
+			// Can't tell if it changed, so never trust a snapshot of it
+			return new Source(resource.toString(), -1, System.currentTimeMillis());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Source)) {
+				return false;
+			}
+			Source other = (Source) obj;
+			return path.equals(other.path) && length == other.length && modified == other.modified;
+		}
+		@Override
+		public int hashCode() {
+			return path.hashCode();
+		}
+
+	}
+
+	/**
+	 * Writes the snapshot to a temporary file and renames it into place, so jobs starting at the same time never map half
+	 * of one.
+	 */
+	public static void write(File snapshotFile, List<Source> sources, SampleTable sampleTable, Set<String> samples) throws IOException {
+
+		File tmpFile = File.createTempFile(snapshotFile.getName() + ".", ".tmp", snapshotFile.getAbsoluteFile().getParentFile());
+		try {
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 65536));
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(sources.size());
+			for (Source source : sources) {
+				output.writeUTF(source.path);
+				output.writeLong(source.length);
+				output.writeLong(source.modified);
+			}
+
+			sampleTable.write(output);
+			output.writeInt(samples.size());
+			for (String sample : samples) {
+				output.writeUTF(sample);
+			}
+			output.close();
+			Files.move(tmpFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			tmpFile.delete();
+		}
+
+	}
+
+	/**
+	 * Memory-maps a snapshot and rebuilds the registry from it.
+	 *
+	 * @param samples filled with the snapshot's sample names
+	 * @return the snapshot's samples, or null, without filling <code>samples</code>, if there is no snapshot, it is from another version, or any source differs from <code>sources</code>
+	 */
+	public static SampleTable load(File snapshotFile, List<Source> sources, Set<String> samples) throws IOException {
+
+		if (!snapshotFile.exists()) {
+			return null;
+		}
+		RandomAccessFile snapshotAccess = new RandomAccessFile(snapshotFile, "r");
+		FileChannel snapshotChannel = snapshotAccess.getChannel();
+		// The mapping stays valid after the channel is closed
+		MappedByteBuffer buffer = snapshotChannel.map(FileChannel.MapMode.READ_ONLY, 0, snapshotChannel.size());
+		snapshotAccess.close();
+
+		try {
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				return null;
+			}
+			int numSources = buffer.getInt();
+			List<Source> snapshotSources = new ArrayList<Source>(numSources);
+			for (int x = 0; x < numSources; x++) {
+				snapshotSources.add(new Source(IntervalTrack.readUTF(buffer), buffer.getLong(), buffer.getLong()));
+			}
+			if (!snapshotSources.equals(sources)) {
+				return null;
+			}
+
+			SampleTable sampleTable = SampleTable.read(buffer);
+			int numNames = buffer.getInt();
+			for (int x = 0; x < numNames; x++) {
+				samples.add(IntervalTrack.readUTF(buffer));
+			}
+			return sampleTable;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Sample snapshot " + snapshotFile.getAbsolutePath() + " is truncated; delete it to rebuild", e);
+		}
+
+	}
+
+}
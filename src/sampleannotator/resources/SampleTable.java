@@ -0,0 +1,289 @@
+package sampleannotator.resources;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import sampleannotator.resources.SampleInformation.Gender;
+import utilities.IntervalTrack;
+
+/**
+ * Information for every sample, held as one primitive column per field and indexed by a dense sample ID (0 to
+ * {@link #size()} - 1, in the order samples were added) rather than as one object per sample. A sample is looked up by
+ * split file name once, when its CNVs are read; after that it is carried as its ID, or as the {@link SampleInformation}
+ * view of its row, of which there is exactly one per ID.
+ *
+ * Rows are filled in while the sample tables are parsed; the table is read-only once loading has finished.
+ */
+public class SampleTable {
+
+	private int size;
+	private int capacity;
+	private Map<String, Integer> ids;
+	private SampleInformation views[];
+
+	private String names[]; // split file name each sample is looked up by
+	private File splitFiles[];
+	private String CELNames[];
+	private String affyIDs[];
+	private String sangerIDs[]; // null without WES
+	private String EGANs[];
+	private byte genders[];
+	private double callRates[];
+	private double lrrMeans[];
+	private double lrrMedians[];
+	private double lrrSDs[];
+	private double bafMeans[];
+	private double bafMedians[];
+	private double bafSDs[];
+	private double bafDrifts[];
+	private double wfs[];
+	private int numCNVs[];
+
+	public SampleTable() {
+		this(1024);
+	}
+	private SampleTable(int capacity) {
+		size = 0;
+		this.capacity = Math.max(capacity, 16);
+		ids = new HashMap<String, Integer>();
+		views = new SampleInformation[this.capacity];
+		names = new String[this.capacity];
+		splitFiles = new File[this.capacity];
+		CELNames = new String[this.capacity];
+		affyIDs = new String[this.capacity];
+		sangerIDs = new String[this.capacity];
+		EGANs = new String[this.capacity];
+		genders = new byte[this.capacity];
+		callRates = new double[this.capacity];
+		lrrMeans = new double[this.capacity];
+		lrrMedians = new double[this.capacity];
+		lrrSDs = new double[this.capacity];
+		bafMeans = new double[this.capacity];
+		bafMedians = new double[this.capacity];
+		bafSDs = new double[this.capacity];
+		bafDrifts = new double[this.capacity];
+		wfs = new double[this.capacity];
+		numCNVs = new int[this.capacity];
+	}
+
+	/**
+	 * @return ID of the new sample, which has no split file, WES or QC information yet
+	 */
+	public int add(String CELName, String affyID, Gender gender, double callRate) {
+		if (size == capacity) {
+			grow(capacity * 2);
+		}
+		int id = size++;
+		CELNames[id] = CELName;
+		affyIDs[id] = affyID;
+		genders[id] = (byte) gender.ordinal();
+		callRates[id] = callRate;
+		views[id] = new SampleInformation(this, id);
+		return id;
+	}
+	public void setWES(int id, String sangerID, String EGAN) {
+		sangerIDs[id] = sangerID;
+		EGANs[id] = EGAN;
+	}
+	/**
+	 * Also makes the sample findable by the split file's name.
+	 */
+	public void setSplitFile(int id, File splitFile) {
+		splitFiles[id] = splitFile;
+		setName(id, splitFile.getName());
+	}
+	public void setFilterInformation(int id, double wf, int numCNV) {
+		wfs[id] = wf;
+		numCNVs[id] = numCNV;
+	}
+	public void setQC(int id, double lrrMean, double lrrMedian, double lrrSD, double bafMean, double bafMedian, double bafSD, double bafDrift) {
+		lrrMeans[id] = lrrMean;
+		lrrMedians[id] = lrrMedian;
+		lrrSDs[id] = lrrSD;
+		bafMeans[id] = bafMean;
+		bafMedians[id] = bafMedian;
+		bafSDs[id] = bafSD;
+		bafDrifts[id] = bafDrift;
+	}
+
+	/**
+	 * @param rows IDs in this table to keep, keyed by the name each is to be found by, in the order they get their new IDs
+	 * @return a new table holding only those samples, with IDs 0 to rows.size() - 1
+	 */
+	public SampleTable select(Map<String, Integer> rows) {
+		SampleTable selected = new SampleTable(rows.size());
+		for (Map.Entry<String, Integer> row : rows.entrySet()) {
+			int from = row.getValue();
+			int id = selected.add(CELNames[from], affyIDs[from], Gender.values()[genders[from]], callRates[from]);
+			selected.splitFiles[id] = splitFiles[from];
+			selected.setName(id, row.getKey());
+			selected.setWES(id, sangerIDs[from], EGANs[from]);
+			selected.setFilterInformation(id, wfs[from], numCNVs[from]);
+			selected.setQC(id, lrrMeans[from], lrrMedians[from], lrrSDs[from], bafMeans[from], bafMedians[from], bafSDs[from], bafDrifts[from]);
+		}
+		return selected;
+	}
+
+	public int size() {
+		return size;
+	}
+	/**
+	 * @return ID of the sample with this split file name, or -1 if there is none
+	 */
+	public int getId(String splitFileName) {
+		Integer id = ids.get(splitFileName);
+		return id == null ? -1 : id;
+	}
+	public SampleInformation get(int id) {
+		return views[id];
+	}
+	/**
+	 * @return the sample with this split file name, or null if there is none
+	 */
+	public SampleInformation get(String splitFileName) {
+		int id = getId(splitFileName);
+		return id == -1 ? null : views[id];
+	}
+	public String getName(int id) {
+		return names[id];
+	}
+
+	File getSplitFile(int id) {
+		return splitFiles[id];
+	}
+	String getCELName(int id) {
+		return CELNames[id];
+	}
+	String getAffyID(int id) {
+		return affyIDs[id];
+	}
+	String getSangerID(int id) {
+		return sangerIDs[id];
+	}
+	String getEGAN(int id) {
+		return EGANs[id];
+	}
+	Gender getGender(int id) {
+		return Gender.values()[genders[id]];
+	}
+	double getCallRate(int id) {
+		return callRates[id];
+	}
+	double getLrrMean(int id) {
+		return lrrMeans[id];
+	}
+	double getLrrMedian(int id) {
+		return lrrMedians[id];
+	}
+	double getLrrSD(int id) {
+		return lrrSDs[id];
+	}
+	double getBafMean(int id) {
+		return bafMeans[id];
+	}
+	double getBafMedian(int id) {
+		return bafMedians[id];
+	}
+	double getBafSD(int id) {
+		return bafSDs[id];
+	}
+	double getBafDrift(int id) {
+		return bafDrifts[id];
+	}
+	double getWf(int id) {
+		return wfs[id];
+	}
+	int getNumCNV(int id) {
+		return numCNVs[id];
+	}
+
+	/**
+	 * Writes every column of every sample, for {@link #read(ByteBuffer)}.
+	 */
+	void write(DataOutputStream output) throws IOException {
+		output.writeInt(size);
+		for (int id = 0; id < size; id++) {
+			output.writeUTF(names[id]);
+			output.writeUTF(splitFiles[id].getPath());
+			output.writeUTF(CELNames[id]);
+			output.writeUTF(affyIDs[id]);
+			writeNullableUTF(output, sangerIDs[id]);
+			writeNullableUTF(output, EGANs[id]);
+		}
+		output.write(genders, 0, size);
+		for (double column[] : getDoubleColumns()) {
+			for (int id = 0; id < size; id++) {
+				output.writeDouble(column[id]);
+			}
+		}
+		for (int id = 0; id < size; id++) {
+			output.writeInt(numCNVs[id]);
+		}
+	}
+	static SampleTable read(ByteBuffer buffer) {
+		int size = buffer.getInt();
+		SampleTable table = new SampleTable(size);
+		for (int id = 0; id < size; id++) {
+			String name = IntervalTrack.readUTF(buffer);
+			File splitFile = new File(IntervalTrack.readUTF(buffer));
+			table.add(IntervalTrack.readUTF(buffer), IntervalTrack.readUTF(buffer), Gender.UNKNOWN, 0);
+			table.splitFiles[id] = splitFile;
+			table.setName(id, name);
+			table.setWES(id, readNullableUTF(buffer), readNullableUTF(buffer));
+		}
+		buffer.get(table.genders, 0, size);
+		// Numeric columns are copied out of the mapping in bulk
+		for (double column[] : table.getDoubleColumns()) {
+			buffer.asDoubleBuffer().get(column, 0, size);
+			buffer.position(buffer.position() + (size * 8));
+		}
+		buffer.asIntBuffer().get(table.numCNVs, 0, size);
+		buffer.position(buffer.position() + (size * 4));
+		return table;
+	}
+
+	private double[][] getDoubleColumns() {
+		return new double[][] {callRates, lrrMeans, lrrMedians, lrrSDs, bafMeans, bafMedians, bafSDs, bafDrifts, wfs};
+	}
+	private void setName(int id, String name) {
+		names[id] = name;
+		ids.put(name, id);
+	}
+	private void grow(int newCapacity) {
+		views = Arrays.copyOf(views, newCapacity);
+		names = Arrays.copyOf(names, newCapacity);
+		splitFiles = Arrays.copyOf(splitFiles, newCapacity);
+		CELNames = Arrays.copyOf(CELNames, newCapacity);
+		affyIDs = Arrays.copyOf(affyIDs, newCapacity);
+		sangerIDs = Arrays.copyOf(sangerIDs, newCapacity);
+		EGANs = Arrays.copyOf(EGANs, newCapacity);
+		genders = Arrays.copyOf(genders, newCapacity);
+		callRates = Arrays.copyOf(callRates, newCapacity);
+		lrrMeans = Arrays.copyOf(lrrMeans, newCapacity);
+		lrrMedians = Arrays.copyOf(lrrMedians, newCapacity);
+		lrrSDs = Arrays.copyOf(lrrSDs, newCapacity);
+		bafMeans = Arrays.copyOf(bafMeans, newCapacity);
+		bafMedians = Arrays.copyOf(bafMedians, newCapacity);
+		bafSDs = Arrays.copyOf(bafSDs, newCapacity);
+		bafDrifts = Arrays.copyOf(bafDrifts, newCapacity);
+		wfs = Arrays.copyOf(wfs, newCapacity);
+		numCNVs = Arrays.copyOf(numCNVs, newCapacity);
+		capacity = newCapacity;
+	}
+
+	private static void writeNullableUTF(DataOutputStream output, String value) throws IOException {
+		output.writeBoolean(value != null);
+		if (value != null) {
+			output.writeUTF(value);
+		}
+	}
+	private static String readNullableUTF(ByteBuffer buffer) {
+		return buffer.get() != 0 ? IntervalTrack.readUTF(buffer) : null;
+	}
+
+}
@@ -0,0 +1,296 @@
+package utilities;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Double-buffered OutputStream for large text outputs: writes fill one buffer while a background thread writes the
+ * other to the underlying stream. A buffer is handed over only when it is full, when it has held data for longer than
+ * the flush interval, or on {@link #drain()} and {@link #close()}, so per-record {@link #flush()} calls from a
+ * Writer wrapped around this stream cost nothing and the file system sees a few large writes instead of many small ones.
+ *
+ * {@link #flush()} is deliberately a no-op; use {@link #drain()} when data has to reach the file (e.g. before an fsync).
+ * If the background write fails, the next write, drain or close throws its exception. A writer only waits (stalls)
+ * when it fills a buffer before the background thread has finished the other one; that time is reported by
+ * {@link #getStallNanos()}.
+ */
+public class AsyncOutputStream extends OutputStream {
+
+	public static final int DEFAULT_BUFFER_BYTES = 4 << 20;
+	public static final long DEFAULT_FLUSH_MILLIS = 5000;
+
+	private final OutputStream out;
+	private final long flushNanos;
+	private final Object lock;
+	private final Thread flusher;
+
+	// Guarded by lock; the writer fills active, the flusher writes back while backFull
+	private byte active[];
+	private int activeCount;
+	private long activeSince;
+	private byte back[];
+	private int backCount;
+	private boolean backFull;
+	private boolean closing;
+	private IOException failure;
+
+	private long bytesWritten;
+	private long writes;
+	private long stallNanos;
+
+	public AsyncOutputStream(File file) throws IOException {
+		this(new FileOutputStream(file), DEFAULT_BUFFER_BYTES, DEFAULT_FLUSH_MILLIS);
+	}
+	/**
+	 * @param out stream written to (and closed) by this one; only the background thread writes to it
+	 * @param bufferBytes size of each of the two buffers
+	 * @param flushMillis longest time data waits in a buffer that isn't full
+	 */
+	public AsyncOutputStream(OutputStream out, int bufferBytes, long flushMillis) {
+
+		this.out = out;
+		flushNanos = flushMillis * 1000000L;
+		lock = new Object();
+		active = new byte[bufferBytes];
+		back = new byte[bufferBytes];
+		activeCount = 0;
+		backCount = 0;
+		backFull = false;
+		closing = false;
+
+		flusher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				flushLoop();
+			}
+		}, "AsyncOutputStream-flusher");
+		flusher.setDaemon(true);
+		flusher.start();
+
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		synchronized (lock) {
+			checkOpen();
+			if (activeCount == active.length) {
+				handOff();
+			}
+			if (activeCount == 0) {
+				startBuffer();
+			}
+			active[activeCount++] = (byte) b;
+		}
+	}
+	@Override
+	public void write(byte b[], int off, int len) throws IOException {
+		synchronized (lock) {
+			checkOpen();
+			while (len > 0) {
+				if (activeCount == active.length) {
+					handOff();
+				}
+				if (activeCount == 0) {
+					startBuffer();
+				}
+				int copy = Math.min(len, active.length - activeCount);
+				System.arraycopy(b, off, active, activeCount, copy);
+				activeCount += copy;
+				off += copy;
+				len -= copy;
+			}
+		}
+	}
+
+	/**
+	 * Does nothing: data goes out when a buffer fills or times out. See {@link #drain()}.
+	 */
+	@Override
+	public void flush() {}
+
+	/**
+	 * Blocks until everything written so far has been written to, and flushed by, the underlying stream.
+	 */
+	public void drain() throws IOException {
+		synchronized (lock) {
+			checkOpen();
+			if (activeCount > 0) {
+				handOff();
+			}
+			awaitBack();
+		}
+		synchronized (out) {
+			out.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		try {
+			synchronized (lock) {
+				if (closing) {
+					return;
+				}
+				try {
+					if (failure == null && activeCount > 0) {
+						handOff();
+					}
+					awaitBack();
+				} finally {
+					closing = true;
+					lock.notifyAll();
+				}
+			}
+			flusher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			out.close();
+		}
+
+	}
+
+	/**
+	 * @return bytes written to the underlying stream so far
+	 */
+	public long getBytesWritten() {
+		synchronized (lock) {
+			return bytesWritten;
+		}
+	}
+	/**
+	 * @return number of buffers written to the underlying stream so far
+	 */
+	public long getWrites() {
+		synchronized (lock) {
+			return writes;
+		}
+	}
+	/**
+	 * @return total time writers spent waiting for the background thread
+	 */
+	public long getStallNanos() {
+		synchronized (lock) {
+			return stallNanos;
+		}
+	}
+	/**
+	 * @return e.g. "12.5 MB in 4 writes, 0 ms stalled", for progress messages
+	 */
+	public String getSummary() {
+		synchronized (lock) {
+			return String.format("%.1f MB in %d writes, %d ms stalled", bytesWritten / 1e6, writes, stallNanos / 1000000);
+		}
+	}
+
+	// Caller holds lock. Waits for back to be free, then swaps it with the (non-empty) active buffer.
+	private void handOff() throws IOException {
+		awaitBack();
+		swap();
+		lock.notifyAll();
+	}
+	// Caller holds lock
+	private void awaitBack() throws IOException {
+		if (backFull) {
+			long start = System.nanoTime();
+			while (backFull && failure == null) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for output to be written", e);
+				}
+			}
+			stallNanos += System.nanoTime() - start;
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+	private void checkOpen() throws IOException {
+		if (closing) {
+			throw new IOException("Stream closed");
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private void flushLoop() {
+
+		while (true) {
+
+			byte buffer[];
+			int count;
+			synchronized (lock) {
+				while (!backFull) {
+					if (closing) {
+						return;
+					}
+					try {
+						if (activeCount == 0) {
+							lock.wait();
+						} else {
+							long waitNanos = activeSince + flushNanos - System.nanoTime();
+							if (waitNanos <= 0) {
+								// Data has waited long enough, write what there is
+								swap();
+							} else {
+								lock.wait(waitNanos / 1000000 + 1);
+							}
+						}
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				buffer = back;
+				count = backCount;
+			}
+
+			IOException error = null;
+			try {
+				synchronized (out) {
+					out.write(buffer, 0, count);
+					out.flush();
+				}
+			} catch (IOException e) {
+				error = e;
+			}
+
+			synchronized (lock) {
+				if (error != null) {
+					failure = error;
+				} else {
+					bytesWritten += count;
+					writes++;
+				}
+				backCount = 0;
+				backFull = false;
+				lock.notifyAll();
+				if (error != null) {
+					return;
+				}
+			}
+
+		}
+
+	}
+	// Caller holds lock. Starts the flush interval and wakes the flusher to time it.
+	private void startBuffer() {
+		activeSince = System.nanoTime();
+		lock.notifyAll();
+	}
+	// Caller holds lock and back is free
+	private void swap() {
+		byte full[] = active;
+		active = back;
+		back = full;
+		backCount = activeCount;
+		backFull = true;
+		activeCount = 0;
+	}
+
+}
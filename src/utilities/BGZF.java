@@ -0,0 +1,140 @@
+package utilities;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reading and inflating single BGZF blocks: gzip members whose header carries the total member size in a 'BC' extra
+ * subfield, so blocks can be found without inflating them. Shared by {@link BGZFBlockCache} (random access) and
+ * {@link ParallelBGZFInputStream} (sequential).
+ */
+public final class BGZF {
+
+	// Fixed part of the gzip header, up to and including XLEN
+	public static final int HEADER_LENGTH = 12;
+
+	private BGZF() {}
+
+	/**
+	 * @return true if <code>file</code> starts with a BGZF block (plain gzip and uncompressed files return false)
+	 */
+	public static boolean isBGZF(File file) throws IOException {
+		InputStream input = new FileInputStream(file);
+		try {
+			byte header[] = new byte[HEADER_LENGTH + 6];
+			int read = 0;
+			int n;
+			while (read < header.length && (n = input.read(header, read, header.length - read)) != -1) {
+				read += n;
+			}
+			return read == header.length && isGzip(header) && (header[3] & 4) != 0 && getBlockSize(header, 0, header, HEADER_LENGTH) > 0;
+		} finally {
+			input.close();
+		}
+	}
+	public static boolean isGzip(byte header[]) {
+		return (header[0] & 0xff) == 31 && (header[1] & 0xff) == 139;
+	}
+
+	/**
+	 * Reads one whole block (header included) from the current position of <code>input</code>.
+	 *
+	 * @return the block, or null if <code>input</code> is at its end
+	 */
+	public static byte[] readBlock(InputStream input, String source) throws IOException {
+
+		byte header[] = new byte[HEADER_LENGTH];
+		int first = input.read(header, 0, HEADER_LENGTH);
+		if (first == -1) {
+			return null;
+		}
+		readFully(input, header, first, HEADER_LENGTH - first);
+		if (!isGzip(header) || (header[3] & 4) == 0) {
+			throw new IOException("Not a BGZF block in " + source);
+		}
+		byte extra[] = new byte[getExtraLength(header)];
+		readFully(input, extra, 0, extra.length);
+		int blockSize = getBlockSize(header, 0, extra, 0);
+		if (blockSize < 0) {
+			throw new IOException("BGZF block in " + source + " has no BSIZE field");
+		}
+
+		byte block[] = new byte[blockSize];
+		System.arraycopy(header, 0, block, 0, HEADER_LENGTH);
+		System.arraycopy(extra, 0, block, HEADER_LENGTH, extra.length);
+		readFully(input, block, HEADER_LENGTH + extra.length, blockSize - HEADER_LENGTH - extra.length);
+		return block;
+
+	}
+
+	public static int getExtraLength(byte header[]) {
+		return unsignedShort(header, 10);
+	}
+	/**
+	 * @param extra array holding the header's extra field, starting at <code>extraOffset</code>
+	 * @return total size of the block in bytes, or -1 if there is no 'BC' subfield
+	 */
+	public static int getBlockSize(byte header[], int headerOffset, byte extra[], int extraOffset) {
+		int extraLength = unsignedShort(header, headerOffset + 10);
+		int end = Math.min(extraOffset + extraLength, extra.length);
+		for (int x = extraOffset; x + 4 <= end; x += 4 + unsignedShort(extra, x + 2)) {
+			if (extra[x] == 'B' && extra[x + 1] == 'C' && x + 6 <= end) {
+				return unsignedShort(extra, x + 4) + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param block one whole block as returned by {@link #readBlock(InputStream, String)}
+	 * @return the block's uncompressed data
+	 */
+	public static byte[] inflate(byte block[], String source) throws IOException {
+
+		int dataStart = HEADER_LENGTH + getExtraLength(block);
+		int blockSize = block.length;
+		int inflatedLength = (block[blockSize - 4] & 0xff) | ((block[blockSize - 3] & 0xff) << 8) | ((block[blockSize - 2] & 0xff) << 16) | ((block[blockSize - 1] & 0xff) << 24);
+		byte data[] = new byte[inflatedLength];
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(block, dataStart, blockSize - dataStart - 8);
+			int inflated = 0;
+			while (inflated < inflatedLength) {
+				int n = inflater.inflate(data, inflated, inflatedLength - inflated);
+				if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+					break;
+				}
+				inflated += n;
+			}
+			if (inflated != inflatedLength) {
+				throw new IOException("BGZF block in " + source + " inflated to " + inflated + " bytes, expected " + inflatedLength);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt BGZF block in " + source, e);
+		} finally {
+			inflater.end();
+		}
+		return data;
+
+	}
+
+	private static void readFully(InputStream input, byte buffer[], int offset, int length) throws IOException {
+		while (length > 0) {
+			int n = input.read(buffer, offset, length);
+			if (n == -1) {
+				throw new EOFException("Truncated BGZF block");
+			}
+			offset += n;
+			length -= n;
+		}
+	}
+	private static int unsignedShort(byte bytes[], int offset) {
+		return (bytes[offset] & 0xff) | ((bytes[offset + 1] & 0xff) << 8);
+	}
+
+}
@@ -0,0 +1,186 @@
+package utilities;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Process-wide cache of decompressed BGZF blocks, keyed by file and compressed block offset, shared by every
+ * {@link CachedTabixReader} (and so by every annotating thread). Neighbouring CNVs, and CNVs at recurrent loci, keep
+ * asking for the same blocks; with the cache each block is inflated once and then served from memory until it is
+ * evicted in least-recently-used order once the cache holds more than its byte budget.
+ *
+ * Thread-safe. Blocks are inflated outside the lock, so two threads missing on the same block at once may both inflate it.
+ */
+public class BGZFBlockCache {
+
+	public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+	// Rough per-entry overhead of the key, the map entry and the block object
+	private static final int ENTRY_OVERHEAD = 96;
+
+	private static final BGZFBlockCache SHARED = new BGZFBlockCache(DEFAULT_MAX_BYTES);
+
+	private LinkedHashMap<BlockKey, Block> blocks;
+	private long maxBytes;
+	private long bytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public BGZFBlockCache(long maxBytes) {
+
+		setMaxBytes(maxBytes);
+		bytes = 0;
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+		// accessOrder = true makes iteration order LRU -> MRU
+		blocks = new LinkedHashMap<BlockKey, Block>(1024, 0.75f, true);
+
+	}
+
+	/**
+	 * @return the cache used by all tabix readers in this process
+	 */
+	public static BGZFBlockCache getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * @param maxBytes budget for decompressed blocks; 0 disables caching (every block is inflated on every read)
+	 */
+	public synchronized void setMaxBytes(long maxBytes) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("Block cache size must be >= 0, was " + maxBytes);
+		}
+		this.maxBytes = maxBytes;
+		if (blocks != null) {
+			evict();
+		}
+	}
+
+	/**
+	 * @param path absolute path of the bgzipped file, used as the cache key
+	 * @param file open handle to the same file, read from on a miss; owned by the calling thread
+	 * @param address compressed offset of the block's header
+	 */
+	public Block getBlock(String path, RandomAccessFile file, long address) throws IOException {
+
+		BlockKey key = new BlockKey(path, address);
+		synchronized (this) {
+			Block block = blocks.get(key);
+			if (block != null) {
+				hits++;
+				return block;
+			}
+			misses++;
+		}
+
+		Block block = readBlock(path, file, address);
+		synchronized (this) {
+			if (maxBytes > 0 && blocks.put(key, block) == null) {
+				bytes += block.getFootprint();
+				evict();
+			}
+		}
+		return block;
+
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+	public synchronized long getMisses() {
+		return misses;
+	}
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+	public synchronized String getSummary() {
+		long total = hits + misses;
+		double hitRate = total == 0 ? 0.0 : (double) hits / (double) total;
+		return "hits=" + hits + " misses=" + misses + " evictions=" + evictions + " hitRate=" + String.format("%.4f", hitRate) +
+				" blocks=" + blocks.size() + " size=" + (bytes >> 20) + "/" + (maxBytes >> 20) + " MiB";
+	}
+
+	private void evict() {
+		Iterator<Block> itr = blocks.values().iterator();
+		while (bytes > maxBytes && itr.hasNext()) {
+			bytes -= itr.next().getFootprint();
+			itr.remove();
+			evictions++;
+		}
+	}
+
+	private static Block readBlock(String path, RandomAccessFile file, long address) throws IOException {
+
+		file.seek(address);
+		byte compressed[] = BGZF.readBlock(Channels.newInputStream(file.getChannel()), path + " at offset " + address);
+		if (compressed == null) {
+			throw new EOFException("No BGZF block at offset " + address + " of " + path);
+		}
+		return new Block(BGZF.inflate(compressed, path + " at offset " + address), address + compressed.length);
+
+	}
+
+	/**
+	 * One decompressed block. Shared between readers, so must not be modified.
+	 */
+	public static class Block {
+
+		private byte data[];
+		private long nextAddress;
+
+		private Block(byte data[], long nextAddress) {
+			this.data = data;
+			this.nextAddress = nextAddress;
+		}
+
+		public byte[] getData() {
+			return data;
+		}
+		public int getLength() {
+			return data.length;
+		}
+		/**
+		 * @return compressed offset of the block that follows this one
+		 */
+		public long getNextAddress() {
+			return nextAddress;
+		}
+		private long getFootprint() {
+			return data.length + ENTRY_OVERHEAD;
+		}
+
+	}
+
+	private static class BlockKey {
+
+		private String path;
+		private long address;
+
+		private BlockKey(String path, long address) {
+			this.path = path;
+			this.address = address;
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * path.hashCode()) + Long.hashCode(address);
+		}
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof BlockKey)) {
+				return false;
+			}
+			BlockKey other = (BlockKey) obj;
+			return address == other.address && path.equals(other.path);
+		}
+
+	}
+
+}
@@ -3,8 +3,8 @@ package utilities;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,7 +22,7 @@ public class Bedtools {
 	
 	public static Map<String, CNV> printBED(List<CNV> cnvs, File tmpDir) throws IOException {
 		
-		BufferedWriter bedWriter = new BufferedWriter(new FileWriter(new File(tmpDir.getAbsolutePath() + "/merge_cnv.in.bed")));
+		BufferedWriter bedWriter = new BufferedWriter(new OutputStreamWriter(new AsyncOutputStream(new File(tmpDir.getAbsolutePath() + "/merge_cnv.in.bed"))));
 		Map<String, CNV> mergedCNVs = new HashMap<String, CNV>();
 		
 		for (CNV cnv : cnvs) {
@@ -30,7 +30,6 @@ public class Bedtools {
 			mergedCNVs.put(cnv.getSampleInformation().getSplitFile().getName() + "_" + cnv.getChr() + "_" + cnv.getStart(), cnv);
 		}
 		
-		bedWriter.flush();
 		bedWriter.close();
 		
 		runBedTools("bedtools sort -i " + tmpDir.getAbsolutePath() + "/merge_cnv.in.bed", new File(tmpDir.getAbsolutePath() + "/merge_cnv.sorted.bed"));
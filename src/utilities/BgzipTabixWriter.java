@@ -0,0 +1,60 @@
+package utilities;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.tribble.SimpleFeature;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.tribble.index.tabix.TabixIndex;
+import htsjdk.tribble.index.tabix.TabixIndexCreator;
+
+/**
+ * Writes BED-like records (chromosome, 0-based start, end, anything else) to a bgzipped file and its tabix index,
+ * <code>&lt;file&gt;.tbi</code>, the same as <code>bgzip</code> then <code>tabix -p bed</code> would. Records must arrive
+ * grouped by chromosome and sorted by start. Other layouts can be given as a TabixFormat, e.g. 1-based tables.
+ */
+public class BgzipTabixWriter implements Closeable {
+
+	private File file;
+	private BlockCompressedOutputStream output;
+	private TabixIndexCreator indexCreator;
+	private boolean zeroBased;
+
+	public BgzipTabixWriter(File file) {
+		this(file, TabixFormat.BED);
+	}
+	public BgzipTabixWriter(File file, TabixFormat format) {
+		this.file = file;
+		output = new BlockCompressedOutputStream(file);
+		indexCreator = new TabixIndexCreator(format);
+		zeroBased = (format.flags & TabixFormat.ZERO_BASED) != 0;
+	}
+
+	/**
+	 * Writes a line that isn't indexed; it should start with the format's meta character.
+	 */
+	public void writeHeader(String line) throws IOException {
+		output.write(line.getBytes(StandardCharsets.UTF_8));
+		output.write('\n');
+	}
+	/**
+	 * @param line the whole record, starting with <code>chr</code>, <code>start</code> and <code>end</code>, without a newline
+	 */
+	public void write(String chr, int start, int end, String line) throws IOException {
+		// Tabix features are 1-based
+		indexCreator.addFeature(new SimpleFeature(chr, zeroBased ? start + 1 : start, end), output.getFilePointer());
+		output.write(line.getBytes(StandardCharsets.UTF_8));
+		output.write('\n');
+	}
+
+	@Override
+	public void close() throws IOException {
+		TabixIndex index = (TabixIndex) indexCreator.finalizeIndex(output.getFilePointer());
+		output.close();
+		index.write(new File(file.getAbsolutePath() + ".tbi"));
+	}
+
+}
@@ -1,7 +1,5 @@
 package utilities;
 
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
-
 import merger.CNVConverter.CopyType;
 import sampleannotator.RawCNVReader.LRRandBAFInformation;
 import sampleannotator.resources.SampleInformation;
@@ -18,7 +16,9 @@ public class CNV {
 	private SampleInformation sampleInformation;
 	private LRRandBAFInformation lrrbaf;
 	private int mergeGroup;
-	private DescriptiveStatistics WESstats;
+	private double wesMeanL2R;
+	private double wesL2Rsd;
+	private long wesL2N;
 	private double intersectingWESConvexCNVs;
 	private double intersectingWESXHMMCNVs;
 	private double intersectingWESCLAMMSCNVs;
@@ -52,7 +52,9 @@ public class CNV {
 		siteFiltered = checkSiteFilter();
 		
 		totalIntersectingBaits = 0;
-		WESstats = new DescriptiveStatistics();
+		wesMeanL2R = Double.NaN;
+		wesL2Rsd = Double.NaN;
+		wesL2N = 0;
 		
 		mergeGroup = -1;
 		
@@ -111,6 +113,9 @@ public class CNV {
 	public LRRandBAFInformation getLRRBAF() {
 		return lrrbaf;
 	}
+	public void setLRRBAF(LRRandBAFInformation lrrbaf) {
+		this.lrrbaf = lrrbaf;
+	}
 	
 	public CopyType getCopyType() {
 		if (this.getCopyNumber() < 2) {
@@ -161,17 +166,20 @@ public class CNV {
 	public void setTotalIntersectingBaits(int totalIntersectingBaits) {
 		this.totalIntersectingBaits = totalIntersectingBaits;
 	}
-	public void setWESStats(DescriptiveStatistics WESstats) {
-		this.WESstats = WESstats;
+	// Only the summary values are kept so the (recycled) statistics buffer can be reused for the next CNV
+	public void setWESStats(PrimitiveStatistics WESstats) {
+		wesMeanL2R = WESstats.getMean();
+		wesL2Rsd = WESstats.getStandardDeviation();
+		wesL2N = WESstats.getN();
 	}
 	public double getWESMeanL2R() {
-		return WESstats.getMean();
+		return wesMeanL2R;
 	}
 	public double getWESL2Rsd() {
-		return WESstats.getStandardDeviation();
+		return wesL2Rsd;
 	}
 	public long getWESL2N() {
-		return WESstats.getN();
+		return wesL2N;
 	}
 
 	public void setGoldStandardSV(String gsCNV) {
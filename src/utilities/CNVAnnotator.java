@@ -3,7 +3,6 @@ package utilities;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
 
 import htsjdk.samtools.util.IntervalTree;
@@ -12,16 +11,21 @@ import loaders.GeneLoader;
 import loaders.PathogenicLoader;
 import loaders.PathogenicLoader.PathogenicLocus;
 import merger.CNVConverter.CopyType;
+import utilities.IntervalTrack.ChrIntervals;
 
 public class CNVAnnotator {
 
-	private Map<String, IntervalTree<String>> geneIntervals;
+	private IntervalTrack geneIntervals;
 	private PathogenicLoader pathogenic;
 
 	public CNVAnnotator () throws IOException {
-		geneIntervals = new GeneLoader().getGeneIntervals();
+		geneIntervals = new GeneLoader().getGeneTrack();
 		pathogenic = new PathogenicLoader();
 	}
+	public CNVAnnotator (ReferenceBundle reference) throws IOException {
+		geneIntervals = reference.getGenes();
+		pathogenic = reference.getPathogenic();
+	}
 		
 	public Set<String> parsePathogenic(String chr, int start, int end, Set<String> genes, CopyType ct) throws OverlapError {
 		if (ct == CopyType.DEL) {
@@ -153,11 +157,11 @@ public class CNVAnnotator {
 	}
  	public Set<String> parseGenes(String chr, int start, int end) {
  		Set<String> genes = new HashSet<String>();
-		IntervalTree<String> currentTree = geneIntervals.get(chr);
-		Iterator<Node<String>> geneHits = currentTree.overlappers(start, end);
-		while (geneHits.hasNext()) {
-			Node<String> currentNode = geneHits.next();
-			genes.add(currentNode.getValue());
+		ChrIntervals currentChr = geneIntervals.getChr(chr);
+		for (int x = currentChr.lastStartingBefore(end); x >= 0 && currentChr.getMaxEnd(x) >= start; x--) {
+			if (currentChr.getEnd(x) >= start) {
+				genes.add(geneIntervals.getValue(currentChr, x));
+			}
 		}
 		return genes;
  	}
@@ -2,8 +2,13 @@ package utilities;
 
 import java.io.IOException;
 
+import benchmark.AnnotateBenchmark;
 import merger.CNVMerger;
+import sampleannotator.AnnotatedTableExporter;
+import sampleannotator.CNVLineIndexer;
 import sampleannotator.CNVSampleAnnotator;
+import sampleannotator.CNVSampler;
+import sampleannotator.ShardGatherer;
 import utilities.CNVAnnotator.OverlapError;
 
 public class CNVAnnotatorImplement {
@@ -28,6 +33,27 @@ public class CNVAnnotatorImplement {
 			else if (runtime.equals(CNVRuntime.MERGE)) {
 				new CNVMerger(inputArgs);
 			}
+			else if (runtime.equals(CNVRuntime.INDEX)) {
+				new CNVLineIndexer(inputArgs);
+			}
+			else if (runtime.equals(CNVRuntime.COMPILE)) {
+				new ReferenceCompiler(inputArgs);
+			}
+			else if (runtime.equals(CNVRuntime.SAMPLE)) {
+				new CNVSampler(inputArgs);
+			}
+			else if (runtime.equals(CNVRuntime.BENCHMARK)) {
+				new AnnotateBenchmark(inputArgs);
+			}
+			else if (runtime.equals(CNVRuntime.GENERATE)) {
+				new SyntheticGenerator(inputArgs);
+			}
+			else if (runtime.equals(CNVRuntime.EXPORT)) {
+				new AnnotatedTableExporter(inputArgs);
+			}
+			else if (runtime.equals(CNVRuntime.GATHER)) {
+				new ShardGatherer(inputArgs);
+			}
 			else {
 				printHelp();
 			}
@@ -39,10 +65,17 @@ public class CNVAnnotatorImplement {
 		System.err.println("Please use either \'Merge\', \'Polish\', or \'View\' as a Runtime (the first Argument)");
 		System.err.println("Merge - Merge CNVs processed by Annotate and filtered by <>");
 		System.err.println("Annotate - Attach sample and summary statistics to raw CNVs");
+		System.err.println("Index - Index line offsets of a raw CNV file so 'Annotate -s' can seek to its section");
+		System.err.println("Compile - Compile DGV, cytoband, gene and pathogenic references into a bundle for '-ref'");
+		System.err.println("Sample - Annotate a random sample of raw CNVs, optionally stratified by copy type or sample");
+		System.err.println("Benchmark - Time and measure allocation of the annotate hot path on synthetic fixtures");
+		System.err.println("Generate - Write a synthetic dataset (raw CNVs, LRR/BAF, WES calls, sample tables) that Annotate and Merge can run on");
+		System.err.println("Export - Write a binary table from 'Annotate -binary' as tab-delimited text, optionally for one region or value ranges");
+		System.err.println("Gather - Merge the shards written by 'Annotate -s' into one coordinate-sorted file, optionally bgzipped and indexed");
 		System.err.println();
 	}
 	public enum CNVRuntime {
-		ANNOTATE,MERGE;
+		ANNOTATE,MERGE,INDEX,COMPILE,SAMPLE,BENCHMARK,GENERATE,EXPORT,GATHER;
 	}
 	
 }
@@ -19,6 +19,7 @@ public class CNVMergerOptions {
 	private File output;
 	private double epsilon;
 	private File tmpDirectory;
+	private File referenceBundle;
 	private File fastaRef;
 	private File fastaIndex;
 	private boolean isFilter;
@@ -42,6 +43,12 @@ public class CNVMergerOptions {
 	public File getTmpDirectory() {
 		return tmpDirectory;
 	}
+	/**
+	 * @return compiled reference bundle, or null to parse reference files from their default locations
+	 */
+	public File getReferenceBundle() {
+		return referenceBundle;
+	}
 	public File getFastaRef() {
 		return fastaRef;
 	}
@@ -70,6 +77,7 @@ public class CNVMergerOptions {
 		options.addOption(new Option("f", false, "Filter based on RandomForest model?"));
 		options.addOption(new Option("help", false, "Print help message."));
 		options.addOption(new Option("tmp", true, "Path to tmp directory."));
+		options.addOption(new Option("ref", true, "Reference bundle built by 'Compile'. If not included, reference files are parsed from their default locations."));
 		
 		return options;
 		
@@ -94,6 +102,11 @@ public class CNVMergerOptions {
 		rawCNVs = new File(cmd.getOptionValue("p"));
 		output = new File(cmd.getOptionValue("o"));
 		epsilon = Double.parseDouble(cmd.getOptionValue("e"));
+		if (cmd.hasOption("ref")) {
+			referenceBundle = new File(cmd.getOptionValue("ref"));
+		} else {
+			referenceBundle = null;
+		}
 		if (cmd.hasOption("tmp")) {
 			tmpDirectory = new File(cmd.getOptionValue("tmp"));
 		} else {
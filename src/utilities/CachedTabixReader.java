@@ -0,0 +1,240 @@
+package utilities;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import htsjdk.tribble.index.Block;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.tribble.index.tabix.TabixIndex;
+import htsjdk.tribble.readers.TabixReader;
+
+/**
+ * Drop-in for {@link TabixReader#query(String, int, int)} that reads decompressed blocks through a {@link BGZFBlockCache}
+ * instead of inflating them again on every query. The .tbi is parsed with htsjdk's {@link TabixIndex}; records are
+ * returned with the same semantics as TabixReader: records on <code>chr</code> overlapping the 0-based, half-open
+ * interval [<code>start</code>, <code>end</code>), in file order.
+ *
+ * Not thread-safe (it owns a file handle), but the block cache behind it is shared.
+ */
+public class CachedTabixReader implements Closeable {
+
+	private String path;
+	private RandomAccessFile file;
+	private long fileLength;
+	private TabixIndex index;
+	private BGZFBlockCache blockCache;
+	private int sequenceColumn;
+	private int startColumn;
+	private int endColumn;
+	private boolean zeroBased;
+	private char metaCharacter;
+	private byte lineBuffer[];
+
+	/**
+	 * @param tabixFile bgzipped, tabix-indexed file; the index is expected at <code>tabixFile + ".tbi"</code>
+	 */
+	public CachedTabixReader(File tabixFile, BGZFBlockCache blockCache) throws IOException {
+
+		path = tabixFile.getAbsolutePath();
+		file = new RandomAccessFile(path, "r");
+		fileLength = file.length();
+		index = new TabixIndex(new File(path + ".tbi"));
+		this.blockCache = blockCache;
+
+		// Columns are 1-based in the index
+		TabixFormat format = index.getFormatSpec();
+		sequenceColumn = format.sequenceColumn - 1;
+		startColumn = format.startPositionColumn - 1;
+		endColumn = format.endPositionColumn - 1;
+		zeroBased = (format.flags & TabixFormat.ZERO_BASED) != 0;
+		metaCharacter = format.metaCharacter;
+		lineBuffer = new byte[1024];
+
+	}
+
+	public TabixReader.Iterator query(String chr, int start, int end) throws IOException {
+
+		// Index is queried 1-based, closed
+		List<Block> chunks = new ArrayList<Block>(index.getBlocks(chr, start + 1, end));
+		Collections.sort(chunks, CHUNK_ORDER);
+		return new QueryIterator(chunks, chr, start, end);
+
+	}
+
+	@Override
+	public void close() {
+		try {
+			file.close();
+		} catch (IOException e) {
+			// Read-only handle, nothing to lose
+		}
+	}
+
+	private class QueryIterator implements TabixReader.Iterator {
+
+		private List<Block> chunks;
+		private String chr;
+		private int start;
+		private int end;
+		private int nextChunk;
+		private long chunkEnd;
+		private BGZFBlockCache.Block block;
+		private long blockAddress;
+		private int blockOffset;
+		private boolean endOfFile;
+		private boolean done;
+
+		private QueryIterator(List<Block> chunks, String chr, int start, int end) {
+			this.chunks = chunks;
+			this.chr = chr;
+			this.start = start;
+			this.end = end;
+			nextChunk = 0;
+			chunkEnd = -1;
+			block = null;
+			endOfFile = false;
+			done = chunks.size() == 0;
+		}
+
+		@Override
+		public String next() throws IOException {
+
+			while (!done) {
+
+				if (block == null || getVirtualOffset() >= chunkEnd) {
+					if (!nextChunk()) {
+						done = true;
+						break;
+					}
+					continue;
+				}
+
+				int length = readLine();
+				if (length < 0) {
+					done = true;
+					break;
+				}
+				if (length == 0 || lineBuffer[0] == metaCharacter) {
+					continue;
+				}
+
+				String line = new String(lineBuffer, 0, length, StandardCharsets.ISO_8859_1);
+				String data[] = line.split("\t", Math.max(sequenceColumn, Math.max(startColumn, endColumn)) + 2);
+				if (!data[sequenceColumn].equals(chr)) {
+					continue;
+				}
+				int recStart = Integer.parseInt(data[startColumn]);
+				if (!zeroBased) {
+					recStart--;
+				}
+				// Sorted by start, so nothing past here can overlap
+				if (recStart >= end) {
+					done = true;
+					break;
+				}
+				int recEnd = endColumn >= 0 ? Integer.parseInt(data[endColumn]) : recStart + 1;
+				if (recEnd > start) {
+					return line;
+				}
+
+			}
+			return null;
+
+		}
+
+		private boolean nextChunk() throws IOException {
+			while (nextChunk < chunks.size()) {
+				Block chunk = chunks.get(nextChunk++);
+				if (chunk.getEndPosition() <= getVirtualOffset()) {
+					continue;
+				}
+				// Overlapping chunks: carry on from where the previous one stopped rather than re-reading records
+				if (chunk.getStartPosition() > getVirtualOffset()) {
+					seek(chunk.getStartPosition());
+				}
+				chunkEnd = chunk.getEndPosition();
+				return true;
+			}
+			return false;
+		}
+
+		private void seek(long virtualOffset) throws IOException {
+			loadBlock(virtualOffset >>> 16);
+			blockOffset = (int) (virtualOffset & 0xffff);
+			normalise();
+		}
+		private void loadBlock(long address) throws IOException {
+			blockAddress = address;
+			block = address < fileLength ? blockCache.getBlock(path, file, address) : null;
+			endOfFile = block == null;
+		}
+		// A position at the very end of a block is the same place as the start of the next
+		private void normalise() throws IOException {
+			while (block != null && blockOffset >= block.getLength()) {
+				loadBlock(block.getNextAddress());
+				blockOffset = 0;
+			}
+		}
+		// -1 before the first seek
+		private long getVirtualOffset() {
+			if (block == null) {
+				return endOfFile ? Long.MAX_VALUE : -1;
+			}
+			return (blockAddress << 16) | blockOffset;
+		}
+
+		/**
+		 * Copies the next line, which may span blocks, into lineBuffer without its newline.
+		 *
+		 * @return line length, or -1 at the end of the file
+		 */
+		private int readLine() throws IOException {
+			if (block == null) {
+				return -1;
+			}
+			int length = 0;
+			while (block != null) {
+				byte data[] = block.getData();
+				int x = blockOffset;
+				while (x < data.length && data[x] != '\n') {
+					x++;
+				}
+				int copy = x - blockOffset;
+				if (length + copy > lineBuffer.length) {
+					byte grown[] = new byte[Math.max(lineBuffer.length * 2, length + copy)];
+					System.arraycopy(lineBuffer, 0, grown, 0, length);
+					lineBuffer = grown;
+				}
+				System.arraycopy(data, blockOffset, lineBuffer, length, copy);
+				length += copy;
+				blockOffset = x;
+				if (x < data.length) {
+					blockOffset++;
+					normalise();
+					break;
+				}
+				normalise();
+			}
+			if (length > 0 && lineBuffer[length - 1] == '\r') {
+				length--;
+			}
+			return length;
+		}
+
+	}
+
+	private static final Comparator<Block> CHUNK_ORDER = new Comparator<Block>() {
+		@Override
+		public int compare(Block o1, Block o2) {
+			return Long.compare(o1.getStartPosition(), o2.getStartPosition());
+		}
+	};
+
+}
@@ -0,0 +1,81 @@
+package utilities;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens text inputs that may be plain, gzipped or bgzipped, decided from the file's first bytes rather than its name.
+ * BGZF files are inflated on several threads by {@link ParallelBGZFInputStream}; other gzip files fall back to a
+ * single-threaded GZIPInputStream. Readers use the platform charset, the same as the FileReaders they replace.
+ */
+public final class CompressedInput {
+
+	public enum Compression {
+		NONE, GZIP, BGZF;
+	}
+
+	private CompressedInput() {}
+
+	public static Compression getCompression(File file) throws IOException {
+		if (BGZF.isBGZF(file)) {
+			return Compression.BGZF;
+		}
+		InputStream input = new FileInputStream(file);
+		try {
+			byte magic[] = new byte[2];
+			return input.read(magic) == 2 && BGZF.isGzip(magic) ? Compression.GZIP : Compression.NONE;
+		} finally {
+			input.close();
+		}
+	}
+	public static boolean isCompressed(File file) throws IOException {
+		return getCompression(file) != Compression.NONE;
+	}
+
+	public static BufferedReader openReader(File file) throws IOException {
+		return new BufferedReader(new InputStreamReader(openStream(file, 0)), 65536);
+	}
+	/**
+	 * @return the file's uncompressed bytes
+	 */
+	public static InputStream openStream(File file) throws IOException {
+		return openStream(file, 0);
+	}
+	/**
+	 * @param offset uncompressed byte offset to start at; a plain file seeks straight there, a compressed one is inflated up
+	 *        to it (to start a BGZF file part way through without doing so, see {@link LineOffsetIndex#open(File, long)})
+	 */
+	public static InputStream openStream(File file, long offset) throws IOException {
+
+		InputStream input;
+		switch (getCompression(file)) {
+		case BGZF:
+			input = new ParallelBGZFInputStream(file);
+			break;
+		case GZIP:
+			input = new GZIPInputStream(new FileInputStream(file), 65536);
+			break;
+		default:
+			FileInputStream fileInput = new FileInputStream(file);
+			fileInput.getChannel().position(offset);
+			return fileInput;
+		}
+
+		long skipped = 0;
+		while (skipped < offset) {
+			long n = input.skip(offset - skipped);
+			if (n <= 0) {
+				break;
+			}
+			skipped += n;
+		}
+		return input;
+
+	}
+
+}
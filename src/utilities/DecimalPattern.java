@@ -0,0 +1,146 @@
+package utilities;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Allocation-free replacement for <code>new DecimalFormat(pattern).format(value)</code> with the plain patterns the text
+ * writers use ("##.##", "#.##", "##.######", "##.#######"): no grouping, at least one integer digit, and up to as many
+ * fraction digits as the pattern has '#'s after the point, rounded half-even on the exact binary value, with trailing
+ * zeros dropped. Digits are appended straight to a StringBuilder.
+ *
+ * Output is identical to DecimalFormat's in the default locale. Values whose rounding can't be settled in double
+ * arithmetic (within 1e-4 of a tie after scaling, or too large to scale exactly) are handed to a per-thread
+ * DecimalFormat instead, so they come out identical too; with the values written here that is rare.
+ *
+ * Thread-safe.
+ */
+public final class DecimalPattern {
+
+	// Below this, scaling by 10^digits is off by at most 2^-18 of a unit, far inside TIE_MARGIN
+	private static final double FAST_LIMIT = 34359738368.0; // 2^35
+	private static final double TIE_MARGIN = 1e-4;
+
+	private final String pattern;
+	private final int fractionDigits;
+	private final long scale;
+	private final char zeroDigit;
+	private final char decimalSeparator;
+	private final char minusSign;
+	private final String nan;
+	private final String infinity;
+	private final ThreadLocal<DecimalFormat> fallback;
+
+	/**
+	 * @param pattern one or more '#'s, then '.' and 1 to 15 more '#'s
+	 */
+	public DecimalPattern(final String pattern) {
+
+		if (!pattern.matches("#+\\.#{1,15}")) {
+			throw new IllegalArgumentException("Only plain '##.##'-style patterns are supported, not " + pattern);
+		}
+		this.pattern = pattern;
+		fractionDigits = pattern.length() - pattern.indexOf('.') - 1;
+		long scale = 1;
+		for (int x = 0; x < fractionDigits; x++) {
+			scale *= 10;
+		}
+		this.scale = scale;
+
+		// The same symbols DecimalFormat(pattern) picks up
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+		zeroDigit = symbols.getZeroDigit();
+		decimalSeparator = symbols.getDecimalSeparator();
+		minusSign = symbols.getMinusSign();
+		nan = symbols.getNaN();
+		infinity = symbols.getInfinity();
+		fallback = new ThreadLocal<DecimalFormat>() {
+			@Override
+			protected DecimalFormat initialValue() {
+				return new DecimalFormat(pattern);
+			}
+		};
+
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	public String format(double value) {
+		StringBuilder out = new StringBuilder(24);
+		appendTo(out, value);
+		return out.toString();
+	}
+
+	public void appendTo(StringBuilder out, double value) {
+
+		if (Double.isNaN(value)) {
+			out.append(nan);
+			return;
+		}
+		// Like DecimalFormat, keeps the sign of -0.0 and of negatives that round to zero
+		boolean negative = value < 0.0 || (value == 0.0 && 1 / value < 0.0);
+		double magnitude = Math.abs(value);
+		if (Double.isInfinite(magnitude)) {
+			if (negative) {
+				out.append(minusSign);
+			}
+			out.append(infinity);
+			return;
+		}
+
+		double scaled = magnitude * scale;
+		if (!(scaled < FAST_LIMIT)) {
+			out.append(fallback.get().format(value));
+			return;
+		}
+		long units = (long) scaled;
+		double remainder = scaled - units;
+		if (Math.abs(remainder - 0.5) < TIE_MARGIN) {
+			out.append(fallback.get().format(value));
+			return;
+		}
+		if (remainder > 0.5) {
+			units++;
+		}
+
+		long integer = units / scale;
+		long fraction = units % scale;
+		if (negative) {
+			out.append(minusSign);
+		}
+		// DecimalFormat turns '#' before the point into one minimum integer digit, so 0.5 is "0.5"
+		appendDigits(out, integer, 1);
+		if (fraction != 0) {
+			int digits = fractionDigits;
+			while (fraction % 10 == 0) {
+				fraction /= 10;
+				digits--;
+			}
+			out.append(decimalSeparator);
+			appendDigits(out, fraction, digits);
+		}
+
+	}
+
+	/**
+	 * Appends <code>value</code> (>= 0), left-padded with zeros to at least <code>minDigits</code>.
+	 */
+	private void appendDigits(StringBuilder out, long value, int minDigits) {
+		long power = 1;
+		int digits = 1;
+		while (power <= value / 10) {
+			power *= 10;
+			digits++;
+		}
+		for (; digits < minDigits; minDigits--) {
+			out.append(zeroDigit);
+		}
+		for (; power > 0; power /= 10) {
+			out.append((char) (zeroDigit + (value / power) % 10));
+		}
+	}
+
+}
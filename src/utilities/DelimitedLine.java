@@ -0,0 +1,107 @@
+package utilities;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Reusable buffer for one delimited text line: fields are appended straight into a single StringBuilder, without the
+ * <code>toPrint + "\t"</code> String per field, and the finished line goes to the Writer in one call. Values come out
+ * exactly as String.valueOf (or the given {@link DecimalPattern}) would print them.
+ *
+ * Not thread-safe; keep one per writer.
+ */
+public class DelimitedLine {
+
+	private char delimiter;
+	private StringBuilder line;
+	private char chars[];
+	private boolean empty;
+
+	public DelimitedLine(char delimiter) {
+		this.delimiter = delimiter;
+		line = new StringBuilder(1024);
+		chars = new char[1024];
+		empty = true;
+	}
+
+	public DelimitedLine add(String value) {
+		delimit();
+		line.append(value);
+		return this;
+	}
+	/**
+	 * Copies <code>value</code>'s characters without going through a String, e.g. another line's {@link #getBuilder()}.
+	 */
+	public DelimitedLine add(CharSequence value) {
+		delimit();
+		line.append(value);
+		return this;
+	}
+	public DelimitedLine add(Object value) {
+		delimit();
+		line.append(value);
+		return this;
+	}
+	public DelimitedLine add(int value) {
+		delimit();
+		line.append(value);
+		return this;
+	}
+	public DelimitedLine add(long value) {
+		delimit();
+		line.append(value);
+		return this;
+	}
+	public DelimitedLine add(double value) {
+		delimit();
+		line.append(value);
+		return this;
+	}
+	public DelimitedLine add(boolean value) {
+		delimit();
+		line.append(value);
+		return this;
+	}
+	public DelimitedLine add(double value, DecimalPattern pattern) {
+		delimit();
+		pattern.appendTo(line, value);
+		return this;
+	}
+	/**
+	 * @return the line so far, to extend its last field in place (e.g. a formatted value after an added prefix)
+	 */
+	public StringBuilder getBuilder() {
+		return line;
+	}
+
+	/**
+	 * Writes the line and a newline to <code>writer</code>, then clears it for the next line.
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		line.append('\n');
+		int length = line.length();
+		if (chars.length < length) {
+			chars = new char[Math.max(chars.length * 2, length)];
+		}
+		line.getChars(0, length, chars, 0);
+		writer.write(chars, 0, length);
+		clear();
+	}
+	public void clear() {
+		line.setLength(0);
+		empty = true;
+	}
+	@Override
+	public String toString() {
+		return line.toString();
+	}
+
+	private void delimit() {
+		if (empty) {
+			empty = false;
+		} else {
+			line.append(delimiter);
+		}
+	}
+
+}
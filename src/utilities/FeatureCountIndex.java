@@ -0,0 +1,239 @@
+package utilities;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Sorted primitive-array index of BED features (e.g. array probes or exome baits) that answers "how many features
+ * overlap this range" by binary search, without allocating. Identical (start, end) pairs are only counted once, matching
+ * what the IntervalTrees this replaces held.
+ *
+ * Ranges use tabix's overlap rule: a feature [featureStart, featureEnd) is counted for the range (start, end) when
+ * <code>featureEnd &gt; start &amp;&amp; featureStart &lt; end</code>. Read-only once built, so safe to share between threads.
+ */
+public class FeatureCountIndex {
+
+	private Map<String, ChrFeatures> features;
+	private int totalFeatures;
+
+	public FeatureCountIndex(File bedFile) throws IOException {
+
+		Map<String, long[]> rawFeatures = new HashMap<String, long[]>();
+		Map<String, Integer> rawSizes = new HashMap<String, Integer>();
+
+		BufferedReader bedReader;
+		if (bedFile.getName().endsWith(".gz")) {
+			bedReader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(bedFile), 65536), "UTF-8"));
+		} else {
+			bedReader = new BufferedReader(new InputStreamReader(new FileInputStream(bedFile), "UTF-8"));
+		}
+
+		String line;
+		while ((line = bedReader.readLine()) != null) {
+
+			if (line.startsWith("#") || line.startsWith("track")) {
+				continue;
+			}
+			int firstTab = line.indexOf('\t');
+			int secondTab = line.indexOf('\t', firstTab + 1);
+			int thirdTab = line.indexOf('\t', secondTab + 1);
+			String chr = line.substring(0, firstTab);
+			int start = Integer.parseInt(line.substring(firstTab + 1, secondTab));
+			int end = Integer.parseInt(thirdTab == -1 ? line.substring(secondTab + 1) : line.substring(secondTab + 1, thirdTab));
+
+			long chrFeatures[] = rawFeatures.get(chr);
+			int size = 0;
+			if (chrFeatures == null) {
+				chrFeatures = new long[1024];
+			} else {
+				size = rawSizes.get(chr);
+				if (size == chrFeatures.length) {
+					chrFeatures = Arrays.copyOf(chrFeatures, size * 2);
+				}
+			}
+			chrFeatures[size] = ((long) start << 32) | (end & 0xFFFFFFFFL);
+			rawFeatures.put(chr, chrFeatures);
+			rawSizes.put(chr, size + 1);
+
+		}
+
+		bedReader.close();
+
+		features = new HashMap<String, ChrFeatures>();
+		totalFeatures = 0;
+		for (Map.Entry<String, long[]> chrEntry : rawFeatures.entrySet()) {
+			ChrFeatures chrFeatures = new ChrFeatures(chrEntry.getValue(), rawSizes.get(chrEntry.getKey()));
+			features.put(chrEntry.getKey(), chrFeatures);
+			totalFeatures += chrFeatures.starts.length;
+		}
+
+	}
+
+	public int getTotalFeatures() {
+		return totalFeatures;
+	}
+
+	/**
+	 * @return number of distinct features with <code>featureEnd &gt; start &amp;&amp; featureStart &lt; end</code>
+	 */
+	public int count(String chr, int start, int end) {
+
+		ChrFeatures chrFeatures = features.get(chr);
+		if (chrFeatures == null) {
+			return 0;
+		}
+
+		int startedBefore = countBelow(chrFeatures.starts, end);
+		if (end > start) {
+			// Every feature ending at or before start also started before end, so the two counts nest
+			return startedBefore - countBelow(chrFeatures.sortedEnds, start + 1);
+		} else {
+			// Only features spanning all of [end, start] can match; walk back from the last feature starting before end
+			int total = 0;
+			for (int x = startedBefore - 1; x >= 0 && chrFeatures.maxEnds[x] > start; x--) {
+				if (chrFeatures.ends[x] > start) {
+					total++;
+				}
+			}
+			return total;
+		}
+
+	}
+
+	/**
+	 * @return a cursor that counts features on <code>chr</code> for ranges given in order of non-decreasing start
+	 */
+	public Cursor cursor(String chr) {
+		return new Cursor(chr);
+	}
+
+	/**
+	 * Counts for a run of ranges sorted by start, e.g. one chromosome's CNVs in position order. The same answers as
+	 * {@link FeatureCountIndex#count(String, int, int)}, but each search carries on from where the previous one finished
+	 * rather than starting again from the whole chromosome.
+	 */
+	public class Cursor {
+
+		private String chr;
+		private ChrFeatures chrFeatures;
+		private int lastStart;
+		private int endedBefore; // features with featureEnd <= lastStart
+		private int startedBefore; // features with featureStart < the previous end
+
+		private Cursor(String chr) {
+			this.chr = chr;
+			chrFeatures = features.get(chr);
+			lastStart = Integer.MIN_VALUE;
+			endedBefore = 0;
+			startedBefore = 0;
+		}
+
+		public int count(int start, int end) {
+
+			if (chrFeatures == null) {
+				return 0;
+			}
+			if (start < lastStart) {
+				throw new IllegalArgumentException("Cursor ranges must be in start order, got " + start + " after " + lastStart + " on " + chr);
+			}
+			lastStart = start;
+			if (end <= start) {
+				return FeatureCountIndex.this.count(chr, start, end);
+			}
+
+			int sortedEnds[] = chrFeatures.sortedEnds;
+			while (endedBefore < sortedEnds.length && sortedEnds[endedBefore] <= start) {
+				endedBefore++;
+			}
+			// Ends aren't sorted, so search outwards from the last position
+			startedBefore = countBelow(chrFeatures.starts, end, startedBefore);
+			return startedBefore - endedBefore;
+
+		}
+
+	}
+
+	// Number of values strictly less than key in a sorted array, galloping out from hint before the binary search
+	private static int countBelow(int sorted[], int key, int hint) {
+		int low;
+		int high;
+		int bound = 1;
+		if (hint < sorted.length && sorted[hint] < key) {
+			low = hint + 1;
+			while (low + bound - 1 < sorted.length && sorted[low + bound - 1] < key) {
+				low += bound;
+				bound <<= 1;
+			}
+			high = Math.min(sorted.length, low + bound - 1);
+		} else {
+			high = hint;
+			while (high - bound >= 0 && sorted[high - bound] >= key) {
+				high -= bound;
+				bound <<= 1;
+			}
+			low = Math.max(0, high - bound + 1);
+		}
+		return countBelow(sorted, key, low, high);
+	}
+	// Number of values strictly less than key in a sorted array
+	private static int countBelow(int sorted[], int key) {
+		return countBelow(sorted, key, 0, sorted.length);
+	}
+	// The same, knowing the answer lies in [low, high]
+	private static int countBelow(int sorted[], int key, int low, int high) {
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted[mid] < key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static class ChrFeatures {
+
+		private int starts[];
+		private int ends[]; // in start order
+		private int maxEnds[]; // running maximum of ends, in start order
+		private int sortedEnds[];
+
+		private ChrFeatures(long packed[], int size) {
+
+			long sorted[] = Arrays.copyOf(packed, size);
+			Arrays.sort(sorted);
+
+			int unique = 0;
+			for (int x = 0; x < size; x++) {
+				if (x == 0 || sorted[x] != sorted[x - 1]) {
+					sorted[unique++] = sorted[x];
+				}
+			}
+
+			starts = new int[unique];
+			ends = new int[unique];
+			maxEnds = new int[unique];
+			sortedEnds = new int[unique];
+			int maxEnd = Integer.MIN_VALUE;
+			for (int x = 0; x < unique; x++) {
+				starts[x] = (int) (sorted[x] >> 32);
+				ends[x] = (int) sorted[x];
+				maxEnd = Math.max(maxEnd, ends[x]);
+				maxEnds[x] = maxEnd;
+				sortedEnds[x] = ends[x];
+			}
+			Arrays.sort(sortedEnds);
+
+		}
+
+	}
+
+}
@@ -0,0 +1,337 @@
+package utilities;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only set of named intervals held as flat int columns per chromosome (start, end, running maximum end and an index
+ * into a shared string table), sorted by start then end. It holds exactly what an htsjdk {@link htsjdk.samtools.util.IntervalTree}
+ * built from the same records would: a record with the same start and end as an earlier one replaces it.
+ *
+ * Tracks can be built from parsed records with a {@link Builder}, or read straight out of a (memory-mapped) buffer
+ * written by {@link #write(DataOutputStream)}, in which case nothing is copied onto the heap but the chromosome names.
+ *
+ * Overlaps use IntervalTree's closed rule, <code>intervalStart &lt;= end &amp;&amp; intervalEnd &gt;= start</code>, and are
+ * visited from the last candidate backwards:
+ *
+ * <pre>
+ * ChrIntervals intervals = track.getChr(chr);
+ * for (int x = intervals.lastStartingBefore(end); x &gt;= 0 &amp;&amp; intervals.getMaxEnd(x) &gt;= start; x--) {
+ *     if (intervals.getEnd(x) &gt;= start) { ... }
+ * }
+ * </pre>
+ *
+ * Safe to share between threads once built.
+ */
+public class IntervalTrack {
+
+	private Map<String, ChrIntervals> chrIntervals;
+	private StringTable values;
+	private int totalIntervals;
+
+	private IntervalTrack(Map<String, ChrIntervals> chrIntervals, StringTable values) {
+		this.chrIntervals = chrIntervals;
+		this.values = values;
+		totalIntervals = 0;
+		for (ChrIntervals intervals : chrIntervals.values()) {
+			totalIntervals += intervals.size();
+		}
+	}
+
+	/**
+	 * @return intervals on <code>chr</code>, or an empty set if the track has none there
+	 */
+	public ChrIntervals getChr(String chr) {
+		ChrIntervals intervals = chrIntervals.get(chr);
+		return intervals == null ? ChrIntervals.EMPTY : intervals;
+	}
+	public String getValue(ChrIntervals intervals, int index) {
+		return values.get(intervals.getValueIndex(index));
+	}
+	public int getTotalIntervals() {
+		return totalIntervals;
+	}
+
+	/**
+	 * Layout: number of chromosomes, then per chromosome its name, size and the start, end, maxEnd and value columns, then
+	 * the string table.
+	 */
+	public void write(DataOutputStream output) throws IOException {
+
+		output.writeInt(chrIntervals.size());
+		for (Map.Entry<String, ChrIntervals> entry : chrIntervals.entrySet()) {
+			ChrIntervals intervals = entry.getValue();
+			output.writeUTF(entry.getKey());
+			output.writeInt(intervals.size());
+			writeInts(output, intervals.starts);
+			writeInts(output, intervals.ends);
+			writeInts(output, intervals.maxEnds);
+			writeInts(output, intervals.valueIndices);
+		}
+		values.write(output);
+
+	}
+
+	/**
+	 * Reads a track written by {@link #write(DataOutputStream)} starting at the buffer's position, leaving the position just
+	 * after it. The columns are views of <code>buffer</code>.
+	 */
+	public static IntervalTrack read(ByteBuffer buffer) {
+
+		int numChrs = buffer.getInt();
+		Map<String, ChrIntervals> chrIntervals = new HashMap<String, ChrIntervals>();
+		for (int x = 0; x < numChrs; x++) {
+			String chr = readUTF(buffer);
+			int size = buffer.getInt();
+			IntBuffer starts = sliceInts(buffer, size);
+			IntBuffer ends = sliceInts(buffer, size);
+			IntBuffer maxEnds = sliceInts(buffer, size);
+			IntBuffer valueIndices = sliceInts(buffer, size);
+			chrIntervals.put(chr, new ChrIntervals(size, starts, ends, maxEnds, valueIndices));
+		}
+		StringTable values = StringTable.read(buffer);
+		return new IntervalTrack(chrIntervals, values);
+
+	}
+
+	public static class ChrIntervals {
+
+		private static final ChrIntervals EMPTY = new ChrIntervals(0, IntBuffer.allocate(0), IntBuffer.allocate(0), IntBuffer.allocate(0), IntBuffer.allocate(0));
+
+		private int size;
+		private IntBuffer starts;
+		private IntBuffer ends;
+		private IntBuffer maxEnds; // running maximum of ends, in start order
+		private IntBuffer valueIndices;
+
+		private ChrIntervals(int size, IntBuffer starts, IntBuffer ends, IntBuffer maxEnds, IntBuffer valueIndices) {
+			this.size = size;
+			this.starts = starts;
+			this.ends = ends;
+			this.maxEnds = maxEnds;
+			this.valueIndices = valueIndices;
+		}
+
+		public int size() {
+			return size;
+		}
+		public int getStart(int index) {
+			return starts.get(index);
+		}
+		public int getEnd(int index) {
+			return ends.get(index);
+		}
+		public int getMaxEnd(int index) {
+			return maxEnds.get(index);
+		}
+		private int getValueIndex(int index) {
+			return valueIndices.get(index);
+		}
+
+		/**
+		 * @return index of the last interval with <code>intervalStart &lt;= position</code>, or -1 if there is none
+		 */
+		public int lastStartingBefore(int position) {
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (starts.get(mid) <= position) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low - 1;
+		}
+
+	}
+
+	public static class Builder {
+
+		private Map<String, List<int[]>> records;
+		private Map<String, Integer> valueIndices;
+		private List<String> valueList;
+
+		public Builder() {
+			records = new LinkedHashMap<String, List<int[]>>();
+			valueIndices = new HashMap<String, Integer>();
+			valueList = new ArrayList<String>();
+		}
+
+		public void add(String chr, int start, int end, String value) {
+
+			Integer valueIndex = valueIndices.get(value);
+			if (valueIndex == null) {
+				valueIndex = valueList.size();
+				valueIndices.put(value, valueIndex);
+				valueList.add(value);
+			}
+			List<int[]> chrRecords = records.get(chr);
+			if (chrRecords == null) {
+				chrRecords = new ArrayList<int[]>();
+				records.put(chr, chrRecords);
+			}
+			chrRecords.add(new int[] {start, end, valueIndex, chrRecords.size()});
+
+		}
+
+		public IntervalTrack build() {
+
+			Map<String, ChrIntervals> chrIntervals = new LinkedHashMap<String, ChrIntervals>();
+			for (Map.Entry<String, List<int[]>> entry : records.entrySet()) {
+
+				List<int[]> chrRecords = entry.getValue();
+				// Insertion order breaks ties, so the last record with a given start and end is the one kept
+				chrRecords.sort(RECORD_ORDER);
+
+				int size = 0;
+				int starts[] = new int[chrRecords.size()];
+				int ends[] = new int[chrRecords.size()];
+				int values[] = new int[chrRecords.size()];
+				for (int[] record : chrRecords) {
+					if (size > 0 && starts[size - 1] == record[0] && ends[size - 1] == record[1]) {
+						size--;
+					}
+					starts[size] = record[0];
+					ends[size] = record[1];
+					values[size] = record[2];
+					size++;
+				}
+
+				int maxEnds[] = new int[size];
+				int maxEnd = Integer.MIN_VALUE;
+				for (int x = 0; x < size; x++) {
+					maxEnd = Math.max(maxEnd, ends[x]);
+					maxEnds[x] = maxEnd;
+				}
+				chrIntervals.put(entry.getKey(), new ChrIntervals(size,
+						IntBuffer.wrap(Arrays.copyOf(starts, size)),
+						IntBuffer.wrap(Arrays.copyOf(ends, size)),
+						IntBuffer.wrap(maxEnds),
+						IntBuffer.wrap(Arrays.copyOf(values, size))));
+
+			}
+			return new IntervalTrack(chrIntervals, new StringTable(valueList.toArray(new String[valueList.size()])));
+
+		}
+
+		private static final Comparator<int[]> RECORD_ORDER = new Comparator<int[]>() {
+			@Override
+			public int compare(int[] o1, int[] o2) {
+				for (int x = 0; x < 2; x++) {
+					int comp = Integer.compare(o1[x], o2[x]);
+					if (comp != 0) {
+						return comp;
+					}
+				}
+				return Integer.compare(o1[3], o2[3]);
+			}
+		};
+
+	}
+
+	/**
+	 * Strings stored as one UTF-8 byte block plus offsets, decoded the first time each one is asked for.
+	 */
+	public static class StringTable {
+
+		private int size;
+		private IntBuffer offsets;
+		private ByteBuffer bytes;
+		private String decoded[];
+
+		public StringTable(String strings[]) {
+
+			size = strings.length;
+			decoded = Arrays.copyOf(strings, size);
+			int stringOffsets[] = new int[size + 1];
+			List<byte[]> encoded = new ArrayList<byte[]>(size);
+			for (int x = 0; x < size; x++) {
+				byte stringBytes[] = strings[x].getBytes(StandardCharsets.UTF_8);
+				encoded.add(stringBytes);
+				stringOffsets[x + 1] = stringOffsets[x] + stringBytes.length;
+			}
+			byte allBytes[] = new byte[stringOffsets[size]];
+			for (int x = 0; x < size; x++) {
+				System.arraycopy(encoded.get(x), 0, allBytes, stringOffsets[x], encoded.get(x).length);
+			}
+			offsets = IntBuffer.wrap(stringOffsets);
+			bytes = ByteBuffer.wrap(allBytes);
+
+		}
+		private StringTable(int size, IntBuffer offsets, ByteBuffer bytes) {
+			this.size = size;
+			this.offsets = offsets;
+			this.bytes = bytes;
+			decoded = new String[size];
+		}
+
+		public int size() {
+			return size;
+		}
+		public String get(int index) {
+			String value = decoded[index];
+			if (value == null) {
+				int start = offsets.get(index);
+				byte stringBytes[] = new byte[offsets.get(index + 1) - start];
+				for (int x = 0; x < stringBytes.length; x++) {
+					stringBytes[x] = bytes.get(start + x);
+				}
+				value = new String(stringBytes, StandardCharsets.UTF_8);
+				decoded[index] = value;
+			}
+			return value;
+		}
+
+		public void write(DataOutputStream output) throws IOException {
+			output.writeInt(size);
+			for (int x = 0; x <= size; x++) {
+				output.writeInt(offsets.get(x));
+			}
+			for (int x = 0; x < offsets.get(size); x++) {
+				output.writeByte(bytes.get(x));
+			}
+		}
+		public static StringTable read(ByteBuffer buffer) {
+			int size = buffer.getInt();
+			IntBuffer offsets = sliceInts(buffer, size + 1);
+			int totalBytes = offsets.get(size);
+			ByteBuffer bytes = buffer.slice();
+			bytes.limit(totalBytes);
+			buffer.position(buffer.position() + totalBytes);
+			return new StringTable(size, offsets, bytes);
+		}
+
+	}
+
+	private static void writeInts(DataOutputStream output, IntBuffer ints) throws IOException {
+		for (int x = 0; x < ints.limit(); x++) {
+			output.writeInt(ints.get(x));
+		}
+	}
+	private static IntBuffer sliceInts(ByteBuffer buffer, int size) {
+		ByteBuffer slice = buffer.slice();
+		slice.limit(size * 4);
+		buffer.position(buffer.position() + (size * 4));
+		return slice.asIntBuffer();
+	}
+	public static String readUTF(ByteBuffer buffer) {
+		int length = buffer.getShort() & 0xFFFF;
+		byte utf[] = new byte[length];
+		buffer.get(utf);
+		// writeUTF is modified UTF-8, which only differs from UTF-8 for NUL and supplementary characters
+		return new String(utf, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,216 @@
+package utilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import utilities.CompressedInput.Compression;
+
+/**
+ * Byte offsets of every <code>stride</code>-th line of a text file (lines 1, 1 + stride, 1 + 2*stride, ...), so a reader can
+ * seek close to any line instead of reading through everything before it. Lines end at '\n', '\r' or "\r\n", the same as
+ * {@link java.io.BufferedReader#readLine()}. Offsets of bgzipped files are BGZF virtual offsets (see
+ * {@link ParallelBGZFInputStream}), so {@link #open(File, long)} starts at the line's block without inflating anything
+ * before it. Plain gzip can't be entered part way through: its offsets are into the uncompressed text, and opening one
+ * still inflates everything before the line.
+ *
+ * The index is written next to the file as <code>&lt;file&gt;.loi</code> and records the file's length and modification
+ * time, so an index left over from a previous version of the file is detected as stale.
+ */
+public class LineOffsetIndex {
+
+	public static final String SUFFIX = ".loi";
+	public static final int DEFAULT_STRIDE = 100;
+
+	private static final int MAGIC = 0x4C4F4932; // "LOI2"
+	// Has no compression or end offset, so is treated as stale and rebuilt by 'Index'
+	private static final int LEGACY_MAGIC = 0x4C4F4931; // "LOI1"
+
+	private Compression compression;
+	private int stride;
+	private long totalLines;
+	private long endOffset;
+	private long fileLength;
+	private long fileModified;
+	private long offsets[];
+
+	private LineOffsetIndex(Compression compression, int stride, long totalLines, long endOffset, long fileLength, long fileModified, long offsets[]) {
+		this.compression = compression;
+		this.stride = stride;
+		this.totalLines = totalLines;
+		this.endOffset = endOffset;
+		this.fileLength = fileLength;
+		this.fileModified = fileModified;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * Scans <code>file</code> once and records the offset of every <code>stride</code>-th line.
+	 */
+	public static LineOffsetIndex build(File file, int stride) throws IOException {
+
+		if (stride < 1) {
+			throw new IllegalArgumentException("Line index stride must be at least 1, was " + stride);
+		}
+
+		long fileLength = file.length();
+		long fileModified = file.lastModified();
+		Compression compression = CompressedInput.getCompression(file);
+		long offsets[] = new long[1024];
+		int numOffsets = 0;
+		long totalLines = 0;
+		long position = 0;
+		boolean lineStarted = false;
+		boolean afterCR = false;
+
+		InputStream input = CompressedInput.openStream(file);
+		ParallelBGZFInputStream bgzfInput = compression == Compression.BGZF ? (ParallelBGZFInputStream) input : null;
+		byte buffer[] = new byte[65536];
+		int read;
+		while ((read = input.read(buffer)) != -1) {
+			// Virtual offset of buffer[0]; the buffer never spans two blocks
+			long readOffset = bgzfInput == null ? position : (bgzfInput.getBlockAddress() << 16) | (bgzfInput.getBlockPosition() - read);
+			for (int x = 0; x < read; x++, position++) {
+				byte b = buffer[x];
+				if (afterCR) {
+					afterCR = false;
+					if (b == '\n') {
+						continue;
+					}
+				}
+				if (!lineStarted) {
+					if (totalLines % stride == 0) {
+						if (numOffsets == offsets.length) {
+							offsets = Arrays.copyOf(offsets, numOffsets * 2);
+						}
+						offsets[numOffsets++] = readOffset + x;
+					}
+					lineStarted = true;
+				}
+				if (b == '\n' || b == '\r') {
+					totalLines++;
+					lineStarted = false;
+					afterCR = b == '\r';
+				}
+			}
+		}
+		long endOffset = bgzfInput == null ? position : bgzfInput.getVirtualOffset();
+		input.close();
+
+		// Last line without a terminator
+		if (lineStarted) {
+			totalLines++;
+		}
+
+		return new LineOffsetIndex(compression, stride, totalLines, endOffset, fileLength, fileModified, Arrays.copyOf(offsets, numOffsets));
+
+	}
+
+	public static File getIndexFile(File file) {
+		return new File(file.getAbsolutePath() + SUFFIX);
+	}
+
+	public void write(File indexFile) throws IOException {
+
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+		output.writeInt(MAGIC);
+		output.writeByte(compression.ordinal());
+		output.writeInt(stride);
+		output.writeLong(totalLines);
+		output.writeLong(endOffset);
+		output.writeLong(fileLength);
+		output.writeLong(fileModified);
+		output.writeInt(offsets.length);
+		for (long offset : offsets) {
+			output.writeLong(offset);
+		}
+		output.close();
+
+	}
+
+	/**
+	 * @return the index for <code>file</code>, or null if there is no index, it was built from a different version of the
+	 *         file, or it was written in an older index format
+	 */
+	public static LineOffsetIndex load(File file) throws IOException {
+
+		File indexFile = getIndexFile(file);
+		if (!indexFile.exists()) {
+			return null;
+		}
+
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+		try {
+			int magic = input.readInt();
+			if (magic == LEGACY_MAGIC) {
+				return null;
+			} else if (magic != MAGIC) {
+				throw new IOException("Not a line offset index: " + indexFile.getAbsolutePath());
+			}
+			Compression compression = Compression.values()[input.readByte()];
+			int stride = input.readInt();
+			long totalLines = input.readLong();
+			long endOffset = input.readLong();
+			long fileLength = input.readLong();
+			long fileModified = input.readLong();
+			if (fileLength != file.length() || fileModified != file.lastModified()) {
+				return null;
+			}
+			long offsets[] = new long[input.readInt()];
+			for (int x = 0; x < offsets.length; x++) {
+				offsets[x] = input.readLong();
+			}
+			return new LineOffsetIndex(compression, stride, totalLines, endOffset, fileLength, fileModified, offsets);
+		} finally {
+			input.close();
+		}
+
+	}
+
+	public Compression getCompression() {
+		return compression;
+	}
+	public int getStride() {
+		return stride;
+	}
+	public long getTotalLines() {
+		return totalLines;
+	}
+	/**
+	 * @return the nearest indexed line (1-based) at or before <code>lineNumber</code>
+	 */
+	public long getIndexedLine(long lineNumber) {
+		return 1 + (getEntry(lineNumber) * stride);
+	}
+	/**
+	 * @return offset of {@link #getIndexedLine(long)} (a virtual offset for BGZF), or the offset of the end if <code>lineNumber</code> is past the end
+	 */
+	public long getOffset(long lineNumber) {
+		int entry = getEntry(lineNumber);
+		return entry < offsets.length ? offsets[entry] : endOffset;
+	}
+	/**
+	 * @return the file's uncompressed bytes, starting at {@link #getIndexedLine(long)}
+	 */
+	public InputStream open(File file, long lineNumber) throws IOException {
+		if (compression == Compression.BGZF) {
+			return new ParallelBGZFInputStream(file, ParallelBGZFInputStream.DEFAULT_THREADS * 4, getOffset(lineNumber));
+		}
+		return CompressedInput.openStream(file, getOffset(lineNumber));
+	}
+
+	private int getEntry(long lineNumber) {
+		if (lineNumber < 1) {
+			throw new IllegalArgumentException("Line numbers start at 1, was " + lineNumber);
+		}
+		return (int) Math.min((lineNumber - 1) / stride, offsets.length);
+	}
+
+}
@@ -0,0 +1,207 @@
+package utilities;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Sequential stream over a BGZF file that inflates blocks on a shared pool of decoder threads. The reading thread
+ * only pulls compressed blocks off disk, which is cheap since each block's size is in its header, and keeps up to
+ * <code>readAhead</code> of them being inflated at once; blocks are handed back strictly in file order, so the stream
+ * reads exactly like a GZIPInputStream over the same file.
+ *
+ * Positions in the file are BGZF virtual offsets, as used by tabix: the compressed address of a block shifted left 16
+ * bits, plus the offset into that block's uncompressed data. A stream can start at one without inflating anything before
+ * it, and reports the virtual offset of the next byte it will return.
+ *
+ * Not thread-safe, like any InputStream. The decoder pool is shared by every stream in the process.
+ */
+public class ParallelBGZFInputStream extends InputStream {
+
+	public static final int DEFAULT_THREADS = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+
+	private static ExecutorService decoders;
+
+	private String source;
+	private InputStream raw;
+	private ArrayDeque<Future<byte[]>> pending;
+	private ArrayDeque<Long> pendingAddresses;
+	private long nextAddress; // compressed address of the next block read off disk
+	private long currentAddress;
+	private int readAhead;
+	private boolean rawFinished;
+	private byte current[];
+	private int position;
+
+	public ParallelBGZFInputStream(File file) throws IOException {
+		this(file, DEFAULT_THREADS * 4);
+	}
+	/**
+	 * @param readAhead maximum number of blocks (of up to 64 KiB each) read but not yet consumed
+	 */
+	public ParallelBGZFInputStream(File file, int readAhead) throws IOException {
+		this(file, readAhead, 0);
+	}
+	/**
+	 * @param virtualOffset position to start at, as returned by {@link #getVirtualOffset()}
+	 */
+	public ParallelBGZFInputStream(File file, int readAhead, long virtualOffset) throws IOException {
+
+		if (readAhead < 1) {
+			throw new IllegalArgumentException("BGZF read-ahead must be at least 1 block, was " + readAhead);
+		}
+		source = file.getAbsolutePath();
+		FileInputStream fileInput = new FileInputStream(file);
+		nextAddress = virtualOffset >>> 16;
+		fileInput.getChannel().position(nextAddress);
+		raw = new BufferedInputStream(fileInput, 1 << 20);
+		pending = new ArrayDeque<Future<byte[]>>();
+		pendingAddresses = new ArrayDeque<Long>();
+		this.readAhead = readAhead;
+		rawFinished = false;
+		currentAddress = nextAddress;
+		current = new byte[0];
+		position = 0;
+
+		int blockOffset = (int) (virtualOffset & 0xffff);
+		if (blockOffset > 0) {
+			if (!ensureData() || currentAddress != virtualOffset >>> 16 || blockOffset > current.length) {
+				close();
+				throw new IOException("Virtual offset " + virtualOffset + " is not in a block of " + source);
+			}
+			position = blockOffset;
+		}
+
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!ensureData()) {
+			return -1;
+		}
+		return current[position++] & 0xff;
+	}
+	@Override
+	public int read(byte buffer[], int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		if (!ensureData()) {
+			return -1;
+		}
+		int copy = Math.min(length, current.length - position);
+		System.arraycopy(current, position, buffer, offset, copy);
+		position += copy;
+		return copy;
+	}
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n && ensureData()) {
+			int step = (int) Math.min(n - skipped, current.length - position);
+			position += step;
+			skipped += step;
+		}
+		return skipped;
+	}
+	/**
+	 * @return virtual offset of the next byte {@link #read()} would return (at the end of a block, the start of the next)
+	 */
+	public long getVirtualOffset() {
+		if (position < current.length) {
+			return (currentAddress << 16) | position;
+		}
+		return (pendingAddresses.isEmpty() ? nextAddress : pendingAddresses.peek()) << 16;
+	}
+	// Reads never cross a block, so the n bytes a read returned are the n before getBlockPosition() in this block
+	long getBlockAddress() {
+		return currentAddress;
+	}
+	int getBlockPosition() {
+		return position;
+	}
+	@Override
+	public int available() {
+		return current.length - position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Future<byte[]> block : pending) {
+			block.cancel(false);
+		}
+		pending.clear();
+		pendingAddresses.clear();
+		raw.close();
+	}
+
+	// Moves on to the next non-empty block if the current one is used up; false at the end of the file
+	private boolean ensureData() throws IOException {
+		while (position == current.length) {
+			fill();
+			if (pending.isEmpty()) {
+				return false;
+			}
+			current = await(pending.poll());
+			currentAddress = pendingAddresses.poll();
+			position = 0;
+		}
+		return true;
+	}
+	private void fill() throws IOException {
+		while (!rawFinished && pending.size() < readAhead) {
+			final byte block[] = BGZF.readBlock(raw, source);
+			if (block == null) {
+				rawFinished = true;
+			} else {
+				pendingAddresses.add(nextAddress);
+				nextAddress += block.length;
+				pending.add(getDecoders().submit(new Callable<byte[]>() {
+					@Override
+					public byte[] call() throws IOException {
+						return BGZF.inflate(block, source);
+					}
+				}));
+			}
+		}
+	}
+	private byte[] await(Future<byte[]> block) throws IOException {
+		try {
+			return block.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while inflating " + source, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Failed to inflate " + source, e.getCause());
+		}
+	}
+
+	private static synchronized ExecutorService getDecoders() {
+		if (decoders == null) {
+			// Daemon threads, so an unclosed stream never keeps the JVM alive
+			decoders = Executors.newFixedThreadPool(DEFAULT_THREADS, new ThreadFactory() {
+				private int count = 0;
+				@Override
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "bgzf-decoder-" + (++count));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return decoders;
+	}
+
+}
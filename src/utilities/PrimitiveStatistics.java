@@ -0,0 +1,184 @@
+package utilities;
+
+import java.util.Arrays;
+
+/**
+ * Drop-in replacement for the parts of commons-math's DescriptiveStatistics used while annotating (mean, standard
+ * deviation, N and percentiles), backed by a primitive double buffer that survives {@link #clear()} so one instance can
+ * be reused for every CNV a thread annotates.
+ *
+ * Mean and standard deviation are computed with the same arithmetic as commons-math (corrected mean, bias-corrected
+ * two-pass variance) so printed values don't change. Percentiles use commons-math's default (legacy) estimator, but are
+ * found by quickselect on a scratch copy instead of sorting. Values are ordered as {@link Double#compare(double, double)}
+ * orders them, as commons-math does, so NaN (which Double.parseDouble accepts) sorts above every other value.
+ */
+public class PrimitiveStatistics {
+
+	private double values[];
+	private double scratch[];
+	private int n;
+	private double sum;
+
+	public PrimitiveStatistics() {
+		this(256);
+	}
+	public PrimitiveStatistics(int initialCapacity) {
+		values = new double[Math.max(initialCapacity, 1)];
+		scratch = null;
+		clear();
+	}
+
+	public void clear() {
+		n = 0;
+		sum = 0.0;
+	}
+	public void addValue(double value) {
+		if (n == values.length) {
+			values = Arrays.copyOf(values, values.length * 2);
+		}
+		values[n++] = value;
+		sum += value;
+	}
+
+	public long getN() {
+		return n;
+	}
+	public double getMean() {
+		if (n == 0) {
+			return Double.NaN;
+		}
+		double xbar = sum / n;
+		double correction = 0.0;
+		for (int x = 0; x < n; x++) {
+			correction += values[x] - xbar;
+		}
+		return xbar + (correction / n);
+	}
+	public double getVariance() {
+		if (n == 0) {
+			return Double.NaN;
+		} else if (n == 1) {
+			return 0.0;
+		}
+		double mean = getMean();
+		double accum = 0.0;
+		double accum2 = 0.0;
+		for (int x = 0; x < n; x++) {
+			double dev = values[x] - mean;
+			accum += dev * dev;
+			accum2 += dev;
+		}
+		double len = n;
+		return (accum - (accum2 * accum2 / len)) / (len - 1.0);
+	}
+	public double getStandardDeviation() {
+		if (n == 0) {
+			return Double.NaN;
+		} else if (n == 1) {
+			return 0.0;
+		} else {
+			return Math.sqrt(getVariance());
+		}
+	}
+	public double getMedian() {
+		return getPercentile(50.0);
+	}
+	/**
+	 * @param p Percentile in (0,100] -- note this is a percentage, as in DescriptiveStatistics.getPercentile
+	 */
+	public double getPercentile(double p) {
+
+		if (p <= 0 || p > 100) {
+			throw new IllegalArgumentException("Percentile must be in (0,100], was " + p);
+		}
+		if (n == 0) {
+			return Double.NaN;
+		} else if (n == 1) {
+			return values[0];
+		}
+
+		if (scratch == null || scratch.length < n) {
+			scratch = new double[values.length];
+		}
+		System.arraycopy(values, 0, scratch, 0, n);
+
+		double pos = p * (n + 1) / 100;
+		double fpos = Math.floor(pos);
+		int intPos = (int) fpos;
+		double dif = pos - fpos;
+
+		if (pos < 1) {
+			return select(scratch, n, 0);
+		}
+		if (pos >= n) {
+			return select(scratch, n, n - 1);
+		}
+		double lower = select(scratch, n, intPos - 1);
+		// select() leaves everything above index intPos - 1 no smaller than lower, so the next order statistic is the
+		// smallest remaining value
+		double upper = scratch[intPos];
+		for (int x = intPos + 1; x < n; x++) {
+			if (Double.compare(scratch[x], upper) < 0) {
+				upper = scratch[x];
+			}
+		}
+		return lower + dif * (upper - lower);
+
+	}
+
+	// Hoare-style quickselect with median-of-three pivots; returns the k-th smallest of work[0, length)
+	private static double select(double work[], int length, int k) {
+
+		int left = 0;
+		int right = length - 1;
+
+		while (right > left) {
+
+			int mid = (left + right) >>> 1;
+			if (Double.compare(work[mid], work[left]) < 0) {
+				swap(work, left, mid);
+			}
+			if (Double.compare(work[right], work[left]) < 0) {
+				swap(work, left, right);
+			}
+			if (Double.compare(work[right], work[mid]) < 0) {
+				swap(work, mid, right);
+			}
+			double pivot = work[mid];
+
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (Double.compare(work[i], pivot) < 0) {
+					i++;
+				}
+				while (Double.compare(pivot, work[j]) < 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(work, i, j);
+					i++;
+					j--;
+				}
+			}
+
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				return work[k];
+			}
+
+		}
+
+		return work[k];
+
+	}
+	private static void swap(double work[], int i, int j) {
+		double tmp = work[i];
+		work[i] = work[j];
+		work[j] = tmp;
+	}
+
+}
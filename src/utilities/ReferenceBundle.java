@@ -0,0 +1,326 @@
+package utilities;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import loaders.GeneLoader;
+import loaders.PathogenicLoader;
+
+/**
+ * The reference annotation resources used by 'Annotate' and 'Merge': DGV gold standard gains and losses, cytoband
+ * (chromosome ends and centromere positions), genes and known pathogenic loci.
+ *
+ * Resources come either from their original text files, parsed the first time each one is needed, or from a bundle
+ * compiled once by the 'Compile' runtime and memory-mapped, so they are available without any parsing. The compiled
+ * bundle holds the same intervals and values as the parsed files; only how they are loaded differs.
+ */
+public class ReferenceBundle {
+
+	public static final String GENE_RESOURCE = "/loaders/geneList_hg19.bed";
+	public static final String PATHOGENIC_RESOURCE = "/loaders/pathogenic_cnvs.bed";
+
+	private static final int MAGIC = 0x434E5652; // "CNVR"
+	private static final int VERSION = 1;
+
+	private File dgvFile;
+	private File cytobandFile;
+	private File geneFile;
+	private File pathogenicFile;
+	private String description;
+
+	private IntervalTrack dgvDels;
+	private IntervalTrack dgvDups;
+	private Map<String, CytobandInfo> cytobands;
+	private IntervalTrack genes;
+	private String pathogenicText;
+
+	/**
+	 * Resources parsed from text on first use.
+	 *
+	 * @param geneFile gene BED, or null for the copy packaged in the jar
+	 * @param pathogenicFile pathogenic loci BED, or null for the copy packaged in the jar
+	 */
+	public ReferenceBundle(File dgvFile, File cytobandFile, File geneFile, File pathogenicFile) {
+		this.dgvFile = dgvFile;
+		this.cytobandFile = cytobandFile;
+		this.geneFile = geneFile;
+		this.pathogenicFile = pathogenicFile;
+		description = "text sources";
+	}
+	/**
+	 * Resources from their default locations (see {@link ResourcePaths}).
+	 */
+	public ReferenceBundle() {
+		this(ResourcePaths.get(ResourcePaths.DGV), ResourcePaths.get(ResourcePaths.CYTOBAND), null, null);
+	}
+
+	/**
+	 * @param bundleFile compiled bundle, or null to read the text sources from their default locations
+	 */
+	public static ReferenceBundle open(File bundleFile) throws IOException {
+		if (bundleFile == null) {
+			return new ReferenceBundle();
+		} else {
+			return map(bundleFile);
+		}
+	}
+	/**
+	 * Memory-maps a bundle written by {@link #compile(File)}.
+	 */
+	public static ReferenceBundle map(File bundleFile) throws IOException {
+
+		RandomAccessFile bundleAccess = new RandomAccessFile(bundleFile, "r");
+		FileChannel bundleChannel = bundleAccess.getChannel();
+		// The mapping stays valid after the channel is closed
+		MappedByteBuffer buffer = bundleChannel.map(FileChannel.MapMode.READ_ONLY, 0, bundleChannel.size());
+		bundleAccess.close();
+
+		if (buffer.getInt() != MAGIC) {
+			throw new IOException("Not a reference bundle: " + bundleFile.getAbsolutePath());
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new IOException("Reference bundle " + bundleFile.getAbsolutePath() + " is version " + version + ", this build reads version " + VERSION + ". Re-run 'Compile'.");
+		}
+
+		ReferenceBundle bundle = new ReferenceBundle(null, null, null, null);
+		bundle.description = bundleFile.getAbsolutePath() + " (" + IntervalTrack.readUTF(buffer) + ")";
+		bundle.dgvDels = IntervalTrack.read(buffer);
+		bundle.dgvDups = IntervalTrack.read(buffer);
+		bundle.cytobands = readCytobands(buffer);
+		bundle.genes = IntervalTrack.read(buffer);
+		int pathogenicLength = buffer.getInt();
+		byte pathogenicBytes[] = new byte[pathogenicLength];
+		buffer.get(pathogenicBytes);
+		bundle.pathogenicText = new String(pathogenicBytes, StandardCharsets.UTF_8);
+
+		System.err.println("Mapped reference bundle " + bundle.description);
+		return bundle;
+
+	}
+
+	/**
+	 * Loads every resource and writes them all to <code>bundleFile</code>.
+	 */
+	public void compile(File bundleFile) throws IOException {
+
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(bundleFile), 65536));
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeUTF("compiled " + new Date() + " from " + getSourceNames());
+		getDGVDels().write(output);
+		getDGVDups().write(output);
+		writeCytobands(output, getCytobands());
+		getGenes().write(output);
+		byte pathogenicBytes[] = getPathogenicText().getBytes(StandardCharsets.UTF_8);
+		output.writeInt(pathogenicBytes.length);
+		output.write(pathogenicBytes);
+		output.close();
+
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * @return DGV gold standard losses, valued by DGV ID
+	 */
+	public synchronized IntervalTrack getDGVDels() throws IOException {
+		if (dgvDels == null) {
+			loadDGV();
+		}
+		return dgvDels;
+	}
+	/**
+	 * @return DGV gold standard gains, valued by DGV ID
+	 */
+	public synchronized IntervalTrack getDGVDups() throws IOException {
+		if (dgvDups == null) {
+			loadDGV();
+		}
+		return dgvDups;
+	}
+	public synchronized Map<String, CytobandInfo> getCytobands() throws IOException {
+		if (cytobands == null) {
+			cytobands = buildCytoband(cytobandFile);
+		}
+		return cytobands;
+	}
+	/**
+	 * @return genes, valued by gene name
+	 */
+	public synchronized IntervalTrack getGenes() throws IOException {
+		if (genes == null) {
+			BufferedReader geneReader = openSource(geneFile, GENE_RESOURCE);
+			genes = new GeneLoader(geneReader).getGeneTrack();
+			geneReader.close();
+		}
+		return genes;
+	}
+	public synchronized PathogenicLoader getPathogenic() throws IOException {
+		return new PathogenicLoader(new BufferedReader(new StringReader(getPathogenicText())));
+	}
+
+	private String getPathogenicText() throws IOException {
+		if (pathogenicText == null) {
+			BufferedReader pathogenicReader = openSource(pathogenicFile, PATHOGENIC_RESOURCE);
+			StringBuilder text = new StringBuilder();
+			String line;
+			while ((line = pathogenicReader.readLine()) != null) {
+				text.append(line);
+				text.append('\n');
+			}
+			pathogenicReader.close();
+			pathogenicText = text.toString();
+		}
+		return pathogenicText;
+	}
+
+	private String getSourceNames() {
+		return dgvFile.getName() + ", " + cytobandFile.getName() + ", " +
+				(geneFile == null ? GENE_RESOURCE : geneFile.getName()) + ", " +
+				(pathogenicFile == null ? PATHOGENIC_RESOURCE : pathogenicFile.getName());
+	}
+
+	private BufferedReader openSource(File file, String resource) throws IOException {
+		if (file == null) {
+			return new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream(resource), "UTF-8"));
+		} else {
+			return new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		}
+	}
+
+	private void loadDGV() throws IOException {
+
+		BufferedReader bedReader = new BufferedReader(new FileReader(dgvFile));
+
+		IntervalTrack.Builder dels = new IntervalTrack.Builder();
+		IntervalTrack.Builder dups = new IntervalTrack.Builder();
+
+		String line;
+		String data[];
+		int totalDels = 0;
+		int totalDups = 0;
+
+		while ((line = bedReader.readLine()) != null) {
+
+			data = line.split("\t");
+
+			String chr = data[0];
+			if (chr.startsWith("chr") && chr.length() > 3) {
+				chr = chr.substring(3);
+			}
+			int start = Integer.valueOf(data[1]);
+			int end = Integer.valueOf(data[2]);
+			String id = data[3];
+			String subType = data[6];
+
+			if (subType.equals("Gain")) {
+				totalDups++;
+				dups.add(chr, start, end, id);
+			} else if (subType.equals("Loss")) {
+				totalDels++;
+				dels.add(chr, start, end, id);
+			}
+
+		}
+
+		bedReader.close();
+
+		dgvDels = dels.build();
+		dgvDups = dups.build();
+
+		System.err.println("Total Gold Standard DELs loaded: " + totalDels);
+		System.err.println("Total Gold Standard DUPs loaded: " + totalDups);
+
+	}
+
+	private static Map<String, CytobandInfo> buildCytoband(File cytoband) throws IOException {
+
+		Map<String, CytobandInfo> cytoMap = new HashMap<String, CytobandInfo>();
+
+		BufferedReader cytoReader = new BufferedReader(new FileReader(cytoband));
+
+		String line;
+		String data[];
+
+		while ((line = cytoReader.readLine()) != null) {
+
+			data = line.split("\t");
+			cytoMap.put(data[0], new CytobandInfo(Integer.parseInt(data[1]),Integer.parseInt(data[4]), Integer.parseInt(data[2]), Integer.parseInt(data[3])));
+
+		}
+
+		cytoReader.close();
+
+		return cytoMap;
+
+	}
+	private static void writeCytobands(DataOutputStream output, Map<String, CytobandInfo> cytobands) throws IOException {
+		output.writeInt(cytobands.size());
+		for (Map.Entry<String, CytobandInfo> entry : cytobands.entrySet()) {
+			CytobandInfo cyto = entry.getValue();
+			output.writeUTF(entry.getKey());
+			output.writeInt(cyto.getChrStart());
+			output.writeInt(cyto.getChrStop());
+			output.writeInt(cyto.getCentLeft());
+			output.writeInt(cyto.getCentRight());
+		}
+	}
+	private static Map<String, CytobandInfo> readCytobands(ByteBuffer buffer) {
+		int size = buffer.getInt();
+		Map<String, CytobandInfo> cytobands = new HashMap<String, CytobandInfo>();
+		for (int x = 0; x < size; x++) {
+			String chr = IntervalTrack.readUTF(buffer);
+			cytobands.put(chr, new CytobandInfo(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt()));
+		}
+		return cytobands;
+	}
+
+	public static class CytobandInfo {
+
+		private int chrStart;
+		private int chrStop;
+		private int centLeft;
+		private int centRight;
+
+		public CytobandInfo(int chrStart, int chrStop, int centLeft, int centRight) {
+			this.chrStart = chrStart;
+			this.chrStop = chrStop;
+			this.centLeft = centLeft;
+			this.centRight = centRight;
+		}
+
+		public int getChrStart() {
+			return chrStart;
+		}
+		public int getChrStop() {
+			return chrStop;
+		}
+		public int getCentLeft() {
+			return centLeft;
+		}
+		public int getCentRight() {
+			return centRight;
+		}
+
+	}
+
+}
@@ -0,0 +1,24 @@
+package utilities;
+
+import java.io.IOException;
+
+/**
+ * Compiles the DGV, cytoband, gene and pathogenic locus references into a single {@link ReferenceBundle} file that
+ * 'Annotate' and 'Merge' can memory-map with -ref.
+ */
+public class ReferenceCompiler {
+
+	public ReferenceCompiler(String args[]) throws IOException {
+		
+		ReferenceCompilerOptions options = new ReferenceCompilerOptions(args);
+		
+		ReferenceBundle reference = new ReferenceBundle(options.getDGV(), options.getCytoband(), options.getGenes(), options.getPathogenic());
+		reference.compile(options.getOutput());
+		
+		System.err.println("Total genes loaded: " + reference.getGenes().getTotalIntervals());
+		System.err.println("Total cytoband chromosomes loaded: " + reference.getCytobands().size());
+		System.err.println("Wrote reference bundle " + options.getOutput().getAbsolutePath() + " (" + options.getOutput().length() + " bytes)");
+		
+	}
+	
+}
@@ -0,0 +1,105 @@
+package utilities;
+
+import java.io.File;
+
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+public class ReferenceCompilerOptions {
+
+	private Options options;
+	
+	private File output;
+	private File dgv;
+	private File cytoband;
+	private File genes;
+	private File pathogenic;
+	
+	public ReferenceCompilerOptions (String args[]) {
+		
+		options = setOptions();
+		loadOptions(args);
+		
+	}
+	
+	public File getOutput() {
+		return output;
+	}
+	public File getDGV() {
+		return dgv;
+	}
+	public File getCytoband() {
+		return cytoband;
+	}
+	/**
+	 * @return gene BED, or null for the copy packaged in the jar
+	 */
+	public File getGenes() {
+		return genes;
+	}
+	/**
+	 * @return pathogenic loci BED, or null for the copy packaged in the jar
+	 */
+	public File getPathogenic() {
+		return pathogenic;
+	}
+	
+	private Options setOptions() {
+		
+		Options options = new Options();
+		
+		Option output = new Option("o", true, "Path to output reference bundle.");
+		output.setRequired(true);
+		options.addOption(output);
+		
+		options.addOption(new Option("dgv", true, "DGV gold standard BED [" + ResourcePaths.get(ResourcePaths.DGV).getAbsolutePath() + "]."));
+		options.addOption(new Option("cyto", true, "Cytoband file [" + ResourcePaths.get(ResourcePaths.CYTOBAND).getAbsolutePath() + "]."));
+		options.addOption(new Option("genes", true, "Gene BED [packaged " + ReferenceBundle.GENE_RESOURCE + "]."));
+		options.addOption(new Option("pathogenic", true, "Pathogenic CNV loci BED [packaged " + ReferenceBundle.PATHOGENIC_RESOURCE + "]."));
+		options.addOption(new Option("help", false, "Print help message."));
+		
+		return options;
+		
+	}
+	
+	private void loadOptions(String args[]) {
+		
+		CommandLineParser parser = new BasicParser();
+		CommandLine cmd = null;
+				
+		try {
+			 cmd = parser.parse(options, args);
+		} catch (org.apache.commons.cli.ParseException e) {
+			System.out.println();
+			ThrowHelp(e.getMessage());
+		}
+			
+		if (cmd.hasOption("help")) {
+			ThrowHelp("");
+		}
+		
+		output = new File(cmd.getOptionValue("o"));
+		dgv = cmd.hasOption("dgv") ? new File(cmd.getOptionValue("dgv")) : ResourcePaths.get(ResourcePaths.DGV);
+		cytoband = cmd.hasOption("cyto") ? new File(cmd.getOptionValue("cyto")) : ResourcePaths.get(ResourcePaths.CYTOBAND);
+		genes = cmd.hasOption("genes") ? new File(cmd.getOptionValue("genes")) : null;
+		pathogenic = cmd.hasOption("pathogenic") ? new File(cmd.getOptionValue("pathogenic")) : null;
+		
+	}
+	
+	private void ThrowHelp(String top) {
+		String header = "Axiom Array CNV Annotator\n\n\n";
+		String footer = "\n\n(c) Eugene Gardner 2018";
+		String usage = "java -jar CNVAnnotator.jar Compile <options>";
+		System.out.println();
+		System.out.println(top);
+		HelpFormatter formatter = new HelpFormatter();
+		System.out.println();
+		formatter.printHelp(9999, usage, header, options, footer);
+		System.exit(1);
+	}
+	
+}
@@ -0,0 +1,83 @@
+package utilities;
+
+import java.io.File;
+
+/**
+ * Locations of the external annotation resources. Everything lives under one root directory, by default our Lustre
+ * calling directory, which can be moved with <code>-Dcnvannotator.root=&lt;directory&gt;</code> (e.g. to run against a
+ * synthetic copy of the same layout). Paths are resolved each time they are asked for, so the root can also be set
+ * programmatically before a reader is built.
+ *
+ * The sample tables read by {@link sampleannotator.resources.SampleLoader} are packaged in the jar unless
+ * <code>-Dcnvannotator.samples=&lt;directory&gt;</code> is given, and the Rscript binary and DBSCAN merge script used by
+ * 'Merge' can be set with <code>-Dcnvannotator.rscript</code> and <code>-Dcnvannotator.mergescript</code>.
+ * The joined sample registry is snapshotted to <code>&lt;root&gt;/sample_information.snapshot</code>, which can be moved
+ * with <code>-Dcnvannotator.samplesnapshot=&lt;file&gt;</code>, or turned off by setting it to <code>none</code>.
+ */
+public class ResourcePaths {
+
+	public static final String ROOT_PROPERTY = "cnvannotator.root";
+	public static final String DEFAULT_ROOT = "/lustre/scratch115/projects/interval_cnv/calling";
+	public static final String SAMPLE_TABLES_PROPERTY = "cnvannotator.samples";
+	public static final String RSCRIPT_PROPERTY = "cnvannotator.rscript";
+	public static final String MERGE_SCRIPT_PROPERTY = "cnvannotator.mergescript";
+	public static final String SAMPLE_SNAPSHOT_PROPERTY = "cnvannotator.samplesnapshot";
+
+	public static final String DGV = "reference/DGV.GS.March2016.50percent.GainLossSep.Final.hg19.bed";
+	public static final String CYTOBAND = "reference/cytoBand.txt";
+	public static final String AXIOM_PROBES = "reference/axiom_probes.bed.gz";
+	public static final String EXOME_BAITS = "sanger_exome_cnvs/exome_baits/bait_regions_unpadded.merge500.bed.gz";
+	public static final String CONVEX_CALLS = "sanger_exome_cnvs/CONVEX/interval_cnv_calls.raw.ejg.sorted.bed.gz";
+	public static final String XHMM_CALLS = "sanger_exome_cnvs/XHMM/INTERVAL.xhmm.sorted.bed.gz";
+	public static final String CLAMMS_CALLS = "sanger_exome_cnvs/CLAMMS/CLAMMS.cnvs.bed.gz";
+	public static final String CANOES_CALLS = "sanger_exome_cnvs/CANOES/CANOES.cnvs.bed.gz";
+	public static final String WES_L2R_DIRECTORY = "sanger_exome_cnvs/CONVEX/convex_out";
+	public static final String SAMPLE_SNAPSHOT = "sample_information.snapshot";
+
+	public static File getRoot() {
+		return new File(System.getProperty(ROOT_PROPERTY, DEFAULT_ROOT));
+	}
+	/**
+	 * @param path one of the relative paths above
+	 */
+	public static File get(String path) {
+		return new File(getRoot(), path);
+	}
+	/**
+	 * @return PennCNV QC summary for a calling batch (1-10)
+	 */
+	public static File getQCSum(int batch) {
+		return get(getQCSumPath(batch));
+	}
+	public static String getQCSumPath(int batch) {
+		return "batch" + batch + "/batch" + batch + ".qcsum";
+	}
+	/**
+	 * @return directory holding affy_sample_table.csv, sample_name_key.csv and CELtoSplit.txt, or null to use the packaged tables
+	 */
+	public static File getSampleTableDirectory() {
+		String directory = System.getProperty(SAMPLE_TABLES_PROPERTY);
+		return directory == null ? null : new File(directory);
+	}
+	/**
+	 * @return where the sample registry snapshot is kept, or null if snapshots are turned off
+	 */
+	public static File getSampleSnapshot() {
+		String snapshot = System.getProperty(SAMPLE_SNAPSHOT_PROPERTY);
+		if (snapshot == null) {
+			return get(SAMPLE_SNAPSHOT);
+		} else if (snapshot.equals("none")) {
+			return null;
+		} else {
+			return new File(snapshot);
+		}
+	}
+	/**
+	 * @param property one of the property names above
+	 * @param defaultValue used when the property isn't set
+	 */
+	public static String getProperty(String property, String defaultValue) {
+		return System.getProperty(property, defaultValue);
+	}
+
+}
@@ -0,0 +1,493 @@
+package utilities;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import sampleannotator.WESL2RReader;
+import sampleannotator.resources.SampleInformation;
+import sampleannotator.resources.SampleInformation.Gender;
+import sampleannotator.resources.SampleLoader;
+import sampleannotator.resources.SampleTable;
+
+/**
+ * Writes a self-consistent synthetic copy of everything 'Annotate' and 'Merge' read, laid out under one directory
+ * exactly as {@link ResourcePaths} expects, so the whole pipeline can run offline by pointing
+ * <code>cnvannotator.root</code> and <code>cnvannotator.samples</code> at it:
+ *
+ * <ul>
+ * <li>DGV gold standard and cytoband references, and optionally a reference genome,</li>
+ * <li>bgzipped Axiom probe and exome bait BEDs,</li>
+ * <li>a PennCNV rawcnv file and a tabixed LRR/BAF file per sample, with LRR and BAF shifted inside each sample's CNVs,</li>
+ * <li>the four WES callsets and tabixed per-sample WES L2R files for the samples that have WES,</li>
+ * <li>the sample tables and per-batch qcsum files read by {@link SampleLoader}.</li>
+ * </ul>
+ *
+ * Samples are written one at a time, so only their {@link SampleInformation} is held in memory. A fraction of CNVs can
+ * be drawn from a fixed set of recurrent hotspot loci rather than placed at random. The same seed and settings always
+ * write the same files.
+ */
+public class SyntheticFixtures {
+
+	public static final String CNV_FILE = "synthetic.rawcnv";
+	public static final String LRRBAF_DIRECTORY = "lrrbaf";
+	public static final String SAMPLE_TABLE_DIRECTORY = "sample_tables";
+	public static final String GENOME_FILE = "reference/synthetic.fa";
+
+	private static final int PROBE_SPACING = 2000;
+	private static final int BAIT_SPACING = 5000;
+	private static final int BAIT_LENGTH = 200;
+	private static final int DGV_PER_CHR = 200;
+	private static final int MIN_CNV_LENGTH = 10000;
+	private static final int MAX_CNV_LENGTH = 1000000;
+	private static final int COPY_NUMBERS[] = {0, 1, 1, 1, 3, 3, 4};
+	private static final int BATCHES = 10;
+
+	private File root;
+	private Random random;
+	private int numSamples;
+	private double cnvRate;
+	private double wesFraction;
+	private int chromosomes;
+	private int chrLength;
+	private double hotspotFraction;
+	private List<SyntheticCNV> hotspots;
+
+	private SampleTable sampleTable;
+	private long totalCNVs;
+
+	/**
+	 * Defaults to four 20 Mb chromosomes and no hotspots; see {@link #setGenome(int, int)} and {@link #setHotspots(int, double)}.
+	 *
+	 * @param root directory to write to; created if it doesn't exist
+	 * @param cnvRate mean number of CNVs called per sample (Poisson)
+	 * @param wesFraction fraction of samples that also have WES data
+	 */
+	public SyntheticFixtures(File root, long seed, int numSamples, double cnvRate, double wesFraction) {
+		this.root = root;
+		random = new Random(seed);
+		this.numSamples = numSamples;
+		this.cnvRate = cnvRate;
+		this.wesFraction = wesFraction;
+		chromosomes = 4;
+		chrLength = 20000000;
+		hotspotFraction = 0;
+		hotspots = new ArrayList<SyntheticCNV>();
+	}
+
+	public void setGenome(int chromosomes, int chrLength) {
+		this.chromosomes = chromosomes;
+		this.chrLength = chrLength;
+	}
+	/**
+	 * Must be called after {@link #setGenome(int, int)}.
+	 *
+	 * @param numHotspots number of recurrent loci
+	 * @param hotspotFraction fraction of CNVs placed at a hotspot (breakpoints jittered by up to 5%) rather than at random
+	 */
+	public void setHotspots(int numHotspots, double hotspotFraction) {
+		this.hotspotFraction = hotspotFraction;
+		hotspots = new ArrayList<SyntheticCNV>();
+		for (int x = 0; x < numHotspots; x++) {
+			hotspots.add(randomCNV());
+		}
+	}
+
+	public File getRoot() {
+		return root;
+	}
+	public File getCNVFile() {
+		return new File(root, CNV_FILE);
+	}
+	public File getSampleTableDirectory() {
+		return new File(root, SAMPLE_TABLE_DIRECTORY);
+	}
+	public File getGenomeFile() {
+		return new File(root, GENOME_FILE);
+	}
+	/**
+	 * @return information for every synthetic sample, found by split file name, as SampleLoader would load it from the written tables
+	 */
+	public SampleTable getSampleTable() {
+		return sampleTable;
+	}
+	public long getTotalCNVs() {
+		return totalCNVs;
+	}
+
+	public void write() throws IOException {
+
+		new File(root, LRRBAF_DIRECTORY).mkdirs();
+		getResource(ResourcePaths.WES_L2R_DIRECTORY).mkdirs();
+		getSampleTableDirectory().mkdirs();
+
+		writeReference();
+		writeFeatures(ResourcePaths.AXIOM_PROBES, PROBE_SPACING, 1);
+		writeFeatures(ResourcePaths.EXOME_BAITS, BAIT_SPACING, BAIT_LENGTH);
+
+		// WESCallIndex sorts calls on load, so these don't need to be written in order
+		String wesPaths[] = {ResourcePaths.CONVEX_CALLS, ResourcePaths.XHMM_CALLS, ResourcePaths.CLAMMS_CALLS, ResourcePaths.CANOES_CALLS};
+		double wesSensitivity[] = {0.8, 0.6, 0.7, 0.5};
+		BufferedWriter wesWriters[] = new BufferedWriter[wesPaths.length];
+		for (int x = 0; x < wesPaths.length; x++) {
+			wesWriters[x] = openGzip(getResource(wesPaths[x]));
+		}
+		BufferedWriter qcWriters[] = new BufferedWriter[BATCHES];
+		for (int x = 0; x < BATCHES; x++) {
+			qcWriters[x] = new BufferedWriter(new FileWriter(getResource(ResourcePaths.getQCSumPath(x + 1))));
+			qcWriters[x].write("File\tLRR_mean\tLRR_median\tLRR_SD\tBAF_mean\tBAF_median\tBAF_SD\tBAF_drift\tWF\tNumCNV\n");
+		}
+		BufferedWriter cnvWriter = new BufferedWriter(new FileWriter(getCNVFile()));
+		BufferedWriter affyWriter = new BufferedWriter(new FileWriter(new File(getSampleTableDirectory(), SampleLoader.AFFY_SAMPLE_TABLE)));
+		BufferedWriter keyWriter = new BufferedWriter(new FileWriter(new File(getSampleTableDirectory(), SampleLoader.SAMPLE_NAME_KEY)));
+		BufferedWriter splitWriter = new BufferedWriter(new FileWriter(new File(getSampleTableDirectory(), SampleLoader.CEL_TO_SPLIT)));
+
+		sampleTable = new SampleTable();
+		totalCNVs = 0;
+
+		for (int x = 1; x <= numSamples; x++) {
+
+			String id = String.format(Locale.US, "%06d", x);
+			int batch = 1 + (x % BATCHES);
+			File splitFile = new File(new File(root, LRRBAF_DIRECTORY).getAbsoluteFile(), "split" + batch + ".a" + id);
+			String celName = "SYN" + id;
+			String affyID = "AFFY" + id;
+			Gender gender = random.nextBoolean() ? Gender.MALE : Gender.FEMALE;
+			double clusterCR = Math.round((98.5 + random.nextDouble()) * 100) / 100.0;
+
+			int sampleId = sampleTable.add(celName + ".CEL", affyID, gender, clusterCR / 100);
+			SampleInformation sampInfo = sampleTable.get(sampleId);
+			sampleTable.setSplitFile(sampleId, splitFile);
+			if (random.nextDouble() < wesFraction) {
+				sampleTable.setWES(sampleId, "SC_SYN" + id, "EGAN" + id);
+				keyWriter.write(sampInfo.getSangerID() + "," + affyID + "," + sampInfo.getEGAN() + "\n");
+			}
+
+			List<SyntheticCNV> cnvs = randomCNVs();
+			totalCNVs += cnvs.size();
+
+			// WF sits well inside SampleInformation's QC limit, so samples are only filtered for having > 30 CNVs
+			double wf = Math.round(random.nextGaussian() * 100) / 10000.0;
+			double lrrSD = Math.round((0.15 + (random.nextDouble() * 0.1)) * 10000) / 10000.0;
+			sampleTable.setFilterInformation(sampleId, wf, cnvs.size());
+			sampleTable.setQC(sampleId, 0.0, 0.0, lrrSD, 0.5, 0.5, 0.03, 0.0);
+
+			writeSampleTableRow(affyWriter, celName, affyID, gender, clusterCR);
+			splitWriter.write("/synthetic/cel/" + celName + ".CEL\t" + splitFile.getPath() + "\n");
+			qcWriters[batch - 1].write(splitFile.getPath() + "\t" + String.format(Locale.US, "%.4f\t%.4f\t%.4f\t%.4f\t%.4f\t%.4f\t%.4f\t%.4f\t%d",
+					sampInfo.getLrr_mean(), sampInfo.getLrr_median(), lrrSD, sampInfo.getBaf_mean(), sampInfo.getBaf_median(), sampInfo.getBaf_sd(), sampInfo.getBaf_drift(), wf, cnvs.size()) + "\n");
+
+			writeCNVs(cnvWriter, splitFile, cnvs);
+			writeLRRBAF(splitFile, cnvs);
+			if (sampInfo.hasWES()) {
+				writeL2R(sampInfo.getEGAN(), cnvs);
+				for (int y = 0; y < wesWriters.length; y++) {
+					// CONVEX and XHMM key calls by EGAN, CLAMMS and CANOES by Sanger ID
+					writeWESCalls(wesWriters[y], y < 2 ? sampInfo.getEGAN() : sampInfo.getSangerID(), cnvs, wesSensitivity[y]);
+				}
+			}
+
+			if (x % 1000 == 0) {
+				System.err.println("Synthetic samples written: " + x);
+			}
+
+		}
+
+		cnvWriter.close();
+		affyWriter.close();
+		keyWriter.close();
+		splitWriter.close();
+		for (BufferedWriter wesWriter : wesWriters) {
+			wesWriter.close();
+		}
+		for (BufferedWriter qcWriter : qcWriters) {
+			qcWriter.close();
+		}
+
+	}
+	/**
+	 * Writes a random reference genome and its <code>.fai</code> index, for '-h' of 'Annotate' and 'Merge'.
+	 */
+	public void writeGenome() throws IOException {
+
+		final int lineBases = 60;
+		final char bases[] = {'A', 'C', 'G', 'T'};
+		File genome = getResource(GENOME_FILE);
+		BufferedWriter genomeWriter = new BufferedWriter(new FileWriter(genome), 1 << 20);
+		BufferedWriter indexWriter = new BufferedWriter(new FileWriter(genome.getPath() + ".fai"));
+		long offset = 0;
+		char line[] = new char[lineBases];
+		for (int chr = 1; chr <= chromosomes; chr++) {
+			String header = ">" + chr + "\n";
+			genomeWriter.write(header);
+			offset += header.length();
+			indexWriter.write(chr + "\t" + chrLength + "\t" + offset + "\t" + lineBases + "\t" + (lineBases + 1) + "\n");
+			for (int pos = 0; pos < chrLength; pos += lineBases) {
+				int length = Math.min(lineBases, chrLength - pos);
+				for (int x = 0; x < length; x++) {
+					line[x] = bases[random.nextInt(bases.length)];
+				}
+				genomeWriter.write(line, 0, length);
+				genomeWriter.write('\n');
+				offset += length + 1;
+			}
+		}
+		genomeWriter.close();
+		indexWriter.close();
+
+	}
+
+	private List<SyntheticCNV> randomCNVs() {
+
+		// Poisson draw by multiplying uniforms; fine for the small rates used here
+		int numCNVs = 0;
+		double limit = Math.exp(-cnvRate);
+		double product = random.nextDouble();
+		while (product > limit) {
+			numCNVs++;
+			product *= random.nextDouble();
+		}
+
+		List<SyntheticCNV> cnvs = new ArrayList<SyntheticCNV>(numCNVs);
+		for (int x = 0; x < numCNVs; x++) {
+			if (hotspots.size() > 0 && random.nextDouble() < hotspotFraction) {
+				SyntheticCNV hotspot = hotspots.get(random.nextInt(hotspots.size()));
+				int jitter = Math.max(1, (hotspot.end - hotspot.start) / 20);
+				int start = Math.max(1, hotspot.start + random.nextInt(2 * jitter + 1) - jitter);
+				int end = Math.min(chrLength - 1, Math.max(start + 1, hotspot.end + random.nextInt(2 * jitter + 1) - jitter));
+				cnvs.add(new SyntheticCNV(hotspot.chr, start, end, hotspot.copyNumber));
+			} else {
+				cnvs.add(randomCNV());
+			}
+		}
+		Collections.sort(cnvs, CNV_ORDER);
+		return cnvs;
+
+	}
+	private SyntheticCNV randomCNV() {
+
+		int chr = 1 + random.nextInt(chromosomes);
+		int maxLength = Math.min(MAX_CNV_LENGTH, chrLength / 4);
+		int length = (int) Math.exp(Math.log(MIN_CNV_LENGTH) + (random.nextDouble() * (Math.log(maxLength) - Math.log(MIN_CNV_LENGTH))));
+		int start = 1 + random.nextInt(chrLength - length - 1);
+		int copyNumber = COPY_NUMBERS[random.nextInt(COPY_NUMBERS.length)];
+		return new SyntheticCNV(chr, start, start + length, copyNumber);
+
+	}
+
+	private void writeReference() throws IOException {
+
+		BufferedWriter cytoWriter = new BufferedWriter(new FileWriter(getResource(ResourcePaths.CYTOBAND)));
+		BufferedWriter dgvWriter = new BufferedWriter(new FileWriter(getResource(ResourcePaths.DGV)));
+		int dgvID = 0;
+		for (int chr = 1; chr <= chromosomes; chr++) {
+			int centLeft = (chrLength / 2) - (chrLength / 40);
+			cytoWriter.write(chr + "\t0\t" + centLeft + "\t" + (centLeft + (chrLength / 20)) + "\t" + chrLength + "\n");
+			List<SyntheticCNV> dgv = new ArrayList<SyntheticCNV>();
+			for (int x = 0; x < DGV_PER_CHR; x++) {
+				SyntheticCNV sv = randomCNV();
+				dgv.add(new SyntheticCNV(chr, sv.start, sv.end, sv.copyNumber));
+			}
+			Collections.sort(dgv, CNV_ORDER);
+			for (SyntheticCNV sv : dgv) {
+				dgvWriter.write("chr" + chr + "\t" + sv.start + "\t" + sv.end + "\tgssvS" + (++dgvID) + "\t.\t.\t" + (sv.copyNumber < 2 ? "Loss" : "Gain") + "\n");
+			}
+		}
+		cytoWriter.close();
+		dgvWriter.close();
+
+	}
+
+	// Evenly spaced features (probes or baits), slightly jittered
+	private void writeFeatures(String path, int spacing, int length) throws IOException {
+
+		BufferedWriter featureWriter = openGzip(getResource(path));
+		for (int chr = 1; chr <= chromosomes; chr++) {
+			for (int pos = spacing; pos < chrLength - spacing; pos += spacing) {
+				int start = featurePosition(pos, spacing);
+				featureWriter.write(chr + "\t" + start + "\t" + (start + length) + "\n");
+			}
+		}
+		featureWriter.close();
+
+	}
+	// Jitter is a function of position, so the LRR/BAF and L2R files land on the same probes and baits
+	private static int featurePosition(int pos, int spacing) {
+		return pos + (int) (((pos / spacing) * 2654435761L) % (spacing / 4));
+	}
+
+	// Only the columns SampleLoader reads: 5 affy ID, 9 CEL name, 17-19 dQC/QC call rate/cluster call rate, 21 QC status, 23-24 reported/actual gender
+	private void writeSampleTableRow(BufferedWriter affyWriter, String celName, String affyID, Gender gender, double clusterCR) throws IOException {
+		String columns[] = new String[25];
+		for (int x = 0; x < columns.length; x++) {
+			columns[x] = ".";
+		}
+		columns[5] = affyID;
+		columns[9] = celName;
+		columns[17] = "0.95";
+		columns[18] = String.format(Locale.US, "%.2f", clusterCR);
+		columns[19] = String.format(Locale.US, "%.2f", clusterCR);
+		columns[21] = "Pass";
+		columns[23] = gender.name().toLowerCase();
+		columns[24] = gender.name().toLowerCase();
+		affyWriter.write(String.join(",", columns) + "\n");
+	}
+
+	private void writeCNVs(BufferedWriter cnvWriter, File splitFile, List<SyntheticCNV> cnvs) throws IOException {
+
+		String splitPath = splitFile.getPath();
+		for (SyntheticCNV cnv : cnvs) {
+			int numSNP = Math.max(1, (cnv.end - cnv.start) / PROBE_SPACING);
+			int state = cnv.copyNumber < 2 ? cnv.copyNumber + 1 : cnv.copyNumber + 2;
+			String conf = String.format(Locale.US, "%.3f", 5 + (random.nextDouble() * 95));
+			cnvWriter.write("chr" + cnv.chr + ":" + cnv.start + "-" + cnv.end +
+					"      numsnp=" + numSNP +
+					"      length=" + String.format(Locale.US, "%,d", cnv.end - cnv.start + 1) +
+					"      state" + state + ",cn=" + cnv.copyNumber +
+					" " + splitPath +
+					" startsnp=AX-" + cnv.start + " endsnp=AX-" + cnv.end +
+					" conf=" + conf + "\n");
+		}
+
+	}
+
+	private void writeLRRBAF(File splitFile, List<SyntheticCNV> cnvs) throws IOException {
+
+		BgzipTabixWriter lrrbafWriter = new BgzipTabixWriter(new File(splitFile.getPath() + ".sorted.bed.gz"));
+		CopyNumberCursor copyNumbers = new CopyNumberCursor(cnvs);
+		for (int chr = 1; chr <= chromosomes; chr++) {
+			String chrName = String.valueOf(chr);
+			for (int pos = PROBE_SPACING; pos < chrLength - PROBE_SPACING; pos += PROBE_SPACING) {
+				int start = featurePosition(pos, PROBE_SPACING);
+				int copyNumber = copyNumbers.get(chr, start);
+				double lrr = (0.5 * Math.log((copyNumber + 0.1) / 2.1) / Math.log(2)) + (random.nextGaussian() * 0.2);
+				double baf;
+				if (random.nextDouble() < 0.7) {
+					baf = random.nextBoolean() ? 0.0 : 1.0;
+				} else if (copyNumber == 2) {
+					baf = 0.5;
+				} else if (copyNumber > 2) {
+					baf = random.nextBoolean() ? 1.0 / copyNumber : 1 - (1.0 / copyNumber);
+				} else {
+					baf = random.nextBoolean() ? 0.0 : 1.0;
+				}
+				baf = Math.min(1, Math.max(0, baf + (random.nextGaussian() * 0.03)));
+				lrrbafWriter.write(chrName, start, start + 1, chrName + "\t" + start + "\t" + (start + 1) + "\tAX-" + start + "\t" + String.format(Locale.US, "%.4f", lrr) + "\t" + String.format(Locale.US, "%.4f", baf));
+			}
+		}
+		lrrbafWriter.close();
+
+	}
+	private void writeL2R(String EGAN, List<SyntheticCNV> cnvs) throws IOException {
+
+		BgzipTabixWriter l2rWriter = new BgzipTabixWriter(WESL2RReader.getL2RFile(getResource(ResourcePaths.WES_L2R_DIRECTORY), EGAN));
+		CopyNumberCursor copyNumbers = new CopyNumberCursor(cnvs);
+		for (int chr = 1; chr <= chromosomes; chr++) {
+			String chrName = String.valueOf(chr);
+			for (int pos = BAIT_SPACING; pos < chrLength - BAIT_SPACING; pos += BAIT_SPACING) {
+				int start = featurePosition(pos, BAIT_SPACING);
+				int copyNumber = copyNumbers.get(chr, start);
+				double l2r = (Math.log((copyNumber + 0.1) / 2.1) / Math.log(2)) + (random.nextGaussian() * 0.15);
+				l2rWriter.write(chrName, start, start + BAIT_LENGTH, chrName + "\t" + start + "\t" + (start + BAIT_LENGTH) + "\t" + String.format(Locale.US, "%.4f", l2r));
+			}
+		}
+		l2rWriter.close();
+
+	}
+	/**
+	 * Each of the sample's array CNVs is called with probability <code>sensitivity</code>, with jittered breakpoints,
+	 * plus one false positive.
+	 */
+	private void writeWESCalls(BufferedWriter wesWriter, String sampleID, List<SyntheticCNV> cnvs, double sensitivity) throws IOException {
+
+		List<SyntheticCNV> wesCNVs = new ArrayList<SyntheticCNV>();
+		for (SyntheticCNV cnv : cnvs) {
+			if (random.nextDouble() < sensitivity) {
+				int jitter = (cnv.end - cnv.start) / 10;
+				int start = Math.max(1, cnv.start + random.nextInt(2 * jitter + 1) - jitter);
+				int end = Math.max(start + 1, cnv.end + random.nextInt(2 * jitter + 1) - jitter);
+				wesCNVs.add(new SyntheticCNV(cnv.chr, start, end, cnv.copyNumber));
+			}
+		}
+		wesCNVs.add(randomCNV());
+		for (SyntheticCNV cnv : wesCNVs) {
+			wesWriter.write(cnv.chr + "\t" + cnv.start + "\t" + cnv.end + "\t" + Math.max(1, (cnv.end - cnv.start) / BAIT_SPACING) + "\t.\t" + (cnv.copyNumber < 2 ? "DEL" : "DUP") + "\t" + sampleID + "\n");
+		}
+
+	}
+
+	/**
+	 * @param path one of the {@link ResourcePaths} relative paths
+	 */
+	private File getResource(String path) {
+		File resource = new File(root, path);
+		resource.getParentFile().mkdirs();
+		return resource;
+	}
+	private static BufferedWriter openGzip(File file) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file), 65536), "UTF-8"));
+	}
+
+	private static class SyntheticCNV {
+
+		private int chr;
+		private int start;
+		private int end;
+		private int copyNumber;
+
+		private SyntheticCNV(int chr, int start, int end, int copyNumber) {
+			this.chr = chr;
+			this.start = start;
+			this.end = end;
+			this.copyNumber = copyNumber;
+		}
+
+	}
+
+	/**
+	 * Copy number at increasing positions along one sample's sorted CNVs, advancing past CNVs that have ended rather
+	 * than rescanning them. Where CNVs overlap, the first to start wins.
+	 */
+	private static class CopyNumberCursor {
+
+		private List<SyntheticCNV> cnvs;
+		private int first;
+
+		private CopyNumberCursor(List<SyntheticCNV> cnvs) {
+			this.cnvs = cnvs;
+			first = 0;
+		}
+
+		private int get(int chr, int pos) {
+			while (first < cnvs.size() && (cnvs.get(first).chr < chr || (cnvs.get(first).chr == chr && cnvs.get(first).end < pos))) {
+				first++;
+			}
+			for (int x = first; x < cnvs.size() && cnvs.get(x).chr == chr && cnvs.get(x).start <= pos; x++) {
+				if (cnvs.get(x).end >= pos) {
+					return cnvs.get(x).copyNumber;
+				}
+			}
+			return 2;
+		}
+
+	}
+
+	private static final Comparator<SyntheticCNV> CNV_ORDER = new Comparator<SyntheticCNV>() {
+		@Override
+		public int compare(SyntheticCNV o1, SyntheticCNV o2) {
+			int chrComp = Integer.compare(o1.chr, o2.chr);
+			return chrComp != 0 ? chrComp : Integer.compare(o1.start, o2.start);
+		}
+	};
+
+}
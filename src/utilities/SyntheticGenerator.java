@@ -0,0 +1,37 @@
+package utilities;
+
+import java.io.IOException;
+
+/**
+ * Writes a synthetic dataset with {@link SyntheticFixtures} and prints how to run 'Annotate' and 'Merge' against it.
+ */
+public class SyntheticGenerator {
+
+	public SyntheticGenerator(String args[]) throws IOException {
+
+		SyntheticGeneratorOptions options = new SyntheticGeneratorOptions(args);
+
+		SyntheticFixtures fixtures = new SyntheticFixtures(options.getOutput(), options.getSeed(), options.getSamples(), options.getCNVRate(), options.getWESFraction());
+		fixtures.setGenome(options.getChromosomes(), options.getChrLength());
+		if (options.getHotspots() > 0) {
+			fixtures.setHotspots(options.getHotspots(), options.getHotspotFraction());
+		}
+
+		System.err.println("Writing " + options.getSamples() + " synthetic samples to " + fixtures.getRoot().getAbsolutePath());
+		fixtures.write();
+		if (options.writeGenome()) {
+			fixtures.writeGenome();
+		}
+		System.err.println("Total synthetic CNVs written: " + fixtures.getTotalCNVs());
+
+		String properties = "-D" + ResourcePaths.ROOT_PROPERTY + "=" + fixtures.getRoot().getAbsolutePath() +
+				" -D" + ResourcePaths.SAMPLE_TABLES_PROPERTY + "=" + fixtures.getSampleTableDirectory().getAbsolutePath();
+		String genome = fixtures.getGenomeFile().getAbsolutePath();
+		System.err.println();
+		System.err.println("Run the pipeline on this dataset with:");
+		System.err.println("java " + properties + " -jar CNVAnnotator.jar Annotate -p " + fixtures.getCNVFile().getAbsolutePath() + " -o <annotated> -h " + genome);
+		System.err.println("java " + properties + " -jar CNVAnnotator.jar Merge -p <annotated> -o <merged> -e <epsilon> -h " + genome);
+
+	}
+
+}
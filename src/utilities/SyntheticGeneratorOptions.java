@@ -0,0 +1,129 @@
+package utilities;
+
+import java.io.File;
+
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+public class SyntheticGeneratorOptions {
+
+	private Options options;
+
+	private File output;
+	private int samples;
+	private double cnvRate;
+	private int hotspots;
+	private double hotspotFraction;
+	private double wesFraction;
+	private long seed;
+	private int chromosomes;
+	private int chrLength;
+	private boolean writeGenome;
+
+	public SyntheticGeneratorOptions (String args[]) {
+
+		options = setOptions();
+		loadOptions(args);
+
+	}
+
+	public File getOutput() {
+		return output;
+	}
+	public int getSamples() {
+		return samples;
+	}
+	public double getCNVRate() {
+		return cnvRate;
+	}
+	public int getHotspots() {
+		return hotspots;
+	}
+	public double getHotspotFraction() {
+		return hotspotFraction;
+	}
+	public double getWESFraction() {
+		return wesFraction;
+	}
+	public long getSeed() {
+		return seed;
+	}
+	public int getChromosomes() {
+		return chromosomes;
+	}
+	public int getChrLength() {
+		return chrLength;
+	}
+	public boolean writeGenome() {
+		return writeGenome;
+	}
+
+	private Options setOptions() {
+
+		Options options = new Options();
+
+		Option output = new Option("o", true, "Directory to write the synthetic dataset to.");
+		output.setRequired(true);
+		options.addOption(output);
+
+		options.addOption(new Option("samples", true, "Number of synthetic samples [1000]."));
+		options.addOption(new Option("rate", true, "Mean number of CNVs called per sample [10]."));
+		options.addOption(new Option("hotspots", true, "Number of recurrent CNV loci [0]."));
+		options.addOption(new Option("hotspotfraction", true, "Fraction of CNVs drawn from a hotspot rather than placed at random [0.25]."));
+		options.addOption(new Option("wes", true, "Fraction of samples that also have WES calls and L2R [0.1]."));
+		options.addOption(new Option("seed", true, "Random seed; the same seed and options always write the same dataset [1]."));
+		options.addOption(new Option("chr", true, "Number of chromosomes [4]."));
+		options.addOption(new Option("length", true, "Length of each chromosome in bp [20000000]."));
+		options.addOption(new Option("nofasta", false, "Don't write the reference genome given to '-h' (if one is already in place)."));
+		options.addOption(new Option("help", false, "Print help message."));
+
+		return options;
+
+	}
+
+	private void loadOptions(String args[]) {
+
+		CommandLineParser parser = new BasicParser();
+		CommandLine cmd = null;
+
+		try {
+			 cmd = parser.parse(options, args);
+		} catch (org.apache.commons.cli.ParseException e) {
+			System.out.println();
+			ThrowHelp(e.getMessage());
+		}
+
+		if (cmd.hasOption("help")) {
+			ThrowHelp("");
+		}
+
+		output = new File(cmd.getOptionValue("o"));
+		samples = cmd.hasOption("samples") ? Integer.parseInt(cmd.getOptionValue("samples")) : 1000;
+		cnvRate = cmd.hasOption("rate") ? Double.parseDouble(cmd.getOptionValue("rate")) : 10;
+		hotspots = cmd.hasOption("hotspots") ? Integer.parseInt(cmd.getOptionValue("hotspots")) : 0;
+		hotspotFraction = cmd.hasOption("hotspotfraction") ? Double.parseDouble(cmd.getOptionValue("hotspotfraction")) : 0.25;
+		wesFraction = cmd.hasOption("wes") ? Double.parseDouble(cmd.getOptionValue("wes")) : 0.1;
+		seed = cmd.hasOption("seed") ? Long.parseLong(cmd.getOptionValue("seed")) : 1;
+		chromosomes = cmd.hasOption("chr") ? Integer.parseInt(cmd.getOptionValue("chr")) : 4;
+		chrLength = cmd.hasOption("length") ? Integer.parseInt(cmd.getOptionValue("length")) : 20000000;
+		writeGenome = !cmd.hasOption("nofasta");
+
+	}
+
+	private void ThrowHelp(String top) {
+		String header = "Axiom Array CNV Annotator\n\n\n";
+		String footer = "\n\n(c) Eugene Gardner 2018";
+		String usage = "java -jar CNVAnnotator.jar Generate <options>";
+		System.out.println();
+		System.out.println(top);
+		HelpFormatter formatter = new HelpFormatter();
+		System.out.println();
+		formatter.printHelp(9999, usage, header, options, footer);
+		System.exit(1);
+	}
+
+}
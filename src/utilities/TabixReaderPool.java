@@ -0,0 +1,102 @@
+package utilities;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded pool of open {@link CachedTabixReader}s keyed by the path of the bgzipped file. Readers are evicted (and
+ * closed) in least-recently-used order once more than <code>maxHandles</code> files are open, so CNVs from the same
+ * sample reuse one reader and its parsed .tbi index instead of re-opening the file for every query. Decompressed blocks
+ * outlive the readers in the shared {@link BGZFBlockCache}.
+ *
+ * Not thread-safe -- the readers are not, so each annotating thread should own its own pool.
+ */
+public class TabixReaderPool implements Closeable {
+
+	private LinkedHashMap<String, CachedTabixReader> readers;
+	private int maxHandles;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public TabixReaderPool(int maxHandles) {
+
+		if (maxHandles < 1) {
+			throw new IllegalArgumentException("Tabix handle budget must be at least 1, was " + maxHandles);
+		}
+		this.maxHandles = maxHandles;
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+
+		// accessOrder = true makes iteration order LRU -> MRU, which is what removeEldestEntry needs
+		readers = new LinkedHashMap<String, CachedTabixReader>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedTabixReader> eldest) {
+				if (size() > TabixReaderPool.this.maxHandles) {
+					eldest.getValue().close();
+					evictions++;
+					return true;
+				} else {
+					return false;
+				}
+			}
+		};
+
+	}
+
+	/**
+	 * @param tabixFile bgzipped, tabix-indexed file; the index is expected at <code>tabixFile + ".tbi"</code>
+	 * @return an open reader for this file, shared with any previous caller that asked for the same file
+	 */
+	public CachedTabixReader getReader(File tabixFile) throws IOException {
+
+		String path = tabixFile.getAbsolutePath();
+		CachedTabixReader reader = readers.get(path);
+
+		if (reader == null) {
+			misses++;
+			reader = new CachedTabixReader(tabixFile, BGZFBlockCache.getShared());
+			readers.put(path, reader);
+		} else {
+			hits++;
+		}
+
+		return reader;
+
+	}
+
+	public long getHits() {
+		return hits;
+	}
+	public long getMisses() {
+		return misses;
+	}
+	public long getEvictions() {
+		return evictions;
+	}
+	public int getOpenHandles() {
+		return readers.size();
+	}
+	public int getMaxHandles() {
+		return maxHandles;
+	}
+	public String getSummary() {
+		long total = hits + misses;
+		double hitRate = total == 0 ? 0.0 : (double) hits / (double) total;
+		return "hits=" + hits + " misses=" + misses + " evictions=" + evictions + " hitRate=" + String.format("%.4f", hitRate) + " open=" + readers.size() + "/" + maxHandles;
+	}
+
+	@Override
+	public void close() {
+		for (CachedTabixReader reader : readers.values()) {
+			reader.close();
+		}
+		readers.clear();
+	}
+
+}